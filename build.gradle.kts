@@ -19,6 +19,7 @@ dependencies {
     
     // Common dependencies (will be bundled in JAR)
     implementation("com.google.code.gson:gson:2.10.1")
+    implementation("com.h2database:h2:2.2.224")
     implementation("org.jetbrains:annotations:24.1.0")
     
     // Test dependencies
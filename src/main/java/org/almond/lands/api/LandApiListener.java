@@ -0,0 +1,21 @@
+package org.almond.lands.api;
+
+import java.util.UUID;
+
+/** Land changes as seen by other plugins, called on the world thread after the change is applied
+ *  Views passed in are current as of the change and may be kept.
+ */
+public interface LandApiListener {
+
+    /** A land or subclaim was created */
+    default void onLandCreated(LandView land) {}
+
+    /** A land was deleted, the view is its last state */
+    default void onLandDeleted(LandView land) {}
+
+    /** Regions, flags or roles of a land changed */
+    default void onLandChanged(LandView land) {}
+
+    /** A member was trusted or had their role changed, a null role means the member was removed */
+    default void onMemberChanged(LandView land, UUID memberId, String roleName) {}
+}
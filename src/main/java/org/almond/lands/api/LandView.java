@@ -0,0 +1,114 @@
+package org.almond.lands.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.almond.lands.model.ClaimMode;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandFlag;
+import org.almond.lands.model.Region;
+
+/** Immutable snapshot of a land's header, its identity, owner, flags and regions at one version
+ *  Taken by LandsApi once per land version and shared by every caller until the land changes again,
+ *  so a view can be kept and read from any thread. Members and roles are not part of the snapshot,
+ *  they are queried through LandsApi so a town with thousands of members is never copied.
+ */
+public final class LandView {
+    private final UUID id;
+    private final String name;
+    private final UUID owner;
+    private final UUID parentId;
+    private final int depth;
+    private final long createdAt;
+    private final ClaimMode claimMode;
+    private final long flags;
+    private final long volume;
+    private final long version;
+    private final List<RegionView> regions;
+
+    LandView(Land land) {
+        this.id = land.getId();
+        this.name = land.getName();
+        this.owner = land.getOwner();
+        this.parentId = land.getParent() != null ? land.getParent().getId() : null;
+        this.depth = land.getDepth();
+        this.createdAt = land.getCreatedAt();
+        this.claimMode = land.getClaimMode();
+        this.flags = land.getFlags();
+        this.version = land.getVersion();
+        List<RegionView> regions = new ArrayList<>(land.getRegions().size());
+        long volume = 0;
+        for (Region region : land.getRegions()) {
+            regions.add(new RegionView(region));
+            volume += region.getVolume();
+        }
+        this.volume = volume;
+        this.regions = Collections.unmodifiableList(regions);
+    }
+
+    /** Checks if the land's own regions contain a block, subclaims inside it included */
+    public boolean contains(int x, int y, int z) {
+        for (int i = 0; i < regions.size(); i++) {
+            if (regions.get(i).contains(x, y, z)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean hasFlag(LandFlag flag) {
+        return flag.isSet(flags);
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public UUID getOwner() {
+        return owner;
+    }
+
+    /** Id of the enclosing land, null for top level lands */
+    public UUID getParentId() {
+        return parentId;
+    }
+
+    public boolean isSubclaim() {
+        return parentId != null;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public ClaimMode getClaimMode() {
+        return claimMode;
+    }
+
+    public long getFlags() {
+        return flags;
+    }
+
+    public long getVolume() {
+        return volume;
+    }
+
+    /** Version of the land this view was taken at, a newer view of the same land has a higher one */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Regions of the land, read only */
+    public List<RegionView> getRegions() {
+        return regions;
+    }
+}
@@ -0,0 +1,7 @@
+package org.almond.lands.api;
+
+/** Callback for iterating lands without collecting them, return false to stop early */
+@FunctionalInterface
+public interface LandVisitor {
+    boolean visit(LandView land);
+}
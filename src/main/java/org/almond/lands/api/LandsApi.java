@@ -0,0 +1,279 @@
+package org.almond.lands.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import org.almond.lands.index.LandIndex;
+import org.almond.lands.manager.LandChangeListener;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.LandRole;
+import org.almond.lands.model.Region;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+/** Entry point for other plugins, read only access to lands without handing out the mutable model
+ *  Lands are exposed as immutable LandView snapshots, cached per land and only taken again after the land's
+ *  version moved, so polling the same land at high frequency costs a map lookup and a version compare.
+ *  Iteration goes through visitors over the live collections, nothing is copied to hand out a set.
+ *  Point queries use the spatial index, box queries its chunk buckets, owner queries an owner index kept here.
+ *  Members and roles are answered from the land's member table directly.
+ *  Queries are meant for the world thread, the views they return may be used from anywhere.
+ */
+public class LandsApi implements LandChangeListener {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    private LandManager landManager;
+    private Map<UUID, LandView> views = new HashMap<>();
+    private Map<UUID, Set<UUID>> landsByOwner = new HashMap<>();
+    private List<LandApiListener> listeners = new ArrayList<>();
+
+    public LandsApi(LandManager landManager) {
+        this.landManager = landManager;
+        landManager.forEachLand(land -> addOwned(land));
+        landManager.addChangeListener(this);
+    }
+
+    /** Lookups */
+
+    public LandView getLand(UUID landId) {
+        Land land = landManager.getLandById(landId);
+        return land != null ? view(land) : null;
+    }
+
+    public LandView getLandByName(String name) {
+        Land land = landManager.getLandByName(name);
+        return land != null ? view(land) : null;
+    }
+
+    /** Most specific land or subclaim containing a block, null for wilderness */
+    public LandView getLandAt(int x, int y, int z) {
+        LandIndex.Entry entry = landManager.getIndex().find(x, y, z);
+        return entry != null ? view(entry.getLand()) : null;
+    }
+
+    /** Ids of the lands and subclaims owned by a player, read only */
+    public Set<UUID> getLandIdsOf(UUID ownerId) {
+        Set<UUID> owned = landsByOwner.get(ownerId);
+        return owned != null ? Collections.unmodifiableSet(owned) : Collections.emptySet();
+    }
+
+    public int getLandCount() {
+        return landManager.getLandCount();
+    }
+
+    /** Iteration */
+
+    /** Visits every land and subclaim, in no particular order */
+    public void forEachLand(LandVisitor visitor) {
+        landManager.forEachLandWhile(land -> visitor.visit(view(land)));
+    }
+
+    /** Visits the lands owned by a player */
+    public void forEachLandOf(UUID ownerId, LandVisitor visitor) {
+        Set<UUID> owned = landsByOwner.get(ownerId);
+        if (owned == null) {
+            return;
+        }
+        for (UUID landId : owned) {
+            if (!visitor.visit(view(landManager.getLandById(landId)))) {
+                return;
+            }
+        }
+    }
+
+    /** Visits every land with a region sharing a block with the inclusive box, each land once */
+    public void forEachLandIn(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, LandVisitor visitor) {
+        LandIndex index = landManager.getIndex();
+        Set<Land> seen = new HashSet<>();
+        int minChunkX = minX >> LandIndex.CHUNK_SHIFT;
+        int minChunkZ = minZ >> LandIndex.CHUNK_SHIFT;
+        int maxChunkX = maxX >> LandIndex.CHUNK_SHIFT;
+        int maxChunkZ = maxZ >> LandIndex.CHUNK_SHIFT;
+        long chunks = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+        // A box wider than the claimed world walks the occupied buckets instead of every chunk in it
+        if (chunks > index.getBucketCount()) {
+            for (long chunkKey : index.getBucketKeys()) {
+                int chunkX = (int) (chunkKey >> 32);
+                int chunkZ = (int) chunkKey;
+                if (chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ
+                    && !visitBucket(index.getBucket(chunkKey), minX, minY, minZ, maxX, maxY, maxZ, seen, visitor)) {
+                    return;
+                }
+            }
+            return;
+        }
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                List<LandIndex.Entry> bucket = index.getBucket(LandIndex.chunkKey(chunkX, chunkZ));
+                if (!visitBucket(bucket, minX, minY, minZ, maxX, maxY, maxZ, seen, visitor)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean visitBucket(List<LandIndex.Entry> bucket, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                                Set<Land> seen, LandVisitor visitor) {
+        for (int i = 0; i < bucket.size(); i++) {
+            LandIndex.Entry entry = bucket.get(i);
+            Region region = entry.getRegion();
+            boolean column = region.isColumn();
+            if (region.getCorner1().getX() > maxX || region.getCorner2().getX() < minX
+                || region.getCorner1().getZ() > maxZ || region.getCorner2().getZ() < minZ
+                || (!column && (region.getCorner1().getY() > maxY || region.getCorner2().getY() < minY))) {
+                continue;
+            }
+            if (seen.add(entry.getLand()) && !visitor.visit(view(entry.getLand()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Members and permissions */
+
+    /** Role name of a player in a land, null if they are not a member */
+    public String getRole(UUID landId, UUID playerId) {
+        Land land = landManager.getLandById(landId);
+        if (land == null || !land.mightBeMember(playerId)) {
+            return null;
+        }
+        return land.getMembers().get(playerId);
+    }
+
+    public boolean isMember(UUID landId, UUID playerId) {
+        return getRole(landId, playerId) != null;
+    }
+
+    public int getMemberCount(UUID landId) {
+        Land land = landManager.getLandById(landId);
+        // Kept on the land itself, so counting does not load the members of a land whose details are not resident
+        return land != null ? land.getMemberCount() : 0;
+    }
+
+    /** Calls the action with every member and their role name */
+    public void forEachMember(UUID landId, BiConsumer<UUID, String> action) {
+        Land land = landManager.getLandById(landId);
+        if (land != null) {
+            land.getMembers().forEach(action);
+        }
+    }
+
+    /** Permissions of a role as a read only set, null if the land or role does not exist */
+    public Set<LandPermission> getRolePermissions(UUID landId, String roleName) {
+        Land land = landManager.getLandById(landId);
+        LandRole role = land != null ? land.getRoles().get(roleName) : null;
+        return role != null ? Collections.unmodifiableSet(role.getPermissions()) : null;
+    }
+
+    /** Checks a permission the same way protection does, subclaims falling back to their parents */
+    public boolean hasPermission(UUID playerId, UUID landId, LandPermission permission) {
+        Land land = landManager.getLandById(landId);
+        return land == null || landManager.checkPermission(playerId, land, permission);
+    }
+
+    /** Checks a permission at a block, wilderness allows everything */
+    public boolean hasPermissionAt(UUID playerId, int x, int y, int z, LandPermission permission) {
+        LandIndex.Entry entry = landManager.getIndex().find(x, y, z);
+        return entry == null || landManager.checkPermission(playerId, entry.getLand(), permission);
+    }
+
+    /** Listeners */
+
+    public void addListener(LandApiListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(LandApiListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** View of a land, taken again only when the land changed since the cached one */
+    private LandView view(Land land) {
+        LandView view = views.get(land.getId());
+        if (view == null || view.getVersion() != land.getVersion()) {
+            view = new LandView(land);
+            views.put(land.getId(), view);
+        }
+        return view;
+    }
+
+    private void addOwned(Land land) {
+        landsByOwner.computeIfAbsent(land.getOwner(), owner -> new LinkedHashSet<>()).add(land.getId());
+    }
+
+    /** Calls every api listener, a failing plugin is logged and does not stop the others */
+    private void notify(String event, Consumer<LandApiListener> call) {
+        for (int i = 0; i < listeners.size(); i++) {
+            try {
+                call.accept(listeners.get(i));
+            } catch (RuntimeException e) {
+                LOGGER.atWarning().withCause(e).log("Land api listener failed on " + event + ".");
+            }
+        }
+    }
+
+    /** Change tracking, world thread */
+
+    @Override
+    public void onLandCreated(Land land) {
+        addOwned(land);
+        if (!listeners.isEmpty()) {
+            LandView view = view(land);
+            notify("land creation", listener -> listener.onLandCreated(view));
+        }
+    }
+
+    @Override
+    public void onLandDeleted(Land land) {
+        Set<UUID> owned = landsByOwner.get(land.getOwner());
+        if (owned != null && owned.remove(land.getId()) && owned.isEmpty()) {
+            landsByOwner.remove(land.getOwner());
+        }
+        LandView view = views.remove(land.getId());
+        if (!listeners.isEmpty()) {
+            LandView last = view != null && view.getVersion() == land.getVersion() ? view : new LandView(land);
+            notify("land deletion", listener -> listener.onLandDeleted(last));
+        }
+    }
+
+    @Override
+    public void onRegionsChanged(Land land, Set<Region> added, Set<Region> removed) {
+        changed(land);
+    }
+
+    @Override
+    public void onMemberChanged(Land land, UUID memberId, String roleName) {
+        if (!listeners.isEmpty()) {
+            LandView view = view(land);
+            notify("member change", listener -> listener.onMemberChanged(view, memberId, roleName));
+        }
+    }
+
+    @Override
+    public void onRoleChanged(Land land, String roleName, LandRole role) {
+        changed(land);
+    }
+
+    @Override
+    public void onFlagsChanged(Land land, Region region) {
+        changed(land);
+    }
+
+    private void changed(Land land) {
+        if (!listeners.isEmpty()) {
+            LandView view = view(land);
+            notify("land change", listener -> listener.onLandChanged(view));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.almond.lands.api;
+
+import org.almond.lands.model.LandFlag;
+import org.almond.lands.model.Region;
+
+/** Immutable copy of a claimed region, its inclusive block bounds and flag overrides
+ *  Equal to another view of the same bounds, like Region itself.
+ */
+public final class RegionView {
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final boolean column;
+    private final long flagMask;
+    private final long flagValues;
+
+    public RegionView(Region region) {
+        this.minX = region.getCorner1().getX();
+        this.minY = region.getCorner1().getY();
+        this.minZ = region.getCorner1().getZ();
+        this.maxX = region.getCorner2().getX();
+        this.maxY = region.getCorner2().getY();
+        this.maxZ = region.getCorner2().getZ();
+        this.column = region.isColumn();
+        this.flagMask = region.getFlagMask();
+        this.flagValues = region.getFlagValues();
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return x >= minX && x <= maxX && z >= minZ && z <= maxZ && (column || (y >= minY && y <= maxY));
+    }
+
+    /** Checks if the region shares at least one block with the given inclusive box */
+    public boolean intersects(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return this.minX <= maxX && this.maxX >= minX && this.minZ <= maxZ && this.maxZ >= minZ
+            && (column || (this.minY <= maxY && this.maxY >= minY));
+    }
+
+    /** Override of a flag in this region, null if it inherits the land's value */
+    public Boolean getFlagOverride(LandFlag flag) {
+        if (!flag.isSet(flagMask)) {
+            return null;
+        }
+        return flag.isSet(flagValues);
+    }
+
+    public long getVolume() {
+        return (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMinZ() {
+        return minZ;
+    }
+
+    public int getMaxX() {
+        return maxX;
+    }
+
+    public int getMaxY() {
+        return maxY;
+    }
+
+    public int getMaxZ() {
+        return maxZ;
+    }
+
+    public boolean isColumn() {
+        return column;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof RegionView)) {
+            return false;
+        }
+        RegionView other = (RegionView) obj;
+        return column == other.column && minX == other.minX && minY == other.minY && minZ == other.minZ
+            && maxX == other.maxX && maxY == other.maxY && maxZ == other.maxZ;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = minX;
+        hash = 31 * hash + minY;
+        hash = 31 * hash + minZ;
+        hash = 31 * hash + maxX;
+        hash = 31 * hash + maxY;
+        hash = 31 * hash + maxZ;
+        return column ? ~hash : hash;
+    }
+}
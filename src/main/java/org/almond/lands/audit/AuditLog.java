@@ -0,0 +1,360 @@
+package org.almond.lands.audit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import org.almond.lands.manager.LandChangeListener;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.LandRole;
+import org.almond.lands.model.Region;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+/** Asynchronous audit log of claims, trust changes and protection denials
+ *  Callers publish fixed size events into a preallocated ring buffer, which never allocates or blocks.
+ *  A single writer thread drains the ring in batches into gzip compressed segment files,
+ *  starting a new segment once the current one holds segmentBytes of events and dropping the oldest beyond maxSegments.
+ *  Land changes are recorded by listening to the manager, their actor is not known there and stays empty.
+ *
+ *  Segments are named after the timestamp of their first event, so a time range query skips whole files.
+ *  Each batch is sync flushed, queries see events a moment after they were written.
+ *  A segment cut short by a crash is read up to where it ends.
+ */
+public class AuditLog implements LandChangeListener, Closeable {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final long DEFAULT_SEGMENT_BYTES = 8L << 20;
+    public static final int DEFAULT_MAX_SEGMENTS = 64;
+
+    private static final String SEGMENT_SUFFIX = ".audit.gz";
+    private static final int BATCH_EVENTS = 1024;
+    private static final long IDLE_PARK_NANOS = 2_000_000L;
+
+    private Path directory;
+    private long segmentBytes;
+    private int maxSegments;
+    private AuditRingBuffer ring;
+    private ByteBuffer batch = ByteBuffer.allocate(BATCH_EVENTS * AuditRingBuffer.EVENT_BYTES); // Writer thread only
+    private OutputStream segment;   // Writer thread only
+    private long segmentWritten;
+    private volatile long written;
+    private Thread writer;
+    private volatile boolean running;
+
+    public AuditLog(Path directory) {
+        this(directory, DEFAULT_CAPACITY, DEFAULT_SEGMENT_BYTES, DEFAULT_MAX_SEGMENTS);
+    }
+
+    public AuditLog(Path directory, int capacity, long segmentBytes, int maxSegments) {
+        if (segmentBytes < AuditRingBuffer.EVENT_BYTES || maxSegments < 1) {
+            throw new IllegalArgumentException("Audit segments must hold at least one event and be kept at least once.");
+        }
+        this.directory = directory;
+        this.ring = new AuditRingBuffer(capacity);
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+    }
+
+    /** Starts the writer thread */
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        running = true;
+        writer = new Thread(this::writeLoop, "Lands-Audit");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Writes every event published so far and stops the writer */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Publishing, any thread, never allocates */
+
+    /** Records an event, returns false if the buffer was full and it was dropped
+     *  Null ids are stored as empty, the position is packed into 26 bits of x and z and 12 bits of y.
+     */
+    public boolean record(AuditType type, UUID landId, UUID actorId, UUID subjectId, int x, int y, int z, long value) {
+        return ring.publish(System.currentTimeMillis(), type.ordinal(),
+            landId != null ? landId.getMostSignificantBits() : 0L, landId != null ? landId.getLeastSignificantBits() : 0L,
+            actorId != null ? actorId.getMostSignificantBits() : 0L, actorId != null ? actorId.getLeastSignificantBits() : 0L,
+            subjectId != null ? subjectId.getMostSignificantBits() : 0L, subjectId != null ? subjectId.getLeastSignificantBits() : 0L,
+            packPosition(x, y, z), value);
+    }
+
+    /** Records a protection denial, for the protection listeners */
+    public boolean permissionDenied(UUID playerId, Land land, Vector3i position, LandPermission permission) {
+        return record(AuditType.PERMISSION_DENIED, land != null ? land.getId() : null, playerId, null,
+                      position.getX(), position.getY(), position.getZ(), permission.bit());
+    }
+
+    /** Events dropped because the writer fell behind */
+    public long getDroppedCount() {
+        return ring.getDropped();
+    }
+
+    /** Events written to segments since start */
+    public long getWrittenCount() {
+        return written;
+    }
+
+    /** Events waiting in the ring */
+    public long getPendingCount() {
+        return ring.size();
+    }
+
+    /** Writer thread */
+
+    private void writeLoop() {
+        while (true) {
+            boolean stopping = !running;
+            batch.clear();
+            int count = ring.drain(batch, BATCH_EVENTS);
+            if (count > 0) {
+                try {
+                    writeBatch(count);
+                } catch (IOException e) {
+                    // Keep draining so publishers never stall, the batch is lost
+                    LOGGER.atSevere().withCause(e).log("Failed to write " + count + " audit events.");
+                    closeSegment();
+                }
+                continue;
+            }
+            if (stopping) {
+                closeSegment();
+                return;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    private void writeBatch(int count) throws IOException {
+        batch.flip();
+        if (segment == null || segmentWritten >= segmentBytes) {
+            rotate(batch.getLong(0));
+        }
+        segment.write(batch.array(), 0, batch.limit());
+        segment.flush(); // Sync flush, queries can read the batch right away
+        segmentWritten += batch.limit();
+        written += count;
+    }
+
+    /** Finishes the current segment, starts one named after the given timestamp and drops the oldest ones */
+    private void rotate(long firstTimestamp) throws IOException {
+        closeSegment();
+        Path file = directory.resolve(String.format("%016d", firstTimestamp) + SEGMENT_SUFFIX);
+        for (int attempt = 1; Files.exists(file); attempt++) {
+            // Two segments started in the same millisecond, '_' sorts after the '.' of the first one
+            file = directory.resolve(String.format("%016d_%04d", firstTimestamp, attempt) + SEGMENT_SUFFIX);
+        }
+        segment = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16), 1 << 16, true);
+        segmentWritten = 0;
+
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            LOGGER.atWarning().withCause(e).log("Failed to close an audit segment.");
+        }
+        segment = null;
+    }
+
+    /** Queries, any thread */
+
+    /** Finds the most recent events matching every given criterion, newest first
+     *  Null land or player match anything, a player matches as actor or subject. Times are epoch millis, inclusive.
+     */
+    public List<AuditRecord> query(UUID landId, UUID playerId, long from, long to, int limit) throws IOException {
+        List<AuditRecord> results = new ArrayList<>();
+        List<Path> segments = listSegments();
+        for (int i = segments.size() - 1; i >= 0 && results.size() < limit; i--) {
+            long first = firstTimestampOf(segments.get(i));
+            if (first > to) {
+                continue;
+            }
+            // Each segment ends where the next one starts
+            if (i + 1 < segments.size() && firstTimestampOf(segments.get(i + 1)) < from) {
+                break;
+            }
+            Deque<AuditRecord> matches = scan(segments.get(i), landId, playerId, from, to, limit - results.size());
+            while (!matches.isEmpty()) {
+                results.add(matches.pollLast());
+            }
+        }
+        return results;
+    }
+
+    /** Reads one segment, keeping only the latest limit matches */
+    private static Deque<AuditRecord> scan(Path file, UUID landId, UUID playerId, long from, long to, int limit) throws IOException {
+        Deque<AuditRecord> matches = new ArrayDeque<>();
+        long[] event = new long[AuditRingBuffer.SLOT_LONGS];
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(fileIn, 1 << 16), 1 << 16))) {
+            while (true) {
+                try {
+                    for (int k = 0; k < event.length; k++) {
+                        event[k] = in.readLong();
+                    }
+                } catch (EOFException | ZipException e) {
+                    break; // End of the segment, or the part a crash cut off
+                }
+                long timestamp = event[0];
+                if (timestamp < from || timestamp > to) {
+                    continue;
+                }
+                if (landId != null && (event[2] != landId.getMostSignificantBits() || event[3] != landId.getLeastSignificantBits())) {
+                    continue;
+                }
+                if (playerId != null
+                    && !(event[4] == playerId.getMostSignificantBits() && event[5] == playerId.getLeastSignificantBits())
+                    && !(event[6] == playerId.getMostSignificantBits() && event[7] == playerId.getLeastSignificantBits())) {
+                    continue;
+                }
+                AuditType type = AuditType.of((int) event[1]);
+                if (type == null) {
+                    continue;
+                }
+                long position = event[8];
+                matches.addLast(new AuditRecord(timestamp, type, uuid(event[2], event[3]), uuid(event[4], event[5]),
+                    uuid(event[6], event[7]), unpackX(position), unpackY(position), unpackZ(position), event[9]));
+                if (matches.size() > limit) {
+                    matches.pollFirst();
+                }
+            }
+        } catch (EOFException e) {
+            // Segment was cut off inside its gzip header
+        }
+        return matches;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long firstTimestampOf(Path segment) {
+        return Long.parseLong(segment.getFileName().toString().substring(0, 16));
+    }
+
+    private static UUID uuid(long msb, long lsb) {
+        return (msb == 0L && lsb == 0L) ? null : new UUID(msb, lsb);
+    }
+
+    /** Position packing, x and z keep 26 bits and y 12 bits, sign extended on the way back */
+
+    static long packPosition(int x, int y, int z) {
+        return ((x & 0x3FFFFFFL) << 38) | ((z & 0x3FFFFFFL) << 12) | (y & 0xFFFL);
+    }
+
+    static int unpackX(long position) {
+        return (int) (position >> 38);
+    }
+
+    static int unpackY(long position) {
+        return (int) (position << 52 >> 52);
+    }
+
+    static int unpackZ(long position) {
+        return (int) (position << 26 >> 38);
+    }
+
+    /** Land changes, world thread */
+
+    @Override
+    public void onLandCreated(Land land) {
+        Region first = land.getRegions().isEmpty() ? null : land.getRegions().iterator().next();
+        Vector3i corner = first != null ? first.getCorner1() : null;
+        record(AuditType.LAND_CREATED, land.getId(), null, land.getOwner(),
+               corner != null ? corner.getX() : 0, corner != null ? corner.getY() : 0, corner != null ? corner.getZ() : 0, 0L);
+    }
+
+    @Override
+    public void onLandDeleted(Land land) {
+        record(AuditType.LAND_DELETED, land.getId(), null, land.getOwner(), 0, 0, 0, 0L);
+    }
+
+    @Override
+    public void onRegionsChanged(Land land, Set<Region> added, Set<Region> removed) {
+        for (Region region : added) {
+            recordRegion(AuditType.CLAIM, land, region, region.getVolume());
+        }
+        for (Region region : removed) {
+            recordRegion(AuditType.UNCLAIM, land, region, region.getVolume());
+        }
+    }
+
+    @Override
+    public void onMemberChanged(Land land, UUID memberId, String roleName) {
+        record(roleName != null ? AuditType.TRUST : AuditType.UNTRUST, land.getId(), null, memberId, 0, 0, 0, 0L);
+    }
+
+    @Override
+    public void onRoleChanged(Land land, String roleName, LandRole role) {
+        record(AuditType.ROLE_CHANGED, land.getId(), null, null, 0, 0, 0,
+               role != null ? LandPermission.toMask(role.getPermissions()) : -1L);
+    }
+
+    @Override
+    public void onFlagsChanged(Land land, Region region) {
+        if (region != null) {
+            recordRegion(AuditType.FLAGS_CHANGED, land, region, region.getFlagMask());
+        } else {
+            record(AuditType.FLAGS_CHANGED, land.getId(), null, null, 0, 0, 0, land.getFlags());
+        }
+    }
+
+    private void recordRegion(AuditType type, Land land, Region region, long value) {
+        Vector3i corner = region.getCorner1();
+        record(type, land.getId(), null, null, corner.getX(), corner.getY(), corner.getZ(), value);
+    }
+}
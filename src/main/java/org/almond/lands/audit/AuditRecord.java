@@ -0,0 +1,74 @@
+package org.almond.lands.audit;
+
+import java.util.UUID;
+
+/** One decoded audit event, as returned by queries */
+public class AuditRecord {
+    private final long timestamp;
+    private final AuditType type;
+    private final UUID landId;
+    private final UUID actorId;      // Player who caused the event, null if not known
+    private final UUID subjectId;    // Player the event is about, like the trusted member, null if none
+    private final int x, y, z;
+    private final long value;
+
+    public AuditRecord(long timestamp, AuditType type, UUID landId, UUID actorId, UUID subjectId,
+                       int x, int y, int z, long value) {
+        this.timestamp = timestamp;
+        this.type = type;
+        this.landId = landId;
+        this.actorId = actorId;
+        this.subjectId = subjectId;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.value = value;
+    }
+
+    /** Checks if the player caused the event or is its subject */
+    public boolean involves(UUID playerId) {
+        return playerId.equals(actorId) || playerId.equals(subjectId);
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public AuditType getType() {
+        return type;
+    }
+
+    public UUID getLandId() {
+        return landId;
+    }
+
+    public UUID getActorId() {
+        return actorId;
+    }
+
+    public UUID getSubjectId() {
+        return subjectId;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return timestamp + " " + type + " land=" + landId + " actor=" + actorId + " subject=" + subjectId
+            + " at " + x + "," + y + "," + z + " value=" + value;
+    }
+}
@@ -0,0 +1,103 @@
+package org.almond.lands.audit;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Preallocated lock free ring of fixed size audit events, many producers and a single consumer
+ *  A producer claims a sequence with a CAS, fills the slot's longs and publishes it by storing the sequence
+ *  into the slot's marker. The consumer reads slots in sequence order while their marker matches and then
+ *  advances the consumed sequence, which frees them for reuse. Publishing never allocates or blocks,
+ *  when the ring is full the event is dropped and counted instead of stalling the world thread.
+ *
+ *  Slot layout, one long each: timestamp, type, land msb/lsb, actor msb/lsb, subject msb/lsb, packed position, value.
+ */
+class AuditRingBuffer {
+
+    static final int SLOT_LONGS = 10;
+    static final int EVENT_BYTES = SLOT_LONGS * 8;
+
+    private final long[] slots;
+    private final AtomicLongArray published; // Sequence last published in each slot
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();   // Next sequence to hand to a producer
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long consumed;                        // Next sequence the consumer reads, older slots are free
+
+    AuditRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Audit buffer capacity must be a power of two.");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = new long[capacity * SLOT_LONGS];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1L);
+        }
+    }
+
+    /** Publishes an event, returns false if the ring was full and the event dropped */
+    boolean publish(long timestamp, int type, long landMsb, long landLsb, long actorMsb, long actorLsb,
+                    long subjectMsb, long subjectLsb, long position, long value) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) (sequence & mask);
+        int base = index * SLOT_LONGS;
+        slots[base] = timestamp;
+        slots[base + 1] = type;
+        slots[base + 2] = landMsb;
+        slots[base + 3] = landLsb;
+        slots[base + 4] = actorMsb;
+        slots[base + 5] = actorLsb;
+        slots[base + 6] = subjectMsb;
+        slots[base + 7] = subjectLsb;
+        slots[base + 8] = position;
+        slots[base + 9] = value;
+        published.set(index, sequence); // Volatile store, the slot writes above become visible with it
+        return true;
+    }
+
+    /** Copies up to max published events in order into the buffer and frees their slots, consumer thread only
+     *  Stops early at a claimed slot whose producer has not published yet, so order is always kept.
+     */
+    int drain(ByteBuffer out, int max) {
+        long next = consumed;
+        int count = 0;
+        while (count < max && out.remaining() >= EVENT_BYTES) {
+            int index = (int) (next & mask);
+            if (published.get(index) != next) {
+                break;
+            }
+            int base = index * SLOT_LONGS;
+            for (int k = 0; k < SLOT_LONGS; k++) {
+                out.putLong(slots[base + k]);
+            }
+            next++;
+            count++;
+        }
+        consumed = next;
+        return count;
+    }
+
+    /** Number of events claimed but not consumed yet */
+    long size() {
+        return claimed.get() - consumed;
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,31 @@
+package org.almond.lands.audit;
+
+/** Kinds of audited events, stored by ordinal so new kinds may only be appended */
+public enum AuditType {
+    LAND_CREATED("Land created"),
+    LAND_DELETED("Land deleted"),
+    CLAIM("Region claimed"),                 // Value is the region volume
+    UNCLAIM("Region unclaimed"),             // Value is the region volume
+    TRUST("Member trusted or role changed"),
+    UNTRUST("Member removed"),
+    ROLE_CHANGED("Role changed"),            // Value is the permission mask, -1 if the role was deleted
+    FLAGS_CHANGED("Flags changed"),          // Value is the land flags, or the region override mask
+    PERMISSION_DENIED("Permission denied");  // Value is the denied permission's bit
+
+    private static final AuditType[] VALUES = values();
+
+    private final String description;
+
+    AuditType(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return this.description;
+    }
+
+    /** Type of a stored ordinal, null for kinds written by a newer version */
+    public static AuditType of(int ordinal) {
+        return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : null;
+    }
+}
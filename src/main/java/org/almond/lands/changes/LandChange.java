@@ -0,0 +1,219 @@
+package org.almond.lands.changes;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.almond.lands.api.RegionView;
+import org.almond.lands.model.LandPermission;
+
+/** One committed change of a land, immutable, so it can be handed to other threads as is
+ *  Every change carries the land's own sequence number, counting up from 1 with the land's first change,
+ *  and a stream wide sequence giving the order across lands. A batch that had changes coalesced away
+ *  skips the sequences of the dropped ones, the sequence of a delivered change is always the latest it covers.
+ */
+public abstract class LandChange {
+
+    public enum Type {
+        LAND_CREATED,
+        LAND_DELETED,
+        REGIONS_CHANGED,
+        MEMBER_CHANGED,
+        ROLE_CHANGED,
+        FLAGS_CHANGED
+    }
+
+    private final UUID landId;
+    private final long sequence;
+    private final long streamSequence;
+    private final long timestamp;
+
+    LandChange(UUID landId, long sequence, long streamSequence, long timestamp) {
+        this.landId = landId;
+        this.sequence = sequence;
+        this.streamSequence = streamSequence;
+        this.timestamp = timestamp;
+    }
+
+    public abstract Type getType();
+
+    public UUID getLandId() {
+        return landId;
+    }
+
+    /** Position of the change among the changes of its land */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /** Position of the change in the whole stream */
+    public long getStreamSequence() {
+        return streamSequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /** A land or subclaim was created */
+    public static final class LandCreated extends LandChange {
+        private final String name;
+        private final UUID owner;
+        private final UUID parentId;
+        private final List<RegionView> regions;
+
+        LandCreated(UUID landId, long sequence, long streamSequence, long timestamp, String name, UUID owner,
+                    UUID parentId, List<RegionView> regions) {
+            super(landId, sequence, streamSequence, timestamp);
+            this.name = name;
+            this.owner = owner;
+            this.parentId = parentId;
+            this.regions = Collections.unmodifiableList(regions);
+        }
+
+        @Override
+        public Type getType() {
+            return Type.LAND_CREATED;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public UUID getOwner() {
+            return owner;
+        }
+
+        /** Enclosing land, null for top level lands */
+        public UUID getParentId() {
+            return parentId;
+        }
+
+        public List<RegionView> getRegions() {
+            return regions;
+        }
+    }
+
+    /** A land was deleted, subclaims are deleted before their parent */
+    public static final class LandDeleted extends LandChange {
+        private final String name;
+
+        LandDeleted(UUID landId, long sequence, long streamSequence, long timestamp, String name) {
+            super(landId, sequence, streamSequence, timestamp);
+            this.name = name;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.LAND_DELETED;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /** Regions were claimed or unclaimed, as the boxes removed from and added to the land's region set */
+    public static final class RegionsChanged extends LandChange {
+        private final Set<RegionView> added;
+        private final Set<RegionView> removed;
+
+        RegionsChanged(UUID landId, long sequence, long streamSequence, long timestamp, Set<RegionView> added,
+                       Set<RegionView> removed) {
+            super(landId, sequence, streamSequence, timestamp);
+            this.added = Collections.unmodifiableSet(added);
+            this.removed = Collections.unmodifiableSet(removed);
+        }
+
+        @Override
+        public Type getType() {
+            return Type.REGIONS_CHANGED;
+        }
+
+        public Set<RegionView> getAdded() {
+            return added;
+        }
+
+        public Set<RegionView> getRemoved() {
+            return removed;
+        }
+    }
+
+    /** A member was trusted or had their role changed, a null role means the member was removed */
+    public static final class MemberChanged extends LandChange {
+        private final UUID memberId;
+        private final String roleName;
+
+        MemberChanged(UUID landId, long sequence, long streamSequence, long timestamp, UUID memberId, String roleName) {
+            super(landId, sequence, streamSequence, timestamp);
+            this.memberId = memberId;
+            this.roleName = roleName;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.MEMBER_CHANGED;
+        }
+
+        public UUID getMemberId() {
+            return memberId;
+        }
+
+        public String getRoleName() {
+            return roleName;
+        }
+    }
+
+    /** A role was created or had its permissions changed, null permissions mean the role was deleted */
+    public static final class RoleChanged extends LandChange {
+        private final String roleName;
+        private final Set<LandPermission> permissions;
+
+        RoleChanged(UUID landId, long sequence, long streamSequence, long timestamp, String roleName,
+                    Set<LandPermission> permissions) {
+            super(landId, sequence, streamSequence, timestamp);
+            this.roleName = roleName;
+            this.permissions = permissions != null ? Collections.unmodifiableSet(EnumSet.copyOf(permissions)) : null;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.ROLE_CHANGED;
+        }
+
+        public String getRoleName() {
+            return roleName;
+        }
+
+        public Set<LandPermission> getPermissions() {
+            return permissions;
+        }
+    }
+
+    /** Land flags changed, or the overrides of one region when the region is not null */
+    public static final class FlagsChanged extends LandChange {
+        private final long flags;
+        private final RegionView region;
+
+        FlagsChanged(UUID landId, long sequence, long streamSequence, long timestamp, long flags, RegionView region) {
+            super(landId, sequence, streamSequence, timestamp);
+            this.flags = flags;
+            this.region = region;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.FLAGS_CHANGED;
+        }
+
+        /** Land wide flags after the change */
+        public long getFlags() {
+            return flags;
+        }
+
+        public RegionView getRegion() {
+            return region;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package org.almond.lands.changes;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.almond.lands.api.RegionView;
+import org.almond.lands.manager.LandChangeListener;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandRole;
+import org.almond.lands.model.Region;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+/** Ordered stream of typed land changes, fed by the manager's change listener hooks
+ *  Each change is numbered per land and across the stream when it is applied. Synchronous subscribers see every
+ *  change on the world thread right after it is applied. Batched subscribers get their changes on a worker thread,
+ *  handed over by flush() once per tick, and while a batch is still being handled the next one keeps collecting.
+ *  A coalescing subscriber only sees the latest state per key within a batch: the last change of a member,
+ *  of a role and of a flag set wins, region changes of one land are folded into their net difference,
+ *  and a land created and deleted within the same batch is not seen at all. Order per land is kept.
+ *  World thread only, apart from the batch subscribers themselves.
+ */
+public class LandChangeStream implements LandChangeListener, Closeable {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    /** Receives each change on the world thread, must not block */
+    public interface Subscriber {
+        void onChange(LandChange change);
+    }
+
+    /** Receives batches of changes in stream order on the worker thread, one batch at a time */
+    public interface BatchSubscriber {
+        void onChanges(List<LandChange> changes);
+    }
+
+    private LandManager landManager;
+    private Map<UUID, Long> landSequences = new HashMap<>();   // Last sequence per land, dropped on deletion
+    private long streamSequence;
+    private List<Subscriber> subscribers = new ArrayList<>();
+    private List<Batched> batched = new ArrayList<>();
+    private ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Lands-Changes");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LandChangeStream(LandManager landManager) {
+        this.landManager = landManager;
+        landManager.addChangeListener(this);
+    }
+
+    /** Subscriptions */
+
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /** Subscribes to batches, coalesced to the latest state per key or with every change */
+    public void subscribeAsync(BatchSubscriber subscriber, boolean coalesce) {
+        batched.add(new Batched(subscriber, coalesce));
+    }
+
+    /** Stops batches to a subscriber, a batch already handed over still runs */
+    public void unsubscribeAsync(BatchSubscriber subscriber) {
+        batched.removeIf(entry -> entry.subscriber == subscriber);
+    }
+
+    public long getStreamSequence() {
+        return streamSequence;
+    }
+
+    /** Changes waiting for the next batch, summed over the batch subscribers */
+    public int getPendingCount() {
+        int count = 0;
+        for (Batched entry : batched) {
+            count += entry.pending.size();
+        }
+        return count;
+    }
+
+    /** Delivery */
+
+    /** Hands the collected changes to each batch subscriber that finished its last batch, called once per tick */
+    public void flush() {
+        for (Batched entry : batched) {
+            if (entry.pending.isEmpty() || (entry.round != null && !entry.round.isDone())) {
+                continue;
+            }
+            List<LandChange> batch = new ArrayList<>(entry.pending.values());
+            entry.pending.clear();
+            BatchSubscriber subscriber = entry.subscriber;
+            entry.round = worker.submit(() -> {
+                try {
+                    subscriber.onChanges(batch);
+                } catch (RuntimeException e) {
+                    LOGGER.atWarning().withCause(e).log("Land change subscriber failed on a batch of " + batch.size() + " changes.");
+                }
+            });
+        }
+    }
+
+    /** Delivers everything still collected and waits for the batches, then stops the worker, used on shutdown */
+    @Override
+    public void close() {
+        landManager.removeChangeListener(this);
+        for (Batched entry : batched) {
+            awaitRound(entry);
+        }
+        flush();
+        worker.shutdown();
+        try {
+            if (!worker.awaitTermination(10, TimeUnit.SECONDS)) {
+                LOGGER.atWarning().log("Land change batches still pending at shutdown were dropped.");
+                worker.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitRound(Batched entry) {
+        if (entry.round == null) {
+            return;
+        }
+        try {
+            entry.round.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.atWarning().withCause(e).log("Land change batch did not finish before shutdown.");
+        }
+    }
+
+    /** Change tracking, world thread */
+
+    @Override
+    public void onLandCreated(Land land) {
+        List<RegionView> regions = new ArrayList<>(land.getRegions().size());
+        for (Region region : land.getRegions()) {
+            regions.add(new RegionView(region));
+        }
+        Land parent = land.getParent();
+        publish(new LandChange.LandCreated(land.getId(), nextSequence(land), ++streamSequence, System.currentTimeMillis(),
+            land.getName(), land.getOwner(), parent != null ? parent.getId() : null, regions));
+    }
+
+    @Override
+    public void onLandDeleted(Land land) {
+        long sequence = nextSequence(land);
+        landSequences.remove(land.getId());
+        publish(new LandChange.LandDeleted(land.getId(), sequence, ++streamSequence, System.currentTimeMillis(),
+            land.getName()));
+    }
+
+    @Override
+    public void onRegionsChanged(Land land, Set<Region> added, Set<Region> removed) {
+        publish(new LandChange.RegionsChanged(land.getId(), nextSequence(land), ++streamSequence,
+            System.currentTimeMillis(), views(added), views(removed)));
+    }
+
+    @Override
+    public void onMemberChanged(Land land, UUID memberId, String roleName) {
+        publish(new LandChange.MemberChanged(land.getId(), nextSequence(land), ++streamSequence,
+            System.currentTimeMillis(), memberId, roleName));
+    }
+
+    @Override
+    public void onRoleChanged(Land land, String roleName, LandRole role) {
+        publish(new LandChange.RoleChanged(land.getId(), nextSequence(land), ++streamSequence,
+            System.currentTimeMillis(), roleName, role != null ? role.getPermissions() : null));
+    }
+
+    @Override
+    public void onFlagsChanged(Land land, Region region) {
+        publish(new LandChange.FlagsChanged(land.getId(), nextSequence(land), ++streamSequence,
+            System.currentTimeMillis(), land.getFlags(), region != null ? new RegionView(region) : null));
+    }
+
+    private long nextSequence(Land land) {
+        return landSequences.merge(land.getId(), 1L, Long::sum);
+    }
+
+    private static Set<RegionView> views(Set<Region> regions) {
+        Set<RegionView> views = new LinkedHashSet<>();
+        for (Region region : regions) {
+            views.add(new RegionView(region));
+        }
+        return views;
+    }
+
+    private void publish(LandChange change) {
+        for (int i = 0; i < subscribers.size(); i++) {
+            try {
+                subscribers.get(i).onChange(change);
+            } catch (RuntimeException e) {
+                LOGGER.atWarning().withCause(e).log("Land change subscriber failed on " + change.getType() + ".");
+            }
+        }
+        for (Batched entry : batched) {
+            entry.add(change);
+        }
+    }
+
+    /** One batch subscriber with the changes collected since its last batch, keyed for coalescing */
+    private static class Batched {
+        private final BatchSubscriber subscriber;
+        private final boolean coalesce;
+        private final LinkedHashMap<Object, LandChange> pending = new LinkedHashMap<>();
+        private Future<?> round;
+
+        Batched(BatchSubscriber subscriber, boolean coalesce) {
+            this.subscriber = subscriber;
+            this.coalesce = coalesce;
+        }
+
+        void add(LandChange change) {
+            if (!coalesce) {
+                pending.put(change.getStreamSequence(), change);
+                return;
+            }
+            switch (change.getType()) {
+                case LAND_DELETED:
+                    addDeletion(change);
+                    return;
+                case REGIONS_CHANGED:
+                    addRegions((LandChange.RegionsChanged) change);
+                    return;
+                default:
+                    // The later change replaces the earlier one and moves to its place in the order
+                    Key key = Key.of(change);
+                    pending.remove(key);
+                    pending.put(key, change);
+            }
+        }
+
+        /** A deleted land drops its pending changes, and is not reported at all if its creation is still pending */
+        private void addDeletion(LandChange change) {
+            UUID landId = change.getLandId();
+            boolean created = pending.containsKey(new Key(landId, LandChange.Type.LAND_CREATED, null));
+            Iterator<LandChange> iterator = pending.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getLandId().equals(landId)) {
+                    iterator.remove();
+                }
+            }
+            if (!created) {
+                pending.put(Key.of(change), change);
+            }
+        }
+
+        /** Folds a region change into the pending one of the same land, as the net difference of both */
+        private void addRegions(LandChange.RegionsChanged change) {
+            Key key = Key.of(change);
+            LandChange.RegionsChanged earlier = (LandChange.RegionsChanged) pending.remove(key);
+            if (earlier == null) {
+                pending.put(key, change);
+                return;
+            }
+            Set<RegionView> added = new LinkedHashSet<>(earlier.getAdded());
+            added.removeAll(change.getRemoved());
+            added.addAll(change.getAdded());
+            added.removeAll(earlier.getRemoved());
+            Set<RegionView> removed = new LinkedHashSet<>(earlier.getRemoved());
+            Set<RegionView> laterRemoved = new HashSet<>(change.getRemoved());
+            laterRemoved.removeAll(earlier.getAdded());
+            removed.addAll(laterRemoved);
+            removed.removeAll(change.getAdded());
+            if (added.isEmpty() && removed.isEmpty()) {
+                return;
+            }
+            pending.put(key, new LandChange.RegionsChanged(change.getLandId(), change.getSequence(),
+                change.getStreamSequence(), change.getTimestamp(), added, removed));
+        }
+    }
+
+    /** Coalescing key, a land with the change type and what within the land changed */
+    private static final class Key {
+        private final UUID landId;
+        private final LandChange.Type type;
+        private final Object detail;
+
+        Key(UUID landId, LandChange.Type type, Object detail) {
+            this.landId = landId;
+            this.type = type;
+            this.detail = detail;
+        }
+
+        static Key of(LandChange change) {
+            switch (change.getType()) {
+                case MEMBER_CHANGED:
+                    return new Key(change.getLandId(), change.getType(), ((LandChange.MemberChanged) change).getMemberId());
+                case ROLE_CHANGED:
+                    return new Key(change.getLandId(), change.getType(), ((LandChange.RoleChanged) change).getRoleName());
+                case FLAGS_CHANGED:
+                    return new Key(change.getLandId(), change.getType(), ((LandChange.FlagsChanged) change).getRegion());
+                default:
+                    return new Key(change.getLandId(), change.getType(), null);
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return type == other.type && landId.equals(other.landId) && Objects.equals(detail, other.detail);
+        }
+
+        @Override
+        public int hashCode() {
+            return (landId.hashCode() * 31 + type.hashCode()) * 31 + Objects.hashCode(detail);
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package org.almond.lands.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandFlag;
+import org.almond.lands.model.Region;
+
+/** Chunk based spatial index for land regions
+ *  A 2D grid over chunk columns, every region is registered in each chunk column its XZ footprint touches,
+ *  so a position lookup only has to test the few regions in one chunk bucket.
+ *  Column regions are pure XZ rectangles here, their entries skip the Y test entirely.
+ *  Buckets are kept ordered by nesting depth, deepest subclaim first, so the first hit is the most specific claim.
+ *  Entries carry the resolved flags of their region, so flag checks need no lookup beyond the one finding the land.
+ *  Not thread safe for writes, reads may run in parallel as long as no mutation is in progress.
+ */
+public class LandIndex {
+
+    public static final int CHUNK_SHIFT = 5; // Hytale chunks are 32x32 columns
+
+    private static final int BULK_INDEX_BITS = 24;   // Low bits of a bulk load sort key hold the entry index
+    private static final int BULK_CHUNK_LIMIT = 1 << 19; // Chunk coordinates that fit 20 bits without wrapping
+
+    private Map<Long, List<Entry>> buckets = new HashMap<>();
+
+    /** Packs chunk coordinates into a single long key */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /** Chunk key of the chunk column containing the given block */
+    public static long chunkKeyOfBlock(int blockX, int blockZ) {
+        return chunkKey(blockX >> CHUNK_SHIFT, blockZ >> CHUNK_SHIFT);
+    }
+
+    /** Builds an index over every region of the given lands in one pass
+     *  Rather than inserting entry by entry, every (chunk, entry) pair is packed into a sortable long in parallel,
+     *  sorted with a parallel sort and each run of equal chunks becomes one exactly sized bucket.
+     *  Entries are numbered deepest first, so every bucket comes out in the order insertByDepth would keep.
+     *  Depths must be final, link every subclaim to its parent before bulk loading.
+     */
+    public static LandIndex bulkLoad(Collection<Land> lands) {
+        Entry[] entries = lands.parallelStream()
+            .flatMap(land -> land.getRegions().stream().map(region -> new Entry(land, region)))
+            .sorted(Comparator.comparingInt((Entry entry) -> entry.depth).reversed())
+            .toArray(Entry[]::new);
+
+        // Cells covered by each entry, prefix summed into its first pair slot
+        long[] offsets = new long[entries.length + 1];
+        boolean packable = entries.length <= (1 << BULK_INDEX_BITS);
+        for (int i = 0; i < entries.length && packable; i++) {
+            Entry entry = entries[i];
+            packable = fitsBulkKey(entry.minX >> CHUNK_SHIFT) && fitsBulkKey(entry.maxX >> CHUNK_SHIFT)
+                && fitsBulkKey(entry.minZ >> CHUNK_SHIFT) && fitsBulkKey(entry.maxZ >> CHUNK_SHIFT);
+            long cells = (long) ((entry.maxX >> CHUNK_SHIFT) - (entry.minX >> CHUNK_SHIFT) + 1)
+                * ((entry.maxZ >> CHUNK_SHIFT) - (entry.minZ >> CHUNK_SHIFT) + 1);
+            offsets[i + 1] = offsets[i] + cells;
+        }
+        LandIndex index = new LandIndex();
+        if (!packable || offsets[entries.length] > Integer.MAX_VALUE - 8) {
+            // Worlds beyond the packed key range take the slow path
+            for (Land land : lands) {
+                index.addRegions(land, land.getRegions());
+            }
+            return index;
+        }
+
+        long[] pairs = new long[(int) offsets[entries.length]];
+        IntStream.range(0, entries.length).parallel().forEach(i -> {
+            Entry entry = entries[i];
+            int slot = (int) offsets[i];
+            for (int cx = entry.minX >> CHUNK_SHIFT; cx <= entry.maxX >> CHUNK_SHIFT; cx++) {
+                for (int cz = entry.minZ >> CHUNK_SHIFT; cz <= entry.maxZ >> CHUNK_SHIFT; cz++) {
+                    pairs[slot++] = (((cx & 0xFFFFFL) << 20 | (cz & 0xFFFFFL)) << BULK_INDEX_BITS) | i;
+                }
+            }
+        });
+        Arrays.parallelSort(pairs);
+
+        Map<Long, List<Entry>> buckets = new HashMap<>((int) (pairs.length / 0.75f) + 1);
+        int start = 0;
+        while (start < pairs.length) {
+            long cell = pairs[start] >>> BULK_INDEX_BITS;
+            int end = start + 1;
+            while (end < pairs.length && (pairs[end] >>> BULK_INDEX_BITS) == cell) {
+                end++;
+            }
+            List<Entry> bucket = new ArrayList<>(end - start);
+            for (int k = start; k < end; k++) {
+                bucket.add(entries[(int) (pairs[k] & ((1L << BULK_INDEX_BITS) - 1))]);
+            }
+            // Sign extend the packed 20 bit chunk coordinates back
+            int cx = (int) (cell << 24 >> 44);
+            int cz = (int) (cell << 44 >> 44);
+            buckets.put(chunkKey(cx, cz), bucket);
+            start = end;
+        }
+        index.buckets = buckets;
+        return index;
+    }
+
+    private static boolean fitsBulkKey(int chunk) {
+        return chunk >= -BULK_CHUNK_LIMIT && chunk < BULK_CHUNK_LIMIT;
+    }
+
+    /** Adds all given regions of a land to the index */
+    public void addRegions(Land land, Set<Region> regions) {
+        for (Region region : regions) {
+            Entry entry = new Entry(land, region);
+            for (int cx = entry.minX >> CHUNK_SHIFT; cx <= entry.maxX >> CHUNK_SHIFT; cx++) {
+                for (int cz = entry.minZ >> CHUNK_SHIFT; cz <= entry.maxZ >> CHUNK_SHIFT; cz++) {
+                    insertByDepth(buckets.computeIfAbsent(chunkKey(cx, cz), k -> new ArrayList<>(2)), entry);
+                }
+            }
+        }
+    }
+
+    /** Adds every region of a batch of new lands at once
+     *  The batch is bulk loaded on its own and each of its buckets merged into the matching bucket here,
+     *  so a touched bucket is rebuilt once per batch instead of shifted once per entry.
+     *  Depths must be final, link every subclaim to its parent first.
+     */
+    public void addAll(Collection<Land> lands) {
+        LandIndex batch = bulkLoad(lands);
+        for (Map.Entry<Long, List<Entry>> added : batch.buckets.entrySet()) {
+            List<Entry> bucket = buckets.get(added.getKey());
+            buckets.put(added.getKey(), bucket == null ? added.getValue() : mergeByDepth(bucket, added.getValue()));
+        }
+    }
+
+    /** Merges two depth ordered buckets, existing entries stay ahead of new ones of equal depth like insertByDepth */
+    private static List<Entry> mergeByDepth(List<Entry> existing, List<Entry> added) {
+        List<Entry> merged = new ArrayList<>(existing.size() + added.size());
+        int i = 0;
+        int j = 0;
+        while (i < existing.size() && j < added.size()) {
+            merged.add(existing.get(i).depth >= added.get(j).depth ? existing.get(i++) : added.get(j++));
+        }
+        merged.addAll(existing.subList(i, existing.size()));
+        merged.addAll(added.subList(j, added.size()));
+        return merged;
+    }
+
+    /** Inserts an entry after every entry of equal or greater depth */
+    private static void insertByDepth(List<Entry> bucket, Entry entry) {
+        int position = bucket.size();
+        while (position > 0 && bucket.get(position - 1).depth < entry.depth) {
+            position--;
+        }
+        bucket.add(position, entry);
+    }
+
+    /** Removes the given regions of a land from the index */
+    public void removeRegions(Land land, Set<Region> regions) {
+        for (Region region : regions) {
+            int minCx = region.getCorner1().getX() >> CHUNK_SHIFT;
+            int maxCx = region.getCorner2().getX() >> CHUNK_SHIFT;
+            int minCz = region.getCorner1().getZ() >> CHUNK_SHIFT;
+            int maxCz = region.getCorner2().getZ() >> CHUNK_SHIFT;
+            for (int cx = minCx; cx <= maxCx; cx++) {
+                for (int cz = minCz; cz <= maxCz; cz++) {
+                    long key = chunkKey(cx, cz);
+                    List<Entry> bucket = buckets.get(key);
+                    if (bucket == null) {
+                        continue;
+                    }
+                    bucket.removeIf(entry -> entry.land == land && entry.region.equals(region));
+                    if (bucket.isEmpty()) {
+                        buckets.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Replaces the indexed regions of a land, used after claims and unclaims */
+    public void updateLand(Land land, Set<Region> oldRegions) {
+        removeRegions(land, oldRegions);
+        addRegions(land, land.getRegions());
+    }
+
+    /** Rebuilds the entries of a land with unchanged regions, used after flag changes */
+    public void refreshLand(Land land) {
+        removeRegions(land, land.getRegions());
+        addRegions(land, land.getRegions());
+    }
+
+    /** Removes a land completely from the index */
+    public void removeLand(Land land) {
+        removeRegions(land, land.getRegions());
+    }
+
+    /** Returns the entries registered in a chunk column, never null */
+    public List<Entry> getBucket(long chunkKey) {
+        List<Entry> bucket = buckets.get(chunkKey);
+        return bucket != null ? bucket : Collections.emptyList();
+    }
+
+    /** Finds the most specific entry containing the given block position, or null for wilderness */
+    public Entry find(int x, int y, int z) {
+        return findInBucket(getBucket(chunkKeyOfBlock(x, z)), x, y, z);
+    }
+
+    /** Tests the entries of an already fetched bucket against a position */
+    public static Entry findInBucket(List<Entry> bucket, int x, int y, int z) {
+        for (int i = 0; i < bucket.size(); i++) {
+            Entry entry = bucket.get(i);
+            if (entry.contains(x, y, z)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /** Lands with a region within a horizontal distance of a block column, nearest first
+     *  Distances are between block columns, 0 inside a region, and only the XZ footprint of a region counts.
+     */
+    public List<Land> findWithin(int x, int z, int radius) {
+        return findNearest(x, z, Integer.MAX_VALUE, radius);
+    }
+
+    /** Up to count lands nearest to a block column, nearest first, none farther than maxDistance
+     *  Best first over rings of chunk buckets around the column, ring r being at least (r - 1) * 32 + 1 blocks away.
+     *  The search stops once the count nearest lands found so far are all closer than the next ring can be,
+     *  so its cost follows the claims near the point rather than the claims in the world.
+     *  Once a ring would hold more chunks than there are occupied buckets, the remaining buckets are scanned instead.
+     */
+    public List<Land> findNearest(int x, int z, int count, int maxDistance) {
+        Map<Land, Long> best = new HashMap<>();
+        long limit = (long) maxDistance * maxDistance;
+        int centerX = x >> CHUNK_SHIFT;
+        int centerZ = z >> CHUNK_SHIFT;
+        for (int ring = 0; ; ring++) {
+            long bound = ring == 0 ? 0 : ((long) (ring - 1) << CHUNK_SHIFT) + 1;
+            if (bound * bound > limit || (best.size() >= count && bound * bound > kthDistance(best, count))) {
+                break;
+            }
+            if ((long) (2 * ring + 1) * (2 * ring + 1) > 4L * buckets.size()) {
+                // Sparse surroundings, every bucket not visited yet lies at this ring or beyond
+                for (Map.Entry<Long, List<Entry>> bucket : buckets.entrySet()) {
+                    int cx = (int) (bucket.getKey() >> 32);
+                    int cz = (int) (long) bucket.getKey();
+                    if (Math.max(Math.abs(cx - centerX), Math.abs(cz - centerZ)) >= ring) {
+                        collectNearest(bucket.getValue(), x, z, limit, best);
+                    }
+                }
+                break;
+            }
+            for (int cx = centerX - ring; cx <= centerX + ring; cx++) {
+                // Interior rows of the ring only have their two edge chunks
+                int step = (cx == centerX - ring || cx == centerX + ring) ? 1 : Math.max(1, 2 * ring);
+                for (int cz = centerZ - ring; cz <= centerZ + ring; cz += step) {
+                    List<Entry> bucket = buckets.get(chunkKey(cx, cz));
+                    if (bucket != null) {
+                        collectNearest(bucket, x, z, limit, best);
+                    }
+                }
+            }
+        }
+        List<Map.Entry<Land, Long>> sorted = new ArrayList<>(best.entrySet());
+        sorted.sort(Map.Entry.comparingByValue());
+        List<Land> lands = new ArrayList<>(Math.min(count, sorted.size()));
+        for (int i = 0; i < sorted.size() && i < count; i++) {
+            lands.add(sorted.get(i).getKey());
+        }
+        return lands;
+    }
+
+    /** Finds an entry whose footprint comes closer than or equal to gap blocks to a rectangle, or null
+     *  Only the chunk buckets of the rectangle grown by the gap are looked at. Entries the filter rejects are skipped.
+     */
+    public Entry findNear(int minX, int minZ, int maxX, int maxZ, int gap, Predicate<Land> filter) {
+        long limit = (long) gap * gap;
+        int minChunkX = (minX - gap) >> CHUNK_SHIFT;
+        int minChunkZ = (minZ - gap) >> CHUNK_SHIFT;
+        int maxChunkX = (maxX + gap) >> CHUNK_SHIFT;
+        int maxChunkZ = (maxZ + gap) >> CHUNK_SHIFT;
+        for (int cx = minChunkX; cx <= maxChunkX; cx++) {
+            for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
+                List<Entry> bucket = buckets.get(chunkKey(cx, cz));
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = 0; i < bucket.size(); i++) {
+                    Entry entry = bucket.get(i);
+                    long dx = Math.max(0, Math.max(entry.minX - maxX, minX - entry.maxX));
+                    long dz = Math.max(0, Math.max(entry.minZ - maxZ, minZ - entry.maxZ));
+                    if (dx * dx + dz * dz <= limit && filter.test(entry.land)) {
+                        return entry;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void collectNearest(List<Entry> bucket, int x, int z, long limit, Map<Land, Long> best) {
+        for (int i = 0; i < bucket.size(); i++) {
+            Entry entry = bucket.get(i);
+            long dx = Math.max(0, Math.max(entry.minX - x, x - entry.maxX));
+            long dz = Math.max(0, Math.max(entry.minZ - z, z - entry.maxZ));
+            long distance = dx * dx + dz * dz;
+            if (distance <= limit) {
+                best.merge(entry.land, distance, Math::min);
+            }
+        }
+    }
+
+    /** Squared distance of the count-th nearest land found so far */
+    private static long kthDistance(Map<Land, Long> best, int count) {
+        long[] distances = new long[best.size()];
+        int i = 0;
+        for (long distance : best.values()) {
+            distances[i++] = distance;
+        }
+        Arrays.sort(distances);
+        return distances[count - 1];
+    }
+
+    /** Removes every entry */
+    public void clear() {
+        buckets.clear();
+    }
+
+    /** Keys of every non empty chunk bucket */
+    public Set<Long> getBucketKeys() {
+        return Collections.unmodifiableSet(buckets.keySet());
+    }
+
+    /** Number of non empty chunk buckets */
+    public int getBucketCount() {
+        return buckets.size();
+    }
+
+    /** Index entry, a flattened copy of a region's bounds with its owning land */
+    public static class Entry {
+        private final Land land;
+        private final Region region;
+        private final int minX, minY, minZ;
+        private final int maxX, maxY, maxZ;
+        private final boolean column;
+        private final int depth;
+        private final long flags;       // Land flags with the region overrides applied
+
+        Entry(Land land, Region region) {
+            this.land = land;
+            this.region = region;
+            this.minX = region.getCorner1().getX();
+            this.minY = region.getCorner1().getY();
+            this.minZ = region.getCorner1().getZ();
+            this.maxX = region.getCorner2().getX();
+            this.maxY = region.getCorner2().getY();
+            this.maxZ = region.getCorner2().getZ();
+            this.column = region.isColumn();
+            this.depth = land.getDepth();
+            this.flags = region.resolveFlags(land.getFlags());
+        }
+
+        public boolean contains(int x, int y, int z) {
+            if (column) {
+                return x >= minX && x <= maxX && z >= minZ && z <= maxZ;
+            }
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+
+        public Land getLand() {
+            return land;
+        }
+
+        public Region getRegion() {
+            return region;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public long getFlags() {
+            return flags;
+        }
+
+        public boolean hasFlag(LandFlag flag) {
+            return flag.isSet(flags);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.almond.lands.index;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.almond.lands.manager.LandChangeListener;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.Region;
+
+/** Top level lands ranked by volume and by member count, kept current through land changes
+ *  Claims and unclaims adjust the volume by the regions that changed instead of summing every region again,
+ *  trusts and untrusts take the member count of the land that was just changed, each costing O(log n).
+ *  Top pages and ranks are then read straight from the ranked lists without sorting.
+ *  Subclaims are not ranked, their volume is part of their parent's. World thread only.
+ */
+public class LandLeaderboards implements LandChangeListener {
+
+    public enum Metric {
+        VOLUME,
+        MEMBERS
+    }
+
+    private LandManager landManager;
+    private Map<Metric, RankedList> boards = new EnumMap<>(Metric.class);
+
+    public LandLeaderboards(LandManager landManager) {
+        this.landManager = landManager;
+        for (Metric metric : Metric.values()) {
+            boards.put(metric, new RankedList());
+        }
+        rebuild();
+    }
+
+    /** Ranks every loaded land again, member counts come from the land headers without loading details */
+    public void rebuild() {
+        for (RankedList board : boards.values()) {
+            board.clear();
+        }
+        for (Land land : landManager.getAllLands()) {
+            if (!land.isSubclaim()) {
+                boards.get(Metric.VOLUME).update(land.getId(), land.getVolume());
+                boards.get(Metric.MEMBERS).update(land.getId(), land.getMemberCount());
+            }
+        }
+    }
+
+    /** Lands on a page of a leaderboard, starting at a zero based rank */
+    public List<Land> getTop(Metric metric, int from, int count) {
+        List<Land> lands = new ArrayList<>();
+        for (RankedList.Entry entry : boards.get(metric).range(from, count)) {
+            Land land = landManager.getLandById(entry.getId());
+            if (land != null) {
+                lands.add(land);
+            }
+        }
+        return lands;
+    }
+
+    /** One based position of a land on a leaderboard, or 0 if it is not ranked */
+    public int getRank(Metric metric, UUID landId) {
+        return boards.get(metric).rank(landId) + 1;
+    }
+
+    /** Value a land is ranked by */
+    public long getScore(Metric metric, UUID landId) {
+        return boards.get(metric).getScore(landId);
+    }
+
+    public int size() {
+        return boards.get(Metric.VOLUME).size();
+    }
+
+    /** Change tracking, world thread */
+
+    @Override
+    public void onLandCreated(Land land) {
+        if (!land.isSubclaim()) {
+            boards.get(Metric.VOLUME).update(land.getId(), land.getVolume());
+            boards.get(Metric.MEMBERS).update(land.getId(), land.getMemberCount());
+        }
+    }
+
+    @Override
+    public void onLandDeleted(Land land) {
+        for (RankedList board : boards.values()) {
+            board.remove(land.getId());
+        }
+    }
+
+    @Override
+    public void onRegionsChanged(Land land, Set<Region> added, Set<Region> removed) {
+        RankedList board = boards.get(Metric.VOLUME);
+        if (!board.contains(land.getId())) {
+            return;
+        }
+        long volume = board.getScore(land.getId());
+        for (Region region : added) {
+            volume += region.getVolume();
+        }
+        for (Region region : removed) {
+            volume -= region.getVolume();
+        }
+        board.update(land.getId(), volume);
+    }
+
+    @Override
+    public void onMemberChanged(Land land, UUID memberId, String roleName) {
+        RankedList board = boards.get(Metric.MEMBERS);
+        if (board.contains(land.getId())) {
+            board.update(land.getId(), land.getMemberCount());
+        }
+    }
+}
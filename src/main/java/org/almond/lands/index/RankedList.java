@@ -0,0 +1,211 @@
+package org.almond.lands.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/** Ids ordered by a score, highest first, with O(log n) updates and lookups by rank
+ *  An indexed skip list, every forward link also stores how many entries it skips,
+ *  so the rank of an entry is the sum of the widths walked to reach it and a rank is found the same way.
+ *  Equal scores are ordered by id, so ranks are stable and the same on every node.
+ *  Not thread safe, meant for the world thread.
+ */
+public class RankedList {
+
+    private static final int MAX_LEVEL = 24;     // Enough for 4^24 entries at one in four promotion
+
+    private static class Node {
+        UUID id;
+        long score;
+        Node[] next;
+        int[] width;         // Entries advanced by following next at the same level, the target included
+
+        Node(UUID id, long score, int level) {
+            this.id = id;
+            this.score = score;
+            this.next = new Node[level];
+            this.width = new int[level];
+        }
+    }
+
+    /** An id with its score */
+    public static class Entry {
+        private UUID id;
+        private long score;
+
+        Entry(UUID id, long score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        public UUID getId() {
+            return id;
+        }
+
+        public long getScore() {
+            return score;
+        }
+    }
+
+    private Node head = new Node(null, 0, MAX_LEVEL);
+    private int level = 1;
+    private Map<UUID, Long> scores = new HashMap<>();
+    private long seed = 0x2545F4914F6CDD1DL;
+
+    /** Sets the score of an id, adding it when absent */
+    public void update(UUID id, long score) {
+        Long previous = scores.get(id);
+        if (previous != null) {
+            if (previous == score) {
+                return;
+            }
+            unlink(id, previous);
+        }
+        scores.put(id, score);
+        link(id, score);
+    }
+
+    /** Removes an id, returns false if it was not ranked */
+    public boolean remove(UUID id) {
+        Long previous = scores.remove(id);
+        if (previous == null) {
+            return false;
+        }
+        unlink(id, previous);
+        return true;
+    }
+
+    public boolean contains(UUID id) {
+        return scores.containsKey(id);
+    }
+
+    /** Score of an id, or 0 if it is not ranked */
+    public long getScore(UUID id) {
+        Long score = scores.get(id);
+        return score == null ? 0 : score;
+    }
+
+    /** Zero based rank of an id, or -1 if it is not ranked */
+    public int rank(UUID id) {
+        Long score = scores.get(id);
+        if (score == null) {
+            return -1;
+        }
+        Node node = head;
+        int rank = 0;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && before(node.next[i], score, id)) {
+                rank += node.width[i];
+                node = node.next[i];
+            }
+        }
+        return rank;
+    }
+
+    /** Up to count entries starting at a zero based rank, in rank order */
+    public List<Entry> range(int from, int count) {
+        List<Entry> result = new ArrayList<>();
+        if (from < 0 || from >= scores.size() || count <= 0) {
+            return result;
+        }
+        // Walk down to the entry just before the first rank, then along the bottom level
+        Node node = head;
+        int position = -1;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && position + node.width[i] < from) {
+                position += node.width[i];
+                node = node.next[i];
+            }
+        }
+        node = node.next[0];
+        while (node != null && result.size() < count) {
+            result.add(new Entry(node.id, node.score));
+            node = node.next[0];
+        }
+        return result;
+    }
+
+    public int size() {
+        return scores.size();
+    }
+
+    public void clear() {
+        head = new Node(null, 0, MAX_LEVEL);
+        level = 1;
+        scores.clear();
+    }
+
+    /** Checks if a node ranks before the given score and id */
+    private static boolean before(Node node, long score, UUID id) {
+        return node.score > score || (node.score == score && node.id.compareTo(id) < 0);
+    }
+
+    private void link(UUID id, long score) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rankAt = new int[MAX_LEVEL];     // Rank of update[i], the head counting as -1
+        Node node = head;
+        int rank = -1;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && before(node.next[i], score, id)) {
+                rank += node.width[i];
+                node = node.next[i];
+            }
+            update[i] = node;
+            rankAt[i] = rank;
+        }
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                update[i] = head;
+                rankAt[i] = -1;
+                head.width[i] = scores.size();  // Past the end, the new entry is already counted in scores
+            }
+            level = nodeLevel;
+        }
+        Node added = new Node(id, score, nodeLevel);
+        int addedRank = rank + 1;
+        for (int i = 0; i < nodeLevel; i++) {
+            added.next[i] = update[i].next[i];
+            update[i].next[i] = added;
+            added.width[i] = update[i].width[i] - (addedRank - rankAt[i]) + 1;
+            update[i].width[i] = addedRank - rankAt[i];
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].width[i]++;
+        }
+    }
+
+    private void unlink(UUID id, long score) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && before(node.next[i], score, id)) {
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+        Node removed = node.next[0];
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == removed) {
+                update[i].width[i] += removed.width[i] - 1;
+                update[i].next[i] = removed.next[i];
+            } else {
+                update[i].width[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+    }
+
+    /** Level of a new node, each further level with a chance of one in four */
+    private int randomLevel() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        int nodeLevel = 1 + Long.numberOfTrailingZeros(seed | (1L << 46)) / 2;
+        return Math.min(nodeLevel, MAX_LEVEL);
+    }
+}
@@ -0,0 +1,34 @@
+package org.almond.lands.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/** One geometry phase of a claim or unclaim, subtract, merge or connectivity */
+@Name("org.almond.lands.ClaimGeometry")
+@Label("Claim Geometry")
+@Category({ "Lands", "Claims" })
+@Description("Region geometry work of a claim or unclaim")
+@Threshold("1 ms")
+public class ClaimGeometryEvent extends Event {
+    public static final String SUBTRACT = "subtract";
+    public static final String MERGE = "merge";
+    public static final String CONNECTIVITY = "connectivity";
+
+    @Label("Land Id")
+    public String landId;
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Region Count")
+    @Description("Regions of the land when the phase started")
+    public int regionCount;
+
+    @Label("Result Count")
+    @Description("Regions, or region groups for connectivity, the phase produced")
+    public int resultCount;
+}
@@ -0,0 +1,39 @@
+package org.almond.lands.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/** Resolution of the land at a block position through the spatial index */
+@Name("org.almond.lands.LandLookup")
+@Label("Land Lookup")
+@Category({ "Lands", "Protection" })
+@Description("Spatial index lookup of the most specific land at a block")
+@Threshold("20 us")
+@StackTrace(false)
+public class LandLookupEvent extends Event {
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Z")
+    public int z;
+
+    @Label("Land Id")
+    @Description("Land found, empty for wilderness")
+    public String landId;
+
+    @Label("Region Count")
+    @Description("Regions of the land found")
+    public int regionCount;
+
+    @Label("Bucket Size")
+    @Description("Index entries tested in the chunk bucket")
+    public int bucketSize;
+}
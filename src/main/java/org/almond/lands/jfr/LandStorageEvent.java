@@ -0,0 +1,36 @@
+package org.almond.lands.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/** A load or save against the storage backend, the full startup load, an autosave round or one land's details */
+@Name("org.almond.lands.LandStorage")
+@Label("Land Storage")
+@Category({ "Lands", "Storage" })
+@Description("Land load or save against the storage backend")
+@Threshold("1 ms")
+public class LandStorageEvent extends Event {
+    public static final String LOAD = "load";
+    public static final String SAVE = "save";
+    public static final String LOAD_DETAILS = "load details";
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Land Id")
+    @Description("Land of a single land operation, empty for batches")
+    public String landId;
+
+    @Label("Land Count")
+    public int landCount;
+
+    @Label("Region Count")
+    public int regionCount;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,33 @@
+package org.almond.lands.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/** A permission decision for a player on a land, slow ones usually had to load the land's details */
+@Name("org.almond.lands.ProtectionCheck")
+@Label("Protection Check")
+@Category({ "Lands", "Protection" })
+@Description("Permission decision for a player on a land and its parents")
+@Threshold("50 us")
+@StackTrace(false)
+public class ProtectionCheckEvent extends Event {
+    @Label("Land Id")
+    public String landId;
+
+    @Label("Player Id")
+    public String playerId;
+
+    @Label("Permission")
+    public String permission;
+
+    @Label("Allowed")
+    public boolean allowed;
+
+    @Label("Region Count")
+    public int regionCount;
+}
@@ -0,0 +1,160 @@
+package org.almond.lands.maintenance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.almond.lands.manager.LandChangeListener;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.Land;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+/** Spreads periodic per land work, like inactivity expiry, upkeep or rent, over time
+ *  Each job keeps its own timing wheel of land ids keyed by the time the land is next due for it.
+ *  A tick pops at most batchSize due lands across all jobs, whatever is left waits for the next tick,
+ *  so a thousand lands falling due together cost a few ticks of small batches instead of one long scan.
+ *  Lands are scheduled when they are created and dropped when they are deleted, the full set is only
+ *  walked once, when a job is added. World thread only.
+ */
+public class LandMaintenance implements LandChangeListener {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    public static final long DEFAULT_TICK_MILLIS = 1000;
+    public static final int DEFAULT_BATCH_SIZE = 32;
+
+    private static final int WHEEL_LEVELS = 5;           // 64^5 one second ticks, a little over 34 years
+    private static final long RETRY_DELAY_MILLIS = 60_000;
+
+    /** A kind of periodic work on lands */
+    public interface Job {
+        String getName();
+
+        /** Time the land is next due, or -1 to leave it unscheduled */
+        long nextDue(Land land, long now);
+
+        /** Does the work for a land that came due, returning when it is next due or -1 to unschedule it
+         *  May delete the land through the manager, it is then simply not rescheduled.
+         */
+        long run(Land land, long now);
+    }
+
+    private static class ScheduledJob {
+        Job job;
+        TimingWheel<UUID> wheel;
+    }
+
+    private LandManager landManager;
+    private long tickMillis;
+    private int batchSize;
+    private List<ScheduledJob> jobs = new ArrayList<>();
+    private int nextJob;           // Round robin start, so one busy job cannot starve the others
+    private long processed;
+
+    public LandMaintenance(LandManager landManager) {
+        this(landManager, DEFAULT_TICK_MILLIS, DEFAULT_BATCH_SIZE);
+    }
+
+    public LandMaintenance(LandManager landManager, long tickMillis, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Maintenance batch size must be positive.");
+        }
+        this.landManager = landManager;
+        this.tickMillis = tickMillis;
+        this.batchSize = batchSize;
+    }
+
+    /** Adds a job and schedules every loaded land for it */
+    public void addJob(Job job, long now) {
+        ScheduledJob scheduled = new ScheduledJob();
+        scheduled.job = job;
+        scheduled.wheel = new TimingWheel<>(tickMillis, WHEEL_LEVELS, now);
+        for (Land land : landManager.getAllLands()) {
+            schedule(scheduled, land, job.nextDue(land, now));
+        }
+        jobs.add(scheduled);
+    }
+
+    /** Recomputes when a land is due for every job, for changes a job depends on that are not land mutations,
+     *  like the owner coming online
+     */
+    public void reschedule(Land land, long now) {
+        for (ScheduledJob scheduled : jobs) {
+            schedule(scheduled, land, scheduled.job.nextDue(land, now));
+        }
+    }
+
+    /** Runs the due work of one tick, returning the number of lands processed */
+    public int tick(long now) {
+        for (ScheduledJob scheduled : jobs) {
+            scheduled.wheel.advance(now);
+        }
+        int done = 0;
+        int idle = 0;
+        // Take one land per job in turn until the batch is full or no job has anything ready
+        while (done < batchSize && idle < jobs.size()) {
+            ScheduledJob scheduled = jobs.get(nextJob);
+            nextJob = (nextJob + 1) % jobs.size();
+            UUID landId = scheduled.wheel.poll();
+            if (landId == null) {
+                idle++;
+                continue;
+            }
+            idle = 0;
+            Land land = landManager.getLandById(landId);
+            if (land == null) {
+                continue;
+            }
+            long next;
+            try {
+                next = scheduled.job.run(land, now);
+            } catch (RuntimeException e) {
+                LOGGER.atSevere().withCause(e).log("Maintenance job " + scheduled.job.getName() + " failed on land " + land.getName() + ".");
+                next = now + RETRY_DELAY_MILLIS;
+            }
+            if (landManager.getLandById(landId) == land) {
+                schedule(scheduled, land, next);
+            }
+            done++;
+        }
+        processed += done;
+        return done;
+    }
+
+    /** Lands that came due and still wait for a batch, across all jobs */
+    public int getBacklog() {
+        int backlog = 0;
+        for (ScheduledJob scheduled : jobs) {
+            backlog += scheduled.wheel.getReadyCount();
+        }
+        return backlog;
+    }
+
+    public long getProcessedCount() {
+        return processed;
+    }
+
+    private static void schedule(ScheduledJob scheduled, Land land, long due) {
+        if (due < 0) {
+            scheduled.wheel.cancel(land.getId());
+        } else {
+            scheduled.wheel.schedule(land.getId(), due);
+        }
+    }
+
+    /** Lifecycle tracking, world thread */
+
+    @Override
+    public void onLandCreated(Land land) {
+        long now = System.currentTimeMillis();
+        for (ScheduledJob scheduled : jobs) {
+            schedule(scheduled, land, scheduled.job.nextDue(land, now));
+        }
+    }
+
+    @Override
+    public void onLandDeleted(Land land) {
+        for (ScheduledJob scheduled : jobs) {
+            scheduled.wheel.cancel(land.getId());
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.almond.lands.maintenance;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** Hierarchical timing wheel of keys with due times
+ *  Every level has 64 slots, a slot of level l spans 64^l ticks. A key sits in the lowest level whose span still
+ *  separates its due tick from the current tick, and cascades one level down each time the clock enters the slot it
+ *  waits in, so it is touched at most once per level before it is due. Keys beyond the top level wait in an
+ *  overflow list that is looked at once per top level revolution.
+ *  Scheduling, cancelling and popping are O(1), advancing is O(1) amortized per elapsed tick and key.
+ *  Due keys move to a ready list in the order they came due and are popped from there.
+ *  Not thread safe, meant for the world thread.
+ */
+public class TimingWheel<K> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    /** Entry of a key, linked into exactly one slot, the overflow or the ready list */
+    private static class Node<K> {
+        K key;
+        long tick;
+        Node<K> previous = this;
+        Node<K> next = this;
+
+        Node(K key, long tick) {
+            this.key = key;
+            this.tick = tick;
+        }
+    }
+
+    private long tickMillis;
+    private int levels;
+    private Node<K>[] slots;               // levels x SLOTS list heads
+    private Node<K> overflow = new Node<>(null, 0);
+    private Node<K> ready = new Node<>(null, 0);
+    private Map<K, Node<K>> nodes = new HashMap<>();
+    private long currentTick;              // Next tick to come due, every earlier one is processed
+    private int readyCount;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(long tickMillis, int levels, long nowMillis) {
+        if (tickMillis < 1 || levels < 1 || levels * SLOT_BITS > 60) {
+            throw new IllegalArgumentException("Timing wheel needs a positive tick and 1 to 10 levels.");
+        }
+        this.tickMillis = tickMillis;
+        this.levels = levels;
+        this.slots = new Node[levels * SLOTS];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Node<>(null, 0);
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /** Schedules a key, replacing any due time it had */
+    public void schedule(K key, long dueMillis) {
+        cancel(key);
+        // Round up, a key is never handed out before its due time
+        long tick = Math.floorDiv(dueMillis + tickMillis - 1, tickMillis);
+        Node<K> node = new Node<>(key, tick);
+        nodes.put(key, node);
+        place(node);
+    }
+
+    /** Removes a key, returns false if it was not scheduled */
+    public boolean cancel(K key) {
+        Node<K> node = nodes.remove(key);
+        if (node == null) {
+            return false;
+        }
+        if (node.tick < 0) {
+            readyCount--;
+        }
+        unlink(node);
+        return true;
+    }
+
+    public boolean isScheduled(K key) {
+        return nodes.containsKey(key);
+    }
+
+    /** Due time of a key rounded to its tick, or -1 if it is not scheduled */
+    public long getDueMillis(K key) {
+        Node<K> node = nodes.get(key);
+        if (node == null) {
+            return -1;
+        }
+        return node.tick < 0 ? currentTick * tickMillis : node.tick * tickMillis;
+    }
+
+    /** Moves every key due up to the given time to the ready list */
+    public void advance(long nowMillis) {
+        long target = nowMillis / tickMillis;
+        while (currentTick <= target) {
+            // Entering a new span of a level hands its waiting keys down, top level first
+            for (int level = levels; level >= 1; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                    continue;
+                }
+                Node<K> head = level == levels ? overflow : slots[level * SLOTS + (int) ((currentTick >> (SLOT_BITS * level)) & SLOT_MASK)];
+                cascade(head);
+            }
+            Node<K> head = slots[(int) (currentTick & SLOT_MASK)];
+            while (head.next != head) {
+                Node<K> node = head.next;
+                unlink(node);
+                markReady(node);
+            }
+            currentTick++;
+        }
+    }
+
+    /** Pops the key that came due first, or null if none is ready */
+    public K poll() {
+        Node<K> node = ready.next;
+        if (node == ready) {
+            return null;
+        }
+        unlink(node);
+        nodes.remove(node.key);
+        readyCount--;
+        return node.key;
+    }
+
+    /** Number of scheduled keys, ready ones included */
+    public int size() {
+        return nodes.size();
+    }
+
+    /** Number of keys that came due and were not popped yet */
+    public int getReadyCount() {
+        return readyCount;
+    }
+
+    private void cascade(Node<K> head) {
+        Node<K> node = head.next;
+        head.next = head;
+        head.previous = head;
+        while (node != head) {
+            Node<K> next = node.next;
+            node.previous = node;
+            node.next = node;
+            place(node);
+            node = next;
+        }
+    }
+
+    /** Links a node into the slot of the lowest level that can hold it */
+    private void place(Node<K> node) {
+        if (node.tick < currentTick) {
+            markReady(node);
+            return;
+        }
+        long difference = node.tick ^ currentTick;
+        int level = difference == 0 ? 0 : (63 - Long.numberOfLeadingZeros(difference)) / SLOT_BITS;
+        if (level >= levels) {
+            link(overflow, node);
+        } else {
+            link(slots[level * SLOTS + (int) ((node.tick >> (SLOT_BITS * level)) & SLOT_MASK)], node);
+        }
+    }
+
+    private void markReady(Node<K> node) {
+        node.tick = -1; // Ready, its tick is no longer needed
+        link(ready, node);
+        readyCount++;
+    }
+
+    /** Appends a node at the tail of a list */
+    private static <K> void link(Node<K> head, Node<K> node) {
+        node.previous = head.previous;
+        node.next = head;
+        head.previous.next = node;
+        head.previous = node;
+    }
+
+    private static <K> void unlink(Node<K> node) {
+        node.previous.next = node.next;
+        node.next.previous = node.previous;
+        node.previous = node;
+        node.next = node;
+    }
+}
@@ -0,0 +1,154 @@
+package org.almond.lands.manager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.almond.lands.index.LandIndex;
+import org.almond.lands.model.Land;
+
+/** Per tick entity to land classification
+ *  Runs once per tick stage over every tracked entity of a world, instead of one index lookup per event.
+ *  Entities are sorted by chunk so each chunk bucket is fetched once, large worlds are classified in parallel.
+ *  The result is published as an immutable map, so event handlers read an entity's land in O(1) for the rest of the tick.
+ *  Must be called from the world thread while no land mutation is running, the index is only read.
+ */
+public class EntityLandClassifier {
+
+    private static final int PARALLEL_THRESHOLD = 4096; // Below this, splitting the work costs more than it saves
+    private static final int INDEX_BITS = 24;            // Low bits of the sort key hold the entity index
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+    private LandManager landManager;
+    private volatile Map<UUID, Land> entityLands = Collections.emptyMap();
+
+    public EntityLandClassifier(LandManager landManager) {
+        this.landManager = landManager;
+    }
+
+    /** Classifies every entity of the batch and publishes the entity -> land map */
+    public void classify(Batch batch) {
+        int size = batch.size;
+        if (size == 0) {
+            entityLands = Collections.emptyMap();
+            return;
+        }
+        if (size > INDEX_MASK) {
+            throw new IllegalArgumentException("Too many entities in a single batch: " + size);
+        }
+
+        // Sort key: compressed chunk coordinates in the high bits, entity index in the low bits.
+        // Chunk coordinates may wrap for extreme worlds, that only splits a run, it never breaks correctness
+        // since every run compares the real chunk key below.
+        long[] sortKeys = new long[size];
+        for (int i = 0; i < size; i++) {
+            long chunkX = (batch.x[i] >> LandIndex.CHUNK_SHIFT) & 0xFFFFF;
+            long chunkZ = (batch.z[i] >> LandIndex.CHUNK_SHIFT) & 0xFFFFF;
+            sortKeys[i] = (((chunkX << 20) | chunkZ) << INDEX_BITS) | i;
+        }
+
+        Land[] result = new Land[size];
+        LandIndex index = landManager.getIndex();
+        if (size < PARALLEL_THRESHOLD) {
+            Arrays.sort(sortKeys);
+            classifyRange(index, batch, sortKeys, 0, size, result);
+        } else {
+            Arrays.parallelSort(sortKeys);
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            int chunkSize = (size + parallelism - 1) / parallelism;
+            IntStream.range(0, parallelism).parallel().forEach(part -> {
+                int from = part * chunkSize;
+                int to = Math.min(size, from + chunkSize);
+                if (from < to) {
+                    classifyRange(index, batch, sortKeys, from, to, result);
+                }
+            });
+        }
+
+        // Only entities inside a land are published, absent means wilderness
+        Map<UUID, Land> lands = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (result[i] != null) {
+                lands.put(batch.ids[i], result[i]);
+            }
+        }
+        entityLands = Collections.unmodifiableMap(lands);
+    }
+
+    /** One pass over a sorted slice, fetching each chunk bucket only once per run */
+    private static void classifyRange(LandIndex index, Batch batch, long[] sortKeys, int from, int to, Land[] result) {
+        long currentChunk = 0;
+        List<LandIndex.Entry> bucket = null;
+        for (int k = from; k < to; k++) {
+            int i = (int) (sortKeys[k] & INDEX_MASK);
+            long chunk = LandIndex.chunkKeyOfBlock(batch.x[i], batch.z[i]);
+            if (bucket == null || chunk != currentChunk) {
+                currentChunk = chunk;
+                bucket = index.getBucket(chunk);
+            }
+            if (bucket.isEmpty()) {
+                continue;
+            }
+            LandIndex.Entry entry = LandIndex.findInBucket(bucket, batch.x[i], batch.y[i], batch.z[i]);
+            if (entry != null) {
+                result[i] = entry.getLand();
+            }
+        }
+    }
+
+    /** Land the entity was in at the last classification, or null for wilderness or untracked entities */
+    public Land getLand(UUID entityId) {
+        return entityLands.get(entityId);
+    }
+
+    /** Full entity -> land map of the last classification */
+    public Map<UUID, Land> getEntityLands() {
+        return entityLands;
+    }
+
+    /** Reusable buffer of entity positions, filled by the tick stage before classification */
+    public static class Batch {
+        private UUID[] ids;
+        private int[] x;
+        private int[] y;
+        private int[] z;
+        private int size;
+
+        public Batch(int initialCapacity) {
+            int capacity = Math.max(16, initialCapacity);
+            this.ids = new UUID[capacity];
+            this.x = new int[capacity];
+            this.y = new int[capacity];
+            this.z = new int[capacity];
+        }
+
+        /** Adds an entity at a block position */
+        public void add(UUID entityId, int blockX, int blockY, int blockZ) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+                z = Arrays.copyOf(z, capacity);
+            }
+            ids[size] = entityId;
+            x[size] = blockX;
+            y[size] = blockY;
+            z[size] = blockZ;
+            size++;
+        }
+
+        /** Empties the batch while keeping its arrays for the next tick */
+        public void clear() {
+            Arrays.fill(ids, 0, size, null);
+            size = 0;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.almond.lands.manager;
+
+import java.util.Set;
+import java.util.UUID;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandRole;
+import org.almond.lands.model.Region;
+
+/** Receives every committed land mutation of a LandManager, in order, on the thread that made it
+ *  Called after the mutation is applied, listeners must not mutate lands themselves.
+ */
+public interface LandChangeListener {
+
+    /** Called before a player mutation, throwing an IllegalStateException rejects it while nothing changed yet */
+    default void checkAccepting() {}
+
+    /** A land or subclaim was created */
+    default void onLandCreated(Land land) {}
+
+    /** A land was deleted, subclaims are reported before their parent */
+    default void onLandDeleted(Land land) {}
+
+    /** Regions were claimed or unclaimed, given as the regions removed from and added to the land's set */
+    default void onRegionsChanged(Land land, Set<Region> added, Set<Region> removed) {}
+
+    /** A member was trusted or had their role changed, a null role means the member was removed */
+    default void onMemberChanged(Land land, UUID memberId, String roleName) {}
+
+    /** A role was created or had its permissions changed, a null role means it was deleted */
+    default void onRoleChanged(Land land, String roleName, LandRole role) {}
+
+    /** The land flags changed, or the flag overrides of one region when region is not null */
+    default void onFlagsChanged(Land land, Region region) {}
+}
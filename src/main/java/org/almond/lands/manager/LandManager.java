@@ -7,19 +7,36 @@ import java.util.ArrayList;
 import java.util.UUID;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.Collection;
 import java.lang.System;
 import java.util.EnumSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import org.almond.lands.model.Land;
 import org.almond.lands.model.Region;
+import org.almond.lands.model.LandDetails;
 import org.almond.lands.model.LandRole;
 import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.ClaimMode;
+import org.almond.lands.model.LandFlag;
+import org.almond.lands.index.LandIndex;
+import org.almond.lands.jfr.ClaimGeometryEvent;
+import org.almond.lands.jfr.LandLookupEvent;
+import org.almond.lands.jfr.ProtectionCheckEvent;
+import com.hypixel.hytale.logger.HytaleLogger;
 import com.hypixel.hytale.math.vector.Vector3i;
 
 public class LandManager {
 
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
     private Map<UUID, Land> landsById = new HashMap<>();
     private Map<String, Land> landsByName = new HashMap<>();
     private Map<UUID, UUID> selectedLandByPlayer = new HashMap<>(); // Player UUID -> Selected Land UUID
+    private LandIndex index = new LandIndex();                      // Chunk -> Regions, for position lookup
+    private List<LandChangeListener> listeners = new ArrayList<>(); // Notified after every committed mutation
+    private int minClaimGap;                                        // Free blocks required between lands, 0 to allow touching
+    private long maxLandVolume;                                     // Blocks a top level land may claim, 0 for no limit
 
     /** LandManager Constructor */
     public LandManager() {
@@ -31,32 +48,224 @@ public class LandManager {
 
     /** Creates a new land with default roles and adds it to the manager */
     public void createLand(String name, UUID ownerId, Region region) {
+        createLand(name, ownerId, region, ClaimMode.CUBOID);
+    }
+
+    /** Creates a new land with the given claim mode, column lands only ever hold full height regions */
+    public void createLand(String name, UUID ownerId, Region region, ClaimMode claimMode) {
+        checkAccepting();
+        checkClaimGap(null, claimMode.apply(region));
+        checkLandVolume(0, claimMode.apply(region).getVolume());
         UUID landId = UUID.randomUUID();
         Map<UUID, String> members = new HashMap<>();
         members.put(ownerId, "owner");
-        Land land = new Land(landId, name, ownerId, Set.of(region), members, null, System.currentTimeMillis());
+        Land land = new Land(landId, name, ownerId, Set.of(claimMode.apply(region)), members, null,
+                             System.currentTimeMillis(), claimMode);
         landsById.put(landId, land);
         landsByName.put(name, land);
+        index.addRegions(land, land.getRegions());
+        notifyListeners(listener -> listener.onLandCreated(land));
     }
 
-    /** Deletes a land by its name */
-    public void deleteLand(String name) {
+    /** Deletes a land by its name, on behalf of its owner */
+    public void deleteLand(UUID playerId, String name) {
+        checkAccepting();
         Land land = getLandByName(name);
         if (land != null) {
             // Only owner can delete the land
-            if (!land.getOwner().equals(land.getMembers().keySet())) {
+            if (!land.getOwner().equals(playerId)) {
                 throw new IllegalArgumentException("Only the land owner can delete the land.");
             }
             // TODO: Handle unselecting the land for players who have it selected (not implemented here for simplicity)
-            // TODO: Handle notifying members of the land deletion (not implemented here for simplicity)
+            // Online members are notified through onLandDeleted, see LandPresence
             // TODO: Go over what happens to members of the land (not implemented here for simplicity)
-            landsById.remove(land.getId());
-            landsByName.remove(name);
+            List<Land> removed = new ArrayList<>();
+            removeLand(land, removed);
+            for (Land removedLand : removed) {
+                notifyListeners(listener -> listener.onLandDeleted(removedLand));
+            }
         } else {
             throw new IllegalArgumentException("Land with name " + name + " does not exist.");
         }
     }
 
+    /** Registers an already built land, used when loading from storage
+     *  A subclaim's parent must be registered first, it is linked through the given parent id.
+     */
+    public void registerLand(Land land, UUID parentId) {
+        if (parentId != null) {
+            Land parent = landsById.get(parentId);
+            if (parent == null) {
+                throw new IllegalArgumentException("Parent land " + parentId + " of " + land.getName() + " is not loaded.");
+            }
+            parent.addSubclaim(land);
+        }
+        landsById.put(land.getId(), land);
+        landsByName.put(land.getName(), land);
+        index.addRegions(land, land.getRegions());
+    }
+
+    /** Registers many already built lands at once, used for the startup load
+     *  Subclaims are linked to their parents, either in the batch or already registered, in any order.
+     *  The lookup maps and a bulk loaded index are built on the side and then swapped in together,
+     *  so nothing ever observes a half registered batch.
+     */
+    public void registerAll(Collection<Land> lands, Map<UUID, UUID> parentIds) {
+        Map<UUID, Land> byId = new HashMap<>((int) ((landsById.size() + lands.size()) / 0.75f) + 1);
+        Map<String, Land> byName = new HashMap<>((int) ((landsByName.size() + lands.size()) / 0.75f) + 1);
+        byId.putAll(landsById);
+        byName.putAll(landsByName);
+        for (Land land : lands) {
+            byId.put(land.getId(), land);
+            byName.put(land.getName(), land);
+        }
+        for (Land land : lands) {
+            UUID parentId = parentIds.get(land.getId());
+            if (parentId == null) {
+                continue;
+            }
+            Land parent = byId.get(parentId);
+            if (parent == null) {
+                throw new IllegalArgumentException("Parent land " + parentId + " of " + land.getName() + " is not loaded.");
+            }
+            parent.addSubclaim(land);
+        }
+        LandIndex bulkIndex = LandIndex.bulkLoad(byId.values());
+
+        this.landsById = byId;
+        this.landsByName = byName;
+        this.index = bulkIndex;
+    }
+
+    /** Registers a batch of new lands next to the ones already loaded, used by bulk import
+     *  Subclaims are linked to parents registered before or earlier in the batch,
+     *  then the whole batch is merged into the live index in one go.
+     */
+    public void registerBatch(List<Land> lands, Map<UUID, UUID> parentIds) {
+        for (Land land : lands) {
+            UUID parentId = parentIds.get(land.getId());
+            if (parentId != null) {
+                Land parent = landsById.get(parentId);
+                if (parent == null) {
+                    throw new IllegalArgumentException("Parent land " + parentId + " of " + land.getName() + " is not loaded.");
+                }
+                parent.addSubclaim(land);
+            }
+            landsById.put(land.getId(), land);
+            landsByName.put(land.getName(), land);
+        }
+        index.addAll(lands);
+    }
+
+    /** Clips the subclaims of a land to the regions it still holds, nested subclaims included
+     *  A subclaim keeps its largest connected part, one left without any volume is removed with everything inside it.
+     */
+    private void clipSubclaims(Land parent, List<Land> removed) {
+        for (Land subclaim : new ArrayList<>(parent.getSubclaims())) {
+            Set<Region> clipped = new HashSet<>();
+            boolean changed = false;
+            for (Region region : subclaim.getRegions()) {
+                if (parent.covers(region)) {
+                    clipped.add(region.detach());
+                    continue;
+                }
+                changed = true;
+                for (Region parentRegion : parent.getRegions()) {
+                    Region piece = region.intersection(parentRegion);
+                    if (piece != null) {
+                        piece.copyFlagOverrides(region);
+                        clipped.add(piece);
+                    }
+                }
+            }
+            if (!changed) {
+                continue;
+            }
+            if (clipped.isEmpty()) {
+                removeLand(subclaim, removed);
+                continue;
+            }
+            Region.linkAdjacent(clipped);
+            Set<Region> largestGroup = null;
+            long maxVolume = 0;
+            Set<Region> grouped = new HashSet<>();
+            for (Region region : clipped) {
+                if (grouped.contains(region)) {
+                    continue;
+                }
+                Set<Region> group = region.bfsRegionGraph();
+                grouped.addAll(group);
+                long groupVolume = 0;
+                for (Region member : group) {
+                    groupVolume += member.getVolume();
+                }
+                if (groupVolume > maxVolume) {
+                    maxVolume = groupVolume;
+                    largestGroup = group;
+                }
+            }
+            Set<Region> oldRegions = new HashSet<>(subclaim.getRegions());
+            subclaim.setRegions(largestGroup);
+            index.updateLand(subclaim, oldRegions);
+            notifyRegionsChanged(subclaim, oldRegions);
+            clipSubclaims(subclaim, removed);
+        }
+    }
+
+    /** Removes a land and every subclaim nested inside it from the manager, collecting them subclaims first */
+    private void removeLand(Land land, List<Land> removed) {
+        for (Land subclaim : new ArrayList<>(land.getSubclaims())) {
+            removeLand(subclaim, removed);
+        }
+        if (land.getParent() != null) {
+            land.getParent().removeSubclaim(land);
+        }
+        landsById.remove(land.getId());
+        landsByName.remove(land.getName());
+        index.removeLand(land);
+        removed.add(land);
+    }
+
+    /** Creates a subclaim inside the player's selected land
+     *  The subclaim has its own owner, members and roles, and is the most specific claim for positions inside it.
+     *  Its region must lie fully inside the selected land and must not overlap the land's other subclaims.
+     */
+    public void createSubclaim(UUID playerId, String name, UUID ownerId, Region region) {
+        checkAccepting();
+        Land parent = getSelectedLandForPlayer(playerId);
+        if (parent != null) {
+
+            // Check permissions, creating a subclaim claims volume of the parent land
+            if (!checkPermission(playerId, parent, LandPermission.CLAIM)) {
+                throw new IllegalArgumentException("Player does not have permission to create subclaims on this land.");
+            }
+
+            // Land names are unique, subclaims included
+            if (landsByName.containsKey(name)) {
+                throw new IllegalArgumentException("Land with name " + name + " already exists.");
+            }
+
+            region = parent.getClaimMode().apply(region);
+            if (!parent.covers(region)) {
+                throw new IllegalArgumentException("The subclaim must lie fully inside the land.");
+            }
+            checkSiblingOverlap(parent, null, region);
+
+            Map<UUID, String> members = new HashMap<>();
+            members.put(ownerId, "owner");
+            Land subclaim = new Land(UUID.randomUUID(), name, ownerId, Set.of(region), members, null,
+                                     System.currentTimeMillis(), parent.getClaimMode());
+            subclaim.setFlags(parent.getFlags()); // Subclaims start with the flags of their land
+            parent.addSubclaim(subclaim);
+            landsById.put(subclaim.getId(), subclaim);
+            landsByName.put(name, subclaim);
+            index.addRegions(subclaim, subclaim.getRegions());
+            notifyListeners(listener -> listener.onLandCreated(subclaim));
+        } else {
+            throw new IllegalArgumentException("No land selected for the player.");
+        }
+    }
+
     /** Selects a land for a player by land name */
     public void selectLandForPlayer(UUID playerId, String landName) {
         if (landsByName.containsKey(landName)) {
@@ -83,42 +292,71 @@ public class LandManager {
 
     /** Claims region for a land */
     public void claimRegion(UUID playerId, Region newRegion) {
+        checkAccepting();
         Land land = getSelectedLandForPlayer(playerId);
         if (land != null) {
+            newRegion = land.getClaimMode().apply(newRegion);
+
+            // Subclaims can only grow inside their parent land
+            if (land.isSubclaim()) {
+                if (!land.getParent().covers(newRegion)) {
+                    throw new IllegalArgumentException("The subclaim must lie fully inside its parent land.");
+                }
+                checkSiblingOverlap(land.getParent(), land, newRegion);
+            }
             // Check permissions
             if (!checkPermission(playerId, land, LandPermission.CLAIM)) {
                 throw new IllegalArgumentException("Player does not have permission to claim regions on this land.");
             }
+            // Top level lands keep their distance from other lands, subclaims stay inside theirs anyway
+            if (!land.isSubclaim()) {
+                checkClaimGap(land, newRegion);
+            }
 
-            Boolean adjacent = false;
+            // Cut the already claimed parts out of the new region on detached pieces, nothing is linked before every check passed
+            ClaimGeometryEvent subtract = new ClaimGeometryEvent();
+            subtract.begin();
+            boolean adjacent = false;
             Set<Region> newRegions = new HashSet<>();
-            newRegions.add(newRegion);
-            // Check for overlaps with existing regions
-            for (Region newReg : newRegions) {
-                for (Region region : land.getRegions()) {
-                    if (region.isAdjacentTo(newReg)) {
-                        adjacent = true;
-                        newReg.addAdjacentRegion(region);
-                    }
-                    if (region.overlaps(newReg)) {
-                        // overlapping also suggest adjacency
-                        adjacent = true;
-                        // Split the new region into non-overlapping parts
-                        Set<Region> splitRegions = newReg.subtract(region);
-                        newRegions.remove(newReg);
-                        // The split Regions will not overlap with the existing regions.
-                        // However, they are not guaranteed to be adjacent with each other.
-                        // This is overlooked here, since the subtracted volume is represented by the new region.
-                        // Therefore maintaining the adjacency.
-                        newRegions.addAll(splitRegions);
+            newRegions.add(newRegion.detach());
+            for (Region region : land.getRegions()) {
+                // Overlapping also counts as adjacency
+                if (region.isAdjacentTo(newRegion) || region.overlaps(newRegion)) {
+                    adjacent = true;
+                }
+                if (region.overlaps(newRegion)) {
+                    Set<Region> remaining = new HashSet<>();
+                    for (Region piece : newRegions) {
+                        remaining.addAll(piece.subtract(region));
                     }
+                    newRegions = remaining;
                 }
             }
+            commitGeometry(subtract, land, ClaimGeometryEvent.SUBTRACT, land.getRegions().size(), newRegions.size());
             if(!adjacent) {
                 throw new IllegalArgumentException("The new region must be adjacent to existing land regions.");
             }
+            if (!land.isSubclaim()) {
+                long addedVolume = 0;
+                for (Region region : newRegions) {
+                    addedVolume += region.getVolume();
+                }
+                checkLandVolume(land.getVolume(), addedVolume);
+            }
+            // Every check passed, link the pieces with each other and with the regions they touch
+            Region.linkAdjacent(newRegions);
+            for (Region piece : newRegions) {
+                piece.addAdjacentRegions(land.getRegions());
+            }
+            Set<Region> oldRegions = new HashSet<>(land.getRegions());
             land.claimRegions(newRegions);
+            ClaimGeometryEvent merge = new ClaimGeometryEvent();
+            merge.begin();
+            int unmerged = land.getRegions().size();
             land.mergeRegions();
+            commitGeometry(merge, land, ClaimGeometryEvent.MERGE, unmerged, land.getRegions().size());
+            index.updateLand(land, oldRegions);
+            notifyRegionsChanged(land, oldRegions);
             // Merge regions if necessary, to optimize storage and lookup (not implemented here for simplicity)
         } else {
             throw new IllegalArgumentException("No land selected for the player.");
@@ -126,52 +364,41 @@ public class LandManager {
     }
 
     /** Unclaims region for a land
-     * Works on a copy of the regions to allow the player to cancel changes.
-     * We need a deep copy of the region, since the subtract function effect the region adjacency set.
+     * The remaining regions are rebuilt from detached copies, so the live adjacency graph is never touched
+     * and no stale region stays reachable from the pieces.
      */
     public void unclaimRegion(UUID playerId, Region regionToUnclaim) {
+        checkAccepting();
         Land land = getSelectedLandForPlayer(playerId);
         if (land != null) {
+            regionToUnclaim = land.getClaimMode().apply(regionToUnclaim);
 
             // Check permissions
             if (!checkPermission(playerId, land, LandPermission.UNCLAIM)) {
                 throw new IllegalArgumentException("Player does not have permission to unclaim regions on this land.");
             }
 
-            Set<Region> landRegions = land.getRegionsCopy();
-            Set<Region> regionsToRemove = new HashSet<>();
-            Set<Region> regionsToAdd = new HashSet<>();
+            ClaimGeometryEvent subtract = new ClaimGeometryEvent();
+            subtract.begin();
+            Set<Region> landRegions = new HashSet<>();
             for (Region region : land.getRegions()) {
-                if (region.overlaps(regionToUnclaim)) {
-                    // Subtract the unclaim region from the existing region
-                    Set<Region> remainingRegions = region.subtract(regionToUnclaim);
-                    region.clearAdjacentRegions();
-                    regionsToRemove.add(region);
-                    regionsToAdd.addAll(remainingRegions);
-                }
+                landRegions.addAll(region.detach().subtract(regionToUnclaim));
             }
-            landRegions.removeAll(regionsToRemove);
-            landRegions.addAll(regionsToAdd);
+            commitGeometry(subtract, land, ClaimGeometryEvent.SUBTRACT, land.getRegions().size(), landRegions.size());
 
-            // Find the volume groups if they got Split
+            // Link the remaining regions among themselves only, then find the volume groups if they got split
+            ClaimGeometryEvent connectivity = new ClaimGeometryEvent();
+            connectivity.begin();
+            Region.linkAdjacent(landRegions);
             Map<Set<Region>, Long> volumeGroups = new HashMap<>();
+            Set<Region> grouped = new HashSet<>();
             for (Region region : landRegions) {
-                // First iteration 
-                if (volumeGroups.isEmpty()) {
-                    volumeGroups.put(region.bfsRegionGraph(), 0L);
-                } else {
-                    for (Set<Region> group : volumeGroups.keySet()) {
-                        if (group.contains(region)) {
-                            // already in a group, skip
-                            break;
-                        } else {
-                            // Not in any of the continuous groups
-                            // Means a new volume group is formed
-                            volumeGroups.put(region.bfsRegionGraph(), 0L);
-                            break;
-                        }
-                    }
+                if (grouped.contains(region)) {
+                    continue; // Already part of a continuous group
                 }
+                Set<Region> group = region.bfsRegionGraph();
+                grouped.addAll(group);
+                volumeGroups.put(group, 0L);
             }
 
             // Calculate the volume for each group
@@ -182,6 +409,7 @@ public class LandManager {
                 }
                 volumeGroups.put(group, groupVolume);
             }
+            commitGeometry(connectivity, land, ClaimGeometryEvent.CONNECTIVITY, landRegions.size(), volumeGroups.size());
 
             
 
@@ -203,10 +431,19 @@ public class LandManager {
             // Player will confirm if they which to unclaim all the smaller volumeGroups
             // Future Edge Case: If Land claims have districts, and different districts are controlled by different players,
             // We need to make sure the unclaiming player cannot unclaim regions that belong to other players.
-            // Future Edge Case: If Land has subclaims, the subclaims remain even if they are left partially or fully in the wild.
             
             // After Players confirm their choice.
+            Set<Region> oldRegions = new HashSet<>(land.getRegions());
             land.setRegions(landRegions);
+            index.updateLand(land, oldRegions);
+            notifyRegionsChanged(land, oldRegions);
+
+            // Subclaims never reach outside their parent, cut them back to what the land still holds
+            List<Land> removed = new ArrayList<>();
+            clipSubclaims(land, removed);
+            for (Land removedLand : removed) {
+                notifyListeners(listener -> listener.onLandDeleted(removedLand));
+            }
         } else {
             throw new IllegalArgumentException("No land selected for the player.");
         }
@@ -216,6 +453,7 @@ public class LandManager {
      *  Give players a member role to the land.
      */
     public void trustPlayer(UUID playerId, UUID targetPlayerId, String roleName) {
+        checkAccepting();
         Land land = getSelectedLandForPlayer(playerId);
         // Check if the player selected a land
         if (land != null) {
@@ -231,7 +469,7 @@ public class LandManager {
             }
 
             // Check if the player has permission to manage members
-            LandRole playerRole = land.getRoles().get(land.getMembers().get(playerId));
+            LandRole playerRole = land.getDetails().getMemberRole(playerId);
             if (playerRole == null || 
                 !land.getOwner().equals(playerId) || 
                 !playerRole.getPermissions().contains(LandPermission.MANAGE_MEMBERS)) {
@@ -244,7 +482,8 @@ public class LandManager {
             }
 
             // Assign the role to the target player
-            land.getMembers().put(targetPlayerId, roleName);
+            applyMemberChange(land, targetPlayerId, roleName);
+            notifyListeners(listener -> listener.onMemberChanged(land, targetPlayerId, roleName));
         } else {
             throw new IllegalArgumentException("No land selected for the player.");
         }
@@ -254,6 +493,7 @@ public class LandManager {
      *  Remove players from the land.
      */
     public void untrustPlayer(UUID playerId, UUID targetPlayerId) {
+        checkAccepting();
         Land land = getSelectedLandForPlayer(playerId);
         // Check if the player selected a land
         if (land != null) {
@@ -279,7 +519,7 @@ public class LandManager {
             }
 
             // Check if the player has permission to manage members
-            LandRole playerRole = land.getRoles().get(land.getMembers().get(playerId));
+            LandRole playerRole = land.getDetails().getMemberRole(playerId);
             if (playerRole == null || 
                 !land.getOwner().equals(playerId) || 
                 !playerRole.getPermissions().contains(LandPermission.MANAGE_MEMBERS)) {
@@ -287,7 +527,8 @@ public class LandManager {
             }
 
             // Remove the target player from members
-            land.getMembers().remove(targetPlayerId);
+            applyMemberChange(land, targetPlayerId, null);
+            notifyListeners(listener -> listener.onMemberChanged(land, targetPlayerId, null));
         } else {
             throw new IllegalArgumentException("No land selected for the player.");
         }
@@ -295,6 +536,7 @@ public class LandManager {
 
     /** Create Role */
     public void createRole(UUID playerId, String roleName, Set<LandPermission> permissions) {
+        checkAccepting();
         Land land = getSelectedLandForPlayer(playerId);
         // Check if the player selected a land
         if (land != null) {
@@ -310,7 +552,7 @@ public class LandManager {
             }
 
             // Check if the player has permission to manage roles
-            LandRole playerRole = land.getRoles().get(land.getMembers().get(playerId));
+            LandRole playerRole = land.getDetails().getMemberRole(playerId);
             if (playerRole == null || 
                 !land.getOwner().equals(playerId) || 
                 !playerRole.getPermissions().contains(LandPermission.MANAGE_ROLES)) {
@@ -320,6 +562,7 @@ public class LandManager {
             // Create and add the new role to the land
             LandRole newRole = new LandRole(roleName, permissions);
             land.addRole(roleName, newRole);
+            notifyListeners(listener -> listener.onRoleChanged(land, roleName, newRole));
         } else {
             throw new IllegalArgumentException("No land selected for the player.");
         }
@@ -327,6 +570,7 @@ public class LandManager {
 
     /** Delete Role */
     public void deleteRole(UUID playerId, String roleName) {
+        checkAccepting();
         Land land = getSelectedLandForPlayer(playerId);
         // Check if the player selected a land
         if (land != null) {
@@ -342,7 +586,7 @@ public class LandManager {
             }
 
             // Check if the player has permission to manage roles
-            LandRole playerRole = land.getRoles().get(land.getMembers().get(playerId));
+            LandRole playerRole = land.getDetails().getMemberRole(playerId);
             if (playerRole == null || 
                 !land.getOwner().equals(playerId) || 
                 !playerRole.getPermissions().contains(LandPermission.MANAGE_ROLES)) {
@@ -351,6 +595,7 @@ public class LandManager {
 
             // Remove the role from the land
             land.removeRole(roleName);
+            notifyListeners(listener -> listener.onRoleChanged(land, roleName, null));
 
             // Find a non-admin role to reassign members
             String defaultRoleName = null;
@@ -372,13 +617,16 @@ public class LandManager {
                 );
                 LandRole defaultRole = new LandRole(defaultRoleName, memberPerms);
                 land.addRole(defaultRoleName, defaultRole);
+                String createdRoleName = defaultRoleName;
+                notifyListeners(listener -> listener.onRoleChanged(land, createdRoleName, defaultRole));
             }
 
             // Reassign members with the deleted role to a default role (e.g., "member")
-            for (Map.Entry<UUID, String> entry : land.getMembers().entrySet()) {
-                if (entry.getValue().equals(roleName)) {
-                    land.getMembers().put(entry.getKey(), defaultRoleName);
-                }
+            String reassignedRoleName = defaultRoleName;
+            List<UUID> reassigned = new ArrayList<>();
+            land.reassignMembers(roleName, reassignedRoleName, reassigned);
+            for (UUID memberId : reassigned) {
+                notifyListeners(listener -> listener.onMemberChanged(land, memberId, reassignedRoleName));
             }
             
         } else {
@@ -388,6 +636,7 @@ public class LandManager {
 
     /** Set Role Permissions */
     public void setRolePermissions(UUID playerId, String roleName, Set<LandPermission> newPermissions) {
+        checkAccepting();
         Land land = getSelectedLandForPlayer(playerId);
         // Check if the player selected a land
         if (land != null) {
@@ -403,7 +652,7 @@ public class LandManager {
             }
 
             // Check if the player has permission to manage roles
-            LandRole playerRole = land.getRoles().get(land.getMembers().get(playerId));
+            LandRole playerRole = land.getDetails().getMemberRole(playerId);
             if (playerRole == null || 
                 !land.getOwner().equals(playerId) || 
                 !playerRole.getPermissions().contains(LandPermission.MANAGE_ROLES)) {
@@ -423,27 +672,301 @@ public class LandManager {
             }
 
             // Update the permissions for the role
+            land.setRolePermissions(roleName, newPermissions);
             LandRole role = land.getRoles().get(roleName);
-            role.setPermissions(newPermissions);
+            notifyListeners(listener -> listener.onRoleChanged(land, roleName, role));
         } else {
             throw new IllegalArgumentException("No land selected for the player.");
         }
     }
 
-    /** Check if a player has a specific permission for the given land */
-    public boolean checkPermission(UUID playerId, Land land, LandPermission permission) {
-        if (land.getOwner().equals(playerId)) {
-            return true; // Owner has all permissions
+    /** Set Land Flag */
+    public void setLandFlag(UUID playerId, LandFlag flag, boolean value) {
+        checkAccepting();
+        Land land = getSelectedLandForPlayer(playerId);
+        // Check if the player selected a land
+        if (land != null) {
+
+            // Check if the player has permission to manage flags
+            if (!checkPermission(playerId, land, LandPermission.MANAGE_FLAGS)) {
+                throw new IllegalArgumentException("Player does not have permission to manage flags on this land.");
+            }
+
+            land.setFlag(flag, value);
+            index.refreshLand(land);
+            notifyListeners(listener -> listener.onFlagsChanged(land, null));
+        } else {
+            throw new IllegalArgumentException("No land selected for the player.");
         }
-        String roleName = land.getMembers().get(playerId);
+    }
+
+    /** Set Region Flag
+     *  Overrides a flag for the region of the selected land at the given position, a null value removes the override.
+     */
+    public void setRegionFlag(UUID playerId, Vector3i position, LandFlag flag, Boolean value) {
+        checkAccepting();
+        Land land = getSelectedLandForPlayer(playerId);
+        // Check if the player selected a land
+        if (land != null) {
+
+            // Check if the player has permission to manage flags
+            if (!checkPermission(playerId, land, LandPermission.MANAGE_FLAGS)) {
+                throw new IllegalArgumentException("Player does not have permission to manage flags on this land.");
+            }
+
+            Region target = null;
+            for (Region region : land.getRegions()) {
+                if (region.contains(position)) {
+                    target = region;
+                    break;
+                }
+            }
+            if (target == null) {
+                throw new IllegalArgumentException("Position is not inside the selected land.");
+            }
+
+            if (value == null) {
+                target.clearFlagOverride(flag);
+            } else {
+                target.setFlagOverride(flag, value);
+            }
+            land.markDirty();
+            index.refreshLand(land);
+            Region changed = target;
+            notifyListeners(listener -> listener.onFlagsChanged(land, changed));
+        } else {
+            throw new IllegalArgumentException("No land selected for the player.");
+        }
+    }
+
+    /** Direct mutations
+     *  Apply an already validated change without permission checks and without notifying listeners.
+     *  Used by journal replay, every change was checked when it was first made.
+     */
+    public void applyLandDeleted(Land land) {
+        removeLand(land, new ArrayList<>());
+    }
+
+    /** Removes and adds regions, then relinks the land's region graph */
+    public void applyRegionChange(Land land, Set<Region> added, Set<Region> removed) {
+        Set<Region> oldRegions = new HashSet<>(land.getRegions());
+        land.unclaimRegions(removed);
+        land.claimRegions(added);
+        land.rebuildAdjacency();
+        index.updateLand(land, oldRegions);
+    }
+
+    /** Sets the role of a member, a null role removes the member */
+    public void applyMemberChange(Land land, UUID memberId, String roleName) {
         if (roleName == null) {
-            return false; // Not a member, no permissions
+            land.removeMember(memberId);
+        } else {
+            land.setMember(memberId, roleName);
         }
+    }
+
+    /** Creates a role or replaces its permissions, null permissions delete the role */
+    public void applyRoleChange(Land land, String roleName, Set<LandPermission> permissions) {
         LandRole role = land.getRoles().get(roleName);
-        if (role == null) {
-            return false; // Role not found, no permissions
+        if (permissions == null) {
+            if (role != null) {
+                land.removeRole(roleName);
+            }
+        } else if (role != null) {
+            land.setRolePermissions(roleName, permissions);
+        } else {
+            land.addRole(roleName, new LandRole(roleName, permissions));
+        }
+    }
+
+    /** Replaces the land wide flags */
+    public void applyLandFlags(Land land, long flags) {
+        land.setFlags(flags);
+        index.refreshLand(land);
+    }
+
+    /** Replaces the flag overrides of the land region with the given bounds */
+    public void applyRegionFlags(Land land, Region bounds, long mask, long values) {
+        for (Region region : land.getRegions()) {
+            if (region.equals(bounds)) {
+                region.setFlagOverrides(mask, values);
+                land.markDirty();
+                index.refreshLand(land);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Region does not exist in land " + land.getName() + ".");
+    }
+
+    /** Registers a listener notified after every committed mutation */
+    public void addChangeListener(LandChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(LandChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Reports a change made through the direct mutations or registration to the listeners
+     *  Used for changes replicated from another server or imported in bulk, which still have to reach
+     *  the local journal and autosave.
+     */
+    public void notifyApplied(Consumer<LandChangeListener> event) {
+        notifyListeners(event);
+    }
+
+    /** Hands a committed change to every listener
+     *  The change is already applied, so one failing listener is logged and the others are still notified.
+     *  The land stays dirty either way, autosave writes it even when the journal missed the change.
+     */
+    private void notifyListeners(Consumer<LandChangeListener> event) {
+        for (int i = 0; i < listeners.size(); i++) {
+            try {
+                event.accept(listeners.get(i));
+            } catch (RuntimeException e) {
+                LOGGER.atSevere().withCause(e).log("Land change listener " + listeners.get(i).getClass().getSimpleName()
+                                                   + " failed, the change stays applied.");
+            }
+        }
+    }
+
+    /** Rejects a mutation before anything changed when a listener cannot take it, such as a failed journal */
+    private void checkAccepting() {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).checkAccepting();
         }
-        return role.getPermissions().contains(permission);
+    }
+
+    /** Rejects a region overlapping a subclaim of the parent, other than the subclaim growing */
+    private static void checkSiblingOverlap(Land parent, Land subclaim, Region region) {
+        for (Land sibling : parent.getSubclaims()) {
+            if (sibling == subclaim) {
+                continue;
+            }
+            for (Region siblingRegion : sibling.getRegions()) {
+                if (siblingRegion.overlaps(region)) {
+                    throw new IllegalArgumentException("The subclaim overlaps subclaim " + sibling.getName() + ".");
+                }
+            }
+        }
+    }
+
+    /** Rejects a region that would come within the minimum gap of another land
+     *  Only the index buckets around the region are searched, the land itself and its subclaims do not count.
+     */
+    private void checkClaimGap(Land land, Region region) {
+        if (minClaimGap <= 0) {
+            return;
+        }
+        LandIndex.Entry near = index.findNear(region.getCorner1().getX(), region.getCorner1().getZ(),
+                                              region.getCorner2().getX(), region.getCorner2().getZ(), minClaimGap,
+                                              other -> rootOf(other) != land);
+        if (near != null) {
+            throw new IllegalArgumentException("The region must keep " + minClaimGap + " blocks away from land "
+                                               + rootOf(near.getLand()).getName() + ".");
+        }
+    }
+
+    /** Rejects a claim that would take a top level land past the maximum volume */
+    private void checkLandVolume(long volume, long addedVolume) {
+        if (maxLandVolume > 0 && volume + addedVolume > maxLandVolume) {
+            throw new IllegalArgumentException("A land cannot hold more than " + maxLandVolume + " blocks, "
+                                               + Math.max(0, maxLandVolume - volume) + " blocks are left.");
+        }
+    }
+
+    private static void commitGeometry(ClaimGeometryEvent event, Land land, String phase, int regionCount, int resultCount) {
+        if (event.shouldCommit()) {
+            event.landId = land.getId().toString();
+            event.phase = phase;
+            event.regionCount = regionCount;
+            event.resultCount = resultCount;
+            event.commit();
+        }
+    }
+
+    private static Land rootOf(Land land) {
+        while (land.getParent() != null) {
+            land = land.getParent();
+        }
+        return land;
+    }
+
+    /** Reports the difference between the old and current region set of a land */
+    private void notifyRegionsChanged(Land land, Set<Region> oldRegions) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        Set<Region> added = new HashSet<>(land.getRegions());
+        added.removeAll(oldRegions);
+        Set<Region> removed = new HashSet<>(oldRegions);
+        removed.removeAll(land.getRegions());
+        if (!added.isEmpty() || !removed.isEmpty()) {
+            notifyListeners(listener -> listener.onRegionsChanged(land, added, removed));
+        }
+    }
+
+    /** Resolved flags at a position, from the same index lookup that finds the land */
+    public long getFlagsAt(Vector3i position) {
+        LandIndex.Entry entry = index.find(position.getX(), position.getY(), position.getZ());
+        return entry != null ? entry.getFlags() : LandFlag.wildernessDefaults();
+    }
+
+    /** Checks a single flag at a position, for spawn, damage, explosion and fire handlers */
+    public boolean isFlagSetAt(Vector3i position, LandFlag flag) {
+        return flag.isSet(getFlagsAt(position));
+    }
+
+    /** Check if a player has a specific permission for the given land
+     *  Most specific wins, the innermost claim where the player is owner or member decides.
+     *  Players unknown to a subclaim fall back to the enclosing lands through the parent pointers,
+     *  players unknown to all of them get the outsider permissions of the innermost claim.
+     *  The member filter in the land header rules out most outsiders without loading the land's details.
+     */
+    public boolean checkPermission(UUID playerId, Land land, LandPermission permission) {
+        ProtectionCheckEvent event = new ProtectionCheckEvent();
+        event.begin();
+        boolean allowed = resolvePermission(playerId, land, permission);
+        if (event.shouldCommit()) {
+            event.landId = land.getId().toString();
+            event.playerId = playerId.toString();
+            event.permission = permission.name();
+            event.allowed = allowed;
+            event.regionCount = land.getRegions().size();
+            event.commit();
+        }
+        return allowed;
+    }
+
+    private boolean resolvePermission(UUID playerId, Land land, LandPermission permission) {
+        for (Land current = land; current != null; current = current.getParent()) {
+            if (current.getOwner().equals(playerId)) {
+                return true; // Owner has all permissions
+            }
+            if (!current.mightBeMember(playerId)) {
+                continue;
+            }
+            LandDetails details = current.getDetails();
+            LandRole role = details.getMemberRole(playerId);
+            if (role != null) {
+                return role.getPermissions().contains(permission);
+            }
+            if (details.getMembers().containsKey(playerId)) {
+                return false; // Role not found, no permissions
+            }
+        }
+        return (land.getOutsiderPermissions() & permission.bit()) != 0; // Not a member, outsider permissions
+    }
+
+    /** Protection check for a block position
+     *  One index lookup returns the most specific claim, wilderness allows everything.
+     */
+    public boolean checkPermissionAt(UUID playerId, Vector3i position, LandPermission permission) {
+        Land land = getLandAt(position);
+        if (land == null) {
+            return true; // Wilderness, no protection
+        }
+        return checkPermission(playerId, land, permission);
     }
 
     /** Get player role in a land */
@@ -451,16 +974,61 @@ public class LandManager {
         return land.getMembers().get(playerId);
     }
 
-    /** Retrieves a land that contains the given position */
+    /** Retrieves the most specific land or subclaim that contains the given position */
     public Land getLandAt(Vector3i position) {
-        for (Land land : landsById.values()) {
-            for (Region region : land.getRegions()) {
-                if (region.contains(position)) {
-                    return land;
-                }
-            }
+        LandLookupEvent event = new LandLookupEvent();
+        event.begin();
+        LandIndex.Entry entry = index.find(position.getX(), position.getY(), position.getZ());
+        Land land = entry != null ? entry.getLand() : null;
+        if (event.shouldCommit()) {
+            event.x = position.getX();
+            event.y = position.getY();
+            event.z = position.getZ();
+            event.landId = land != null ? land.getId().toString() : "";
+            event.regionCount = land != null ? land.getRegions().size() : 0;
+            event.bucketSize = index.getBucket(LandIndex.chunkKeyOfBlock(position.getX(), position.getZ())).size();
+            event.commit();
         }
-        return null;
+        return land;
+    }
+
+    /** Lands with a region within a horizontal radius of a block column, nearest first */
+    public List<Land> getLandsNear(int x, int z, int radius) {
+        return index.findWithin(x, z, radius);
+    }
+
+    /** Up to count lands nearest to a block column, nearest first */
+    public List<Land> getNearestLands(int x, int z, int count, int maxDistance) {
+        return index.findNearest(x, z, count, maxDistance);
+    }
+
+    /** Free blocks required between a land and any other land, 0 allows lands to touch */
+    public void setMinClaimGap(int minClaimGap) {
+        if (minClaimGap < 0) {
+            throw new IllegalArgumentException("The minimum claim gap cannot be negative.");
+        }
+        this.minClaimGap = minClaimGap;
+    }
+
+    public int getMinClaimGap() {
+        return minClaimGap;
+    }
+
+    /** Blocks a top level land may claim in total, 0 for no limit, subclaims do not count */
+    public void setMaxLandVolume(long maxLandVolume) {
+        if (maxLandVolume < 0) {
+            throw new IllegalArgumentException("The maximum land volume cannot be negative.");
+        }
+        this.maxLandVolume = maxLandVolume;
+    }
+
+    public long getMaxLandVolume() {
+        return maxLandVolume;
+    }
+
+    /** Spatial index over all land regions, read only for callers outside the manager */
+    public LandIndex getIndex() {
+        return index;
     }
 
     /** Retrieves a land by its unique identifier */
@@ -487,5 +1055,29 @@ public class LandManager {
     public Set<Land> getAllLands() {
         return new HashSet<>(landsById.values());
     }
+
+    /** Calls the action for every land without copying the land set, the action must not create or delete lands */
+    public void forEachLand(Consumer<Land> action) {
+        for (Land land : landsById.values()) {
+            action.accept(land);
+        }
+    }
+
+    /** Calls the visitor for every land until it returns false, under the same rules as forEachLand
+     *  Returns false if the visitor stopped early.
+     */
+    public boolean forEachLandWhile(Predicate<Land> visitor) {
+        for (Land land : landsById.values()) {
+            if (!visitor.test(land)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Number of lands and subclaims */
+    public int getLandCount() {
+        return landsById.size();
+    }
     
 }
\ No newline at end of file
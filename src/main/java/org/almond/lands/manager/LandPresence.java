@@ -0,0 +1,219 @@
+package org.almond.lands.manager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.almond.lands.model.Land;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+/** Online members of every land, kept current on join, quit and membership changes
+ *  Every member, online or not, is indexed with the lands they belong to. The index is built from the loaded lands
+ *  once, which reads the members of each of them, and is then kept current by creations and trusts, so a joining
+ *  player only looks at their own lands. Deleted lands are pruned from the index of offline members on their next join.
+ *  Trusts, untrusts and deletions keep both online directions up to date,
+ *  and "who of land X is online" is a set lookup rather than a walk over the full roster.
+ *  Broadcasts copy the online set on the world thread and hand it to a sender thread in batches,
+ *  one message to a big land never blocks a tick. Deleted lands notify their online members.
+ *  World thread only, apart from the sink.
+ */
+public class LandPresence implements LandChangeListener {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /** Delivers a message to one online player, called from the sender thread */
+    public interface MessageSink {
+        void send(UUID playerId, String message);
+    }
+
+    private LandManager landManager;
+    private MessageSink sink;
+    private int batchSize;
+    private Map<UUID, Set<UUID>> onlineByLand = new HashMap<>();
+    private Map<UUID, Set<UUID>> landsByPlayer = new HashMap<>();   // Every online player, with the lands they belong to
+    private Map<UUID, Set<UUID>> landsByMember = new HashMap<>();   // Every member, with the lands they belong to
+    private ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Lands-Broadcast");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LandPresence(LandManager landManager, MessageSink sink) {
+        this(landManager, sink, DEFAULT_BATCH_SIZE);
+    }
+
+    public LandPresence(LandManager landManager, MessageSink sink, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Broadcast batch size must be positive.");
+        }
+        this.landManager = landManager;
+        this.sink = sink;
+        this.batchSize = batchSize;
+        for (Land land : landManager.getAllLands()) {
+            for (UUID memberId : land.getMembers().keySet()) {
+                landsByMember.computeIfAbsent(memberId, id -> new HashSet<>()).add(land.getId());
+            }
+        }
+        landManager.addChangeListener(this);
+    }
+
+    /** Registers a player that came online with every land they belong to */
+    public void playerJoined(UUID playerId) {
+        Set<UUID> lands = new HashSet<>();
+        landsByPlayer.put(playerId, lands);
+        Set<UUID> memberOf = landsByMember.get(playerId);
+        if (memberOf == null) {
+            return;
+        }
+        for (Iterator<UUID> iterator = memberOf.iterator(); iterator.hasNext(); ) {
+            UUID landId = iterator.next();
+            Land land = landManager.getLandById(landId);
+            // Lands deleted while the player was offline, or imported again under the same id without them
+            if (land == null || !land.getMembers().containsKey(playerId)) {
+                iterator.remove();
+                continue;
+            }
+            lands.add(landId);
+            onlineByLand.computeIfAbsent(landId, id -> new HashSet<>()).add(playerId);
+        }
+        if (memberOf.isEmpty()) {
+            landsByMember.remove(playerId);
+        }
+    }
+
+    /** Removes a player that went offline */
+    public void playerQuit(UUID playerId) {
+        Set<UUID> lands = landsByPlayer.remove(playerId);
+        if (lands == null) {
+            return;
+        }
+        for (UUID landId : lands) {
+            removeOnline(landId, playerId);
+        }
+    }
+
+    public boolean isOnline(UUID playerId) {
+        return landsByPlayer.containsKey(playerId);
+    }
+
+    /** Online members of a land, read only */
+    public Set<UUID> getOnlineMembers(UUID landId) {
+        Set<UUID> online = onlineByLand.get(landId);
+        return online == null ? Collections.emptySet() : Collections.unmodifiableSet(online);
+    }
+
+    /** Lands an online player belongs to, read only */
+    public Set<UUID> getLandsOf(UUID playerId) {
+        Set<UUID> lands = landsByPlayer.get(playerId);
+        return lands == null ? Collections.emptySet() : Collections.unmodifiableSet(lands);
+    }
+
+    /** Sends a message to every online member of a land, returns the number of recipients */
+    public int broadcast(UUID landId, String message) {
+        Set<UUID> online = onlineByLand.get(landId);
+        if (online == null) {
+            return 0;
+        }
+        send(new ArrayList<>(online), message);
+        return online.size();
+    }
+
+    /** Sends what is queued and stops the sender thread, used on shutdown */
+    public void close() {
+        landManager.removeChangeListener(this);
+        sender.shutdown();
+        try {
+            if (!sender.awaitTermination(10, TimeUnit.SECONDS)) {
+                LOGGER.atWarning().log("Land broadcasts still pending at shutdown were dropped.");
+                sender.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Queues one task per batch of recipients, so other broadcasts interleave with a large one */
+    private void send(List<UUID> recipients, String message) {
+        for (int start = 0; start < recipients.size(); start += batchSize) {
+            List<UUID> batch = recipients.subList(start, Math.min(start + batchSize, recipients.size()));
+            sender.execute(() -> {
+                for (UUID playerId : batch) {
+                    try {
+                        sink.send(playerId, message);
+                    } catch (RuntimeException e) {
+                        LOGGER.atWarning().withCause(e).log("Could not deliver a land message to " + playerId + ".");
+                    }
+                }
+            });
+        }
+    }
+
+    private void addOnline(UUID landId, UUID playerId) {
+        Set<UUID> lands = landsByPlayer.get(playerId);
+        if (lands != null && lands.add(landId)) {
+            onlineByLand.computeIfAbsent(landId, id -> new HashSet<>()).add(playerId);
+        }
+    }
+
+    private void removeOnline(UUID landId, UUID playerId) {
+        Set<UUID> online = onlineByLand.get(landId);
+        if (online != null && online.remove(playerId) && online.isEmpty()) {
+            onlineByLand.remove(landId);
+        }
+    }
+
+    /** Membership tracking, world thread */
+
+    private void removeMember(UUID landId, UUID memberId) {
+        Set<UUID> lands = landsByMember.get(memberId);
+        if (lands != null && lands.remove(landId) && lands.isEmpty()) {
+            landsByMember.remove(memberId);
+        }
+    }
+
+    @Override
+    public void onLandCreated(Land land) {
+        for (UUID memberId : land.getMembers().keySet()) {
+            landsByMember.computeIfAbsent(memberId, id -> new HashSet<>()).add(land.getId());
+            addOnline(land.getId(), memberId);
+        }
+    }
+
+    @Override
+    public void onLandDeleted(Land land) {
+        Set<UUID> online = onlineByLand.remove(land.getId());
+        if (online == null) {
+            return;
+        }
+        for (UUID playerId : online) {
+            landsByPlayer.get(playerId).remove(land.getId());
+            removeMember(land.getId(), playerId);
+        }
+        send(new ArrayList<>(online), "Land " + land.getName() + " was deleted.");
+    }
+
+    @Override
+    public void onMemberChanged(Land land, UUID memberId, String roleName) {
+        if (roleName == null) {
+            removeMember(land.getId(), memberId);
+            Set<UUID> lands = landsByPlayer.get(memberId);
+            if (lands != null) {
+                lands.remove(land.getId());
+                removeOnline(land.getId(), memberId);
+            }
+        } else {
+            landsByMember.computeIfAbsent(memberId, id -> new HashSet<>()).add(land.getId());
+            addOnline(land.getId(), memberId);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.almond.lands.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.almond.lands.index.LandIndex;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.Region;
+
+/** Parallel check of the region invariants of loaded lands
+ *  Per land, regions must not overlap each other and must form one contiguous area,
+ *  subclaim regions must lie inside their parent. Across lands, no two lands may overlap
+ *  unless one is nested in the other, checked bucket by bucket on a spatial index of the checked lands.
+ *  Runs on decoded lands before they are registered, parents are given by id. Only reports problems,
+ *  the caller decides whether the lands are loaded at all.
+ */
+public class LandValidator {
+
+    /** Validates every land, returning one message per problem found
+     *  parentIds maps each subclaim to the id of its parent, which must be among the lands.
+     */
+    public static List<String> validate(Collection<Land> lands, Map<UUID, UUID> parentIds) {
+        Map<UUID, Land> byId = new HashMap<>((int) (lands.size() / 0.75f) + 1);
+        for (Land land : lands) {
+            byId.put(land.getId(), land);
+        }
+        List<String> problems = lands.parallelStream()
+            .flatMap(land -> {
+                UUID parentId = parentIds.get(land.getId());
+                return validateLand(land, parentId != null ? byId.get(parentId) : null).stream();
+            })
+            .collect(Collectors.toList());
+        LandIndex index = LandIndex.bulkLoad(lands);
+
+        // The same pair can share many chunks, report it once
+        Set<String> overlaps = ConcurrentHashMap.newKeySet();
+        index.getBucketKeys().parallelStream().forEach(key -> {
+            List<LandIndex.Entry> bucket = index.getBucket(key);
+            for (int i = 0; i < bucket.size(); i++) {
+                for (int j = i + 1; j < bucket.size(); j++) {
+                    LandIndex.Entry a = bucket.get(i);
+                    LandIndex.Entry b = bucket.get(j);
+                    if (a.getLand() == b.getLand() || isNested(a.getLand(), b.getLand(), parentIds)) {
+                        continue;
+                    }
+                    if (a.getRegion().overlaps(b.getRegion())) {
+                        boolean ordered = a.getLand().getId().compareTo(b.getLand().getId()) < 0;
+                        Land first = ordered ? a.getLand() : b.getLand();
+                        Land second = ordered ? b.getLand() : a.getLand();
+                        overlaps.add("Lands " + first.getName() + " and " + second.getName() + " overlap.");
+                    }
+                }
+            }
+        });
+        problems.addAll(overlaps);
+        return problems;
+    }
+
+    /** Checks the invariants of a single land, the parent check only applies once it is linked */
+    public static List<String> validateLand(Land land) {
+        return validateLand(land, land.getParent());
+    }
+
+    /** Checks the invariants of a single land against the given parent, null for a top level land */
+    private static List<String> validateLand(Land land, Land parent) {
+        List<String> problems = new ArrayList<>();
+        List<Region> regions = new ArrayList<>(land.getRegions());
+        for (int i = 0; i < regions.size(); i++) {
+            for (int j = i + 1; j < regions.size(); j++) {
+                if (regions.get(i).overlaps(regions.get(j))) {
+                    problems.add("Land " + land.getName() + " has overlapping regions.");
+                    i = regions.size();
+                    break;
+                }
+            }
+        }
+
+        // Flood fill over adjacency, every region must be reachable from the first
+        if (regions.size() > 1) {
+            boolean[] reached = new boolean[regions.size()];
+            int[] stack = new int[regions.size()];
+            int top = 0;
+            int count = 1;
+            reached[0] = true;
+            stack[top++] = 0;
+            while (top > 0) {
+                Region current = regions.get(stack[--top]);
+                for (int k = 0; k < regions.size(); k++) {
+                    if (!reached[k] && current.isAdjacentTo(regions.get(k))) {
+                        reached[k] = true;
+                        stack[top++] = k;
+                        count++;
+                    }
+                }
+            }
+            if (count != regions.size()) {
+                problems.add("Land " + land.getName() + " is split into disconnected parts.");
+            }
+        }
+
+        if (parent != null) {
+            for (Region region : regions) {
+                if (!parent.covers(region)) {
+                    problems.add("Subclaim " + land.getName() + " extends outside its parent " + parent.getName() + ".");
+                    break;
+                }
+            }
+        }
+        return problems;
+    }
+
+    /** Checks if one land is nested anywhere inside the other, following the parent ids */
+    private static boolean isNested(Land a, Land b, Map<UUID, UUID> parentIds) {
+        return isAncestor(b.getId(), a.getId(), parentIds) || isAncestor(a.getId(), b.getId(), parentIds);
+    }
+
+    private static boolean isAncestor(UUID ancestorId, UUID landId, Map<UUID, UUID> parentIds) {
+        int depth = 0;
+        for (UUID current = parentIds.get(landId); current != null && depth <= parentIds.size(); current = parentIds.get(current)) {
+            if (current.equals(ancestorId)) {
+                return true;
+            }
+            depth++;
+        }
+        return false;
+    }
+}
@@ -1,46 +1,250 @@
 package org.almond.lands.manager;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import org.almond.lands.index.LandIndex;
 import org.almond.lands.model.Land;
 import org.almond.lands.model.Region;
 import com.hypixel.hytale.math.vector.Vector3i;
 
+/** Corner selections of players, one session each, with a preview of what claiming the selection would do
+ *  Moving a corner marks the session, and once the corners stayed put for the debounce delay tick() takes
+ *  the preview from the index buckets under the selection: its volume, overlap with other lands, adjacency
+ *  to the selected land and the volume left under the land limit. A preview is only taken again when the
+ *  selected box or the selected land changed since the last one. It only reads the index and the limit, the
+ *  claim itself still goes through LandManager.
+ *  Sessions idle for longer than the TTL are dropped by tick(), and right away when the player quits.
+ *  Every call takes the current time from the caller, on the same clock tick() is given.
+ *  World thread only.
+ */
 public class SelectionManager {
-    
-    private Map<UUID, Vector3i> corner1 = new HashMap<>();
-    private Map<UUID, Vector3i> corner2 = new HashMap<>();
-    private Map<UUID, Boolean> selectionCompleted = new HashMap<>();
 
-    public void setCorner1(UUID playerId, Vector3i position) {
-        corner1.put(playerId, position);
+    public static final long DEFAULT_IDLE_TTL = 10 * 60 * 1000L;
+    public static final long DEFAULT_DEBOUNCE = 150;
+
+    /** Receives each new preview, called from tick() */
+    public interface PreviewSink {
+        void onPreview(UUID playerId, SelectionPreview preview);
+    }
+
+    private static class Session {
+        private Vector3i corner1;
+        private Vector3i corner2;
+        private boolean completed;
+        private long lastTouched;
+        private Region previewed;           // Box and land of the current preview, to skip unchanged ones
+        private Land previewedLand;
+        private long previewedVersion;
+        private SelectionPreview preview;
+    }
+
+    private LandManager landManager;
+    private long idleTtl;
+    private long debounce;
+    private PreviewSink sink;
+    private LinkedHashMap<UUID, Session> sessions = new LinkedHashMap<>();   // Least recently touched first
+    private Set<UUID> pendingPreviews = new LinkedHashSet<>();
+
+    public SelectionManager(LandManager landManager) {
+        this(landManager, DEFAULT_IDLE_TTL, DEFAULT_DEBOUNCE, null);
+    }
+
+    public SelectionManager(LandManager landManager, long idleTtl, long debounce, PreviewSink sink) {
+        if (idleTtl <= 0) {
+            throw new IllegalArgumentException("Selection idle TTL must be positive.");
+        }
+        if (debounce < 0) {
+            throw new IllegalArgumentException("Selection preview debounce cannot be negative.");
+        }
+        this.landManager = landManager;
+        this.idleTtl = idleTtl;
+        this.debounce = debounce;
+        this.sink = sink;
+    }
+
+    public void setCorner1(UUID playerId, Vector3i position, long now) {
+        touch(playerId, now).corner1 = position;
+        pendingPreviews.add(playerId);
     }
 
-    public void setCorner2(UUID playerId, Vector3i position) {
-        corner2.put(playerId, position);
+    public void setCorner2(UUID playerId, Vector3i position, long now) {
+        touch(playerId, now).corner2 = position;
+        pendingPreviews.add(playerId);
     }
 
     public boolean isSelectionCompleted(UUID playerId) {
-        return corner1.containsKey(playerId) && corner2.containsKey(playerId) && selectionCompleted.getOrDefault(playerId, false);
+        Session session = sessions.get(playerId);
+        return session != null && session.corner1 != null && session.corner2 != null && session.completed;
     }
 
     public Region getSelection(UUID playerId) {
         if (!isSelectionCompleted(playerId)) {
             return null;
         }
-        return new Region(corner1.get(playerId), corner2.get(playerId));
+        Session session = sessions.get(playerId);
+        return new Region(session.corner1, session.corner2);
     }
 
-    public void completeSelection(UUID playerId) {
-        if (corner1.containsKey(playerId) && corner2.containsKey(playerId)) {
-            selectionCompleted.put(playerId, true);
+    public void completeSelection(UUID playerId, long now) {
+        Session session = sessions.get(playerId);
+        if (session != null && session.corner1 != null && session.corner2 != null) {
+            touch(playerId, now).completed = true;
         }
     }
 
     public void clearSelection(UUID playerId) {
-        corner1.remove(playerId);
-        corner2.remove(playerId);
-        selectionCompleted.remove(playerId);
+        sessions.remove(playerId);
+        pendingPreviews.remove(playerId);
+    }
+
+    /** Drops the session of a player that went offline */
+    public void playerQuit(UUID playerId) {
+        clearSelection(playerId);
+    }
+
+    /** Latest preview of a player's selection, null until both corners are set and the debounce passed */
+    public SelectionPreview getPreview(UUID playerId) {
+        Session session = sessions.get(playerId);
+        return session != null ? session.preview : null;
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /** Evicts idle sessions and takes the previews whose corners settled, called once per tick */
+    public void tick(long now) {
+        Iterator<Session> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            Session session = iterator.next();
+            if (now - session.lastTouched < idleTtl) {
+                break;
+            }
+            iterator.remove();
+        }
+        Iterator<UUID> pending = pendingPreviews.iterator();
+        while (pending.hasNext()) {
+            UUID playerId = pending.next();
+            Session session = sessions.get(playerId);
+            if (session == null) {
+                pending.remove();
+                continue;
+            }
+            if (now - session.lastTouched < debounce) {
+                continue;
+            }
+            pending.remove();
+            if (session.corner1 != null && session.corner2 != null && preview(playerId, session) && sink != null) {
+                sink.onPreview(playerId, session.preview);
+            }
+        }
+    }
+
+    /** Moves a player's session to the most recently touched end, creating it if needed */
+    private Session touch(UUID playerId, long now) {
+        Session session = sessions.remove(playerId);
+        if (session == null) {
+            session = new Session();
+        }
+        session.lastTouched = now;
+        sessions.put(playerId, session);
+        return session;
+    }
+
+    /** Takes the preview of a session, false if neither the box nor the selected land changed */
+    private boolean preview(UUID playerId, Session session) {
+        Land land = landManager.getSelectedLandForPlayer(playerId);
+        Region selection = new Region(session.corner1, session.corner2);
+        if (land != null) {
+            selection = land.getClaimMode().apply(selection);
+        }
+        if (session.preview != null && selection.equals(session.previewed) && land == session.previewedLand
+            && (land == null || land.getVersion() == session.previewedVersion)) {
+            return false;
+        }
+        Land root = land;
+        while (root != null && root.isSubclaim()) {
+            root = root.getParent();
+        }
+
+        long foreignOverlap = 0;
+        long ownOverlap = 0;
+        boolean adjacent = false;
+        Set<UUID> foreignLands = new HashSet<>();
+        Map<LandIndex.Entry, Boolean> seen = new IdentityHashMap<>();
+        // One block around the selection, so regions that only touch it are found for adjacency
+        int minChunkX = (selection.getCorner1().getX() - 1) >> LandIndex.CHUNK_SHIFT;
+        int minChunkZ = (selection.getCorner1().getZ() - 1) >> LandIndex.CHUNK_SHIFT;
+        int maxChunkX = (selection.getCorner2().getX() + 1) >> LandIndex.CHUNK_SHIFT;
+        int maxChunkZ = (selection.getCorner2().getZ() + 1) >> LandIndex.CHUNK_SHIFT;
+        LandIndex index = landManager.getIndex();
+        List<List<LandIndex.Entry>> buckets = new ArrayList<>();
+        long chunks = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+        // A selection wider than the claimed world walks the occupied buckets instead of every chunk in it
+        if (chunks > index.getBucketCount()) {
+            for (long chunkKey : index.getBucketKeys()) {
+                int chunkX = (int) (chunkKey >> 32);
+                int chunkZ = (int) chunkKey;
+                if (chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ) {
+                    buckets.add(index.getBucket(chunkKey));
+                }
+            }
+        } else {
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    buckets.add(index.getBucket(LandIndex.chunkKey(chunkX, chunkZ)));
+                }
+            }
+        }
+        for (List<LandIndex.Entry> bucket : buckets) {
+            for (int i = 0; i < bucket.size(); i++) {
+                LandIndex.Entry entry = bucket.get(i);
+                if (seen.put(entry, Boolean.TRUE) != null) {
+                    continue;
+                }
+                Region region = entry.getRegion();
+                if (entry.getLand() == land && !adjacent) {
+                    adjacent = region.overlaps(selection) || region.isAdjacentTo(selection);
+                }
+                // Subclaims lie inside their parents, only top level regions count towards overlap
+                if (entry.getDepth() > 0) {
+                    continue;
+                }
+                Region overlap = region.intersection(selection);
+                if (overlap == null) {
+                    continue;
+                }
+                if (entry.getLand() == root) {
+                    ownOverlap += overlap.getVolume();
+                } else {
+                    foreignOverlap += overlap.getVolume();
+                    foreignLands.add(entry.getLand().getId());
+                }
+            }
+        }
+
+        // Subclaims are not limited, a new land starts from nothing
+        long headroom = SelectionPreview.UNLIMITED;
+        long maxVolume = landManager.getMaxLandVolume();
+        if (maxVolume > 0 && (land == null || !land.isSubclaim())) {
+            long claimed = land != null ? land.getVolume() : 0;
+            headroom = maxVolume - claimed - (selection.getVolume() - ownOverlap);
+        }
+        session.preview = new SelectionPreview(land != null ? land.getId() : null, selection.getVolume(), foreignOverlap,
+                                               foreignLands.isEmpty() ? Collections.emptySet() : foreignLands,
+                                               adjacent, headroom);
+        session.previewed = selection;
+        session.previewedLand = land;
+        session.previewedVersion = land != null ? land.getVersion() : 0;
+        return true;
     }
 }
\ No newline at end of file
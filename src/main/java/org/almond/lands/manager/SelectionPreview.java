@@ -0,0 +1,64 @@
+package org.almond.lands.manager;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+
+/** What claiming a selection would do, computed while the player is still moving the corners
+ *  Taken against the land the player had selected at the time, immutable.
+ */
+public final class SelectionPreview {
+
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final UUID landId;
+    private final long volume;
+    private final long foreignOverlap;
+    private final Set<UUID> foreignLands;
+    private final boolean adjacent;
+    private final long headroom;
+
+    SelectionPreview(UUID landId, long volume, long foreignOverlap, Set<UUID> foreignLands, boolean adjacent,
+                     long headroom) {
+        this.landId = landId;
+        this.volume = volume;
+        this.foreignOverlap = foreignOverlap;
+        this.foreignLands = Collections.unmodifiableSet(foreignLands);
+        this.adjacent = adjacent;
+        this.headroom = headroom;
+    }
+
+    /** Selected land the preview was taken for, null if the player had none */
+    public UUID getLandId() {
+        return landId;
+    }
+
+    /** Blocks in the selection, with the land's claim mode applied */
+    public long getVolume() {
+        return volume;
+    }
+
+    /** Blocks of the selection already claimed by other top level lands */
+    public long getForeignOverlap() {
+        return foreignOverlap;
+    }
+
+    /** Ids of the other top level lands the selection overlaps */
+    public Set<UUID> getForeignLands() {
+        return foreignLands;
+    }
+
+    /** Whether the selection touches or overlaps a region of the selected land */
+    public boolean isAdjacent() {
+        return adjacent;
+    }
+
+    /** Blocks the land could still claim after this selection, negative when it goes past the limit */
+    public long getHeadroom() {
+        return headroom;
+    }
+
+    public boolean isWithinLimit() {
+        return headroom >= 0;
+    }
+}
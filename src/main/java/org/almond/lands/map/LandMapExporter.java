@@ -0,0 +1,366 @@
+package org.almond.lands.map;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.almond.lands.manager.LandChangeListener;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandFlag;
+import org.almond.lands.model.Region;
+import com.google.gson.stream.JsonWriter;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+/** Incremental web map export of land outlines, for Dynmap style map integrations
+ *  Each land's footprint is computed by LandOutline and cached as a GeoJSON feature together with the land version
+ *  it was computed at. The world is cut into square tiles, a land is listed in every tile its bounds touch.
+ *  An update only recomputes lands that changed since the last one and only rewrites the tiles those lands
+ *  were or are in, so keeping the map current costs in proportion to the edits.
+ *
+ *  Files, under the map directory:
+ *    tiles/{tx}_{tz}.geojson   FeatureCollection of the lands in that tile, coordinates are block x and z
+ *    manifest.json             tile size, export generation and the generation each tile last changed at,
+ *                              clients poll it and refetch only the tiles that moved on
+ *  Updates capture everything on the world thread and write the files on a background thread.
+ */
+public class LandMapExporter implements LandChangeListener {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    public static final int DEFAULT_TILE_SHIFT = 9; // 512 block tiles
+    public static final String TILE_DIRECTORY = "tiles";
+    public static final String MANIFEST_FILE = "manifest.json";
+
+    private static final String TILE_SUFFIX = ".geojson";
+
+    /** Cached footprint of one land */
+    private static class Outline {
+        long version;
+        String feature;     // GeoJSON Feature
+        long[] tiles;
+    }
+
+    private Path directory;
+    private LandManager landManager;
+    private int tileShift;
+    private double tolerance;
+    private Map<UUID, Outline> outlines = new HashMap<>();
+    private Map<Long, Set<UUID>> tileLands = new HashMap<>();
+    private Map<Long, Long> tileGenerations = new HashMap<>();
+    private Set<UUID> dirty = new LinkedHashSet<>();    // World thread only
+    private long generation;
+    private long computed;
+    private boolean cleared;                             // Tiles of a previous run were removed
+    private ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Lands-Map");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> round;
+
+    public LandMapExporter(Path directory, LandManager landManager) {
+        this(directory, landManager, DEFAULT_TILE_SHIFT, 0.0);
+    }
+
+    /** Creates the exporter with tiles of 2^tileShift blocks, outlines simplified within tolerance blocks */
+    public LandMapExporter(Path directory, LandManager landManager, int tileShift, double tolerance) {
+        if (tileShift < 4 || tileShift > 16) {
+            throw new IllegalArgumentException("Tile shift must be between 4 and 16.");
+        }
+        this.directory = directory;
+        this.landManager = landManager;
+        this.tileShift = tileShift;
+        this.tolerance = tolerance;
+    }
+
+    /** Starts tracking changes, the first update exports every land */
+    public void start() {
+        for (Land land : landManager.getAllLands()) {
+            dirty.add(land.getId());
+        }
+        landManager.addChangeListener(this);
+    }
+
+    /** Exports the lands changed since the last update, must run on the world thread
+     *  Returns false without doing anything while the previous update is still writing.
+     */
+    public boolean update() {
+        if (round != null && !round.isDone()) {
+            return false;
+        }
+        if (dirty.isEmpty() && cleared) {
+            return true;
+        }
+        Set<Long> changedTiles = new HashSet<>();
+        for (UUID landId : dirty) {
+            Land land = landManager.getLandById(landId);
+            Outline old = outlines.get(landId);
+            if (land != null && old != null && old.version == land.getVersion()) {
+                continue;
+            }
+            if (old != null) {
+                for (long tile : old.tiles) {
+                    removeFromTile(tile, landId);
+                    changedTiles.add(tile);
+                }
+                outlines.remove(landId);
+            }
+            if (land == null) {
+                continue;
+            }
+            Outline outline = outline(land);
+            for (long tile : outline.tiles) {
+                tileLands.computeIfAbsent(tile, key -> new HashSet<>()).add(landId);
+                changedTiles.add(tile);
+            }
+            outlines.put(landId, outline);
+            computed++;
+        }
+        dirty.clear();
+
+        generation++;
+        Map<Long, String> tiles = new HashMap<>();
+        for (long tile : changedTiles) {
+            Set<UUID> lands = tileLands.get(tile);
+            if (lands == null) {
+                tileGenerations.remove(tile);
+                tiles.put(tile, null);
+                continue;
+            }
+            StringBuilder collection = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[");
+            boolean first = true;
+            for (UUID landId : lands) {
+                collection.append(first ? "" : ",").append(outlines.get(landId).feature);
+                first = false;
+            }
+            tiles.put(tile, collection.append("]}").toString());
+            tileGenerations.put(tile, generation);
+        }
+        String manifest = manifest();
+        boolean clear = !cleared;
+        cleared = true;
+        round = writer.submit(() -> write(tiles, manifest, clear));
+        return true;
+    }
+
+    /** Writes what is pending and stops the writer thread, used on shutdown */
+    public void close() throws IOException {
+        landManager.removeChangeListener(this);
+        awaitRound();
+        update();
+        awaitRound();
+        writer.shutdown();
+    }
+
+    /** Number of outlines computed since start, every one was a land that changed */
+    public long getComputedCount() {
+        return computed;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    private void removeFromTile(long tile, UUID landId) {
+        Set<UUID> lands = tileLands.get(tile);
+        if (lands != null && lands.remove(landId) && lands.isEmpty()) {
+            tileLands.remove(tile);
+        }
+    }
+
+    /** Computes the footprint of a land and the tiles its bounds touch */
+    private Outline outline(Land land) {
+        List<List<int[]>> polygons = LandOutline.compute(land.getRegions(), tolerance);
+        int minX = Integer.MAX_VALUE;
+        int minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxZ = Integer.MIN_VALUE;
+        for (Region region : land.getRegions()) {
+            minX = Math.min(minX, region.getCorner1().getX());
+            minZ = Math.min(minZ, region.getCorner1().getZ());
+            maxX = Math.max(maxX, region.getCorner2().getX());
+            maxZ = Math.max(maxZ, region.getCorner2().getZ());
+        }
+        List<Long> tiles = new ArrayList<>();
+        if (!land.getRegions().isEmpty()) {
+            for (int tx = minX >> tileShift; tx <= maxX >> tileShift; tx++) {
+                for (int tz = minZ >> tileShift; tz <= maxZ >> tileShift; tz++) {
+                    tiles.add(tileKey(tx, tz));
+                }
+            }
+        }
+
+        Outline outline = new Outline();
+        outline.version = land.getVersion();
+        outline.feature = feature(land, polygons);
+        outline.tiles = new long[tiles.size()];
+        for (int i = 0; i < tiles.size(); i++) {
+            outline.tiles[i] = tiles.get(i);
+        }
+        return outline;
+    }
+
+    private static String feature(Land land, List<List<int[]>> polygons) {
+        StringWriter out = new StringWriter();
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.beginObject();
+            json.name("type").value("Feature");
+            json.name("id").value(land.getId().toString());
+
+            json.name("properties").beginObject();
+            json.name("name").value(land.getName());
+            json.name("owner").value(land.getOwner().toString());
+            json.name("parent").value(land.getParent() != null ? land.getParent().getId().toString() : null);
+            json.name("depth").value(land.getDepth());
+            json.name("flags").beginArray();
+            for (LandFlag flag : LandFlag.values()) {
+                if (land.hasFlag(flag)) {
+                    json.value(flag.name());
+                }
+            }
+            json.endArray();
+            json.endObject();
+
+            json.name("geometry").beginObject();
+            json.name("type").value("MultiPolygon");
+            json.name("coordinates").beginArray();
+            for (List<int[]> polygon : polygons) {
+                json.beginArray();
+                for (int[] ring : polygon) {
+                    // GeoJSON rings repeat their first vertex at the end
+                    json.beginArray();
+                    for (int k = 0; k <= ring.length; k += 2) {
+                        json.beginArray().value(ring[k % ring.length]).value(ring[(k + 1) % ring.length]).endArray();
+                    }
+                    json.endArray();
+                }
+                json.endArray();
+            }
+            json.endArray();
+            json.endObject();
+            json.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter does not fail
+        }
+        return out.toString();
+    }
+
+    private String manifest() {
+        StringWriter out = new StringWriter();
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.beginObject();
+            json.name("tileSize").value(1 << tileShift);
+            json.name("generation").value(generation);
+            json.name("updated").value(System.currentTimeMillis());
+            json.name("tiles").beginObject();
+            for (Map.Entry<Long, Long> tile : tileGenerations.entrySet()) {
+                json.name(tileName(tile.getKey())).value(tile.getValue());
+            }
+            json.endObject();
+            json.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /** Writer thread, tiles first so the manifest never points at a tile that is not there yet */
+    private void write(Map<Long, String> tiles, String manifest, boolean clear) {
+        try {
+            Path tileDirectory = directory.resolve(TILE_DIRECTORY);
+            Files.createDirectories(tileDirectory);
+            if (clear) {
+                // Tiles of a previous run may hold lands deleted since, the first update writes every live tile
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(tileDirectory, "*" + TILE_SUFFIX)) {
+                    for (Path file : stream) {
+                        Files.delete(file);
+                    }
+                }
+            }
+            for (Map.Entry<Long, String> tile : tiles.entrySet()) {
+                Path file = tileDirectory.resolve(tileName(tile.getKey()) + TILE_SUFFIX);
+                if (tile.getValue() == null) {
+                    Files.deleteIfExists(file);
+                } else {
+                    writeAtomically(file, tile.getValue());
+                }
+            }
+            writeAtomically(directory.resolve(MANIFEST_FILE), manifest);
+        } catch (IOException e) {
+            // The cache already moved on, the affected tiles are rewritten at their next change or on restart
+            LOGGER.atSevere().withCause(e).log("Failed to write " + tiles.size() + " map tiles.");
+        }
+    }
+
+    private static void writeAtomically(Path file, String content) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(content);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void awaitRound() throws IOException {
+        if (round == null) {
+            return;
+        }
+        try {
+            round.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the map export.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Map export failed.", e.getCause());
+        }
+    }
+
+    private static long tileKey(int tx, int tz) {
+        return ((long) tx << 32) | (tz & 0xFFFFFFFFL);
+    }
+
+    private static String tileName(long key) {
+        return (int) (key >> 32) + "_" + (int) key;
+    }
+
+    /** Change tracking, world thread. Members and roles do not show on the map */
+
+    @Override
+    public void onLandCreated(Land land) {
+        dirty.add(land.getId());
+    }
+
+    @Override
+    public void onLandDeleted(Land land) {
+        dirty.add(land.getId());
+    }
+
+    @Override
+    public void onRegionsChanged(Land land, Set<Region> added, Set<Region> removed) {
+        dirty.add(land.getId());
+    }
+
+    @Override
+    public void onFlagsChanged(Land land, Region region) {
+        if (region == null) {
+            dirty.add(land.getId());
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package org.almond.lands.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.almond.lands.model.Region;
+
+/** 2D footprint of a land, the union of its regions' XZ rectangles as polygons
+ *  Region edges are compressed into a grid of distinct coordinates, covered cells are marked and the boundary
+ *  between covered and free cells is traced into rings, counterclockwise around land and clockwise around holes.
+ *  Collinear vertices are always dropped, which is lossless for these axis aligned outlines,
+ *  a positive tolerance additionally simplifies staircase edges with Douglas-Peucker.
+ *
+ *  Coordinates are block edges, a region from x 0 to 15 spans 0 to 16.
+ *  Each polygon is a list of rings, outer ring first, each ring a flat x, z array without the closing vertex.
+ */
+public class LandOutline {
+
+    // Directions in counterclockwise order, so +1 is a left turn
+    private static final int[] DIRECTION_X = { 1, 0, -1, 0 };
+    private static final int[] DIRECTION_Z = { 0, 1, 0, -1 };
+    private static final int[] TURNS = { 1, 0, 3 }; // Left, straight, right
+
+    /** Computes the outline polygons of the given regions */
+    public static List<List<int[]>> compute(Collection<Region> regions, double tolerance) {
+        if (regions.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int[] xs = new int[regions.size() * 2];
+        int[] zs = new int[regions.size() * 2];
+        int n = 0;
+        for (Region region : regions) {
+            xs[n] = region.getCorner1().getX();
+            xs[n + 1] = region.getCorner2().getX() + 1;
+            zs[n] = region.getCorner1().getZ();
+            zs[n + 1] = region.getCorner2().getZ() + 1;
+            n += 2;
+        }
+        xs = distinctSorted(xs);
+        zs = distinctSorted(zs);
+
+        int width = xs.length - 1;
+        int height = zs.length - 1;
+        boolean[] covered = new boolean[width * height];
+        for (Region region : regions) {
+            int x0 = Arrays.binarySearch(xs, region.getCorner1().getX());
+            int x1 = Arrays.binarySearch(xs, region.getCorner2().getX() + 1);
+            int z0 = Arrays.binarySearch(zs, region.getCorner1().getZ());
+            int z1 = Arrays.binarySearch(zs, region.getCorner2().getZ() + 1);
+            for (int i = x0; i < x1; i++) {
+                for (int j = z0; j < z1; j++) {
+                    covered[i * height + j] = true;
+                }
+            }
+        }
+
+        // Directed boundary edges with the covered cell on their left, keyed by start vertex and direction
+        Map<Long, Boolean> edges = new HashMap<>();
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
+                if (!covered[i * height + j]) {
+                    continue;
+                }
+                if (j == 0 || !covered[i * height + j - 1]) {
+                    edges.put(edgeKey(i, j, 0), Boolean.TRUE);
+                }
+                if (i == width - 1 || !covered[(i + 1) * height + j]) {
+                    edges.put(edgeKey(i + 1, j, 1), Boolean.TRUE);
+                }
+                if (j == height - 1 || !covered[i * height + j + 1]) {
+                    edges.put(edgeKey(i + 1, j + 1, 2), Boolean.TRUE);
+                }
+                if (i == 0 || !covered[(i - 1) * height + j]) {
+                    edges.put(edgeKey(i, j + 1, 3), Boolean.TRUE);
+                }
+            }
+        }
+
+        List<int[]> outers = new ArrayList<>();
+        List<int[]> holes = new ArrayList<>();
+        while (!edges.isEmpty()) {
+            long start = edges.keySet().iterator().next();
+            List<Integer> ring = new ArrayList<>();
+            long edge = start;
+            while (true) {
+                edges.remove(edge);
+                int i = (int) (edge >> 34);
+                int j = (int) ((edge >> 2) & 0xFFFFFFFFL);
+                int direction = (int) (edge & 3);
+                ring.add(xs[i]);
+                ring.add(zs[j]);
+                int ni = i + DIRECTION_X[direction];
+                int nj = j + DIRECTION_Z[direction];
+                // At a vertex where two cells touch diagonally prefer the left turn, keeping each ring simple
+                long next = -1;
+                for (int turn : TURNS) {
+                    long candidate = edgeKey(ni, nj, (direction + turn) & 3);
+                    if (edges.containsKey(candidate) || candidate == start) {
+                        next = candidate;
+                        break;
+                    }
+                }
+                if (next == start || next < 0) {
+                    break;
+                }
+                edge = next;
+            }
+            int[] flat = dropCollinear(ring);
+            if (tolerance > 0) {
+                flat = simplify(flat, tolerance);
+            }
+            if (flat.length < 6) {
+                continue;
+            }
+            (signedArea(flat) > 0 ? outers : holes).add(flat);
+        }
+
+        List<List<int[]>> polygons = new ArrayList<>();
+        for (int[] outer : outers) {
+            List<int[]> polygon = new ArrayList<>();
+            polygon.add(outer);
+            polygons.add(polygon);
+        }
+        // Islands inside holes are outer rings inside other outer rings, a hole belongs to the innermost one around it
+        long[] areas = new long[outers.size()];
+        for (int k = 0; k < areas.length; k++) {
+            areas[k] = signedArea(outers.get(k));
+        }
+        for (int[] hole : holes) {
+            int smallest = -1;
+            for (int k = 0; k < areas.length; k++) {
+                if ((smallest < 0 || areas[k] < areas[smallest]) && contains(outers.get(k), hole[0], hole[1], hole)) {
+                    smallest = k;
+                }
+            }
+            if (smallest >= 0) {
+                polygons.get(smallest).add(hole);
+            }
+        }
+        return polygons;
+    }
+
+    private static long edgeKey(int i, int j, int direction) {
+        return ((long) i << 34) | ((long) j << 2) | direction;
+    }
+
+    private static int[] distinctSorted(int[] values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
+    /** Keeps only the corners of a traced ring */
+    private static int[] dropCollinear(List<Integer> ring) {
+        int count = ring.size() / 2;
+        int[] out = new int[ring.size()];
+        int kept = 0;
+        for (int k = 0; k < count; k++) {
+            int px = ring.get(((k + count - 1) % count) * 2);
+            int pz = ring.get(((k + count - 1) % count) * 2 + 1);
+            int x = ring.get(k * 2);
+            int z = ring.get(k * 2 + 1);
+            int nx = ring.get(((k + 1) % count) * 2);
+            int nz = ring.get(((k + 1) % count) * 2 + 1);
+            if ((long) (x - px) * (nz - z) - (long) (z - pz) * (nx - x) != 0) {
+                out[kept++] = x;
+                out[kept++] = z;
+            }
+        }
+        return Arrays.copyOf(out, kept);
+    }
+
+    /** Douglas-Peucker on a closed ring, split at the vertex farthest from the first one */
+    private static int[] simplify(int[] ring, double tolerance) {
+        int count = ring.length / 2;
+        if (count <= 4) {
+            return ring;
+        }
+        int far = 0;
+        long farDistance = -1;
+        for (int k = 1; k < count; k++) {
+            long dx = ring[k * 2] - ring[0];
+            long dz = ring[k * 2 + 1] - ring[1];
+            if (dx * dx + dz * dz > farDistance) {
+                farDistance = dx * dx + dz * dz;
+                far = k;
+            }
+        }
+        boolean[] keep = new boolean[count + 1];
+        keep[0] = true;
+        keep[far] = true;
+        keep[count] = true;
+        mark(ring, 0, far, tolerance, keep);
+        mark(ring, far, count, tolerance, keep);
+        int kept = 0;
+        for (int k = 0; k < count; k++) {
+            if (keep[k]) {
+                kept++;
+            }
+        }
+        if (kept < 3) {
+            return ring;
+        }
+        int[] out = new int[kept * 2];
+        int position = 0;
+        for (int k = 0; k < count; k++) {
+            if (keep[k]) {
+                out[position++] = ring[k * 2];
+                out[position++] = ring[k * 2 + 1];
+            }
+        }
+        return out;
+    }
+
+    /** Marks the vertices between first and last that deviate more than the tolerance, index count wraps to 0 */
+    private static void mark(int[] ring, int first, int last, double tolerance, boolean[] keep) {
+        int count = ring.length / 2;
+        if (last - first < 2) {
+            return;
+        }
+        double ax = ring[first * 2];
+        double az = ring[first * 2 + 1];
+        double bx = ring[(last % count) * 2];
+        double bz = ring[(last % count) * 2 + 1];
+        double length = Math.hypot(bx - ax, bz - az);
+        int worst = -1;
+        double worstDistance = tolerance;
+        for (int k = first + 1; k < last; k++) {
+            double px = ring[k * 2];
+            double pz = ring[k * 2 + 1];
+            double distance = length == 0
+                ? Math.hypot(px - ax, pz - az)
+                : Math.abs((bx - ax) * (az - pz) - (ax - px) * (bz - az)) / length;
+            if (distance > worstDistance) {
+                worstDistance = distance;
+                worst = k;
+            }
+        }
+        if (worst >= 0) {
+            keep[worst] = true;
+            mark(ring, first, worst, tolerance, keep);
+            mark(ring, worst, last, tolerance, keep);
+        }
+    }
+
+    /** Twice the signed area, positive for counterclockwise rings */
+    private static long signedArea(int[] ring) {
+        int count = ring.length / 2;
+        long area = 0;
+        for (int k = 0; k < count; k++) {
+            int next = (k + 1) % count;
+            area += (long) ring[k * 2] * ring[next * 2 + 1] - (long) ring[next * 2] * ring[k * 2 + 1];
+        }
+        return area;
+    }
+
+    /** Checks if a hole lies inside an outer ring, testing the midpoint of its first edge against the ring */
+    private static boolean contains(int[] outer, int x, int z, int[] hole) {
+        double px = (x + hole[2]) / 2.0;
+        double pz = (z + hole[3]) / 2.0;
+        int count = outer.length / 2;
+        boolean inside = false;
+        for (int k = 0, previous = count - 1; k < count; previous = k++) {
+            double xk = outer[k * 2];
+            double zk = outer[k * 2 + 1];
+            double xp = outer[previous * 2];
+            double zp = outer[previous * 2 + 1];
+            if ((zk > pz) != (zp > pz) && px < (xp - xk) * (pz - zk) / (zp - zk) + xk) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
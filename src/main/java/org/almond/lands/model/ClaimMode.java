@@ -0,0 +1,21 @@
+package org.almond.lands.model;
+
+public enum ClaimMode {
+    CUBOID("Claims are 3D cuboids"),
+    COLUMN("Claims are XZ rectangles from bedrock to sky");
+
+    private final String description;
+
+    ClaimMode(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return this.description;
+    }
+
+    /** Converts a selected region to the shape used by this mode */
+    public Region apply(Region region) {
+        return this == COLUMN ? region.toColumn() : region;
+    }
+}
@@ -5,6 +5,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.UUID;
@@ -18,10 +19,23 @@ public class Land {
     private String name;                // Display name
     private UUID owner;                 // Owner's player UUID
     private Set<Region> regions;       // Claimed cuboid regions
-    private Map<UUID, String> members;  // Player UUID -> Role name
-    private Map<String, LandRole> roles; // Role name -> Role definition
+    private LandDetails details;        // Members and roles, null while not resident
+    private LandDetailSource detailSource; // Loads the details back on first access
+    private boolean detailsReferenced;  // Accessed since the detail cache last looked, see LandDetailCache
+    private long outsiderPermissions;   // Permission mask of the outsider role, kept in the header
+    private long memberFilter;          // Two bit bloom filter over member UUIDs, kept in the header
+    private int memberCount;            // Number of members, kept in the header
     private long createdAt;             // Timestamp
     private long volume;                // Cached volume of the land
+    private ClaimMode claimMode;        // Cuboid or full height column claims
+    private Land parent;                // Enclosing land if this is a subclaim, null for top level lands
+    private Set<Land> subclaims = new HashSet<>(); // Directly nested subclaims
+    private int depth;                  // Nesting depth, 0 for top level lands
+    private long flags = LandFlag.landDefaults(); // Environment flag bitset, see LandFlag
+    private long version = 1;           // Bumped by every mutation, see markDirty
+    private volatile long savedVersion; // Last version written to disk, lands start out unsaved
+
+    public static final String OUTSIDER_ROLE = "outsider";
 
     /**
      * Returns a map of default roles for a land.
@@ -51,7 +65,7 @@ public class Land {
         defaultRoles.put("member", new LandRole("member", memberPerms));
 
         // Outsider: no permissions
-        defaultRoles.put("outsider", new LandRole("outsider", EnumSet.noneOf(LandPermission.class)));
+        defaultRoles.put(OUTSIDER_ROLE, new LandRole(OUTSIDER_ROLE, EnumSet.noneOf(LandPermission.class)));
 
         return defaultRoles;
     }
@@ -59,27 +73,54 @@ public class Land {
     /** Constructor to create a land with given parameters */
     public Land(UUID id, String name, UUID owner, Set<Region> regions, Map<UUID, String> members,
                 Map<String, LandRole> roles, long createdAt) {
+        this(id, name, owner, regions, members, roles, createdAt, ClaimMode.CUBOID);
+    }
+
+    /** Constructor to create a land with an explicit claim mode */
+    public Land(UUID id, String name, UUID owner, Set<Region> regions, Map<UUID, String> members,
+                Map<String, LandRole> roles, long createdAt, ClaimMode claimMode) {
         this.id = id;
         this.name = name;
         this.owner = owner;
         this.regions = new HashSet<>(regions);
-        this.members = members;
         // If roles is null, use default roles
-        this.roles = (roles != null) ? roles : getDefaultRoles();
+        this.details = new LandDetails(members, (roles != null) ? roles : getDefaultRoles());
+        this.createdAt = createdAt;
+        this.claimMode = claimMode;
+        this.volume = getVolume();
+        this.memberCount = this.details.getMembers().size();
+        refreshOutsiderPermissions();
+        refreshMemberFilter();
+    }
+
+    /** Constructor for a land loaded without its details, they are loaded from the source on first access */
+    public Land(UUID id, String name, UUID owner, Set<Region> regions, long createdAt, ClaimMode claimMode,
+                long outsiderPermissions, long memberFilter, int memberCount, LandDetailSource detailSource) {
+        this.id = id;
+        this.name = name;
+        this.owner = owner;
+        this.regions = new HashSet<>(regions);
         this.createdAt = createdAt;
+        this.claimMode = claimMode;
         this.volume = getVolume();
+        this.outsiderPermissions = outsiderPermissions;
+        this.memberFilter = memberFilter;
+        this.memberCount = memberCount;
+        this.detailSource = detailSource;
     }
 
     /** Claims new regions for the land */
     public void claimRegions(Set<Region> newRegions) {
         this.regions.addAll(newRegions);
         this.volume = getVolume();
+        markDirty();
     }
 
     /** Unclaims regions from the land */
     public void unclaimRegions(Set<Region> regionsToUnclaim) {
         this.regions.removeAll(regionsToUnclaim);
         this.volume = getVolume();
+        markDirty();
     }
 
     /** Merges adjacent regions to optimize storage */
@@ -90,6 +131,7 @@ public class Land {
             for (Region mRegion : merged) {
                 if ((mRegion.isAdjacentTo(region)) && 
                     !(mRegion.overlaps(region)) && 
+                    (mRegion.hasSameFlagOverrides(region)) && 
                     (mRegion.isSamePlaneAs(region))) {
                     Region newRegion = mRegion.merge(region);
                     merged.remove(mRegion);
@@ -105,6 +147,22 @@ public class Land {
         }
         // Reset regions to merged list
         this.regions = merged;
+        markDirty();
+    }
+
+    /** Rebuilds the adjacency graph between the regions of this land
+     *  Adjacency is not persisted, so loaded and replayed lands relink their regions after decoding.
+     */
+    public void rebuildAdjacency() {
+        for (Region region : this.regions) {
+            region.clearAdjacentRegions();
+        }
+        List<Region> list = new ArrayList<>(this.regions);
+        for (int i = 0; i < list.size(); i++) {
+            for (int j = i + 1; j < list.size(); j++) {
+                list.get(i).addAdjacentRegion(list.get(j));
+            }
+        }
     }
 
     /** Set Regions for the land 
@@ -112,6 +170,7 @@ public class Land {
     */
     public void setRegions(Set<Region> regions) {
         this.regions = regions;
+        markDirty();
     }
 
     /** Return Copy of Regions Set
@@ -128,21 +187,224 @@ public class Land {
         return copy;
     }
 
+    /** Checks if the regions of this land fully cover the given region */
+    public boolean covers(Region region) {
+        // Work on a detached copy, subtract links the pieces into the adjacency graph of the original
+        Region detached = region.isColumn()
+            ? Region.column(region.getCorner1().getX(), region.getCorner1().getZ(), region.getCorner2().getX(), region.getCorner2().getZ())
+            : new Region(region.getCorner1(), region.getCorner2());
+        Set<Region> remaining = new HashSet<>();
+        remaining.add(detached);
+        for (Region own : this.regions) {
+            Set<Region> next = new HashSet<>();
+            for (Region piece : remaining) {
+                next.addAll(piece.subtract(own));
+            }
+            remaining = next;
+            if (remaining.isEmpty()) {
+                return true;
+            }
+        }
+        return remaining.isEmpty();
+    }
+
+    /** Nests a subclaim directly under this land */
+    public void addSubclaim(Land subclaim) {
+        subclaim.parent = this;
+        subclaim.setDepth(this.depth + 1);
+        subclaim.markDirty();
+        this.subclaims.add(subclaim);
+    }
+
+    /** Detaches a direct subclaim */
+    public void removeSubclaim(Land subclaim) {
+        if (this.subclaims.remove(subclaim)) {
+            subclaim.parent = null;
+            subclaim.setDepth(0);
+            subclaim.markDirty();
+        }
+    }
+
+    /** Updates the depth of this land and every nested subclaim below it */
+    private void setDepth(int depth) {
+        this.depth = depth;
+        for (Land subclaim : this.subclaims) {
+            subclaim.setDepth(depth + 1);
+        }
+    }
+
+    /** Sets or clears a land wide flag */
+    public void setFlag(LandFlag flag, boolean value) {
+        this.flags = flag.apply(this.flags, value);
+        markDirty();
+    }
+
+    /** Checks a land wide flag, ignoring region overrides */
+    public boolean hasFlag(LandFlag flag) {
+        return flag.isSet(this.flags);
+    }
+
     /** Add Role */
     public void addRole(String roleName, LandRole landRole) {
+        LandDetails details = getEditableDetails();
         // Redundant check since LandManager should handle this, but added for safety
-        if (this.roles.containsKey(roleName)) {
+        if (details.getRoles().containsKey(roleName)) {
             throw new IllegalArgumentException("Role " + roleName + " already exists in the land.");
         }
-        this.roles.put(roleName, landRole);
+        details.getRoles().put(roleName, landRole);
+        details.rolesChanged();
+        markDetailsDirty();
+        if (roleName.equals(OUTSIDER_ROLE)) {
+            refreshOutsiderPermissions();
+        }
     }
 
     /** Remove Role */
     public void removeRole(String roleName) {
-        if (!this.roles.containsKey(roleName)) {
+        LandDetails details = getEditableDetails();
+        if (!details.getRoles().containsKey(roleName)) {
+            throw new IllegalArgumentException("Role " + roleName + " does not exist in the land.");
+        }
+        details.getRoles().remove(roleName);
+        details.rolesChanged();
+        markDetailsDirty();
+        if (roleName.equals(OUTSIDER_ROLE)) {
+            refreshOutsiderPermissions();
+        }
+    }
+
+    /** Replaces the permissions of an existing role */
+    public void setRolePermissions(String roleName, Set<LandPermission> permissions) {
+        LandRole role = getEditableDetails().getRoles().get(roleName);
+        if (role == null) {
             throw new IllegalArgumentException("Role " + roleName + " does not exist in the land.");
         }
-        this.roles.remove(roleName);
+        role.setPermissions(permissions);
+        markDetailsDirty();
+        if (roleName.equals(OUTSIDER_ROLE)) {
+            refreshOutsiderPermissions();
+        }
+    }
+
+    /** Adds a member or changes their role */
+    public void setMember(UUID memberId, String roleName) {
+        MemberTable members = getEditableDetails().getMembers();
+        members.put(memberId, roleName);
+        this.memberFilter |= memberFilterBits(memberId);
+        this.memberCount = members.size();
+        markDetailsDirty();
+    }
+
+    /** Removes a member */
+    public void removeMember(UUID memberId) {
+        MemberTable members = getEditableDetails().getMembers();
+        if (members.remove(memberId) != null) {
+            this.memberCount = members.size();
+            refreshMemberFilter();
+            markDetailsDirty();
+        }
+    }
+
+    /** Changes the role of every member with one role to another */
+    public void reassignMembers(String fromRole, String toRole, List<UUID> reassigned) {
+        for (Map.Entry<UUID, String> entry : getEditableDetails().getMembers().entrySet()) {
+            if (entry.getValue().equals(fromRole)) {
+                entry.setValue(toRole);
+                reassigned.add(entry.getKey());
+            }
+        }
+        if (!reassigned.isEmpty()) {
+            markDetailsDirty();
+        }
+    }
+
+    /** Checks the header bloom filter, false means the player is certainly not a member */
+    public boolean mightBeMember(UUID playerId) {
+        long bits = memberFilterBits(playerId);
+        return (this.memberFilter & bits) == bits;
+    }
+
+    /** Bloom filter bits of a member, two of the 64 picked from a mixed hash of the UUID */
+    public static long memberFilterBits(UUID playerId) {
+        long hash = (playerId.getMostSignificantBits() ^ playerId.getLeastSignificantBits()) * 0x9E3779B97F4A7C15L;
+        return (1L << (hash >>> 58)) | (1L << ((hash >>> 52) & 63));
+    }
+
+    private void refreshMemberFilter() {
+        long filter = 0;
+        for (UUID memberId : this.getMembers().keySet()) {
+            filter |= memberFilterBits(memberId);
+        }
+        this.memberFilter = filter;
+    }
+
+    private void refreshOutsiderPermissions() {
+        LandRole outsider = this.getRoles().get(OUTSIDER_ROLE);
+        this.outsiderPermissions = outsider != null ? LandPermission.toMask(outsider.getPermissions()) : 0L;
+    }
+
+    /** Returns the details, loading them from the detail source if they are not resident */
+    public LandDetails getDetails() {
+        if (this.details == null) {
+            this.details = this.detailSource.load(this);
+        }
+        this.detailsReferenced = true;
+        return this.details;
+    }
+
+    /** Details for a change, refused while they only stand in for details that could not be loaded */
+    private LandDetails getEditableDetails() {
+        LandDetails details = getDetails();
+        if (details.isPlaceholder()) {
+            throw new IllegalArgumentException("The members and roles of land " + name + " could not be loaded, "
+                                               + "they cannot be changed until they are restored.");
+        }
+        return details;
+    }
+
+    /** Details if resident, without loading them or counting as an access */
+    public LandDetails getResidentDetails() {
+        return this.details;
+    }
+
+    /** Drops clean resident details, they are loaded from the source again on the next access */
+    public boolean unloadDetails(LandDetailSource detailSource) {
+        if (this.details == null || this.details.isDirty()) {
+            return false;
+        }
+        this.details = null;
+        this.detailSource = detailSource;
+        return true;
+    }
+
+    /** Clears and returns the access bit, used by the detail cache to find cold lands */
+    public boolean clearDetailsReferenced() {
+        boolean referenced = this.detailsReferenced;
+        this.detailsReferenced = false;
+        return referenced;
+    }
+
+    private void markDetailsDirty() {
+        this.details.markDirty();
+        markDirty();
+    }
+
+    /** Marks the land as changed since its last save
+     *  Called by every mutator here, callers changing a role or region of this land in place call it themselves.
+     */
+    public void markDirty() {
+        this.version++;
+    }
+
+    /** Records that the given version was written to disk, later mutations keep the land dirty */
+    public void markSaved(long version) {
+        if (version > this.savedVersion) {
+            this.savedVersion = version;
+        }
+    }
+
+    public boolean isDirty() {
+        return version != savedVersion;
     }
 
     /** Get volume */
@@ -171,15 +433,67 @@ public class Land {
         return regions;
     }
 
+    /** Read only view of the members, changes go through setMember and removeMember */
     public Map<UUID, String> getMembers() {
-        return members;
+        return Collections.unmodifiableMap(getDetails().getMembers());
     }
 
+    /** Read only view of the roles, changes go through addRole, removeRole and setRolePermissions */
     public Map<String, LandRole> getRoles() {
-        return roles;
+        return Collections.unmodifiableMap(getDetails().getRoles());
+    }
+
+    public long getOutsiderPermissions() {
+        return outsiderPermissions;
+    }
+
+    public long getMemberFilter() {
+        return memberFilter;
+    }
+
+    /** Number of members, from the header so counting does not load the details */
+    public int getMemberCount() {
+        return memberCount;
     }
 
     public long getCreatedAt() {
         return createdAt;
     }
+
+    public ClaimMode getClaimMode() {
+        return claimMode;
+    }
+
+    public Land getParent() {
+        return parent;
+    }
+
+    public Set<Land> getSubclaims() {
+        return subclaims;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public boolean isSubclaim() {
+        return parent != null;
+    }
+
+    public long getFlags() {
+        return flags;
+    }
+
+    public void setFlags(long flags) {
+        this.flags = flags;
+        markDirty();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getSavedVersion() {
+        return savedVersion;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package org.almond.lands.model;
+
+/** Loads the detail tier of a land whose members and roles are not resident */
+public interface LandDetailSource {
+
+    /** Returns the details of the land, called on first access after loading or eviction */
+    LandDetails load(Land land);
+}
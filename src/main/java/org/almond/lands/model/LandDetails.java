@@ -0,0 +1,105 @@
+package org.almond.lands.model;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/** Detail tier of a land, its members and roles
+ *  Only needed once someone interacts with the land, so it can be loaded lazily and evicted again.
+ *  Protection against outsiders works from the header fields kept on Land itself.
+ */
+public class LandDetails {
+    private MemberTable members;        // Player UUID -> Role name, roles interned as ids
+    private Map<String, LandRole> roles; // Role name -> Role definition
+    private LandRole[] rolesById = new LandRole[0]; // Role id of the member table -> Role definition, null if deleted
+    private boolean rolesResolved;      // rolesById matches the roles and the interned role names
+    private long version = 1;           // Bumped by every member or role change
+    private volatile long savedVersion; // Last version written to disk
+    private boolean placeholder;        // Stands in for details that could not be loaded, never written back
+
+    public LandDetails(Map<UUID, String> members, Map<String, LandRole> roles) {
+        this.members = MemberTable.of(members);
+        this.roles = roles;
+    }
+
+    /** Stand in for details that could not be loaded
+     *  Only the owner is a member, everyone else gets the outsider permissions kept in the land header.
+     *  It counts as saved so it is never written over the stored details, and eviction drops it to retry the load.
+     */
+    public static LandDetails placeholder(UUID owner, long outsiderPermissions) {
+        Map<UUID, String> members = new HashMap<>();
+        members.put(owner, "owner");
+        Map<String, LandRole> roles = new HashMap<>();
+        roles.put("owner", new LandRole("owner", EnumSet.allOf(LandPermission.class)));
+        roles.put(Land.OUTSIDER_ROLE, new LandRole(Land.OUTSIDER_ROLE, LandPermission.fromMask(outsiderPermissions)));
+        LandDetails details = new LandDetails(members, roles);
+        details.placeholder = true;
+        details.markSaved(details.getVersion());
+        return details;
+    }
+
+    /** Role of a member, resolved by the role id stored in the member table
+     *  Returns null when the player is not a member and also when their role no longer exists,
+     *  check isMember to tell the two apart.
+     */
+    public LandRole getMemberRole(UUID playerId) {
+        int roleId = members.roleIdOf(playerId);
+        if (roleId < 0) {
+            return null;
+        }
+        LandRole[] resolved = rolesById;
+        if (!rolesResolved || roleId >= resolved.length) {
+            resolved = resolveRoles();
+        }
+        return resolved[roleId];
+    }
+
+    /** Drops the resolved role ids, called whenever a role is added or removed */
+    public void rolesChanged() {
+        this.rolesResolved = false;
+    }
+
+    private LandRole[] resolveRoles() {
+        LandRole[] resolved = new LandRole[members.getRoleCount()];
+        for (int roleId = 0; roleId < resolved.length; roleId++) {
+            resolved[roleId] = roles.get(members.getRoleName(roleId));
+        }
+        this.rolesById = resolved;
+        this.rolesResolved = true;
+        return resolved;
+    }
+
+    /** Marks the details as changed since their last save */
+    public void markDirty() {
+        this.version++;
+    }
+
+    /** Records that the given version was written to disk */
+    public void markSaved(long version) {
+        if (version > this.savedVersion) {
+            this.savedVersion = version;
+        }
+    }
+
+    /** Dirty details must stay resident until they are written back */
+    public boolean isDirty() {
+        return version != savedVersion;
+    }
+
+    public MemberTable getMembers() {
+        return members;
+    }
+
+    public Map<String, LandRole> getRoles() {
+        return roles;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isPlaceholder() {
+        return placeholder;
+    }
+}
@@ -0,0 +1,59 @@
+package org.almond.lands.model;
+
+public enum LandFlag {
+    PVP("Players can damage each other", false, true),
+    MOB_SPAWNING("Hostile mobs can spawn", true, true),
+    EXPLOSIONS("Explosions can break blocks", false, true),
+    FIRE_SPREAD("Fire can spread and burn blocks", false, true),
+    PUBLIC("Outsiders can enter and interact", false, true);
+
+    private static final long LAND_DEFAULTS = defaults(true);
+    private static final long WILDERNESS_DEFAULTS = defaults(false);
+
+    private final String description;
+    private final boolean landDefault;       // Value for newly created lands
+    private final boolean wildernessDefault; // Value outside of any land
+
+    LandFlag(String description, boolean landDefault, boolean wildernessDefault) {
+        this.description = description;
+        this.landDefault = landDefault;
+        this.wildernessDefault = wildernessDefault;
+    }
+
+    public String getDescription() {
+        return this.description;
+    }
+
+    /** Bit of this flag in a flag set */
+    public long bit() {
+        return 1L << this.ordinal();
+    }
+
+    /** Checks if this flag is set in the given flag set */
+    public boolean isSet(long flags) {
+        return (flags & bit()) != 0;
+    }
+
+    /** Returns the flag set with this flag set or cleared */
+    public long apply(long flags, boolean value) {
+        return value ? flags | bit() : flags & ~bit();
+    }
+
+    /** Flag set of a newly created land */
+    public static long landDefaults() {
+        return LAND_DEFAULTS;
+    }
+
+    /** Flag set outside of any land */
+    public static long wildernessDefaults() {
+        return WILDERNESS_DEFAULTS;
+    }
+
+    private static long defaults(boolean forLand) {
+        long flags = 0L;
+        for (LandFlag flag : values()) {
+            flags = flag.apply(flags, forLand ? flag.landDefault : flag.wildernessDefault);
+        }
+        return flags;
+    }
+}
@@ -1,5 +1,8 @@
 package org.almond.lands.model;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum LandPermission {
     BUILD("Place blocks", 0),
     BREAK("Break blocks", 0),
@@ -7,6 +10,7 @@ public enum LandPermission {
     CONTAINER("Access chests", 0),
     MANAGE_MEMBERS("Add/remove members", 10),   // admin perm
     MANAGE_ROLES("Edit roles", 20),             // admin perm
+    MANAGE_FLAGS("Edit land flags", 20),        // admin perm
     CLAIM("Create regions", 30),                // admin perm
     UNCLAIM("Delete regions", 50);              // admin perm
 
@@ -30,4 +34,29 @@ public enum LandPermission {
     public boolean isAdmin() {
         return this.weight > 0;
     }
+
+    /** Bit of this permission in a permission mask */
+    public long bit() {
+        return 1L << this.ordinal();
+    }
+
+    /** Packs a permission set into a bitmask */
+    public static long toMask(Set<LandPermission> permissions) {
+        long mask = 0L;
+        for (LandPermission permission : permissions) {
+            mask |= permission.bit();
+        }
+        return mask;
+    }
+
+    /** Unpacks a bitmask into a permission set */
+    public static Set<LandPermission> fromMask(long mask) {
+        Set<LandPermission> permissions = EnumSet.noneOf(LandPermission.class);
+        for (LandPermission permission : values()) {
+            if ((mask & permission.bit()) != 0) {
+                permissions.add(permission);
+            }
+        }
+        return permissions;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,296 @@
+package org.almond.lands.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+/** Members of a land, player UUID to role name, stored compactly for lands with thousands of members
+ *  Open addressing with linear probing over parallel arrays, the two halves of each UUID and a short role id,
+ *  about 18 bytes per slot instead of a hash map node, a UUID object and a role reference per member.
+ *  Role names are interned into a per land role table, a member's role is an index into it,
+ *  so get hands back the one shared name String and LandDetails resolves the role itself by array index.
+ *  Removal shifts later entries of the probe run back, no tombstones pile up.
+ *  Iterators do not support remove, entries support setValue.
+ */
+public class MemberTable extends AbstractMap<UUID, String> {
+
+    private static final int MIN_CAPACITY = 8;
+    private static final int MAX_ROLES = Short.MAX_VALUE;
+
+    private long[] most;
+    private long[] least;
+    private short[] roleIds;            // Role id + 1 per slot, 0 marks a free slot
+    private int size;
+    private List<String> roleNames = new ArrayList<>();
+    private Map<String, Integer> roleIndex = new HashMap<>();
+
+    public MemberTable() {
+        this(0);
+    }
+
+    public MemberTable(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < expectedSize * 4) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /** Copies a member map, returned as is if it already is a member table */
+    public static MemberTable of(Map<UUID, String> members) {
+        if (members instanceof MemberTable) {
+            return (MemberTable) members;
+        }
+        MemberTable table = new MemberTable(members.size());
+        for (Map.Entry<UUID, String> member : members.entrySet()) {
+            table.put(member.getKey(), member.getValue());
+        }
+        return table;
+    }
+
+    /** Role id of a member, or -1 if the player is not a member */
+    public int roleIdOf(UUID playerId) {
+        int slot = find(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+        return slot < 0 ? -1 : roleIds[slot] - 1;
+    }
+
+    /** Role name behind a role id */
+    public String getRoleName(int roleId) {
+        return roleNames.get(roleId);
+    }
+
+    /** Number of interned role names, role ids are below it */
+    public int getRoleCount() {
+        return roleNames.size();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof UUID && roleIdOf((UUID) key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (!(key instanceof UUID)) {
+            return null;
+        }
+        int roleId = roleIdOf((UUID) key);
+        return roleId < 0 ? null : roleNames.get(roleId);
+    }
+
+    @Override
+    public String put(UUID playerId, String roleName) {
+        short roleId = (short) (intern(roleName) + 1);
+        long high = playerId.getMostSignificantBits();
+        long low = playerId.getLeastSignificantBits();
+        int slot = find(high, low);
+        if (slot >= 0) {
+            String previous = roleNames.get(roleIds[slot] - 1);
+            roleIds[slot] = roleId;
+            return previous;
+        }
+        if ((size + 1) * 4 > roleIds.length * 3) {
+            resize(roleIds.length << 1);
+        }
+        insert(high, low, roleId);
+        size++;
+        return null;
+    }
+
+    @Override
+    public String remove(Object key) {
+        if (!(key instanceof UUID)) {
+            return null;
+        }
+        UUID playerId = (UUID) key;
+        int slot = find(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+        if (slot < 0) {
+            return null;
+        }
+        String previous = roleNames.get(roleIds[slot] - 1);
+        delete(slot);
+        size--;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<UUID, String>> entrySet() {
+        return new AbstractSet<Map.Entry<UUID, String>>() {
+            @Override
+            public Iterator<Map.Entry<UUID, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int intern(String roleName) {
+        Integer roleId = roleIndex.get(roleName);
+        if (roleId != null) {
+            return roleId;
+        }
+        if (roleNames.size() >= MAX_ROLES) {
+            throw new IllegalArgumentException("A land cannot hold more than " + MAX_ROLES + " role names.");
+        }
+        roleIndex.put(roleName, roleNames.size());
+        roleNames.add(roleName);
+        return roleNames.size() - 1;
+    }
+
+    private static int hash(long high, long low) {
+        long hash = (high ^ low) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /** Slot of a member, or -1 */
+    private int find(long high, long low) {
+        int mask = roleIds.length - 1;
+        for (int slot = hash(high, low) & mask; roleIds[slot] != 0; slot = (slot + 1) & mask) {
+            if (most[slot] == high && least[slot] == low) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(long high, long low, short roleId) {
+        int mask = roleIds.length - 1;
+        int slot = hash(high, low) & mask;
+        while (roleIds[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        most[slot] = high;
+        least[slot] = low;
+        roleIds[slot] = roleId;
+    }
+
+    /** Frees a slot and moves back every later entry of its run that could not be found past the gap */
+    private void delete(int slot) {
+        int mask = roleIds.length - 1;
+        int gap = slot;
+        for (int next = (gap + 1) & mask; roleIds[next] != 0; next = (next + 1) & mask) {
+            int home = hash(most[next], least[next]) & mask;
+            // The entry may fill the gap unless its home lies cyclically between the gap and itself
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                most[gap] = most[next];
+                least[gap] = least[next];
+                roleIds[gap] = roleIds[next];
+                gap = next;
+            }
+        }
+        roleIds[gap] = 0;
+    }
+
+    private void allocate(int capacity) {
+        most = new long[capacity];
+        least = new long[capacity];
+        roleIds = new short[capacity];
+    }
+
+    private void resize(int capacity) {
+        long[] oldMost = most;
+        long[] oldLeast = least;
+        short[] oldRoleIds = roleIds;
+        allocate(capacity);
+        for (int slot = 0; slot < oldRoleIds.length; slot++) {
+            if (oldRoleIds[slot] != 0) {
+                insert(oldMost[slot], oldLeast[slot], oldRoleIds[slot]);
+            }
+        }
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<UUID, String>> {
+        private int slot = advance(0);
+        private short[] expected = roleIds;  // A resize replaces the arrays, iteration then fails fast
+
+        private int advance(int from) {
+            while (from < roleIds.length && roleIds[from] == 0) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return slot < roleIds.length;
+        }
+
+        @Override
+        public Map.Entry<UUID, String> next() {
+            if (expected != roleIds) {
+                throw new ConcurrentModificationException();
+            }
+            if (slot >= roleIds.length) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<UUID, String> entry = new MemberEntry(slot);
+            slot = advance(slot + 1);
+            return entry;
+        }
+    }
+
+    /** Entry bound to a slot, setValue changes the member's role in place */
+    private class MemberEntry implements Map.Entry<UUID, String> {
+        private int slot;
+        private UUID key;
+
+        MemberEntry(int slot) {
+            this.slot = slot;
+            this.key = new UUID(most[slot], least[slot]);
+        }
+
+        @Override
+        public UUID getKey() {
+            return key;
+        }
+
+        @Override
+        public String getValue() {
+            return roleNames.get(roleIds[slot] - 1);
+        }
+
+        @Override
+        public String setValue(String roleName) {
+            String previous = getValue();
+            roleIds[slot] = (short) (intern(roleName) + 1);
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) other;
+            return key.equals(entry.getKey()) && getValue().equals(entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ getValue().hashCode();
+        }
+    }
+}
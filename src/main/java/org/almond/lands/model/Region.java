@@ -9,12 +9,33 @@ import java.util.HashMap;
 import com.hypixel.hytale.math.vector.Vector3i;
 
 public class Region {
+    public static final int COLUMN_MIN_Y = 0;     // World floor, bottom of every column region
+    public static final int COLUMN_MAX_Y = 319;   // Build limit, top of every column region
+
     private Vector3i corner1;           // First corner (min)
     private Vector3i corner2;           // Second corner (max)
+    private boolean column;             // XZ rectangle covering the full world height
+    private long flagMask;              // Flags overridden by this region
+    private long flagValues;            // Values of the overridden flags
     private Set<Region> adjacentRegions = new HashSet<>(); // Adjacent regions
 
     /** Constructor to create a region from two corners */
     public Region(Vector3i corner1, Vector3i corner2){
+        this(corner1, corner2, false);
+    };
+
+    /** Creates a column region, an XZ rectangle from bedrock to sky */
+    public static Region column(int x1, int z1, int x2, int z2){
+        return new Region(new Vector3i(x1, COLUMN_MIN_Y, z1), new Vector3i(x2, COLUMN_MAX_Y, z2), true);
+    };
+
+    /** Constructor used internally, column regions always span the full world height */
+    private Region(Vector3i corner1, Vector3i corner2, boolean column){
+        if (column) {
+            corner1 = new Vector3i(corner1.getX(), COLUMN_MIN_Y, corner1.getZ());
+            corner2 = new Vector3i(corner2.getX(), COLUMN_MAX_Y, corner2.getZ());
+        }
+        this.column = column;
         this.corner1 = new Vector3i(
             Math.min(corner1.getX(), corner2.getX()),
             Math.min(corner1.getY(), corner2.getY()),
@@ -30,6 +51,10 @@ public class Region {
     
     /** Checks if the given position is within the region */
     public boolean contains(Vector3i pos){
+        if (column) {
+            return pos.getX() >= corner1.getX() && pos.getX() <= corner2.getX() &&
+                   pos.getZ() >= corner1.getZ() && pos.getZ() <= corner2.getZ();
+        }
         return pos.getX() >= corner1.getX() && pos.getX() <= corner2.getX() &&
                pos.getY() >= corner1.getY() && pos.getY() <= corner2.getY() &&
                pos.getZ() >= corner1.getZ() && pos.getZ() <= corner2.getZ();
@@ -37,6 +62,9 @@ public class Region {
 
     /** Checks if this region is adjacent, including overlapping, to another region */
     public boolean isAdjacentTo(Region other){
+        if (this.column && other.column) {
+            return isAdjacentTo2D(other);
+        }
 
         boolean xAdjacent = (this.corner2.getX() + 1 == other.corner1.getX() || this.corner1.getX() - 1 == other.corner2.getX()) &&
                             (this.corner1.getY() <= other.corner2.getY() && this.corner2.getY() >= other.corner1.getY()) &&
@@ -53,6 +81,17 @@ public class Region {
         return xAdjacent || yAdjacent || zAdjacent;
     };
 
+    /** Column adjacency, only the X and Z faces exist */
+    private boolean isAdjacentTo2D(Region other){
+        boolean xAdjacent = (this.corner2.getX() + 1 == other.corner1.getX() || this.corner1.getX() - 1 == other.corner2.getX()) &&
+                            (this.corner1.getZ() <= other.corner2.getZ() && this.corner2.getZ() >= other.corner1.getZ());
+
+        boolean zAdjacent = (this.corner2.getZ() + 1 == other.corner1.getZ() || this.corner1.getZ() - 1 == other.corner2.getZ()) &&
+                            (this.corner1.getX() <= other.corner2.getX() && this.corner2.getX() >= other.corner1.getX());
+
+        return xAdjacent || zAdjacent;
+    };
+
     /** Checks if this region overlaps with another region */
     public boolean overlaps(Region other){
         return this.corner1.getX() <= other.corner2.getX() && this.corner2.getX() >= other.corner1.getX() &&
@@ -75,16 +114,75 @@ public class Region {
             Math.min(this.corner2.getY(), other.corner2.getY()),
             Math.min(this.corner2.getZ(), other.corner2.getZ())
         );
-        return new Region(newCorner1, newCorner2);
+        return new Region(newCorner1, newCorner2, this.column && other.column);
     };
 
-    /** Subtracts another region from this one and returns the resulting regions */
+    /** Subtracts another region from this one and returns the resulting regions
+     *  Column regions subtract in 2D, the other region is treated as full height,
+     *  so an unclaim never splits a column claim vertically.
+     */
     public Set<Region> subtract(Region other){
+        if (this.column) {
+            other = other.toColumn();
+        }
         if (!this.overlaps(other)) {
             return Set.of(this); // No overlap, return this region as is
         }
         Region intersection = this.intersection(other);
-        // Calculate the 6 potential remaining regions after subtraction
+        Set<Region> remainingRegions = this.column ? this.subtractPieces2D(intersection) : this.subtractPieces(intersection);
+        for (Region region : remainingRegions) {
+            region.copyFlagOverrides(this);
+        }
+
+        // Update adjacent regions among remaining regions
+        for (Region region1 : remainingRegions) {
+            for (Region region2 : remainingRegions) {
+                if (region1 != region2 && region1.isAdjacentTo(region2)) {
+                    region1.addAdjacentRegion(region2);
+                }
+            }
+        }
+
+        // Update adjacent regions to include those from the original region
+        for (Region adj : this.adjacentRegions) {
+            for (Region region : remainingRegions) {
+                if (region.isAdjacentTo(adj)) {
+                    region.addAdjacentRegion(adj);
+                }
+            }
+        }
+
+        return remainingRegions;
+    }
+
+    /** Calculate the up to 4 column regions left around the intersection, split along X then Z */
+    private Set<Region> subtractPieces2D(Region intersection){
+        Set<Region> remainingRegions = new HashSet<>();
+        // Left region
+        if (this.corner1.getX() < intersection.getCorner1().getX()) {
+            remainingRegions.add(Region.column(this.corner1.getX(), this.corner1.getZ(),
+                intersection.getCorner1().getX() - 1, this.corner2.getZ()));
+        }
+        // Right region
+        if (this.corner2.getX() > intersection.getCorner2().getX()) {
+            remainingRegions.add(Region.column(intersection.getCorner2().getX() + 1, this.corner1.getZ(),
+                this.corner2.getX(), this.corner2.getZ()));
+        }
+        // Front region
+        if (this.corner1.getZ() < intersection.getCorner1().getZ()) {
+            remainingRegions.add(Region.column(intersection.getCorner1().getX(), this.corner1.getZ(),
+                intersection.getCorner2().getX(), intersection.getCorner1().getZ() - 1));
+        }
+        // Back region
+        if (this.corner2.getZ() > intersection.getCorner2().getZ()) {
+            remainingRegions.add(Region.column(intersection.getCorner1().getX(), intersection.getCorner2().getZ() + 1,
+                intersection.getCorner2().getX(), this.corner2.getZ()));
+        }
+        return remainingRegions;
+    }
+
+    /** Calculate the 6 potential remaining regions around the intersection */
+    private Set<Region> subtractPieces(Region intersection){
         Set<Region> remainingRegions = new HashSet<>();
         // Left region
         if (this.corner1.getX() < intersection.getCorner1().getX()) {
@@ -128,25 +226,6 @@ public class Region {
                 new Vector3i(intersection.getCorner2().getX(), intersection.getCorner2().getY(), this.corner2.getZ())
             ));
         }
-
-        // Update adjacent regions among remaining regions
-        for (Region region1 : remainingRegions) {
-            for (Region region2 : remainingRegions) {
-                if (region1 != region2 && region1.isAdjacentTo(region2)) {
-                    region1.addAdjacentRegion(region2);
-                }
-            }
-        }
-
-        // Update adjacent regions to include those from the original region
-        for (Region adj : this.adjacentRegions) {
-            for (Region region : remainingRegions) {
-                if (region.isAdjacentTo(adj)) {
-                    region.addAdjacentRegion(adj);
-                }
-            }
-        }
-
         return remainingRegions;
     }
 
@@ -176,7 +255,8 @@ public class Region {
             Math.max(this.corner2.getY(), other.corner2.getY()),
             Math.max(this.corner2.getZ(), other.corner2.getZ())
         );
-        Region newRegion = new Region(newCorner1, newCorner2);
+        Region newRegion = new Region(newCorner1, newCorner2, this.column && other.column);
+        newRegion.copyFlagOverrides(this);
         newRegion.addAdjacentRegions(this.adjacentRegions);
         newRegion.addAdjacentRegions(other.adjacentRegions);
         return newRegion;
@@ -190,6 +270,68 @@ public class Region {
         return length * width * height;
     };
 
+    /** Calculates the XZ footprint area of the region */
+    public long getArea(){
+        long length = corner2.getX() - corner1.getX() + 1;
+        long depth = corner2.getZ() - corner1.getZ() + 1;
+        return length * depth;
+    };
+
+    /** Returns the column region with the same XZ footprint, or this region if it already is one */
+    public Region toColumn(){
+        if (column) {
+            return this;
+        }
+        return Region.column(corner1.getX(), corner1.getZ(), corner2.getX(), corner2.getZ());
+    };
+
+    /** Overrides a land flag inside this region */
+    public void setFlagOverride(LandFlag flag, boolean value){
+        flagMask |= flag.bit();
+        flagValues = flag.apply(flagValues, value);
+    };
+
+    /** Removes an override, the region follows the land flag again */
+    public void clearFlagOverride(LandFlag flag){
+        flagMask &= ~flag.bit();
+        flagValues &= ~flag.bit();
+    };
+
+    /** Resolves the effective flags of this region from the land's flags */
+    public long resolveFlags(long landFlags){
+        return (landFlags & ~flagMask) | (flagValues & flagMask);
+    };
+
+    /** Checks if two regions override the same flags with the same values, required to merge them */
+    public boolean hasSameFlagOverrides(Region other){
+        return this.flagMask == other.flagMask && this.flagValues == other.flagValues;
+    };
+
+    /** Sets the raw override mask and values, used when loading regions */
+    public void setFlagOverrides(long mask, long values){
+        this.flagMask = mask;
+        this.flagValues = values & mask;
+    };
+
+    /** Takes over the flag overrides of another region, used for regions derived from it */
+    public void copyFlagOverrides(Region other){
+        this.flagMask = other.flagMask;
+        this.flagValues = other.flagValues;
+    };
+
+    public long getFlagMask(){
+        return flagMask;
+    };
+
+    public long getFlagValues(){
+        return flagValues;
+    };
+
+    /** Whether this region is a full height column */
+    public boolean isColumn(){
+        return column;
+    };
+
     /** Add adjacenct Region
      *  Only adds if they are indeed adjacent, to maintain integrity.
      */
@@ -209,7 +351,19 @@ public class Region {
         if (obj == null || this.getClass() != obj.getClass()) return false;
         // Cast and compare corners
         Region other = (Region) obj;
-        return corner1.equals(other.corner1) && corner2.equals(other.corner2);
+        return column == other.column && corner1.equals(other.corner1) && corner2.equals(other.corner2);
+    }
+
+    /** Hash on the corners, consistent with equals so copies are found in hash sets */
+    @Override
+    public int hashCode() {
+        int hash = corner1.getX();
+        hash = 31 * hash + corner1.getY();
+        hash = 31 * hash + corner1.getZ();
+        hash = 31 * hash + corner2.getX();
+        hash = 31 * hash + corner2.getY();
+        hash = 31 * hash + corner2.getZ();
+        return column ? ~hash : hash;
     }
 
     /** Adds all adjacent Regions
@@ -221,6 +375,18 @@ public class Region {
         }
     }
 
+    /** Links every pair of adjacent regions in the set
+     *  Used on freshly built regions, which are not part of any graph yet.
+     */
+    public static void linkAdjacent(Set<Region> regions) {
+        List<Region> list = new ArrayList<>(regions);
+        for (int i = 0; i < list.size(); i++) {
+            for (int j = i + 1; j < list.size(); j++) {
+                list.get(i).addAdjacentRegion(list.get(j));
+            }
+        }
+    }
+
     /** Remove adjacent Region */
     public void removeAdjacentRegion(Region region) {
         this.adjacentRegions.remove(region);
@@ -232,12 +398,21 @@ public class Region {
      *  So remove its references from the other regions its adjacent to as well.
      */
     public void clearAdjacentRegions() {
-        for (Region adj : this.adjacentRegions) {
+        for (Region adj : new ArrayList<>(this.adjacentRegions)) {
                 adj.removeAdjacentRegion(this);
          }
         this.adjacentRegions.clear();
     }
 
+    /** Creates a copy of the region outside of any adjacency graph
+     *  Subtracting from it leaves the graph of this region untouched.
+     */
+    public Region detach() {
+        Region detached = new Region(this.corner1, this.corner2, this.column);
+        detached.copyFlagOverrides(this);
+        return detached;
+    }
+
     /** Creates a copy of the region
      *  Recursively copies adjacent regions as well to maintain integrity.
      */
@@ -252,7 +427,8 @@ public class Region {
             return copiedRegions.get(this);
         }
         // Create a new copy of this region
-        Region newRegion = new Region(this.corner1, this.corner2);
+        Region newRegion = new Region(this.corner1, this.corner2, this.column);
+        newRegion.copyFlagOverrides(this);
         copiedRegions.put(this, newRegion);
         // Recursively copy adjacent regions
         for (Region adj : this.adjacentRegions) {
@@ -0,0 +1,183 @@
+package org.almond.lands.replication;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+/** Replication over a directory shared by every node, meant for local testing
+ *  Each node appends its events to its own feed file and tails the feeds of the others.
+ *  Feeds are read from the start on every launch, the replicator skips what it already applied.
+ *
+ *  Entry framing, as in the journal: int payload length, int CRC32 of the payload, payload.
+ */
+public class FileReplicationTransport implements ReplicationTransport {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    private static final String FEED_SUFFIX = ".feed";
+    private static final int FRAME_HEADER = 8;
+
+    private Path directory;
+    private long pollMillis;
+    private int nodeId;
+    private Consumer<byte[]> receiver;
+    private Queue<byte[]> outgoing = new ConcurrentLinkedQueue<>();
+    private Map<Path, Long> offsets = new HashMap<>(); // Bytes consumed of each other feed, poller thread only
+    private FileChannel feed;
+    private Thread poller;
+    private volatile boolean running;
+
+    public FileReplicationTransport(Path directory, long pollMillis) {
+        if (pollMillis < 1) {
+            throw new IllegalArgumentException("Poll interval must be positive.");
+        }
+        this.directory = directory;
+        this.pollMillis = pollMillis;
+    }
+
+    @Override
+    public void start(int nodeId, Consumer<byte[]> receiver) throws IOException {
+        Files.createDirectories(directory);
+        this.nodeId = nodeId;
+        this.receiver = receiver;
+        feed = FileChannel.open(feedOf(nodeId), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        running = true;
+        poller = new Thread(this::pollLoop, "Lands-Replication");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    /** Queues the event, the poller appends it to this node's feed on its next pass */
+    @Override
+    public void publish(byte[] event) throws IOException {
+        if (!running) {
+            throw new IOException("Replication transport is not running.");
+        }
+        outgoing.add(event);
+    }
+
+    /** Writes what is still queued and stops the poller */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (poller != null) {
+            poller.interrupt();
+            try {
+                poller.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (feed != null) {
+            writeOutgoing();
+            feed.close();
+        }
+    }
+
+    private void pollLoop() {
+        while (running) {
+            try {
+                writeOutgoing();
+                readFeeds();
+            } catch (IOException e) {
+                LOGGER.atWarning().withCause(e).log("Replication feed pass failed, retrying.");
+            }
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /** Appends every queued event to this node's feed in one write */
+    private void writeOutgoing() throws IOException {
+        if (outgoing.isEmpty()) {
+            return;
+        }
+        ByteBuffer batch = ByteBuffer.allocate(1 << 12);
+        for (byte[] event; (event = outgoing.poll()) != null; ) {
+            if (batch.remaining() < FRAME_HEADER + event.length) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(batch.capacity() * 2, batch.position() + FRAME_HEADER + event.length));
+                batch.flip();
+                grown.put(batch);
+                batch = grown;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(event);
+            batch.putInt(event.length);
+            batch.putInt((int) crc.getValue());
+            batch.put(event);
+        }
+        batch.flip();
+        while (batch.hasRemaining()) {
+            feed.write(batch);
+        }
+    }
+
+    /** Delivers the complete entries appended to the other feeds since the last pass */
+    private void readFeeds() throws IOException {
+        Path own = feedOf(nodeId);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + FEED_SUFFIX)) {
+            for (Path other : stream) {
+                if (!other.equals(own)) {
+                    readFeed(other);
+                }
+            }
+        }
+    }
+
+    private void readFeed(Path file) throws IOException {
+        long offset = offsets.getOrDefault(file, 0L);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= offset) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - offset, Integer.MAX_VALUE - 8));
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+                // Keep reading
+            }
+            buffer.flip();
+            while (buffer.remaining() >= FRAME_HEADER) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0) {
+                    LOGGER.atWarning().log("Replication feed " + file + " is corrupt, not reading past offset " + (offset + start) + ".");
+                    buffer.position(start);
+                    break;
+                }
+                if (length > buffer.remaining()) {
+                    buffer.position(start);
+                    break; // Partially written, picked up on the next pass
+                }
+                byte[] event = new byte[length];
+                buffer.get(event);
+                CRC32 crc = new CRC32();
+                crc.update(event);
+                if ((int) crc.getValue() != checksum) {
+                    LOGGER.atWarning().log("Replication feed " + file + " has a corrupt entry, skipping it.");
+                    continue;
+                }
+                receiver.accept(event);
+            }
+            offsets.put(file, offset + buffer.position());
+        }
+    }
+
+    private Path feedOf(int node) {
+        return directory.resolve(node + FEED_SUFFIX);
+    }
+}
@@ -0,0 +1,586 @@
+package org.almond.lands.replication;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.almond.lands.index.LandIndex;
+import org.almond.lands.manager.LandChangeListener;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.ClaimMode;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.LandRole;
+import org.almond.lands.model.Region;
+import org.almond.lands.storage.LandCodec;
+import org.almond.lands.storage.LandSnapshot;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+/** Replicates committed land mutations between servers that share a world
+ *  Every local mutation is published as a change event, remote events are applied incrementally
+ *  through the manager's direct mutations, so the index is updated in place and nothing is ever reloaded.
+ *
+ *  Ordering: events carry the origin node, the origin's incarnation (its start time) and a per incarnation sequence.
+ *  Anything at or below the last applied sequence of an origin is a duplicate and dropped, a jump is logged as a gap.
+ *  Conflicts: every event carries a Lamport stamp. Each replicated key of a land (its existence, region set,
+ *  land flags, one member, one role) remembers the stamp of its last write, an event older than that is rejected.
+ *  Events carry the full new value of their key rather than a delta, so every node settles on the same value
+ *  whatever order concurrent writes arrive in. Deleting a land is final, later writes to it are rejected.
+ *  Two lands created concurrently under one name are settled the same way, the lower create stamp keeps the name
+ *  on every node and the other land is deleted, on its origin node too.
+ *  Claim overlap is only checked by the node a change originated on, concurrent claims can still overlap.
+ *  Such claims are kept, logged and counted in getOverlapCount rather than settled.
+ *
+ *  Remote events queue up on the transport thread and are applied by pump on the world thread.
+ *  The stamps, the applied sequences and the clock are persisted with saveState.
+ *
+ *  Event layout, big endian, fields encoded by LandCodec like the journal's:
+ *    header    int node, long incarnation, long sequence, long stamp, byte type, long land id msb/lsb
+ *    created   owner, parent, string name, byte claim mode, long createdAt, long flags, regions
+ *    deleted   nothing
+ *    regions   regions
+ *    member    member id, string role or null
+ *    role      string name, byte exists, long permission mask
+ *    flags     long flags
+ */
+public class LandReplicator implements LandChangeListener {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    static final byte LAND_CREATED = 1;
+    static final byte LAND_DELETED = 2;
+    static final byte REGIONS = 3;
+    static final byte MEMBER = 4;
+    static final byte ROLE = 5;
+    static final byte LAND_FLAGS = 6;
+
+    private static final int NODE_BITS = 16; // Low bits of a stamp, breaks ties between nodes
+    private static final long NODE_MASK = (1L << NODE_BITS) - 1;
+    private static final int STATE_MAGIC = 0x4C4E5250; // "LNRP"
+
+    private int nodeId;
+    private long incarnation = System.currentTimeMillis();
+    private LandManager landManager;
+    private ReplicationTransport transport;
+    private long clock;                                  // Lamport clock, world thread only
+    private long nextSequence = 1;
+    private Map<Integer, long[]> applied = new HashMap<>(); // Origin -> {incarnation, sequence}, world thread only
+    private Map<UUID, LandStamps> stamps = new HashMap<>();
+    private Queue<byte[]> inbox = new ConcurrentLinkedQueue<>();
+    private LandCodec scratch = new LandCodec(1 << 12);  // Event encoding, world thread only
+    private boolean applying;                            // Set while a remote event runs through the listeners
+    private long appliedCount;
+    private long rejectedCount;
+    private long duplicateCount;
+    private long nameConflictCount;
+    private long overlapCount;
+
+    /** Stamps of the last write to each replicated key of one land */
+    private static class LandStamps {
+        long created;
+        long deleted;
+        long regions;
+        long flags;
+        Map<UUID, Long> members = new HashMap<>();
+        Map<String, Long> roles = new HashMap<>();
+    }
+
+    public LandReplicator(int nodeId, LandManager landManager, ReplicationTransport transport) {
+        if (nodeId < 0 || nodeId >= (1 << NODE_BITS)) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + ((1 << NODE_BITS) - 1) + ".");
+        }
+        this.nodeId = nodeId;
+        this.landManager = landManager;
+        this.transport = transport;
+    }
+
+    /** Starts publishing local mutations and receiving remote ones */
+    public void start() throws IOException {
+        transport.start(nodeId, inbox::add);
+        landManager.addChangeListener(this);
+    }
+
+    /** Stops publishing and closes the transport, events still in the inbox are dropped */
+    public void close() throws IOException {
+        landManager.removeChangeListener(this);
+        transport.close();
+    }
+
+    /** Applies every remote event received so far, must run on the world thread
+     *  Returns the number of events applied.
+     */
+    public int pump() {
+        int count = 0;
+        for (byte[] event; (event = inbox.poll()) != null; ) {
+            try {
+                if (receive(ByteBuffer.wrap(event))) {
+                    count++;
+                }
+            } catch (RuntimeException e) {
+                // One bad event must not stall the ones behind it, the world thread keeps pumping
+                rejectedCount++;
+                LOGGER.atWarning().withCause(e).log("Dropping a replication event that could not be applied.");
+            }
+        }
+        return count;
+    }
+
+    /** Persists the clock, the last applied sequence of every origin and the stamps of every replicated key
+     *  A restart then neither reapplies nor reuses sequences, and still rejects writes older than the ones it kept.
+     *  The file is synced before the rename and the directory after it.
+     */
+    public void saveState(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(STATE_MAGIC);
+            out.writeLong(clock);
+            out.writeInt(applied.size());
+            for (Map.Entry<Integer, long[]> entry : applied.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeLong(entry.getValue()[0]);
+                out.writeLong(entry.getValue()[1]);
+            }
+            out.writeInt(stamps.size());
+            for (Map.Entry<UUID, LandStamps> entry : stamps.entrySet()) {
+                LandStamps landStamps = entry.getValue();
+                out.writeLong(entry.getKey().getMostSignificantBits());
+                out.writeLong(entry.getKey().getLeastSignificantBits());
+                out.writeLong(landStamps.created);
+                out.writeLong(landStamps.deleted);
+                out.writeLong(landStamps.regions);
+                out.writeLong(landStamps.flags);
+                out.writeInt(landStamps.members.size());
+                for (Map.Entry<UUID, Long> member : landStamps.members.entrySet()) {
+                    out.writeLong(member.getKey().getMostSignificantBits());
+                    out.writeLong(member.getKey().getLeastSignificantBits());
+                    out.writeLong(member.getValue());
+                }
+                out.writeInt(landStamps.roles.size());
+                for (Map.Entry<String, Long> role : landStamps.roles.entrySet()) {
+                    out.writeUTF(role.getKey());
+                    out.writeLong(role.getValue());
+                }
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LandSnapshot.syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /** Restores what saveState wrote, a missing file means a fresh node */
+    public void loadState(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(fileIn)) {
+            if (in.readInt() != STATE_MAGIC) {
+                throw new IOException("File " + file + " does not hold replication state.");
+            }
+            clock = Math.max(clock, in.readLong());
+            int origins = in.readInt();
+            for (int i = 0; i < origins; i++) {
+                applied.put(in.readInt(), new long[] { in.readLong(), in.readLong() });
+            }
+            int lands = in.readInt();
+            for (int i = 0; i < lands; i++) {
+                LandStamps landStamps = new LandStamps();
+                UUID landId = new UUID(in.readLong(), in.readLong());
+                landStamps.created = in.readLong();
+                landStamps.deleted = in.readLong();
+                landStamps.regions = in.readLong();
+                landStamps.flags = in.readLong();
+                int members = in.readInt();
+                for (int m = 0; m < members; m++) {
+                    landStamps.members.put(new UUID(in.readLong(), in.readLong()), in.readLong());
+                }
+                int roles = in.readInt();
+                for (int r = 0; r < roles; r++) {
+                    landStamps.roles.put(in.readUTF(), in.readLong());
+                }
+                stamps.put(landId, landStamps);
+            }
+        }
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public long getAppliedCount() {
+        return appliedCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /** Remote creates that met a land of the same name, settled by stamp */
+    public long getNameConflictCount() {
+        return nameConflictCount;
+    }
+
+    /** Replicated claims found overlapping another land, which no node settles on its own */
+    public long getOverlapCount() {
+        return overlapCount;
+    }
+
+    /** Number of remote events waiting for the next pump */
+    public int getPendingCount() {
+        return inbox.size();
+    }
+
+    /** Receiving, world thread */
+
+    private boolean receive(ByteBuffer in) {
+        int origin = in.getInt();
+        long originIncarnation = in.getLong();
+        long sequence = in.getLong();
+        long stamp = in.getLong();
+        if (origin == nodeId) {
+            return false;
+        }
+        long[] last = applied.get(origin);
+        if (last != null) {
+            if (originIncarnation < last[0] || (originIncarnation == last[0] && sequence <= last[1])) {
+                duplicateCount++;
+                return false;
+            }
+            if (originIncarnation == last[0] && sequence != last[1] + 1) {
+                LOGGER.atWarning().log("Missed events " + (last[1] + 1) + " to " + (sequence - 1) + " from node " + origin + ".");
+            }
+        }
+        applied.put(origin, new long[] { originIncarnation, sequence });
+        clock = Math.max(clock, stamp >>> NODE_BITS);
+
+        byte type = in.get();
+        UUID landId = LandCodec.readUuid(in);
+        LandStamps landStamps = stamps.computeIfAbsent(landId, id -> new LandStamps());
+        Land land = landManager.getLandById(landId);
+        boolean accepted;
+        applying = true;
+        try {
+            if (type == LAND_CREATED) {
+                accepted = applyCreated(landId, land, landStamps, stamp, in);
+            } else if (land == null || landStamps.deleted != 0) {
+                // Already deleted here, or its creation was rejected
+                if (type == LAND_DELETED && landStamps.deleted == 0) {
+                    landStamps.deleted = stamp;
+                }
+                accepted = false;
+            } else {
+                accepted = applyChange(type, land, landStamps, stamp, in);
+            }
+        } finally {
+            applying = false;
+        }
+        if (accepted) {
+            appliedCount++;
+        } else {
+            rejectedCount++;
+        }
+        return accepted;
+    }
+
+    private boolean applyCreated(UUID landId, Land land, LandStamps landStamps, long stamp, ByteBuffer in) {
+        UUID owner = LandCodec.readUuid(in);
+        UUID parentId = LandCodec.readUuid(in);
+        String name = LandCodec.readString(in);
+        ClaimMode claimMode = LandCodec.readClaimMode(in);
+        long createdAt = in.getLong();
+        long flags = in.getLong();
+        Set<Region> regions = LandCodec.readRegions(in);
+        if (land != null || landStamps.deleted != 0) {
+            return false;
+        }
+        Land taken = landManager.getLandByName(name);
+        if (taken != null) {
+            // Concurrent creates of one name, the lower stamp wins on every node, a land older than replication always
+            LandStamps takenStamps = stamps.get(taken.getId());
+            long takenStamp = takenStamps != null ? takenStamps.created : 0L;
+            nameConflictCount++;
+            if (takenStamp < stamp) {
+                LOGGER.atWarning().log("Rejected replicated land " + name + " from node " + (stamp & NODE_MASK)
+                                       + ", an earlier land holds the name.");
+                return false;
+            }
+            LOGGER.atWarning().log("Deleted land " + name + " of " + taken.getOwner() + ", a land of the same name from node "
+                                   + (stamp & NODE_MASK) + " was created earlier.");
+            deleteNested(taken, stamp);
+        }
+        if (parentId != null && landManager.getLandById(parentId) == null) {
+            LOGGER.atWarning().log("Rejected replicated subclaim " + name + ", its parent does not exist here.");
+            return false;
+        }
+        Map<UUID, String> members = new HashMap<>();
+        members.put(owner, "owner");
+        Land created = new Land(landId, name, owner, regions, members, null, createdAt, claimMode);
+        created.setFlags(flags);
+        created.rebuildAdjacency();
+        checkOverlap(created, regions);
+        landManager.registerLand(created, parentId);
+        landStamps.created = stamp;
+        landStamps.regions = stamp;
+        landStamps.flags = stamp;
+        landManager.notifyApplied(listener -> listener.onLandCreated(created));
+        return true;
+    }
+
+    private boolean applyChange(byte type, Land land, LandStamps landStamps, long stamp, ByteBuffer in) {
+        switch (type) {
+            case LAND_DELETED:
+                if (stamp < landStamps.created) {
+                    return false;
+                }
+                landStamps.deleted = stamp;
+                deleteNested(land, stamp);
+                return true;
+            case REGIONS:
+                Set<Region> regions = LandCodec.readRegions(in);
+                if (stamp < landStamps.regions) {
+                    return false;
+                }
+                landStamps.regions = stamp;
+                applyRegions(land, regions);
+                return true;
+            case MEMBER:
+                UUID memberId = LandCodec.readUuid(in);
+                String roleName = LandCodec.readString(in);
+                if (stamp < landStamps.members.getOrDefault(memberId, 0L)) {
+                    return false;
+                }
+                landStamps.members.put(memberId, stamp);
+                landManager.applyMemberChange(land, memberId, roleName);
+                landManager.notifyApplied(listener -> listener.onMemberChanged(land, memberId, roleName));
+                return true;
+            case ROLE:
+                String name = LandCodec.readString(in);
+                boolean exists = in.get() != 0;
+                long mask = in.getLong();
+                if (stamp < landStamps.roles.getOrDefault(name, 0L)) {
+                    return false;
+                }
+                landStamps.roles.put(name, stamp);
+                landManager.applyRoleChange(land, name, exists ? LandPermission.fromMask(mask) : null);
+                LandRole role = land.getRoles().get(name);
+                landManager.notifyApplied(listener -> listener.onRoleChanged(land, name, role));
+                return true;
+            case LAND_FLAGS:
+                long flags = in.getLong();
+                if (stamp < landStamps.flags) {
+                    return false;
+                }
+                landStamps.flags = stamp;
+                landManager.applyLandFlags(land, flags);
+                landManager.notifyApplied(listener -> listener.onFlagsChanged(land, null));
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown replication event type " + type + ".");
+        }
+    }
+
+    /** Brings the region set of a land to the replicated one, touching only what differs */
+    private void applyRegions(Land land, Set<Region> regions) {
+        Set<Region> added = new HashSet<>(regions);
+        added.removeAll(land.getRegions());
+        Set<Region> removed = new HashSet<>(land.getRegions());
+        removed.removeAll(regions);
+        if (!added.isEmpty() || !removed.isEmpty()) {
+            checkOverlap(land, added);
+            landManager.applyRegionChange(land, added, removed);
+            landManager.notifyApplied(listener -> listener.onRegionsChanged(land, added, removed));
+        }
+        // Regions that were kept can still have different overrides
+        Map<Region, Region> current = new HashMap<>();
+        for (Region region : land.getRegions()) {
+            current.put(region, region);
+        }
+        for (Region region : regions) {
+            Region local = current.get(region);
+            if (local != null && !added.contains(region) && !local.hasSameFlagOverrides(region)) {
+                landManager.applyRegionFlags(land, region, region.getFlagMask(), region.getFlagValues());
+                landManager.notifyApplied(listener -> listener.onFlagsChanged(land, local));
+            }
+        }
+    }
+
+    /** Deletes a land with its subclaims, every one of them rejecting later writes */
+    private void deleteNested(Land land, long stamp) {
+        List<Land> removed = new ArrayList<>();
+        collectNested(land, removed);
+        landManager.applyLandDeleted(land);
+        for (Land removedLand : removed) {
+            stamps.computeIfAbsent(removedLand.getId(), id -> new LandStamps()).deleted = stamp;
+            landManager.notifyApplied(listener -> listener.onLandDeleted(removedLand));
+        }
+    }
+
+    /** Counts and logs replicated regions of a top level land that overlap another land here
+     *  Both lands keep the regions, so every node holds the same region sets, but which of them protects the
+     *  shared blocks follows each node's index order and may differ. getOverlapCount surfaces it.
+     */
+    private void checkOverlap(Land land, Set<Region> regions) {
+        if (land.isSubclaim()) {
+            return;
+        }
+        LandIndex index = landManager.getIndex();
+        for (Region region : regions) {
+            for (int cx = region.getCorner1().getX() >> LandIndex.CHUNK_SHIFT; cx <= region.getCorner2().getX() >> LandIndex.CHUNK_SHIFT; cx++) {
+                for (int cz = region.getCorner1().getZ() >> LandIndex.CHUNK_SHIFT; cz <= region.getCorner2().getZ() >> LandIndex.CHUNK_SHIFT; cz++) {
+                    for (LandIndex.Entry entry : index.getBucket(LandIndex.chunkKey(cx, cz))) {
+                        if (entry.getDepth() == 0 && entry.getLand() != land && entry.getRegion().overlaps(region)) {
+                            overlapCount++;
+                            LOGGER.atWarning().log("Replicated claim of land " + land.getName() + " overlaps land "
+                                                   + entry.getLand().getName() + ", both were claimed concurrently.");
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Collects a land and its nested subclaims, subclaims first like a delete reports them */
+    private static void collectNested(Land land, List<Land> out) {
+        for (Land subclaim : land.getSubclaims()) {
+            collectNested(subclaim, out);
+        }
+        out.add(land);
+    }
+
+    /** Publishing, world thread right after each local mutation */
+
+    @Override
+    public void onLandCreated(Land land) {
+        if (applying) {
+            return;
+        }
+        long stamp = begin(LAND_CREATED, land);
+        LandStamps landStamps = stamps.computeIfAbsent(land.getId(), id -> new LandStamps());
+        landStamps.created = stamp;
+        landStamps.regions = stamp;
+        landStamps.flags = stamp;
+        scratch.putUuid(land.getOwner());
+        scratch.putUuid(land.getParent() != null ? land.getParent().getId() : null);
+        scratch.putString(land.getName());
+        scratch.putClaimMode(land.getClaimMode());
+        scratch.putLong(land.getCreatedAt());
+        scratch.putLong(land.getFlags());
+        scratch.putRegions(land.getRegions());
+        publish();
+    }
+
+    @Override
+    public void onLandDeleted(Land land) {
+        if (applying) {
+            return;
+        }
+        long stamp = begin(LAND_DELETED, land);
+        stamps.computeIfAbsent(land.getId(), id -> new LandStamps()).deleted = stamp;
+        publish();
+    }
+
+    @Override
+    public void onRegionsChanged(Land land, Set<Region> added, Set<Region> removed) {
+        publishRegions(land);
+    }
+
+    @Override
+    public void onMemberChanged(Land land, UUID memberId, String roleName) {
+        if (applying) {
+            return;
+        }
+        long stamp = begin(MEMBER, land);
+        stamps.computeIfAbsent(land.getId(), id -> new LandStamps()).members.put(memberId, stamp);
+        scratch.putUuid(memberId);
+        scratch.putString(roleName);
+        publish();
+    }
+
+    @Override
+    public void onRoleChanged(Land land, String roleName, LandRole role) {
+        if (applying) {
+            return;
+        }
+        long stamp = begin(ROLE, land);
+        stamps.computeIfAbsent(land.getId(), id -> new LandStamps()).roles.put(roleName, stamp);
+        scratch.putString(roleName);
+        scratch.putByte((byte) (role != null ? 1 : 0));
+        scratch.putLong(role != null ? LandPermission.toMask(role.getPermissions()) : 0L);
+        publish();
+    }
+
+    /** Region overrides travel with the region set, so a region flag change republishes the regions */
+    @Override
+    public void onFlagsChanged(Land land, Region region) {
+        if (region != null) {
+            publishRegions(land);
+            return;
+        }
+        if (applying) {
+            return;
+        }
+        long stamp = begin(LAND_FLAGS, land);
+        stamps.computeIfAbsent(land.getId(), id -> new LandStamps()).flags = stamp;
+        scratch.putLong(land.getFlags());
+        publish();
+    }
+
+    private void publishRegions(Land land) {
+        if (applying) {
+            return;
+        }
+        long stamp = begin(REGIONS, land);
+        stamps.computeIfAbsent(land.getId(), id -> new LandStamps()).regions = stamp;
+        scratch.putRegions(land.getRegions());
+        publish();
+    }
+
+    /** Starts an event in the scratch buffer, returning its stamp */
+    private long begin(byte type, Land land) {
+        long stamp = (++clock << NODE_BITS) | nodeId;
+        scratch.clear();
+        scratch.putInt(nodeId);
+        scratch.putLong(incarnation);
+        scratch.putLong(nextSequence++);
+        scratch.putLong(stamp);
+        scratch.putByte(type);
+        scratch.putUuid(land.getId());
+        return stamp;
+    }
+
+    /** Hands the scratch event to the transport, a failed publish is logged since the local change already happened */
+    private void publish() {
+        byte[] event = Arrays.copyOf(scratch.getBuffer().array(), scratch.getBuffer().position());
+        try {
+            transport.publish(event);
+        } catch (IOException e) {
+            LOGGER.atSevere().withCause(e).log("Failed to publish a land change, other servers will miss it.");
+        }
+    }
+}
\ No newline at end of file
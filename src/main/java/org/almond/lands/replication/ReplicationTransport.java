@@ -0,0 +1,18 @@
+package org.almond.lands.replication;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/** Carries encoded change events between the servers sharing a world
+ *  A transport must deliver the events of one node in the order they were published,
+ *  it may deliver them more than once, the replicator drops duplicates by sequence.
+ */
+public interface ReplicationTransport extends Closeable {
+
+    /** Starts delivering the events of every other node to the receiver, called on a transport thread */
+    void start(int nodeId, Consumer<byte[]> receiver) throws IOException;
+
+    /** Publishes an event of this node, called on the world thread so it must not block on other nodes */
+    void publish(byte[] event) throws IOException;
+}
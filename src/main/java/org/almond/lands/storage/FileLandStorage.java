@@ -0,0 +1,317 @@
+package org.almond.lands.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.almond.lands.index.LandIndex;
+import org.almond.lands.jfr.LandStorageEvent;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandDetails;
+import org.almond.lands.model.LandFlag;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.LandRole;
+import org.almond.lands.model.Region;
+import com.google.gson.stream.JsonWriter;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+/** File storage backend
+ *  Every land is saved to its own shard file, a LandSnapshot holding the header of a single land, loaded by
+ *  memory mapping it. The header is all lookups and protection need, members and roles live in a LandDetailFile
+ *  per land that is only read on first access.
+ *  JSON is only written as a human readable export for debugging and external tools.
+ */
+public class FileLandStorage extends JournaledLandStorage {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    public static final String SHARD_DIRECTORY = "lands";
+    public static final String JOURNAL_DIRECTORY = "journal";
+    public static final String EXPORT_FILE = "lands.json";
+    public static final String SHARD_SUFFIX = ".land";
+    public static final String DETAIL_SUFFIX = ".detail";
+    public static final String CORRUPT_SUFFIX = ".corrupt";     // Detail files moved aside, see read
+
+    private Path dataDirectory;
+    private Path shardDirectory;
+
+    public FileLandStorage(Path dataDirectory) {
+        this(dataDirectory, LandDetailCache.DEFAULT_CAPACITY);
+    }
+
+    /** Creates the storage keeping the details of at most about detailCapacity lands resident */
+    public FileLandStorage(Path dataDirectory, int detailCapacity) {
+        super(dataDirectory.resolve(JOURNAL_DIRECTORY), detailCapacity);
+        this.dataDirectory = dataDirectory;
+        this.shardDirectory = dataDirectory.resolve(SHARD_DIRECTORY);
+    }
+
+    /** Loads the shards and replays the journal into the manager, then journals and autosaves every further mutation
+     *  Fails if any shard cannot be decoded, loading without it would drop the land and let autosave forget it.
+     */
+    @Override
+    public void load(LandManager landManager) throws IOException {
+        LandStorageEvent event = new LandStorageEvent();
+        event.begin();
+        Files.createDirectories(shardDirectory);
+
+        // Shards decode independently, so they are read in parallel on the common fork join pool
+        List<LoadedShard> shards;
+        try {
+            shards = listShards().parallelStream()
+                .map(this::readShard)
+                .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Map<UUID, Long> landSequences = new HashMap<>((int) (shards.size() / 0.75f) + 1);
+        Map<UUID, UUID> storedParents = new HashMap<>((int) (shards.size() / 0.75f) + 1);
+        List<Land> loaded = new ArrayList<>(shards.size());
+        for (LoadedShard shard : shards) {
+            landSequences.put(shard.land.getId(), shard.sequence);
+            storedParents.put(shard.land.getId(), shard.parentId);
+            loaded.add(shard.land);
+        }
+
+        attach(landManager, loaded, storedParents, landSequences);
+        commitLoad(event, landManager);
+    }
+
+    /** Shard file of the land with the given id */
+    public Path getShardFile(UUID landId) {
+        return shardDirectory.resolve(landId + SHARD_SUFFIX);
+    }
+
+    /** Detail file of the land with the given id */
+    public Path getDetailFile(UUID landId) {
+        return shardDirectory.resolve(landId + DETAIL_SUFFIX);
+    }
+
+    /** Lists every shard file */
+    public List<Path> listShards() throws IOException {
+        List<Path> shards = new ArrayList<>();
+        if (!Files.isDirectory(shardDirectory)) {
+            return shards;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(shardDirectory, "*" + SHARD_SUFFIX)) {
+            for (Path shard : stream) {
+                shards.add(shard);
+            }
+        }
+        return shards;
+    }
+
+    /** Decodes a single land shard, runs on a fork join worker
+     *  A shard that cannot be decoded fails the load and stays where it is, for an admin to restore from a backup.
+     *  The journal only holds the changes since the shard was written, so it cannot stand in for the land.
+     */
+    private LoadedShard readShard(Path file) {
+        LoadedShard shard = new LoadedShard();
+        try {
+            shard.sequence = LandSnapshot.read(file, detailCache, (land, parentId) -> {
+                shard.land = land;
+                shard.parentId = parentId;
+            });
+            if (shard.land == null) {
+                throw new IOException("Shard " + file + " holds no land.");
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new UncheckedIOException(new IOException("Land shard " + file + " is unreadable, restore it from a backup"
+                                                           + " or remove it to drop the land.", e));
+        }
+        return shard;
+    }
+
+    private void quarantine(Path file, Exception cause) {
+        Path target = file.resolveSibling(file.getFileName() + CORRUPT_SUFFIX);
+        try {
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+            LOGGER.atSevere().withCause(cause).log("Land file " + file + " is unreadable, moved to " + target + ".");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** A decoded shard, its land with the parent id and journal sequence stored alongside */
+    private static class LoadedShard {
+        private Land land;
+        private UUID parentId;
+        private long sequence;
+    }
+
+    /** Writes a round of changed lands, details first
+     *  A crash in between leaves an older header, whose journal replay is idempotent.
+     */
+    @Override
+    public void write(List<LandRecord> records, List<UUID> removals, long journalSequence) throws IOException {
+        for (LandRecord record : records) {
+            if (record.hasDetails()) {
+                LandDetailFile.write(getDetailFile(record.getId()), record);
+            }
+            LandSnapshot.write(getShardFile(record.getId()), Collections.singletonList(record), journalSequence, false);
+        }
+        for (UUID landId : removals) {
+            Files.deleteIfExists(getShardFile(landId));
+            Files.deleteIfExists(getDetailFile(landId));
+        }
+        // The journal covering this round is dropped after it returns, so the renames must be durable first
+        LandSnapshot.syncDirectory(shardDirectory);
+    }
+
+    /** Reads the detail file of a land, null if it was never written
+     *  A detail file that cannot be decoded is moved aside like a bad shard, the cache then stands in for it.
+     */
+    @Override
+    public LandDetails read(Land land) throws IOException {
+        Path file = getDetailFile(land.getId());
+        try {
+            return LandDetailFile.read(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            try {
+                quarantine(file, e);
+            } catch (UncheckedIOException moveFailure) {
+                e.addSuppressed(moveFailure.getCause());
+            }
+            throw new IOException("Detail file " + file + " is unreadable.", e);
+        }
+    }
+
+    /** Queries, every header is resident so these scan the manager and index instead of the files */
+    @Override
+    public List<UUID> findLandsByOwner(UUID ownerId) {
+        List<UUID> result = new ArrayList<>();
+        for (Land land : landManager.getAllLands()) {
+            if (land.getOwner().equals(ownerId)) {
+                result.add(land.getId());
+            }
+        }
+        return result;
+    }
+
+    /** Loads the details of every land the member filter cannot rule out */
+    @Override
+    public List<UUID> findLandsByMember(UUID playerId) {
+        List<UUID> result = new ArrayList<>();
+        for (Land land : landManager.getAllLands()) {
+            if (land.mightBeMember(playerId) && land.getMembers().containsKey(playerId)) {
+                result.add(land.getId());
+            }
+        }
+        return result;
+    }
+
+    /** Uses the modification time of the shard files */
+    @Override
+    public List<UUID> findLandsUnchangedSince(long timestamp) throws IOException {
+        List<UUID> result = new ArrayList<>();
+        for (Path shard : listShards()) {
+            if (Files.getLastModifiedTime(shard).toMillis() < timestamp) {
+                String fileName = shard.getFileName().toString();
+                result.add(UUID.fromString(fileName.substring(0, fileName.length() - SHARD_SUFFIX.length())));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<UUID> findLandsIntersecting(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        Set<UUID> result = new LinkedHashSet<>();
+        LandIndex index = landManager.getIndex();
+        for (int cx = minX >> LandIndex.CHUNK_SHIFT; cx <= maxX >> LandIndex.CHUNK_SHIFT; cx++) {
+            for (int cz = minZ >> LandIndex.CHUNK_SHIFT; cz <= maxZ >> LandIndex.CHUNK_SHIFT; cz++) {
+                for (LandIndex.Entry entry : index.getBucket(LandIndex.chunkKey(cx, cz))) {
+                    Region region = entry.getRegion();
+                    if (region.getCorner1().getX() <= maxX && region.getCorner2().getX() >= minX
+                        && region.getCorner1().getY() <= maxY && region.getCorner2().getY() >= minY
+                        && region.getCorner1().getZ() <= maxZ && region.getCorner2().getZ() >= minZ) {
+                        result.add(entry.getLand().getId());
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Writes every land as pretty printed JSON, for debugging only, it is never loaded back */
+    public Path exportJson(LandManager landManager) throws IOException {
+        Files.createDirectories(dataDirectory);
+        Path file = dataDirectory.resolve(EXPORT_FILE);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             JsonWriter json = new JsonWriter(writer)) {
+            json.setIndent("  ");
+            json.beginArray();
+            for (Land land : landManager.getAllLands()) {
+                writeJson(json, land);
+            }
+            json.endArray();
+        }
+        return file;
+    }
+
+    /** Writes a single land as a JSON object */
+    static void writeJson(JsonWriter json, Land land) throws IOException {
+        json.beginObject();
+        json.name("id").value(land.getId().toString());
+        json.name("name").value(land.getName());
+        json.name("owner").value(land.getOwner().toString());
+        json.name("parent").value(land.getParent() != null ? land.getParent().getId().toString() : null);
+        json.name("claimMode").value(land.getClaimMode().name());
+        json.name("createdAt").value(land.getCreatedAt());
+
+        json.name("flags").beginArray();
+        for (LandFlag flag : LandFlag.values()) {
+            if (land.hasFlag(flag)) {
+                json.value(flag.name());
+            }
+        }
+        json.endArray();
+
+        // Both corners, then the override mask and values if the region overrides any flag
+        json.name("regions").beginArray();
+        for (Region region : land.getRegions()) {
+            json.beginArray();
+            json.value(region.getCorner1().getX()).value(region.getCorner1().getY()).value(region.getCorner1().getZ());
+            json.value(region.getCorner2().getX()).value(region.getCorner2().getY()).value(region.getCorner2().getZ());
+            if (region.getFlagMask() != 0) {
+                json.value(region.getFlagMask()).value(region.getFlagValues());
+            }
+            json.endArray();
+        }
+        json.endArray();
+
+        json.name("roles").beginObject();
+        for (Map.Entry<String, LandRole> role : land.getRoles().entrySet()) {
+            json.name(role.getKey()).beginArray();
+            for (LandPermission permission : role.getValue().getPermissions()) {
+                json.value(permission.name());
+            }
+            json.endArray();
+        }
+        json.endObject();
+
+        json.name("members").beginObject();
+        for (Map.Entry<UUID, String> member : land.getMembers().entrySet()) {
+            json.name(member.getKey().toString()).value(member.getValue());
+        }
+        json.endObject();
+        json.endObject();
+    }
+}
@@ -0,0 +1,144 @@
+package org.almond.lands.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import org.almond.lands.jfr.LandStorageEvent;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.manager.LandValidator;
+import org.almond.lands.model.Land;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+/** Shared part of the storage backends
+ *  Every mutation is appended to the LandJournal, recovery replays it on top of the stored lands.
+ *  LandAutosave hands only the changed lands to the backend on a background thread and then drops the journal
+ *  it covers. Members and roles are loaded lazily through the LandDetailCache.
+ *  Backends store each land's header, its details and the journal sequence it covers, and read them back.
+ */
+public abstract class JournaledLandStorage implements LandStorage, LandAutosave.Writer, LandDetailCache.Reader {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    protected LandJournal journal;
+    protected LandDetailCache detailCache;
+    protected LandAutosave autosave;
+    protected LandManager landManager;
+
+    protected JournaledLandStorage(Path journalDirectory, int detailCapacity) {
+        this.journal = new LandJournal(journalDirectory);
+        this.detailCache = new LandDetailCache(this, detailCapacity);
+    }
+
+    /** Validates and registers the stored lands, replays the journal on top and starts tracking changes
+     *  storedParents holds the parent id each stored land was saved with, landSequences the journal sequence
+     *  it covers. Lands the journal creates replay from its start.
+     */
+    protected void attach(LandManager landManager, List<Land> loaded, Map<UUID, UUID> storedParents,
+                          Map<UUID, Long> landSequences) throws IOException {
+        this.landManager = landManager;
+        this.autosave = new LandAutosave(this, landManager, journal);
+
+        Map<UUID, UUID> parentIds = new HashMap<>();
+        for (Map.Entry<UUID, UUID> parent : storedParents.entrySet()) {
+            if (parent.getValue() == null) {
+                continue;
+            }
+            if (landSequences.containsKey(parent.getValue())) {
+                parentIds.put(parent.getKey(), parent.getValue());
+            } else {
+                // Parent missing, keep the subclaim as a top level land rather than losing it
+                LOGGER.atWarning().log("Parent of land " + parent.getKey() + " is missing, loading it as a top level land.");
+            }
+        }
+        // Nothing is published before the stored lands passed validation, a broken store fails the load instead
+        List<String> problems = LandValidator.validate(loaded, parentIds);
+        if (!problems.isEmpty()) {
+            for (String problem : problems) {
+                LOGGER.atSevere().log(problem);
+            }
+            throw new IOException("Stored lands failed validation with " + problems.size() + " problems, the first being: "
+                                  + problems.get(0));
+        }
+        landManager.registerAll(loaded, parentIds);
+        for (Land land : loaded) {
+            // Orphans loaded as top level lands differ from what is stored and stay dirty
+            if (Objects.equals(storedParents.get(land.getId()), parentIds.get(land.getId()))) {
+                land.markSaved(land.getVersion());
+            }
+        }
+
+        long lastSequence = journal.replay(landManager, landSequences, 0L);
+        if (lastSequence > 0L) {
+            LOGGER.atInfo().log("Replayed land journal up to sequence " + lastSequence + ".");
+        }
+        journal.open(lastSequence);
+        landManager.addChangeListener(journal);
+        landManager.addChangeListener(autosave);
+        landManager.addChangeListener(detailCache);
+
+        for (Land land : landManager.getAllLands()) {
+            // Lands created by replay hold their details, stored lands load theirs through the cache
+            if (land.getResidentDetails() != null && !landSequences.containsKey(land.getId())) {
+                detailCache.admit(land);
+            }
+            // Replay changes lands without events, queue whatever now differs from storage
+            if (land.isDirty()) {
+                autosave.markDirty(land);
+            }
+        }
+        for (UUID landId : landSequences.keySet()) {
+            if (landManager.getLandById(landId) == null) {
+                autosave.markDeleted(landId);
+            }
+        }
+    }
+
+    /** Reports a finished startup load to the flight recorder */
+    protected static void commitLoad(LandStorageEvent event, LandManager landManager) {
+        if (event.shouldCommit()) {
+            int[] regionCount = new int[1];
+            landManager.forEachLand(land -> regionCount[0] += land.getRegions().size());
+            event.operation = LandStorageEvent.LOAD;
+            event.landId = "";
+            event.landCount = landManager.getLandCount();
+            event.regionCount = regionCount[0];
+            event.succeeded = true;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void autosave() throws IOException {
+        autosave.save();
+    }
+
+    @Override
+    public void save() throws IOException {
+        autosave.flush();
+    }
+
+    /** Finishes the running autosave, flushes the journal and stops the background threads */
+    @Override
+    public void close() throws IOException {
+        if (autosave != null) {
+            autosave.close();
+        }
+        journal.close();
+    }
+
+    public LandJournal getJournal() {
+        return journal;
+    }
+
+    public LandAutosave getAutosave() {
+        return autosave;
+    }
+
+    public LandDetailCache getDetailCache() {
+        return detailCache;
+    }
+}
@@ -0,0 +1,229 @@
+package org.almond.lands.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.almond.lands.jfr.LandStorageEvent;
+import org.almond.lands.manager.LandChangeListener;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandDetails;
+import org.almond.lands.model.LandRole;
+import org.almond.lands.model.Region;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+/** Incremental autosave of the lands changed since the last round
+ *  Listens to committed mutations and remembers which lands changed.
+ *  A round captures LandRecords of only those lands on the world thread and hands them to the storage backend's
+ *  Writer on a background thread. Records carry members and roles only when those are resident and changed.
+ *  Every record of a round is stored with the journal sequence the round started at. The round only marks a
+ *  journal rotation there, once the whole round is written and the journal is durable up to that sequence,
+ *  the segments before the rotation are dropped.
+ */
+public class LandAutosave implements LandChangeListener {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    /** Backend side of a round, runs on the autosave thread */
+    public interface Writer {
+        /** Stores the records and removes the deleted lands, all tagged with the journal sequence they cover */
+        void write(List<LandRecord> records, List<UUID> removals, long journalSequence) throws IOException;
+    }
+
+    private Writer target;
+    private LandManager landManager;
+    private LandJournal journal;
+    private Set<Land> dirty = new HashSet<>();      // Changed since the last round, world thread only
+    private Set<UUID> deleted = new HashSet<>();    // Shards to remove in the next round, world thread only
+    private Queue<Land> failedLands = new ConcurrentLinkedQueue<>(); // Written back by the writer thread
+    private Queue<UUID> failedDeletes = new ConcurrentLinkedQueue<>();
+    private ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Lands-Autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> round;
+
+    public LandAutosave(Writer target, LandManager landManager, LandJournal journal) {
+        this.target = target;
+        this.landManager = landManager;
+        this.journal = journal;
+    }
+
+    /** Queues a land for the next round without a change event, used for lands changed by journal replay */
+    public void markDirty(Land land) {
+        dirty.add(land);
+    }
+
+    /** Queues the shard of a land that no longer exists for removal */
+    public void markDeleted(UUID landId) {
+        deleted.add(landId);
+    }
+
+    /** Starts an autosave round
+     *  Must run on the world thread, only the dirty lands are captured here and the disk work happens off thread.
+     *  Returns false without doing anything while the previous round is still writing.
+     */
+    public boolean save() throws IOException {
+        if (round != null && !round.isDone()) {
+            return false;
+        }
+        // Retry whatever the previous round could not write, unless it was deleted since
+        for (Land land; (land = failedLands.poll()) != null; ) {
+            if (landManager.getLandById(land.getId()) == land) {
+                dirty.add(land);
+            }
+        }
+        for (UUID landId; (landId = failedDeletes.poll()) != null; ) {
+            if (landManager.getLandById(landId) == null) {
+                deleted.add(landId);
+            }
+        }
+        if (dirty.isEmpty() && deleted.isEmpty()) {
+            return true;
+        }
+
+        long sequence = journal.getLastSequence();
+        long segment = journal.requestRotation();
+        List<Land> lands = new ArrayList<>(dirty.size());
+        List<LandRecord> records = new ArrayList<>(dirty.size());
+        List<Long> versions = new ArrayList<>(dirty.size());
+        List<LandDetails> details = new ArrayList<>(dirty.size());
+        for (Land land : dirty) {
+            if (land.isDirty()) {
+                // Details are only written when they changed, evicted details are clean by definition
+                LandDetails resident = land.getResidentDetails();
+                boolean changed = resident != null && resident.isDirty();
+                lands.add(land);
+                records.add(LandRecord.of(land, changed));
+                versions.add(land.getVersion());
+                details.add(changed ? resident : null);
+            }
+        }
+        List<UUID> removals = new ArrayList<>(deleted);
+        dirty.clear();
+        deleted.clear();
+
+        round = writer.submit(() -> write(lands, records, versions, details, removals, sequence, segment));
+        return true;
+    }
+
+    /** Writes every pending change and waits for it, used on shutdown */
+    public void flush() throws IOException {
+        awaitRound();
+        save();
+        awaitRound();
+    }
+
+    /** Waits for the running round and stops the writer thread */
+    public void close() throws IOException {
+        awaitRound();
+        writer.shutdown();
+    }
+
+    /** Number of lands queued for the next round */
+    public int getDirtyCount() {
+        return dirty.size();
+    }
+
+    private void write(List<Land> lands, List<LandRecord> records, List<Long> versions, List<LandDetails> details,
+                       List<UUID> removals, long sequence, long segment) {
+        LandStorageEvent event = new LandStorageEvent();
+        event.begin();
+        try {
+            target.write(records, removals, sequence);
+        } catch (IOException | RuntimeException e) {
+            commitSave(event, records, false);
+            // Nothing of the round counts as saved, the journal keeps covering it until a retry succeeds
+            failedLands.addAll(lands);
+            failedDeletes.addAll(removals);
+            LOGGER.atSevere().withCause(e).log("Failed to save " + records.size() + " lands.");
+            return;
+        }
+        commitSave(event, records, true);
+        for (int i = 0; i < lands.size(); i++) {
+            if (records.get(i).hasDetails()) {
+                details.get(i).markSaved(records.get(i).getDetailsVersion());
+            }
+            lands.get(i).markSaved(versions.get(i));
+        }
+        // Every entry before the rotation is now stored, the segments go once the journal has them all on disk
+        try {
+            journal.awaitDurable(sequence);
+            journal.deleteSegmentsBefore(segment);
+        } catch (IOException e) {
+            LOGGER.atWarning().withCause(e).log("Failed to drop saved journal segments.");
+        }
+    }
+
+    private static void commitSave(LandStorageEvent event, List<LandRecord> records, boolean succeeded) {
+        if (event.shouldCommit()) {
+            int regionCount = 0;
+            for (LandRecord record : records) {
+                regionCount += record.getRegionCount();
+            }
+            event.operation = LandStorageEvent.SAVE;
+            event.landId = records.size() == 1 ? records.get(0).getId().toString() : "";
+            event.landCount = records.size();
+            event.regionCount = regionCount;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+
+    private void awaitRound() throws IOException {
+        if (round == null) {
+            return;
+        }
+        try {
+            round.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for autosave.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Autosave failed.", e.getCause());
+        }
+    }
+
+    /** Change tracking, world thread */
+    @Override
+    public void onLandCreated(Land land) {
+        deleted.remove(land.getId());
+        dirty.add(land);
+    }
+
+    @Override
+    public void onLandDeleted(Land land) {
+        dirty.remove(land);
+        deleted.add(land.getId());
+    }
+
+    @Override
+    public void onRegionsChanged(Land land, Set<Region> added, Set<Region> removed) {
+        dirty.add(land);
+    }
+
+    @Override
+    public void onMemberChanged(Land land, UUID memberId, String roleName) {
+        dirty.add(land);
+    }
+
+    @Override
+    public void onRoleChanged(Land land, String roleName, LandRole role) {
+        dirty.add(land);
+    }
+
+    @Override
+    public void onFlagsChanged(Land land, Region region) {
+        dirty.add(land);
+    }
+}
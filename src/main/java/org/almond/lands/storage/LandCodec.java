@@ -0,0 +1,156 @@
+package org.almond.lands.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import org.almond.lands.model.ClaimMode;
+import org.almond.lands.model.Region;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+/** Binary encoding of land changes, shared by the journal and replication events
+ *  Writes go to a growable big endian buffer owned by one thread. The reads check what they decode
+ *  and throw IllegalArgumentException or BufferUnderflowException on bytes that cannot be a valid change.
+ *
+ *  uuid     long msb, long lsb, 0/0 for null
+ *  string   short byte length, -1 for null, UTF-8 bytes
+ *  region   byte column, 6 int corners, long override mask, long override values
+ *  regions  int count, count x region
+ */
+public class LandCodec {
+
+    private static final int REGION_SIZE = 41;
+
+    private ByteBuffer buffer;
+
+    public LandCodec(int capacity) {
+        this.buffer = ByteBuffer.allocate(capacity);
+    }
+
+    /** Buffer holding what was written since the last clear, it is replaced when it has to grow */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public void clear() {
+        buffer.clear();
+    }
+
+    public void putByte(byte value) {
+        ensure(1);
+        buffer.put(value);
+    }
+
+    public void putInt(int value) {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    public void putLong(long value) {
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    public void putUuid(UUID uuid) {
+        ensure(16);
+        buffer.putLong(uuid != null ? uuid.getMostSignificantBits() : 0L);
+        buffer.putLong(uuid != null ? uuid.getLeastSignificantBits() : 0L);
+    }
+
+    public void putString(String string) {
+        byte[] bytes = string != null ? string.getBytes(StandardCharsets.UTF_8) : null;
+        ensure(2 + (bytes != null ? bytes.length : 0));
+        buffer.putShort((short) (bytes != null ? bytes.length : -1));
+        if (bytes != null) {
+            buffer.put(bytes);
+        }
+    }
+
+    public void putClaimMode(ClaimMode claimMode) {
+        putByte((byte) claimMode.ordinal());
+    }
+
+    public void putRegion(Region region) {
+        ensure(REGION_SIZE);
+        buffer.put((byte) (region.isColumn() ? 1 : 0));
+        buffer.putInt(region.getCorner1().getX());
+        buffer.putInt(region.getCorner1().getY());
+        buffer.putInt(region.getCorner1().getZ());
+        buffer.putInt(region.getCorner2().getX());
+        buffer.putInt(region.getCorner2().getY());
+        buffer.putInt(region.getCorner2().getZ());
+        buffer.putLong(region.getFlagMask());
+        buffer.putLong(region.getFlagValues());
+    }
+
+    public void putRegions(Set<Region> regions) {
+        putInt(regions.size());
+        for (Region region : regions) {
+            putRegion(region);
+        }
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    /** Decoding */
+
+    public static UUID readUuid(ByteBuffer in) {
+        long msb = in.getLong();
+        long lsb = in.getLong();
+        return (msb == 0L && lsb == 0L) ? null : new UUID(msb, lsb);
+    }
+
+    public static String readString(ByteBuffer in) {
+        short length = in.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static ClaimMode readClaimMode(ByteBuffer in) {
+        int ordinal = in.get();
+        ClaimMode[] modes = ClaimMode.values();
+        if (ordinal < 0 || ordinal >= modes.length) {
+            throw new IllegalArgumentException("Unknown claim mode " + ordinal + ".");
+        }
+        return modes[ordinal];
+    }
+
+    public static Region readRegion(ByteBuffer in) {
+        byte column = in.get();
+        if (column != 0 && column != 1) {
+            throw new IllegalArgumentException("Invalid region kind " + column + ".");
+        }
+        Vector3i min = new Vector3i(in.getInt(), in.getInt(), in.getInt());
+        Vector3i max = new Vector3i(in.getInt(), in.getInt(), in.getInt());
+        Region region = column != 0
+            ? Region.column(min.getX(), min.getZ(), max.getX(), max.getZ())
+            : new Region(min, max);
+        region.setFlagOverrides(in.getLong(), in.getLong());
+        return region;
+    }
+
+    public static Set<Region> readRegions(ByteBuffer in) {
+        int count = in.getInt();
+        // A count the remaining bytes cannot hold is garbage, checked before allocating for it
+        if (count < 0 || (long) count * REGION_SIZE > in.remaining()) {
+            throw new IllegalArgumentException("Invalid region count " + count + ".");
+        }
+        Set<Region> regions = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            regions.add(readRegion(in));
+        }
+        return regions;
+    }
+}
@@ -0,0 +1,153 @@
+package org.almond.lands.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.almond.lands.jfr.LandStorageEvent;
+import org.almond.lands.manager.LandChangeListener;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandDetails;
+import org.almond.lands.model.LandDetailSource;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+/** Bounded cache of resident land details
+ *  Lands are loaded with their header only, members and roles are read from the storage backend on first access.
+ *  Once more than the capacity are resident a clock sweep evicts details that were not accessed since the last pass.
+ *  Dirty details are never dropped, they stay pinned until the next autosave writes them back.
+ *  World thread only, like the lands themselves.
+ */
+public class LandDetailCache implements LandDetailSource, LandChangeListener {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /** Backend side of the cache, reads the stored details of a land */
+    public interface Reader {
+        /** Returns the stored details, or null if none were ever stored */
+        LandDetails read(Land land) throws IOException;
+    }
+
+    private Reader reader;
+    private int capacity;
+    private List<Land> resident = new ArrayList<>(); // Clock ring of lands with resident details
+    private int hand;
+    private long loads;
+    private long evictions;
+
+    public LandDetailCache(Reader reader, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Detail cache capacity must be positive.");
+        }
+        this.reader = reader;
+        this.capacity = capacity;
+    }
+
+    /** Reads the details of a land from the backend and makes them resident
+     *  Never throws, it runs inside protection checks. Missing or unreadable details are replaced by a placeholder
+     *  that gives members the outsider permissions and is never written back, so the stored details survive.
+     */
+    @Override
+    public LandDetails load(Land land) {
+        LandDetails details;
+        LandStorageEvent event = new LandStorageEvent();
+        event.begin();
+        try {
+            details = reader.read(land);
+            if (details == null) {
+                LOGGER.atSevere().log("Land " + land.getName() + " has no stored details, "
+                                      + "its members get outsider permissions until they are restored.");
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.atSevere().withCause(e).log("Failed to load the details of land " + land.getName() + ", "
+                                               + "its members get outsider permissions until they are restored.");
+            details = null;
+        }
+        boolean succeeded = details != null;
+        if (details == null) {
+            details = LandDetails.placeholder(land.getOwner(), land.getOutsiderPermissions());
+        }
+        if (event.shouldCommit()) {
+            event.operation = LandStorageEvent.LOAD_DETAILS;
+            event.landId = land.getId().toString();
+            event.landCount = 1;
+            event.regionCount = land.getRegions().size();
+            event.succeeded = succeeded;
+            event.commit();
+        }
+        loads++;
+        admit(land);
+        return details;
+    }
+
+    /** Tracks a land whose details are resident, evicting cold ones while over capacity */
+    public void admit(Land land) {
+        while (resident.size() >= capacity && evictOne()) {
+            // Keep sweeping
+        }
+        resident.add(land);
+    }
+
+    /** Advances the clock hand until one clean, unreferenced land gives up its details
+     *  Returns false if every resident land was referenced again or dirty for two full passes.
+     */
+    private boolean evictOne() {
+        int limit = resident.size() * 2;
+        for (int scanned = 0; scanned < limit && !resident.isEmpty(); scanned++) {
+            if (hand >= resident.size()) {
+                hand = 0;
+            }
+            Land land = resident.get(hand);
+            LandDetails details = land.getResidentDetails();
+            if (details == null) {
+                removeAt(hand);
+                continue;
+            }
+            if (land.clearDetailsReferenced() || details.isDirty()) {
+                hand++;
+                continue;
+            }
+            land.unloadDetails(this);
+            removeAt(hand);
+            evictions++;
+            return true;
+        }
+        return false;
+    }
+
+    private void removeAt(int position) {
+        int last = resident.size() - 1;
+        resident.set(position, resident.get(last));
+        resident.remove(last);
+    }
+
+    public int getResidentCount() {
+        return resident.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getLoads() {
+        return loads;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /** New lands start with resident details */
+    @Override
+    public void onLandCreated(Land land) {
+        admit(land);
+    }
+
+    @Override
+    public void onLandDeleted(Land land) {
+        int position = resident.indexOf(land);
+        if (position >= 0) {
+            removeAt(position);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.almond.lands.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import org.almond.lands.model.LandDetails;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.LandRole;
+
+/** Detail tier file of a single land, its roles and members
+ *
+ *  Layout, big endian:
+ *    header    int magic, short version, short reserved, int stringCount
+ *    strings   stringCount x (short length, UTF-8 bytes), role names
+ *    roles     int roleCount, roleCount x (int name, long permission mask)
+ *    members   int memberCount, memberCount x (long msb, long lsb, int role name)
+ *    trailer   long CRC32 of every byte before it
+ */
+public class LandDetailFile {
+
+    public static final int MAGIC = 0x4C4E4444; // "LNDD"
+    public static final short VERSION = 1;
+
+    private static final int TRAILER_SIZE = 8;
+
+    /** Writes the details of a record to a temporary file, synced, and atomically moves it over the target
+     *  The rename is only durable once the caller synced the directory.
+     */
+    public static void write(Path file, LandRecord record) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (int i = 0; i < record.getRoleCount(); i++) {
+            intern(strings, record.getRoleName(i));
+        }
+        for (int i = 0; i < record.getMemberCount(); i++) {
+            intern(strings, record.getMemberRole(i));
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream fileOut = Channels.newOutputStream(channel);
+             CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut, 1 << 12), crc);
+             DataOutputStream out = new DataOutputStream(checked)) {
+
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeInt(strings.size());
+            for (String string : strings.keySet()) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+
+            out.writeInt(record.getRoleCount());
+            for (int i = 0; i < record.getRoleCount(); i++) {
+                out.writeInt(strings.get(record.getRoleName(i)));
+                out.writeLong(record.getRolePermissions(i));
+            }
+
+            out.writeInt(record.getMemberCount());
+            for (int i = 0; i < record.getMemberCount(); i++) {
+                out.writeLong(record.getMemberIdMostBits(i));
+                out.writeLong(record.getMemberIdLeastBits(i));
+                out.writeInt(strings.get(record.getMemberRole(i)));
+            }
+
+            out.flush();
+            DataOutputStream trailer = new DataOutputStream(fileOut);
+            trailer.writeLong(crc.getValue());
+            trailer.flush();
+            // The content must be on disk before the rename can make it the live file
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Reads the details of a land, they start out clean since they match the file */
+    public static LandDetails read(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        int end = buffer.limit() - TRAILER_SIZE;
+        if (end < 12) {
+            throw new IOException("Land details " + file + " are truncated.");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, end);
+        if (crc.getValue() != buffer.getLong(end)) {
+            throw new IOException("Land details " + file + " are corrupt, checksum mismatch.");
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("File " + file + " does not hold land details.");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Land details " + file + " have unsupported version " + version + ".");
+        }
+        buffer.getShort(); // reserved
+
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int roleCount = buffer.getInt();
+        Map<String, LandRole> roles = new HashMap<>();
+        for (int r = 0; r < roleCount; r++) {
+            String roleName = strings[buffer.getInt()];
+            roles.put(roleName, new LandRole(roleName, LandPermission.fromMask(buffer.getLong())));
+        }
+
+        int memberCount = buffer.getInt();
+        Map<UUID, String> members = new HashMap<>(memberCount * 2);
+        for (int m = 0; m < memberCount; m++) {
+            UUID member = new UUID(buffer.getLong(), buffer.getLong());
+            members.put(member, strings[buffer.getInt()]);
+        }
+
+        LandDetails details = new LandDetails(members, roles);
+        details.markSaved(details.getVersion());
+        return details;
+    }
+
+    private static void intern(Map<String, Integer> strings, String string) {
+        if (!strings.containsKey(string)) {
+            strings.put(string, strings.size());
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package org.almond.lands.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import org.almond.lands.manager.LandChangeListener;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.ClaimMode;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.LandRole;
+import org.almond.lands.model.Region;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+/** Append only write ahead journal of land mutations
+ *  Every committed LandManager mutation is encoded as a compact binary entry on the world thread
+ *  and handed to a writer thread, which group commits whatever accumulated with a single fsync.
+ *  Recovery replays the journal on top of the saved lands, autosave folds it into per land shards.
+ *
+ *  Entry framing: int payload length, int CRC32 of the payload, payload.
+ *  Payload: long sequence, byte type, long land id msb/lsb, type specific fields.
+ *  A torn or corrupt entry at the end of the last segment ends replay and is truncated, it was never acknowledged
+ *  as durable. One anywhere else means acknowledged entries were lost, and replay fails instead of skipping them.
+ */
+public class LandJournal implements LandChangeListener, Closeable {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    static final byte LAND_CREATED = 1;
+    static final byte LAND_DELETED = 2;
+    static final byte REGIONS_CHANGED = 3;
+    static final byte MEMBER_CHANGED = 4;
+    static final byte ROLE_CHANGED = 5;
+    static final byte LAND_FLAGS = 6;
+    static final byte REGION_FLAGS = 7;
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int FRAME_HEADER = 8;
+
+    private Path directory;
+    private final Object lock = new Object();       // Guards the pending buffer and sequence counters
+    private final Object ioLock = new Object();     // Guards the segment channel, held from buffer swap to fsync
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer writing = ByteBuffer.allocate(1 << 16);
+    private LandCodec scratch = new LandCodec(1 << 12);          // Payload encoding, world thread only
+    private List<Integer> pendingRotations = new ArrayList<>(); // Offsets into pending where a new segment starts
+    private List<Integer> writingRotations = new ArrayList<>();
+    private long nextSequence = 1;
+    private long durableSequence;
+    private long requestedSegment;                  // Segment entries appended now end up in, guarded by lock
+    private FileChannel channel;
+    private volatile long segmentIndex;
+    private volatile long segmentBytes;
+    private Thread writer;
+    private volatile boolean running;
+    private IOException failure;
+
+    public LandJournal(Path directory) {
+        this.directory = directory;
+    }
+
+    /** Replays every entry after the given sequence into the manager
+     *  Returns the last sequence found in the journal, or afterSequence if there was nothing newer.
+     */
+    public long replay(LandManager landManager, long afterSequence) throws IOException {
+        return replay(landManager, Collections.emptyMap(), afterSequence);
+    }
+
+    /** Replays entries into the manager, skipping those already reflected in a land's shard
+     *  Entries of lands without a known sequence are replayed after afterSequence.
+     *  Returns the last sequence found in the journal, or afterSequence if there was nothing newer.
+     */
+    public long replay(LandManager landManager, Map<UUID, Long> landSequences, long afterSequence) throws IOException {
+        long lastSequence = afterSequence;
+        List<Path> segments = listSegments();
+        for (int s = 0; s < segments.size(); s++) {
+            Path segment = segments.get(s);
+            boolean last = true;    // Only empty segments follow, as a crash right after opening a new one leaves
+            for (int later = s + 1; later < segments.size() && last; later++) {
+                last = Files.size(segments.get(later)) == 0;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+            while (buffer.hasRemaining()) {
+                int start = buffer.position();
+                String problem = null;
+                int length = 0;
+                if (buffer.remaining() < FRAME_HEADER) {
+                    problem = "a torn entry";
+                } else {
+                    length = buffer.getInt();
+                    if (length <= 0 || length > buffer.remaining() - 4) {
+                        problem = "a torn entry";
+                    }
+                }
+                if (problem == null) {
+                    int checksum = buffer.getInt();
+                    ByteBuffer payload = buffer.slice();
+                    payload.limit(length);
+                    buffer.position(buffer.position() + length);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload.duplicate());
+                    if ((int) crc.getValue() == checksum) {
+                        long sequence = payload.getLong();
+                        // Land id follows the type byte
+                        UUID landId = new UUID(payload.getLong(payload.position() + 1), payload.getLong(payload.position() + 9));
+                        if (sequence > landSequences.getOrDefault(landId, afterSequence)) {
+                            apply(landManager, payload);
+                        }
+                        lastSequence = Math.max(lastSequence, sequence);
+                        continue;
+                    }
+                    problem = "a corrupt entry";
+                }
+                // Entries after a lost one would apply on top of state missing it, so replay ends here
+                if (!last) {
+                    throw new IOException("Journal segment " + segment + " has " + problem + " at byte " + start
+                                          + " but later segments follow, the journal cannot be replayed safely.");
+                }
+                truncate(segment, start);
+                LOGGER.atWarning().log("Journal segment " + segment + " ends with " + problem + " at byte " + start
+                                       + ", truncated it.");
+                break;
+            }
+        }
+        return lastSequence;
+    }
+
+    /** Cuts an unacknowledged tail off the last segment, so later restarts do not run into it again */
+    private static void truncate(Path segment, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+            channel.force(true);
+        }
+    }
+
+    /** Opens a fresh segment for appending and starts the group commit writer */
+    public void open(long lastSequence) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments();
+        long lastIndex = segments.isEmpty() ? 0 : segmentIndexOf(segments.get(segments.size() - 1));
+        synchronized (ioLock) {
+            openSegment(lastIndex + 1);
+        }
+        synchronized (lock) {
+            nextSequence = lastSequence + 1;
+            durableSequence = lastSequence;
+            requestedSegment = lastIndex + 1;
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "Lands-Journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Starts a new segment after the last appended entry
+     *  Only marks the boundary, the writer thread closes the current segment once everything before it is fsynced.
+     *  Returns the index of the new segment, earlier segments hold no entry after getLastSequence() at this point.
+     *  Called on the world thread, it never waits on disk I/O.
+     */
+    public long requestRotation() {
+        synchronized (lock) {
+            pendingRotations.add(pending.position());
+            lock.notifyAll();
+            return ++requestedSegment;
+        }
+    }
+
+    /** Deletes the segments before the given one, used once a snapshot covering them is durable
+     *  The segment still appended to is kept, it goes with a later call once the writer moved past it.
+     */
+    public void deleteSegmentsBefore(long index) throws IOException {
+        long limit = Math.min(index, segmentIndex);
+        for (Path segment : listSegments()) {
+            if (segmentIndexOf(segment) < limit) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    /** Blocks until every entry up to the given sequence is on disk */
+    public void awaitDurable(long sequence) throws IOException {
+        synchronized (lock) {
+            while (durableSequence < sequence && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the journal.", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /** Sequence of the last appended entry */
+    public long getLastSequence() {
+        synchronized (lock) {
+            return nextSequence - 1;
+        }
+    }
+
+    /** Bytes written to the current segment, used to decide when to compact */
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    /** Flushes everything pending and stops the writer */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (ioLock) {
+            flushPending();
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /** Writer thread, every pass writes all entries that piled up during the previous fsync */
+    private void writeLoop() {
+        while (true) {
+            synchronized (lock) {
+                while (pending.position() == 0 && pendingRotations.isEmpty() && running) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.position() == 0 && pendingRotations.isEmpty() && !running) {
+                    return;
+                }
+            }
+            try {
+                synchronized (ioLock) {
+                    flushPending();
+                }
+            } catch (IOException e) {
+                LOGGER.atSevere().withCause(e).log("Failed to write the land journal.");
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    /** Swaps out the pending entries, writes and fsyncs them, caller holds ioLock
+     *  Requested rotations are applied at their offsets, each closed segment is fsynced first.
+     */
+    private long flushPending() throws IOException {
+        long boundary;
+        synchronized (lock) {
+            ByteBuffer swapped = pending;
+            pending = writing;
+            writing = swapped;
+            List<Integer> swappedRotations = pendingRotations;
+            pendingRotations = writingRotations;
+            writingRotations = swappedRotations;
+            boundary = nextSequence - 1;
+        }
+        writing.flip();
+        int end = writing.limit();
+        for (int offset : writingRotations) {
+            writing.limit(offset);
+            writeSynced(writing);
+            channel.close();
+            openSegment(segmentIndex + 1);
+        }
+        writing.limit(end);
+        writeSynced(writing);
+        writing.clear();
+        writingRotations.clear();
+        synchronized (lock) {
+            durableSequence = Math.max(durableSequence, boundary);
+            lock.notifyAll();
+        }
+        return boundary;
+    }
+
+    private void writeSynced(ByteBuffer entries) throws IOException {
+        if (entries.hasRemaining()) {
+            while (entries.hasRemaining()) {
+                segmentBytes += channel.write(entries);
+            }
+            channel.force(false);
+        }
+    }
+
+    private void openSegment(long index) throws IOException {
+        segmentIndex = index;
+        segmentBytes = 0;
+        channel = FileChannel.open(directory.resolve(String.format("%016d", index) + SEGMENT_SUFFIX),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long segmentIndexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /** Encoding, runs on the world thread right after each mutation */
+
+    @Override
+    public void onLandCreated(Land land) {
+        begin(LAND_CREATED, land);
+        scratch.putUuid(land.getOwner());
+        scratch.putUuid(land.getParent() != null ? land.getParent().getId() : null);
+        scratch.putString(land.getName());
+        scratch.putClaimMode(land.getClaimMode());
+        scratch.putLong(land.getCreatedAt());
+        scratch.putLong(land.getFlags());
+        scratch.putRegions(land.getRegions());
+        commit();
+    }
+
+    @Override
+    public void onLandDeleted(Land land) {
+        begin(LAND_DELETED, land);
+        commit();
+    }
+
+    @Override
+    public void onRegionsChanged(Land land, Set<Region> added, Set<Region> removed) {
+        begin(REGIONS_CHANGED, land);
+        scratch.putRegions(removed);
+        scratch.putRegions(added);
+        commit();
+    }
+
+    @Override
+    public void onMemberChanged(Land land, UUID memberId, String roleName) {
+        begin(MEMBER_CHANGED, land);
+        scratch.putUuid(memberId);
+        scratch.putString(roleName);
+        commit();
+    }
+
+    @Override
+    public void onRoleChanged(Land land, String roleName, LandRole role) {
+        begin(ROLE_CHANGED, land);
+        scratch.putString(roleName);
+        scratch.putByte((byte) (role != null ? 1 : 0));
+        scratch.putLong(role != null ? LandPermission.toMask(role.getPermissions()) : 0L);
+        commit();
+    }
+
+    @Override
+    public void onFlagsChanged(Land land, Region region) {
+        if (region == null) {
+            begin(LAND_FLAGS, land);
+            scratch.putLong(land.getFlags());
+        } else {
+            begin(REGION_FLAGS, land);
+            scratch.putRegion(region);
+        }
+        commit();
+    }
+
+    /** Rejects new mutations once the writer failed, they could never be made durable */
+    @Override
+    public void checkAccepting() {
+        synchronized (lock) {
+            if (failure != null) {
+                throw new IllegalStateException("Land journal is unavailable, changes are rejected until it is repaired.", failure);
+            }
+        }
+    }
+
+    /** Starts a payload in the scratch buffer, the sequence is filled in by commit */
+    private void begin(byte type, Land land) {
+        scratch.clear();
+        scratch.putLong(0L);
+        scratch.putByte(type);
+        scratch.putUuid(land.getId());
+    }
+
+    /** Frames the scratch payload into the pending buffer and wakes the writer */
+    private void commit() {
+        synchronized (lock) {
+            if (failure != null) {
+                throw new IllegalStateException("Land journal is unavailable.", failure);
+            }
+            ByteBuffer payload = scratch.getBuffer();
+            payload.putLong(0, nextSequence++);
+            payload.flip();
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            int length = payload.remaining();
+            if (pending.remaining() < FRAME_HEADER + length) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + FRAME_HEADER + length));
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            pending.putInt(length);
+            pending.putInt((int) crc.getValue());
+            pending.put(payload);
+            lock.notifyAll();
+        }
+    }
+
+    /** Decoding, replays one entry positioned after its sequence */
+    static void apply(LandManager landManager, ByteBuffer in) {
+        byte type = in.get();
+        UUID landId = LandCodec.readUuid(in);
+        Land land = landManager.getLandById(landId);
+        if (type == LAND_CREATED) {
+            if (land != null) {
+                return; // Already part of the snapshot
+            }
+            UUID owner = LandCodec.readUuid(in);
+            UUID parentId = LandCodec.readUuid(in);
+            String name = LandCodec.readString(in);
+            ClaimMode claimMode = LandCodec.readClaimMode(in);
+            long createdAt = in.getLong();
+            long flags = in.getLong();
+            Set<Region> regions = LandCodec.readRegions(in);
+            Map<UUID, String> members = new HashMap<>();
+            members.put(owner, "owner");
+            Land created = new Land(landId, name, owner, regions, members, null, createdAt, claimMode);
+            created.setFlags(flags);
+            created.rebuildAdjacency();
+            landManager.registerLand(created, parentId);
+            return;
+        }
+        if (land == null) {
+            return; // Land was deleted later on, nothing to apply to
+        }
+        switch (type) {
+            case LAND_DELETED:
+                landManager.applyLandDeleted(land);
+                break;
+            case REGIONS_CHANGED:
+                Set<Region> removed = LandCodec.readRegions(in);
+                Set<Region> added = LandCodec.readRegions(in);
+                landManager.applyRegionChange(land, added, removed);
+                break;
+            case MEMBER_CHANGED:
+                landManager.applyMemberChange(land, LandCodec.readUuid(in), LandCodec.readString(in));
+                break;
+            case ROLE_CHANGED:
+                String roleName = LandCodec.readString(in);
+                boolean exists = in.get() != 0;
+                long mask = in.getLong();
+                landManager.applyRoleChange(land, roleName, exists ? LandPermission.fromMask(mask) : null);
+                break;
+            case LAND_FLAGS:
+                landManager.applyLandFlags(land, in.getLong());
+                break;
+            case REGION_FLAGS:
+                Region region = LandCodec.readRegion(in);
+                landManager.applyRegionFlags(land, region, region.getFlagMask(), region.getFlagValues());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown journal entry type " + type + ".");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,204 @@
+package org.almond.lands.storage;
+
+import java.util.Map;
+import java.util.UUID;
+import org.almond.lands.model.ClaimMode;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.LandRole;
+import org.almond.lands.model.Region;
+
+/** Immutable copy of the persistent state of a land
+ *  Captured on the world thread, so it can be encoded and written on a background thread
+ *  while the live land keeps changing.
+ *  The header is always captured, members and roles only when asked for, see hasDetails.
+ */
+public class LandRecord {
+    private final UUID id;
+    private final String name;
+    private final UUID owner;
+    private final UUID parentId;            // null for top level lands
+    private final ClaimMode claimMode;
+    private final long createdAt;
+    private final long flags;
+    private final long outsiderPermissions; // Header copy of the outsider role mask
+    private final long memberFilter;        // Header bloom filter over member UUIDs
+    private final int totalMemberCount;     // Header member count, also without captured details
+    private final int[] regionBounds;       // 6 ints per region, min x y z then max x y z
+    private final long[] regionFlagMasks;   // Per region flag override mask
+    private final long[] regionFlagValues;  // Per region flag override values
+    private final String[] roleNames;
+    private final long[] rolePermissions;   // Permission bitmask per role
+    private final long[] memberIds;         // Member UUIDs as msb, lsb pairs
+    private final String[] memberRoles;
+    private final boolean details;          // Whether roles and members were captured
+    private final long detailsVersion;      // Version of the captured details
+
+    private LandRecord(Land land, boolean details) {
+        this.id = land.getId();
+        this.name = land.getName();
+        this.owner = land.getOwner();
+        this.parentId = land.getParent() != null ? land.getParent().getId() : null;
+        this.claimMode = land.getClaimMode();
+        this.createdAt = land.getCreatedAt();
+        this.flags = land.getFlags();
+        this.outsiderPermissions = land.getOutsiderPermissions();
+        this.memberFilter = land.getMemberFilter();
+        this.totalMemberCount = land.getMemberCount();
+        this.details = details;
+
+        int regionCount = land.getRegions().size();
+        this.regionBounds = new int[regionCount * 6];
+        this.regionFlagMasks = new long[regionCount];
+        this.regionFlagValues = new long[regionCount];
+        int r = 0;
+        for (Region region : land.getRegions()) {
+            regionBounds[r * 6] = region.getCorner1().getX();
+            regionBounds[r * 6 + 1] = region.getCorner1().getY();
+            regionBounds[r * 6 + 2] = region.getCorner1().getZ();
+            regionBounds[r * 6 + 3] = region.getCorner2().getX();
+            regionBounds[r * 6 + 4] = region.getCorner2().getY();
+            regionBounds[r * 6 + 5] = region.getCorner2().getZ();
+            regionFlagMasks[r] = region.getFlagMask();
+            regionFlagValues[r] = region.getFlagValues();
+            r++;
+        }
+
+        if (!details) {
+            this.roleNames = new String[0];
+            this.rolePermissions = new long[0];
+            this.memberIds = new long[0];
+            this.memberRoles = new String[0];
+            this.detailsVersion = 0L;
+            return;
+        }
+        this.detailsVersion = land.getDetails().getVersion();
+        int roleCount = land.getRoles().size();
+        this.roleNames = new String[roleCount];
+        this.rolePermissions = new long[roleCount];
+        int i = 0;
+        for (Map.Entry<String, LandRole> role : land.getRoles().entrySet()) {
+            roleNames[i] = role.getKey();
+            rolePermissions[i] = LandPermission.toMask(role.getValue().getPermissions());
+            i++;
+        }
+
+        int memberCount = land.getMembers().size();
+        this.memberIds = new long[memberCount * 2];
+        this.memberRoles = new String[memberCount];
+        int m = 0;
+        for (Map.Entry<UUID, String> member : land.getMembers().entrySet()) {
+            memberIds[m * 2] = member.getKey().getMostSignificantBits();
+            memberIds[m * 2 + 1] = member.getKey().getLeastSignificantBits();
+            memberRoles[m] = member.getValue();
+            m++;
+        }
+    }
+
+    /** Captures the full state of a land, loading its details if needed */
+    public static LandRecord of(Land land) {
+        return new LandRecord(land, true);
+    }
+
+    /** Captures the header of a land, plus its details if asked for */
+    public static LandRecord of(Land land, boolean details) {
+        return new LandRecord(land, details);
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public UUID getOwner() {
+        return owner;
+    }
+
+    public UUID getParentId() {
+        return parentId;
+    }
+
+    public ClaimMode getClaimMode() {
+        return claimMode;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getFlags() {
+        return flags;
+    }
+
+    public long getOutsiderPermissions() {
+        return outsiderPermissions;
+    }
+
+    public long getMemberFilter() {
+        return memberFilter;
+    }
+
+    public int getTotalMemberCount() {
+        return totalMemberCount;
+    }
+
+    public boolean hasDetails() {
+        return details;
+    }
+
+    public long getDetailsVersion() {
+        return detailsVersion;
+    }
+
+    public int getRegionCount() {
+        return regionFlagMasks.length;
+    }
+
+    /** Bound of a region, axis 0 to 5 for min x y z then max x y z */
+    public int getRegionBound(int region, int axis) {
+        return regionBounds[region * 6 + axis];
+    }
+
+    public long getRegionFlagMask(int region) {
+        return regionFlagMasks[region];
+    }
+
+    public long getRegionFlagValues(int region) {
+        return regionFlagValues[region];
+    }
+
+    public int getRoleCount() {
+        return roleNames.length;
+    }
+
+    public String getRoleName(int role) {
+        return roleNames[role];
+    }
+
+    public long getRolePermissions(int role) {
+        return rolePermissions[role];
+    }
+
+    public int getMemberCount() {
+        return memberRoles.length;
+    }
+
+    public UUID getMemberId(int member) {
+        return new UUID(memberIds[member * 2], memberIds[member * 2 + 1]);
+    }
+
+    public long getMemberIdMostBits(int member) {
+        return memberIds[member * 2];
+    }
+
+    public long getMemberIdLeastBits(int member) {
+        return memberIds[member * 2 + 1];
+    }
+
+    public String getMemberRole(int member) {
+        return memberRoles[member];
+    }
+}
@@ -0,0 +1,371 @@
+package org.almond.lands.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import org.almond.lands.model.ClaimMode;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandDetailSource;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.LandRole;
+import org.almond.lands.model.Region;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+/** Versioned binary snapshot of lands, a whole world or a single land shard
+ *
+ *  Layout, big endian:
+ *    header    int magic, short version, short reserved, int landCount, int stringCount, long journalSequence
+ *    strings   stringCount x (short length, UTF-8 bytes), land names and role names
+ *    lands     landCount records, parents always before their subclaims
+ *    trailer   long CRC32 of every byte before it
+ *
+ *  Land record:
+ *    long id msb/lsb, long owner msb/lsb, long parent msb/lsb (0/0 for top level)
+ *    int name, byte claim mode, long createdAt, long flags, long outsider permissions, long member filter,
+ *    int member count
+ *    int regionCount, packed bounds: 6 ints per cuboid region, 4 ints (x1, z1, x2, z2) per column region
+ *    int overrideCount, overrideCount x (int region index, long mask, long values)
+ *    byte details, 1 if the detail tier follows, shards keep it in a LandDetailFile instead
+ *    int roleCount, roleCount x (int name, long permission mask)
+ *    int memberCount, memberCount x (long msb, long lsb, int role name)
+ *
+ *  The journal sequence is the last journal entry already reflected in the snapshot, replay starts after it.
+ *  Writing works on immutable LandRecords so it can run off the world thread.
+ *  Loading maps the file read only and decodes regions straight from the buffer into lands.
+ */
+public class LandSnapshot {
+
+    public static final int MAGIC = 0x4C4E4453; // "LNDS"
+    public static final short VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+    private static final int TRAILER_SIZE = 8;
+
+    /** Callback receiving each decoded land with its parent id, parents first */
+    public interface LandSink {
+        void accept(Land land, UUID parentId);
+    }
+
+    /** Captures records of the given lands, ordered so every parent comes before its subclaims */
+    public static List<LandRecord> capture(Collection<Land> lands) {
+        List<LandRecord> records = new ArrayList<>(lands.size());
+        for (Land land : parentsFirst(lands)) {
+            records.add(LandRecord.of(land));
+        }
+        return records;
+    }
+
+    /** Writes the given records to a temporary file, synced, and atomically moves it over the target
+     *  The rename is only durable once the caller synced the directory, see syncDirectory.
+     */
+    public static void write(Path file, List<LandRecord> records, long journalSequence) throws IOException {
+        write(file, records, journalSequence, true);
+    }
+
+    /** Writes the records, leaving out their details unless asked for */
+    public static void write(Path file, List<LandRecord> records, long journalSequence, boolean details) throws IOException {
+        // String table, land names and role names
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (LandRecord record : records) {
+            intern(strings, record.getName());
+            if (!details || !record.hasDetails()) {
+                continue;
+            }
+            for (int i = 0; i < record.getRoleCount(); i++) {
+                intern(strings, record.getRoleName(i));
+            }
+            for (int i = 0; i < record.getMemberCount(); i++) {
+                intern(strings, record.getMemberRole(i));
+            }
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream fileOut = Channels.newOutputStream(channel);
+             CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut, 1 << 16), crc);
+             DataOutputStream out = new DataOutputStream(checked)) {
+
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeInt(records.size());
+            out.writeInt(strings.size());
+            out.writeLong(journalSequence);
+
+            for (String string : strings.keySet()) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+
+            for (LandRecord record : records) {
+                writeLand(out, record, strings, details && record.hasDetails());
+            }
+
+            out.flush();
+            // Trailer is written past the checksummed stream
+            DataOutputStream trailer = new DataOutputStream(fileOut);
+            trailer.writeLong(crc.getValue());
+            trailer.flush();
+            // The content must be on disk before the rename can make it the live file
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Forces renames and deletions in a directory to disk */
+    public static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // Windows cannot open directories, a rename there is durable once it returned
+        }
+    }
+
+    private static void writeLand(DataOutputStream out, LandRecord record, Map<String, Integer> strings,
+                                  boolean details) throws IOException {
+        writeUuid(out, record.getId());
+        writeUuid(out, record.getOwner());
+        writeUuid(out, record.getParentId());
+        out.writeInt(strings.get(record.getName()));
+        out.writeByte(record.getClaimMode().ordinal());
+        out.writeLong(record.getCreatedAt());
+        out.writeLong(record.getFlags());
+        out.writeLong(record.getOutsiderPermissions());
+        out.writeLong(record.getMemberFilter());
+        out.writeInt(record.getTotalMemberCount());
+
+        boolean column = record.getClaimMode() == ClaimMode.COLUMN;
+        int regionCount = record.getRegionCount();
+        out.writeInt(regionCount);
+        int overrides = 0;
+        for (int r = 0; r < regionCount; r++) {
+            for (int axis = 0; axis < 6; axis++) {
+                // Column regions always span the full height, their Y bounds are implicit
+                if (!column || (axis != 1 && axis != 4)) {
+                    out.writeInt(record.getRegionBound(r, axis));
+                }
+            }
+            if (record.getRegionFlagMask(r) != 0) {
+                overrides++;
+            }
+        }
+        out.writeInt(overrides);
+        for (int r = 0; r < regionCount; r++) {
+            if (record.getRegionFlagMask(r) != 0) {
+                out.writeInt(r);
+                out.writeLong(record.getRegionFlagMask(r));
+                out.writeLong(record.getRegionFlagValues(r));
+            }
+        }
+
+        out.writeByte(details ? 1 : 0);
+        if (!details) {
+            return;
+        }
+        out.writeInt(record.getRoleCount());
+        for (int i = 0; i < record.getRoleCount(); i++) {
+            out.writeInt(strings.get(record.getRoleName(i)));
+            out.writeLong(record.getRolePermissions(i));
+        }
+
+        out.writeInt(record.getMemberCount());
+        for (int i = 0; i < record.getMemberCount(); i++) {
+            out.writeLong(record.getMemberIdMostBits(i));
+            out.writeLong(record.getMemberIdLeastBits(i));
+            out.writeInt(strings.get(record.getMemberRole(i)));
+        }
+    }
+
+    /** Maps the snapshot file and hands every decoded land to the sink, parents before subclaims
+     *  Returns the journal sequence the snapshot covers.
+     */
+    public static long read(Path file, LandSink sink) throws IOException {
+        return read(file, null, sink);
+    }
+
+    /** Reads a snapshot, lands stored without details load them from the detail source on first access */
+    public static long read(Path file, LandDetailSource detailSource, LandSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " has an invalid size of " + size + " bytes.");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return read(buffer, detailSource, sink, file.toString());
+        }
+    }
+
+    /** Decodes a snapshot from a buffer positioned at its first byte */
+    static long read(ByteBuffer buffer, LandDetailSource detailSource, LandSink sink, String source) throws IOException {
+        int start = buffer.position();
+        int end = buffer.limit() - TRAILER_SIZE;
+
+        // Verify the checksum before trusting any offsets
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.position(start).limit(end);
+        crc.update(body);
+        if (crc.getValue() != buffer.getLong(end)) {
+            throw new IOException("Snapshot " + source + " is corrupt, checksum mismatch.");
+        }
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Snapshot " + source + " is not a land snapshot.");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Snapshot " + source + " has unsupported version " + version + ".");
+        }
+        buffer.getShort(); // reserved
+        int landCount = buffer.getInt();
+        int stringCount = buffer.getInt();
+        long journalSequence = buffer.getLong();
+
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        for (int i = 0; i < landCount; i++) {
+            readLand(buffer, strings, detailSource, sink);
+        }
+        return journalSequence;
+    }
+
+    private static void readLand(ByteBuffer buffer, String[] strings, LandDetailSource detailSource,
+                                 LandSink sink) throws IOException {
+        UUID id = readUuid(buffer);
+        UUID owner = readUuid(buffer);
+        UUID parentId = readUuid(buffer);
+        String name = strings[buffer.getInt()];
+        ClaimMode claimMode = ClaimMode.values()[buffer.get()];
+        long createdAt = buffer.getLong();
+        long flags = buffer.getLong();
+        long outsiderPermissions = buffer.getLong();
+        long memberFilter = buffer.getLong();
+        int memberCount = buffer.getInt();
+
+        boolean column = claimMode == ClaimMode.COLUMN;
+        int regionCount = buffer.getInt();
+        Region[] regions = new Region[regionCount];
+        for (int r = 0; r < regionCount; r++) {
+            if (column) {
+                regions[r] = Region.column(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+            } else {
+                Vector3i min = new Vector3i(buffer.getInt(), buffer.getInt(), buffer.getInt());
+                Vector3i max = new Vector3i(buffer.getInt(), buffer.getInt(), buffer.getInt());
+                regions[r] = new Region(min, max);
+            }
+        }
+        int overrideCount = buffer.getInt();
+        for (int o = 0; o < overrideCount; o++) {
+            Region region = regions[buffer.getInt()];
+            region.setFlagOverrides(buffer.getLong(), buffer.getLong());
+        }
+
+        Land land;
+        if (buffer.get() == 0) {
+            if (detailSource == null) {
+                throw new IOException("Land " + name + " is stored without details and there is nowhere to load them from.");
+            }
+            land = new Land(id, name, owner, new HashSet<>(Arrays.asList(regions)), createdAt, claimMode,
+                            outsiderPermissions, memberFilter, memberCount, detailSource);
+        } else {
+            Map<String, LandRole> roles = readRoles(buffer, strings);
+            Map<UUID, String> members = readMembers(buffer, strings);
+            land = new Land(id, name, owner, new HashSet<>(Arrays.asList(regions)), members, roles, createdAt, claimMode);
+        }
+        land.setFlags(flags);
+        land.rebuildAdjacency();
+        sink.accept(land, parentId);
+    }
+
+    private static Map<String, LandRole> readRoles(ByteBuffer buffer, String[] strings) {
+        int roleCount = buffer.getInt();
+        Map<String, LandRole> roles = new HashMap<>();
+        for (int r = 0; r < roleCount; r++) {
+            String roleName = strings[buffer.getInt()];
+            roles.put(roleName, new LandRole(roleName, LandPermission.fromMask(buffer.getLong())));
+        }
+        return roles;
+    }
+
+    private static Map<UUID, String> readMembers(ByteBuffer buffer, String[] strings) {
+        int memberCount = buffer.getInt();
+        Map<UUID, String> members = new HashMap<>(memberCount * 2);
+        for (int m = 0; m < memberCount; m++) {
+            UUID member = readUuid(buffer);
+            members.put(member, strings[buffer.getInt()]);
+        }
+        return members;
+    }
+
+    /** Orders lands so every parent is written before its subclaims */
+    private static List<Land> parentsFirst(Collection<Land> lands) {
+        List<Land> ordered = new ArrayList<>(lands.size());
+        Set<Land> included = new HashSet<>(lands);
+        Deque<Land> queue = new ArrayDeque<>();
+        for (Land land : lands) {
+            if (land.getParent() == null || !included.contains(land.getParent())) {
+                queue.add(land);
+            }
+        }
+        while (!queue.isEmpty()) {
+            Land land = queue.poll();
+            ordered.add(land);
+            for (Land subclaim : land.getSubclaims()) {
+                if (included.contains(subclaim)) {
+                    queue.add(subclaim);
+                }
+            }
+        }
+        return ordered;
+    }
+
+    private static void intern(Map<String, Integer> strings, String string) {
+        if (!strings.containsKey(string)) {
+            strings.put(string, strings.size());
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid != null ? uuid.getMostSignificantBits() : 0L);
+        out.writeLong(uuid != null ? uuid.getLeastSignificantBits() : 0L);
+    }
+
+    private static UUID readUuid(ByteBuffer buffer) {
+        long msb = buffer.getLong();
+        long lsb = buffer.getLong();
+        return (msb == 0L && lsb == 0L) ? null : new UUID(msb, lsb);
+    }
+}
@@ -0,0 +1,40 @@
+package org.almond.lands.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import org.almond.lands.manager.LandManager;
+
+/** Land persistence backend
+ *  Loads every land into the LandManager at startup and keeps the stored lands in sync with its changes.
+ *  FileLandStorage keeps one shard file per land, SqlLandStorage an embedded database with indexed tables.
+ */
+public interface LandStorage extends Closeable {
+
+    /** Loads every land into the manager, then persists every further mutation */
+    void load(LandManager landManager) throws IOException;
+
+    /** Starts an autosave of the lands changed since the last one
+     *  Meant to be called periodically on the world thread, it never waits on disk I/O.
+     */
+    void autosave() throws IOException;
+
+    /** Writes every changed land and waits for it, used on shutdown */
+    void save() throws IOException;
+
+    /** Finishes pending writes and releases files, threads and connections */
+    @Override
+    void close() throws IOException;
+
+    /** Admin queries, answered from stored data and returning land ids */
+    List<UUID> findLandsByOwner(UUID ownerId) throws IOException;
+
+    List<UUID> findLandsByMember(UUID playerId) throws IOException;
+
+    /** Lands whose stored state did not change since the given timestamp */
+    List<UUID> findLandsUnchangedSince(long timestamp) throws IOException;
+
+    /** Lands with a region intersecting the given box, bounds inclusive */
+    List<UUID> findLandsIntersecting(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) throws IOException;
+}
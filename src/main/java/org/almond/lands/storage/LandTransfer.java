@@ -0,0 +1,579 @@
+package org.almond.lands.storage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.almond.lands.index.LandIndex;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.manager.LandValidator;
+import org.almond.lands.model.ClaimMode;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandFlag;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.LandRole;
+import org.almond.lands.model.Region;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+/** Streaming bulk import and export of lands, for migrations and analysis
+ *  Files hold one land per record, either JSON Lines with the objects of the JSON export or CSV with one row per land.
+ *  Records are read and written one at a time, besides the lands themselves only the current batch is held.
+ *  Imported lands are checked like claims, their regions must be connected, lie inside their parent and not overlap
+ *  other lands. Accepted ones are registered a batch at a time with one index merge per batch, then announced to the
+ *  listeners so the journal, autosave and replication pick them up. World thread only.
+ *
+ *  Parents are exported before their subclaims and must come first on import as well.
+ *  CSV columns: id, name, owner, parent, claim_mode, created_at, flags, regions, roles, members
+ *    flags     flag names separated by ';'
+ *    regions   'x1 y1 z1 x2 y2 z2', followed by ' mask values' for flag overrides, separated by ';'
+ *    roles     'name=PERMISSION|PERMISSION', separated by ';'
+ *    members   'uuid=role', separated by ';'
+ */
+public class LandTransfer {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final int MAX_REPORTED_PROBLEMS = 100; // Rejections beyond this are only counted
+    private static final String CSV_HEADER = "id,name,owner,parent,claim_mode,created_at,flags,regions,roles,members";
+
+    public enum Format {
+        JSON_LINES,
+        CSV;
+
+        /** Picks the format from the file extension */
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+                return JSON_LINES;
+            }
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            throw new IllegalArgumentException("Unknown land file format " + file.getFileName() + ", use .jsonl or .csv.");
+        }
+    }
+
+    /** Progress callback, called after every batch and once at the end */
+    public interface Progress {
+        void update(long records, long rejected);
+    }
+
+    /** Outcome of an import */
+    public static class ImportResult {
+        private long records;
+        private long imported;
+        private long rejected;
+        private List<String> problems = new ArrayList<>();
+
+        public long getRecords() {
+            return records;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        /** Reasons of the first rejected records */
+        public List<String> getProblems() {
+            return problems;
+        }
+    }
+
+    /** A parsed record, the land is not linked to its parent yet */
+    private static class Candidate {
+        Land land;
+        UUID parentId;
+    }
+
+    private LandManager landManager;
+
+    // Current import batch, accepted but not registered yet
+    private List<Land> batch = new ArrayList<>();
+    private Map<UUID, Land> batchById = new HashMap<>();
+    private Map<UUID, UUID> batchParents = new HashMap<>();
+    private Set<String> batchNames = new HashSet<>();
+    private LandIndex batchIndex = new LandIndex();
+
+    public LandTransfer(LandManager landManager) {
+        this.landManager = landManager;
+    }
+
+    /** Writes every land to the file, returning the number written */
+    public long export(Path file, Format format, Progress progress) throws IOException {
+        long written = 0;
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (format == Format.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            List<Land> pending = new ArrayList<>();
+            for (Land land : landManager.getAllLands()) {
+                if (land.getParent() == null) {
+                    pending.add(land);
+                }
+            }
+            // Depth first, so every subclaim follows its parent
+            while (!pending.isEmpty()) {
+                Land land = pending.remove(pending.size() - 1);
+                if (format == Format.CSV) {
+                    writeCsv(writer, land);
+                } else {
+                    // A strict writer takes one top level value, so every line gets its own. Not closed, that would close the file
+                    JsonWriter json = new JsonWriter(writer);
+                    FileLandStorage.writeJson(json, land);
+                    json.flush();
+                }
+                writer.write('\n');
+                pending.addAll(land.getSubclaims());
+                if (++written % DEFAULT_BATCH_SIZE == 0 && progress != null) {
+                    progress.update(written, 0);
+                }
+            }
+        }
+        if (progress != null) {
+            progress.update(written, 0);
+        }
+        return written;
+    }
+
+    /** Reads lands from the file and adds the valid ones, invalid records are skipped and reported */
+    public ImportResult importFile(Path file, Format format, int batchSize, Progress progress) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        ImportResult result = new ImportResult();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            long lineNumber = 0;
+            for (String line; (line = reader.readLine()) != null; ) {
+                lineNumber++;
+                if (line.isBlank() || (format == Format.CSV && lineNumber == 1 && line.startsWith("id,"))) {
+                    continue;
+                }
+                result.records++;
+                String problem;
+                try {
+                    Candidate candidate = format == Format.CSV ? parseCsv(line) : parseJson(line);
+                    problem = check(candidate);
+                    if (problem == null) {
+                        accept(candidate);
+                    }
+                } catch (IllegalArgumentException | IllegalStateException | UnsupportedOperationException
+                         | IndexOutOfBoundsException | JsonParseException e) {
+                    problem = e.getMessage();
+                }
+                if (problem != null) {
+                    result.rejected++;
+                    if (result.problems.size() < MAX_REPORTED_PROBLEMS) {
+                        result.problems.add("Line " + lineNumber + ": " + problem);
+                    }
+                }
+                if (batch.size() >= batchSize) {
+                    result.imported += flush();
+                    if (progress != null) {
+                        progress.update(result.records, result.rejected);
+                    }
+                }
+            }
+        } finally {
+            result.imported += flush();
+        }
+        if (progress != null) {
+            progress.update(result.records, result.rejected);
+        }
+        LOGGER.atInfo().log("Imported " + result.imported + " lands from " + file + ", rejected " + result.rejected + ".");
+        return result;
+    }
+
+    /** Checks a parsed land against the loaded lands and the current batch, returning why it is rejected */
+    private String check(Candidate candidate) {
+        Land land = candidate.land;
+        if (landManager.getLandById(land.getId()) != null || batchById.containsKey(land.getId())) {
+            return "Land id " + land.getId() + " already exists.";
+        }
+        if (landManager.getLandByName(land.getName()) != null || batchNames.contains(land.getName())) {
+            return "Land with name " + land.getName() + " already exists.";
+        }
+        Land parent = null;
+        if (candidate.parentId != null) {
+            parent = landManager.getLandById(candidate.parentId);
+            if (parent == null) {
+                parent = batchById.get(candidate.parentId);
+            }
+            if (parent == null) {
+                return "Parent land " + candidate.parentId + " of " + land.getName() + " was not imported before it.";
+            }
+        }
+        List<String> problems = LandValidator.validateLand(land);
+        if (!problems.isEmpty()) {
+            return problems.get(0);
+        }
+        for (Region region : land.getRegions()) {
+            if (parent != null && !parent.covers(region)) {
+                return "Subclaim " + land.getName() + " extends outside its parent " + parent.getName() + ".";
+            }
+            Land other = findOverlap(landManager.getIndex(), region, candidate.parentId);
+            if (other == null) {
+                other = findOverlap(batchIndex, region, candidate.parentId);
+            }
+            if (other != null) {
+                return "Land " + land.getName() + " overlaps land " + other.getName() + ".";
+            }
+        }
+        return null;
+    }
+
+    /** Finds a land other than the ancestors of the new land overlapping the region */
+    private Land findOverlap(LandIndex index, Region region, UUID parentId) {
+        int minX = region.getCorner1().getX() >> LandIndex.CHUNK_SHIFT;
+        int maxX = region.getCorner2().getX() >> LandIndex.CHUNK_SHIFT;
+        int minZ = region.getCorner1().getZ() >> LandIndex.CHUNK_SHIFT;
+        int maxZ = region.getCorner2().getZ() >> LandIndex.CHUNK_SHIFT;
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cz = minZ; cz <= maxZ; cz++) {
+                for (LandIndex.Entry entry : index.getBucket(LandIndex.chunkKey(cx, cz))) {
+                    if (entry.getRegion().overlaps(region) && !isAncestor(entry.getLand(), parentId)) {
+                        return entry.getLand();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Walks the parent chain starting at parentId, through registered lands and the current batch */
+    private boolean isAncestor(Land land, UUID parentId) {
+        UUID current = parentId;
+        while (current != null) {
+            if (land.getId().equals(current)) {
+                return true;
+            }
+            Land registered = landManager.getLandById(current);
+            if (registered != null) {
+                current = registered.getParent() != null ? registered.getParent().getId() : null;
+            } else {
+                current = batchParents.get(current);
+            }
+        }
+        return false;
+    }
+
+    private void accept(Candidate candidate) {
+        Land land = candidate.land;
+        batch.add(land);
+        batchById.put(land.getId(), land);
+        batchNames.add(land.getName());
+        if (candidate.parentId != null) {
+            batchParents.put(land.getId(), candidate.parentId);
+        }
+        batchIndex.addRegions(land, land.getRegions());
+    }
+
+    /** Registers the current batch and announces its lands, returning how many were added */
+    private int flush() {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<Land> lands = batch;
+        landManager.registerBatch(lands, batchParents);
+        for (Land land : lands) {
+            landManager.notifyApplied(listener -> listener.onLandCreated(land));
+            // Created lands replay with default roles and only the owner, the rest is announced as changes
+            for (Map.Entry<String, LandRole> role : land.getRoles().entrySet()) {
+                landManager.notifyApplied(listener -> listener.onRoleChanged(land, role.getKey(), role.getValue()));
+            }
+            for (Map.Entry<UUID, String> member : land.getMembers().entrySet()) {
+                if (!member.getKey().equals(land.getOwner())) {
+                    landManager.notifyApplied(listener -> listener.onMemberChanged(land, member.getKey(), member.getValue()));
+                }
+            }
+        }
+        batch = new ArrayList<>();
+        batchById.clear();
+        batchParents.clear();
+        batchNames.clear();
+        batchIndex = new LandIndex();
+        return lands.size();
+    }
+
+    /** Parsing, both formats end up in build */
+
+    private Candidate parseJson(String line) {
+        JsonObject object = JsonParser.parseString(line).getAsJsonObject();
+
+        List<String> flags = null;
+        if (object.has("flags")) {
+            flags = new ArrayList<>();
+            for (JsonElement flag : object.getAsJsonArray("flags")) {
+                flags.add(flag.getAsString());
+            }
+        }
+        List<long[]> regions = new ArrayList<>();
+        if (object.has("regions")) {
+            for (JsonElement element : object.getAsJsonArray("regions")) {
+                JsonArray array = element.getAsJsonArray();
+                long[] values = new long[array.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = array.get(i).getAsLong();
+                }
+                regions.add(values);
+            }
+        }
+        Map<String, List<String>> roles = new HashMap<>();
+        if (object.has("roles")) {
+            for (Map.Entry<String, JsonElement> role : object.getAsJsonObject("roles").entrySet()) {
+                List<String> permissions = new ArrayList<>();
+                for (JsonElement permission : role.getValue().getAsJsonArray()) {
+                    permissions.add(permission.getAsString());
+                }
+                roles.put(role.getKey(), permissions);
+            }
+        }
+        Map<String, String> members = new HashMap<>();
+        if (object.has("members")) {
+            for (Map.Entry<String, JsonElement> member : object.getAsJsonObject("members").entrySet()) {
+                members.put(member.getKey(), member.getValue().getAsString());
+            }
+        }
+        return build(string(object, "id"), string(object, "name"), string(object, "owner"), string(object, "parent"),
+                     string(object, "claimMode"), string(object, "createdAt"), flags, regions, roles, members);
+    }
+
+    private static String string(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+
+    private Candidate parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() != 10) {
+            throw new IllegalArgumentException("Expected 10 columns but found " + fields.size() + ".");
+        }
+        List<String> flags = null;
+        if (fields.get(6) != null) {
+            flags = new ArrayList<>();
+            for (String flag : fields.get(6).split(";")) {
+                flags.add(flag.trim());
+            }
+        }
+        List<long[]> regions = new ArrayList<>();
+        if (fields.get(7) != null) {
+            for (String region : fields.get(7).split(";")) {
+                String[] parts = region.trim().split("\\s+");
+                long[] values = new long[parts.length];
+                for (int i = 0; i < parts.length; i++) {
+                    values[i] = Long.parseLong(parts[i]);
+                }
+                regions.add(values);
+            }
+        }
+        Map<String, List<String>> roles = new HashMap<>();
+        if (fields.get(8) != null) {
+            for (String role : fields.get(8).split(";")) {
+                int split = role.indexOf('=');
+                if (split < 0) {
+                    throw new IllegalArgumentException("Role " + role + " has no permissions.");
+                }
+                List<String> permissions = new ArrayList<>();
+                for (String permission : role.substring(split + 1).split("\\|")) {
+                    if (!permission.isBlank()) {
+                        permissions.add(permission.trim());
+                    }
+                }
+                roles.put(role.substring(0, split).trim(), permissions);
+            }
+        }
+        Map<String, String> members = new HashMap<>();
+        if (fields.get(9) != null) {
+            for (String member : fields.get(9).split(";")) {
+                int split = member.indexOf('=');
+                if (split < 0) {
+                    throw new IllegalArgumentException("Member " + member + " has no role.");
+                }
+                members.put(member.substring(0, split).trim(), member.substring(split + 1).trim());
+            }
+        }
+        return build(fields.get(0), fields.get(1), fields.get(2), fields.get(3), fields.get(4), fields.get(5),
+                     flags, regions, roles, members);
+    }
+
+    /** Builds the land of a record, missing optional fields fall back to what a new claim gets */
+    private static Candidate build(String id, String name, String owner, String parent, String claimMode, String createdAt,
+                                   List<String> flags, List<long[]> regionValues, Map<String, List<String>> roleNames,
+                                   Map<String, String> memberNames) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Land has no name.");
+        }
+        if (owner == null) {
+            throw new IllegalArgumentException("Land " + name + " has no owner.");
+        }
+        UUID ownerId = UUID.fromString(owner);
+        ClaimMode mode = claimMode != null ? ClaimMode.valueOf(claimMode) : ClaimMode.CUBOID;
+
+        if (regionValues.isEmpty()) {
+            throw new IllegalArgumentException("Land " + name + " has no regions.");
+        }
+        Set<Region> regions = new HashSet<>();
+        for (long[] values : regionValues) {
+            if (values.length != 6 && values.length != 8) {
+                throw new IllegalArgumentException("Land " + name + " has a region with " + values.length + " values.");
+            }
+            Region region = mode.apply(new Region(
+                new Vector3i(Math.toIntExact(values[0]), Math.toIntExact(values[1]), Math.toIntExact(values[2])),
+                new Vector3i(Math.toIntExact(values[3]), Math.toIntExact(values[4]), Math.toIntExact(values[5]))));
+            if (values.length == 8) {
+                region.setFlagOverrides(values[6], values[7]);
+            }
+            regions.add(region);
+        }
+
+        Map<String, LandRole> roles = Land.getDefaultRoles();
+        for (Map.Entry<String, List<String>> role : roleNames.entrySet()) {
+            Set<LandPermission> permissions = EnumSet.noneOf(LandPermission.class);
+            for (String permission : role.getValue()) {
+                permissions.add(LandPermission.valueOf(permission));
+            }
+            roles.put(role.getKey(), new LandRole(role.getKey(), permissions));
+        }
+        Map<UUID, String> members = new HashMap<>();
+        for (Map.Entry<String, String> member : memberNames.entrySet()) {
+            if (!roles.containsKey(member.getValue())) {
+                throw new IllegalArgumentException("Member " + member.getKey() + " of " + name + " has unknown role " + member.getValue() + ".");
+            }
+            members.put(UUID.fromString(member.getKey()), member.getValue());
+        }
+        members.put(ownerId, "owner");
+
+        Candidate candidate = new Candidate();
+        candidate.land = new Land(id != null ? UUID.fromString(id) : UUID.randomUUID(), name, ownerId, regions, members, roles,
+                                  createdAt != null ? Long.parseLong(createdAt) : System.currentTimeMillis(), mode);
+        if (flags != null) {
+            long flagSet = 0L;
+            for (String flag : flags) {
+                if (!flag.isEmpty()) {
+                    flagSet |= LandFlag.valueOf(flag).bit();
+                }
+            }
+            candidate.land.setFlags(flagSet);
+        }
+        candidate.land.rebuildAdjacency();
+        candidate.parentId = parent != null ? UUID.fromString(parent) : null;
+        return candidate;
+    }
+
+    /** CSV helpers, fields are quoted when they contain a separator, quote or line break */
+
+    private static void writeCsv(Writer writer, Land land) throws IOException {
+        StringBuilder flags = new StringBuilder();
+        for (LandFlag flag : LandFlag.values()) {
+            if (land.hasFlag(flag)) {
+                flags.append(flags.length() > 0 ? ";" : "").append(flag.name());
+            }
+        }
+        StringBuilder regions = new StringBuilder();
+        for (Region region : land.getRegions()) {
+            Vector3i min = region.getCorner1();
+            Vector3i max = region.getCorner2();
+            regions.append(regions.length() > 0 ? ";" : "")
+                .append(min.getX()).append(' ').append(min.getY()).append(' ').append(min.getZ()).append(' ')
+                .append(max.getX()).append(' ').append(max.getY()).append(' ').append(max.getZ());
+            if (region.getFlagMask() != 0) {
+                regions.append(' ').append(region.getFlagMask()).append(' ').append(region.getFlagValues());
+            }
+        }
+        StringBuilder roles = new StringBuilder();
+        for (Map.Entry<String, LandRole> role : land.getRoles().entrySet()) {
+            roles.append(roles.length() > 0 ? ";" : "").append(role.getKey()).append('=');
+            boolean first = true;
+            for (LandPermission permission : role.getValue().getPermissions()) {
+                roles.append(first ? "" : "|").append(permission.name());
+                first = false;
+            }
+        }
+        StringBuilder members = new StringBuilder();
+        for (Map.Entry<UUID, String> member : land.getMembers().entrySet()) {
+            members.append(members.length() > 0 ? ";" : "").append(member.getKey()).append('=').append(member.getValue());
+        }
+
+        writer.write(land.getId().toString());
+        writer.write(',');
+        writer.write(quoteCsv(land.getName()));
+        writer.write(',');
+        writer.write(land.getOwner().toString());
+        writer.write(',');
+        writer.write(land.getParent() != null ? land.getParent().getId().toString() : "");
+        writer.write(',');
+        writer.write(land.getClaimMode().name());
+        writer.write(',');
+        writer.write(Long.toString(land.getCreatedAt()));
+        writer.write(',');
+        writer.write(flags.toString());
+        writer.write(',');
+        writer.write(regions.toString());
+        writer.write(',');
+        writer.write(quoteCsv(roles.toString()));
+        writer.write(',');
+        writer.write(quoteCsv(members.toString()));
+    }
+
+    private static String quoteCsv(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    /** Splits one CSV line, empty fields come back as null */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.length() > 0 ? field.toString() : null);
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field.");
+        }
+        fields.add(field.length() > 0 ? field.toString() : null);
+        return fields;
+    }
+}
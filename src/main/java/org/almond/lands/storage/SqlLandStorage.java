@@ -0,0 +1,333 @@
+package org.almond.lands.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.almond.lands.jfr.LandStorageEvent;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.ClaimMode;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandDetails;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.LandRole;
+import org.almond.lands.model.Region;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+/** Embedded database storage backend, H2 running in process
+ *  Normalized tables for lands, regions, roles and members, with B-tree indexes on owner, member,
+ *  last change and region bounds, so admin queries and exports run in the database instead of in heap.
+ *  Autosave rounds are written in one transaction with batched prepared statements.
+ *  Startup reads the land and region tables only, roles and members are queried per land on first access.
+ *  Writes run on the autosave thread with their own connection, reads on the world thread with another.
+ */
+public class SqlLandStorage extends JournaledLandStorage {
+
+    public static final String DATABASE_FILE = "lands";
+    public static final String JOURNAL_DIRECTORY = "journal";
+
+    // Names are unbounded VARCHAR, the other backends take any name and one too long would fail every autosave round
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS lands ("
+            + "id UUID PRIMARY KEY, name VARCHAR NOT NULL, owner UUID NOT NULL, parent_id UUID, "
+            + "claim_mode TINYINT NOT NULL, created_at BIGINT NOT NULL, flags BIGINT NOT NULL, "
+            + "outsider_permissions BIGINT NOT NULL, member_filter BIGINT NOT NULL, "
+            + "journal_sequence BIGINT NOT NULL, updated_at BIGINT NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS lands_owner ON lands(owner)",
+        "CREATE INDEX IF NOT EXISTS lands_updated ON lands(updated_at)",
+        "CREATE TABLE IF NOT EXISTS regions ("
+            + "land_id UUID NOT NULL, min_x INT NOT NULL, min_y INT NOT NULL, min_z INT NOT NULL, "
+            + "max_x INT NOT NULL, max_y INT NOT NULL, max_z INT NOT NULL, "
+            + "flag_mask BIGINT NOT NULL, flag_values BIGINT NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS regions_land ON regions(land_id)",
+        "CREATE INDEX IF NOT EXISTS regions_x ON regions(min_x, max_x)",
+        "CREATE INDEX IF NOT EXISTS regions_z ON regions(min_z, max_z)",
+        "CREATE TABLE IF NOT EXISTS roles ("
+            + "land_id UUID NOT NULL, name VARCHAR NOT NULL, permissions BIGINT NOT NULL, "
+            + "PRIMARY KEY (land_id, name))",
+        "CREATE TABLE IF NOT EXISTS members ("
+            + "land_id UUID NOT NULL, player_id UUID NOT NULL, role VARCHAR NOT NULL, "
+            + "PRIMARY KEY (land_id, player_id))",
+        "CREATE INDEX IF NOT EXISTS members_player ON members(player_id)"
+    };
+
+    private static final String MERGE_LAND = "MERGE INTO lands (id, name, owner, parent_id, claim_mode, created_at, flags, "
+        + "outsider_permissions, member_filter, journal_sequence, updated_at) KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_REGION = "INSERT INTO regions (land_id, min_x, min_y, min_z, max_x, max_y, max_z, "
+        + "flag_mask, flag_values) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ROLE = "INSERT INTO roles (land_id, name, permissions) VALUES (?, ?, ?)";
+    private static final String INSERT_MEMBER = "INSERT INTO members (land_id, player_id, role) VALUES (?, ?, ?)";
+
+    private Path dataDirectory;
+    private String url;
+    private Connection readConnection;      // World thread, startup load, detail loads and queries
+    private Connection writeConnection;     // Autosave thread only
+
+    /** Creates the storage with an H2 database file in the data directory */
+    public SqlLandStorage(Path dataDirectory) {
+        this(dataDirectory, "jdbc:h2:" + dataDirectory.resolve(DATABASE_FILE).toAbsolutePath(), LandDetailCache.DEFAULT_CAPACITY);
+    }
+
+    /** Creates the storage on any JDBC url, the journal still lives in the data directory */
+    public SqlLandStorage(Path dataDirectory, String url, int detailCapacity) {
+        super(dataDirectory.resolve(JOURNAL_DIRECTORY), detailCapacity);
+        this.dataDirectory = dataDirectory;
+        this.url = url;
+    }
+
+    /** Loads the land and region tables and replays the journal into the manager */
+    @Override
+    public void load(LandManager landManager) throws IOException {
+        LandStorageEvent event = new LandStorageEvent();
+        event.begin();
+        Files.createDirectories(dataDirectory);
+        try {
+            readConnection = DriverManager.getConnection(url);
+            writeConnection = DriverManager.getConnection(url);
+            writeConnection.setAutoCommit(false);
+            try (Statement statement = readConnection.createStatement()) {
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+            }
+
+            Map<UUID, Set<Region>> regions = new HashMap<>();
+            try (Statement statement = readConnection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT r.land_id, r.min_x, r.min_y, r.min_z, r.max_x, r.max_y, r.max_z, "
+                     + "r.flag_mask, r.flag_values, l.claim_mode FROM regions r JOIN lands l ON l.id = r.land_id")) {
+                while (rows.next()) {
+                    Region region;
+                    if (ClaimMode.values()[rows.getByte(10)] == ClaimMode.COLUMN) {
+                        region = Region.column(rows.getInt(2), rows.getInt(4), rows.getInt(5), rows.getInt(7));
+                    } else {
+                        region = new Region(new Vector3i(rows.getInt(2), rows.getInt(3), rows.getInt(4)),
+                                            new Vector3i(rows.getInt(5), rows.getInt(6), rows.getInt(7)));
+                    }
+                    region.setFlagOverrides(rows.getLong(8), rows.getLong(9));
+                    regions.computeIfAbsent(rows.getObject(1, UUID.class), id -> new HashSet<>()).add(region);
+                }
+            }
+
+            List<Land> loaded = new ArrayList<>();
+            Map<UUID, UUID> storedParents = new HashMap<>();
+            Map<UUID, Long> landSequences = new HashMap<>();
+            try (Statement statement = readConnection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT id, name, owner, parent_id, claim_mode, created_at, flags, "
+                     + "outsider_permissions, member_filter, journal_sequence, "
+                     + "(SELECT COUNT(*) FROM members m WHERE m.land_id = l.id) FROM lands l")) {
+                while (rows.next()) {
+                    UUID id = rows.getObject(1, UUID.class);
+                    Set<Region> landRegions = regions.getOrDefault(id, new HashSet<>());
+                    Land land = new Land(id, rows.getString(2), rows.getObject(3, UUID.class), landRegions, rows.getLong(6),
+                                         ClaimMode.values()[rows.getByte(5)], rows.getLong(8), rows.getLong(9), rows.getInt(11),
+                                         detailCache);
+                    land.setFlags(rows.getLong(7));
+                    land.rebuildAdjacency();
+                    loaded.add(land);
+                    storedParents.put(id, rows.getObject(4, UUID.class));
+                    landSequences.put(id, rows.getLong(10));
+                }
+            }
+            attach(landManager, loaded, storedParents, landSequences);
+            commitLoad(event, landManager);
+        } catch (SQLException e) {
+            throw new IOException("Failed to load lands from " + url + ".", e);
+        }
+    }
+
+    /** Writes a round of changed lands in one transaction
+     *  Regions are replaced as a whole, roles and members only when the record carries details.
+     */
+    @Override
+    public void write(List<LandRecord> records, List<UUID> removals, long journalSequence) throws IOException {
+        long now = System.currentTimeMillis();
+        try (PreparedStatement mergeLand = writeConnection.prepareStatement(MERGE_LAND);
+             PreparedStatement deleteRegions = writeConnection.prepareStatement("DELETE FROM regions WHERE land_id = ?");
+             PreparedStatement insertRegion = writeConnection.prepareStatement(INSERT_REGION);
+             PreparedStatement deleteRoles = writeConnection.prepareStatement("DELETE FROM roles WHERE land_id = ?");
+             PreparedStatement insertRole = writeConnection.prepareStatement(INSERT_ROLE);
+             PreparedStatement deleteMembers = writeConnection.prepareStatement("DELETE FROM members WHERE land_id = ?");
+             PreparedStatement insertMember = writeConnection.prepareStatement(INSERT_MEMBER);
+             PreparedStatement deleteLand = writeConnection.prepareStatement("DELETE FROM lands WHERE id = ?")) {
+
+            for (LandRecord record : records) {
+                UUID id = record.getId();
+                mergeLand.setObject(1, id);
+                mergeLand.setString(2, record.getName());
+                mergeLand.setObject(3, record.getOwner());
+                mergeLand.setObject(4, record.getParentId());
+                mergeLand.setByte(5, (byte) record.getClaimMode().ordinal());
+                mergeLand.setLong(6, record.getCreatedAt());
+                mergeLand.setLong(7, record.getFlags());
+                mergeLand.setLong(8, record.getOutsiderPermissions());
+                mergeLand.setLong(9, record.getMemberFilter());
+                mergeLand.setLong(10, journalSequence);
+                mergeLand.setLong(11, now);
+                mergeLand.addBatch();
+
+                deleteRegions.setObject(1, id);
+                deleteRegions.addBatch();
+                for (int r = 0; r < record.getRegionCount(); r++) {
+                    insertRegion.setObject(1, id);
+                    for (int axis = 0; axis < 6; axis++) {
+                        insertRegion.setInt(2 + axis, record.getRegionBound(r, axis));
+                    }
+                    insertRegion.setLong(8, record.getRegionFlagMask(r));
+                    insertRegion.setLong(9, record.getRegionFlagValues(r));
+                    insertRegion.addBatch();
+                }
+
+                if (!record.hasDetails()) {
+                    continue;
+                }
+                deleteRoles.setObject(1, id);
+                deleteRoles.addBatch();
+                deleteMembers.setObject(1, id);
+                deleteMembers.addBatch();
+                for (int i = 0; i < record.getRoleCount(); i++) {
+                    insertRole.setObject(1, id);
+                    insertRole.setString(2, record.getRoleName(i));
+                    insertRole.setLong(3, record.getRolePermissions(i));
+                    insertRole.addBatch();
+                }
+                for (int i = 0; i < record.getMemberCount(); i++) {
+                    insertMember.setObject(1, id);
+                    insertMember.setObject(2, record.getMemberId(i));
+                    insertMember.setString(3, record.getMemberRole(i));
+                    insertMember.addBatch();
+                }
+            }
+            for (UUID landId : removals) {
+                deleteRegions.setObject(1, landId);
+                deleteRegions.addBatch();
+                deleteRoles.setObject(1, landId);
+                deleteRoles.addBatch();
+                deleteMembers.setObject(1, landId);
+                deleteMembers.addBatch();
+                deleteLand.setObject(1, landId);
+                deleteLand.addBatch();
+            }
+
+            // Deletes before inserts, a land's rows are replaced within the same transaction
+            mergeLand.executeBatch();
+            deleteRegions.executeBatch();
+            deleteRoles.executeBatch();
+            deleteMembers.executeBatch();
+            deleteLand.executeBatch();
+            insertRegion.executeBatch();
+            insertRole.executeBatch();
+            insertMember.executeBatch();
+            writeConnection.commit();
+        } catch (SQLException e) {
+            try {
+                writeConnection.rollback();
+            } catch (SQLException rollback) {
+                e.addSuppressed(rollback);
+            }
+            throw new IOException("Failed to save " + records.size() + " lands to " + url + ".", e);
+        }
+    }
+
+    /** Reads the roles and members of one land, null if none were ever stored */
+    @Override
+    public LandDetails read(Land land) throws IOException {
+        try {
+            Map<String, LandRole> roles = new HashMap<>();
+            try (PreparedStatement statement = readConnection.prepareStatement(
+                     "SELECT name, permissions FROM roles WHERE land_id = ?")) {
+                statement.setObject(1, land.getId());
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        String roleName = rows.getString(1);
+                        roles.put(roleName, new LandRole(roleName, LandPermission.fromMask(rows.getLong(2))));
+                    }
+                }
+            }
+            if (roles.isEmpty()) {
+                return null;
+            }
+            Map<UUID, String> members = new HashMap<>();
+            try (PreparedStatement statement = readConnection.prepareStatement(
+                     "SELECT player_id, role FROM members WHERE land_id = ?")) {
+                statement.setObject(1, land.getId());
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        members.put(rows.getObject(1, UUID.class), rows.getString(2));
+                    }
+                }
+            }
+            LandDetails details = new LandDetails(members, roles);
+            details.markSaved(details.getVersion());
+            return details;
+        } catch (SQLException e) {
+            throw new IOException("Failed to load the details of land " + land.getName() + ".", e);
+        }
+    }
+
+    /** Queries, answered from the database indexes as of the last completed autosave */
+    @Override
+    public List<UUID> findLandsByOwner(UUID ownerId) throws IOException {
+        return queryIds("SELECT id FROM lands WHERE owner = ?", ownerId);
+    }
+
+    @Override
+    public List<UUID> findLandsByMember(UUID playerId) throws IOException {
+        return queryIds("SELECT land_id FROM members WHERE player_id = ?", playerId);
+    }
+
+    @Override
+    public List<UUID> findLandsUnchangedSince(long timestamp) throws IOException {
+        return queryIds("SELECT id FROM lands WHERE updated_at < ?", timestamp);
+    }
+
+    @Override
+    public List<UUID> findLandsIntersecting(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) throws IOException {
+        return queryIds("SELECT DISTINCT land_id FROM regions WHERE min_x <= ? AND max_x >= ? AND min_z <= ? AND max_z >= ? "
+            + "AND min_y <= ? AND max_y >= ?", maxX, minX, maxZ, minZ, maxY, minY);
+    }
+
+    private List<UUID> queryIds(String sql, Object... parameters) throws IOException {
+        List<UUID> result = new ArrayList<>();
+        try (PreparedStatement statement = readConnection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    result.add(rows.getObject(1, UUID.class));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Land query failed.", e);
+        }
+        return result;
+    }
+
+    /** Finishes the running autosave, then closes the journal and both connections */
+    @Override
+    public void close() throws IOException {
+        super.close();
+        try {
+            if (readConnection != null) {
+                readConnection.close();
+            }
+            if (writeConnection != null) {
+                writeConnection.close();
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to close " + url + ".", e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.hypixel.hytale.logger;
+
+/** Simulator stand-in for the server logger, prints warnings and errors to stderr and drops the rest
+ *  Only the calls the lands engine makes are provided.
+ */
+public class HytaleLogger {
+
+    private final String name;
+
+    private HytaleLogger(String name) {
+        this.name = name;
+    }
+
+    public static HytaleLogger forEnclosingClass() {
+        StackTraceElement[] stack = new Throwable().getStackTrace();
+        String caller = stack.length > 1 ? stack[1].getClassName() : "Lands";
+        return new HytaleLogger(caller.substring(caller.lastIndexOf('.') + 1));
+    }
+
+    public Api atFine() {
+        return new Api(null);
+    }
+
+    public Api atInfo() {
+        return new Api(null);
+    }
+
+    public Api atWarning() {
+        return new Api("WARNING");
+    }
+
+    public Api atSevere() {
+        return new Api("SEVERE");
+    }
+
+    /** One log statement */
+    public class Api {
+        private final String level;    // Null for levels the simulator drops
+        private Throwable cause;
+
+        Api(String level) {
+            this.level = level;
+        }
+
+        public Api withCause(Throwable cause) {
+            this.cause = cause;
+            return this;
+        }
+
+        public void log(String message) {
+            if (level == null) {
+                return;
+            }
+            System.err.println("[" + level + "] [" + name + "] " + message);
+            if (cause != null) {
+                cause.printStackTrace();
+            }
+        }
+    }
+}
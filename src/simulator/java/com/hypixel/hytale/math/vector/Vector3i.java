@@ -0,0 +1,45 @@
+package com.hypixel.hytale.math.vector;
+
+/** Simulator stand-in for the server's integer vector, only what the lands engine uses */
+public class Vector3i {
+    public int x;
+    public int y;
+    public int z;
+
+    public Vector3i(int x, int y, int z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Vector3i)) {
+            return false;
+        }
+        Vector3i other = (Vector3i) obj;
+        return x == other.x && y == other.y && z == other.z;
+    }
+
+    @Override
+    public int hashCode() {
+        return (x * 31 + y) * 31 + z;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + ", " + y + ", " + z + ")";
+    }
+}
@@ -0,0 +1,388 @@
+package org.almond.lands.simulator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.manager.SelectionManager;
+import org.almond.lands.model.ClaimMode;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandFlag;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.Region;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+/** Headless load simulator for the lands engine
+ *  Builds a population of lands and players on a LandManager, then runs a seeded mix of player events against it:
+ *  movement resolving the land under the player, block edits checking protection, explosions checking the
+ *  explosion flag of every block in the blast, claims going through a SelectionManager and trust changes.
+ *  The same options and seed always produce the same event sequence, so runs can be compared across changes.
+ *  Reports throughput and latency percentiles per event type and the heap taken by the population.
+ *  Runs against stand-ins for the server types, see the simulator source set, started with gradle runSimulator.
+ *
+ *  Options, all as --name=value: lands, players, events, warmup, seed, world, min-size, max-size, claim-mode,
+ *  min-gap, blast-radius, members and mix, the mix given as weights like move:70,edit:20,explode:1,claim:4,trust:5.
+ */
+public class LandSimulator {
+
+    private static final String[] EVENT_TYPES = { "move", "edit", "explode", "claim", "trust" };
+
+    private Map<String, String> options = new HashMap<>();
+    private Random random;
+    private LandManager landManager = new LandManager();
+    private SelectionManager selectionManager = new SelectionManager(landManager);
+    private UUID[] players;
+    private int[][] positions;             // Player -> x, y, z
+    private List<Land> lands = new ArrayList<>();
+    private Map<UUID, List<UUID>> trusted = new HashMap<>(); // Land -> members trusted by the simulation
+    private int[] weights = new int[EVENT_TYPES.length];
+    private long[][] latencies = new long[EVENT_TYPES.length][];
+    private int[] counts = new int[EVENT_TYPES.length];
+    private int[] rejected = new int[EVENT_TYPES.length];
+    private long sink;                     // Keeps results alive so lookups cannot be optimized away
+
+    public static void main(String[] args) {
+        LandSimulator simulator = new LandSimulator();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options are given as --name=value, got " + arg + ".");
+            }
+            simulator.options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        simulator.run();
+    }
+
+    private void run() {
+        random = new Random(longOption("seed", 1));
+        int landCount = intOption("lands", 10_000);
+        int playerCount = intOption("players", 1_000);
+        int eventCount = intOption("events", 1_000_000);
+        int warmup = intOption("warmup", 200_000);
+        parseMix(options.getOrDefault("mix", "move:70,edit:20,explode:1,claim:4,trust:5"));
+        landManager.setMinClaimGap(intOption("min-gap", 0));
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapBefore = usedHeap(memory);
+        long start = System.nanoTime();
+        populate(landCount, playerCount);
+        long populateNanos = System.nanoTime() - start;
+        long heapAfter = usedHeap(memory);
+
+        // Warm up on a separate stream, so the measured run draws the same events whatever the warmup length
+        Random measured = random;
+        random = new Random(longOption("seed", 1) ^ 0x5DEECE66DL);
+        for (int i = 0; i < warmup; i++) {
+            runEvent(pickEvent(), false);
+        }
+        random = measured;
+        for (int type = 0; type < EVENT_TYPES.length; type++) {
+            latencies[type] = new long[Math.max(16, (int) ((long) eventCount * weights[type] / totalWeight()) + 16)];
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < eventCount; i++) {
+            runEvent(pickEvent(), true);
+        }
+        long runNanos = System.nanoTime() - start;
+
+        report(landCount, playerCount, eventCount, populateNanos, runNanos, heapBefore, heapAfter, usedHeap(memory));
+    }
+
+    /** Population */
+
+    private void populate(int landCount, int playerCount) {
+        int world = intOption("world", 20_000);
+        int minSize = intOption("min-size", 16);
+        int maxSize = intOption("max-size", 96);
+        int members = intOption("members", 4);
+        ClaimMode claimMode = ClaimMode.valueOf(options.getOrDefault("claim-mode", "cuboid").toUpperCase(Locale.ROOT));
+
+        players = new UUID[playerCount];
+        positions = new int[playerCount][];
+        for (int i = 0; i < playerCount; i++) {
+            players[i] = new UUID(random.nextLong(), random.nextLong());
+            positions[i] = new int[] { random.nextInt(world) - world / 2, 64, random.nextInt(world) - world / 2 };
+        }
+        int attempts = 0;
+        while (lands.size() < landCount && attempts++ < landCount * 4) {
+            int x = random.nextInt(world) - world / 2;
+            int z = random.nextInt(world) - world / 2;
+            int width = minSize + random.nextInt(maxSize - minSize + 1);
+            int depth = minSize + random.nextInt(maxSize - minSize + 1);
+            Region region = new Region(new Vector3i(x, 0, z), new Vector3i(x + width - 1, 127, z + depth - 1));
+            // The engine leaves overlap between lands to its callers, keep the population free of it
+            if (landManager.getIndex().findNear(x, z, x + width - 1, z + depth - 1, 0, other -> true) != null) {
+                continue;
+            }
+            String name = "land-" + lands.size();
+            try {
+                landManager.createLand(name, players[random.nextInt(playerCount)], region, claimMode);
+            } catch (IllegalArgumentException e) {
+                continue; // Too close to another land under the configured gap
+            }
+            Land land = landManager.getLandByName(name);
+            lands.add(land);
+            for (int i = 0; i < members; i++) {
+                trust(land, players[random.nextInt(playerCount)]);
+            }
+        }
+    }
+
+    /** Events */
+
+    private int totalWeight() {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        return total;
+    }
+
+    private int pickEvent() {
+        int roll = random.nextInt(totalWeight());
+        for (int type = 0; type < weights.length; type++) {
+            roll -= weights[type];
+            if (roll < 0) {
+                return type;
+            }
+        }
+        return 0;
+    }
+
+    private void runEvent(int type, boolean measure) {
+        int player = random.nextInt(players.length);
+        long start = System.nanoTime();
+        boolean accepted;
+        switch (type) {
+            case 0:
+                accepted = move(player);
+                break;
+            case 1:
+                accepted = edit(player);
+                break;
+            case 2:
+                accepted = explode(player);
+                break;
+            case 3:
+                accepted = claim();
+                break;
+            default:
+                accepted = changeTrust();
+                break;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (!measure) {
+            return;
+        }
+        if (counts[type] == latencies[type].length) {
+            latencies[type] = Arrays.copyOf(latencies[type], counts[type] * 2);
+        }
+        latencies[type][counts[type]++] = elapsed;
+        if (!accepted) {
+            rejected[type]++;
+        }
+    }
+
+    /** Walks a few blocks, now and then jumping into a random land the way a teleport would */
+    private boolean move(int player) {
+        int[] position = positions[player];
+        if (random.nextInt(100) == 0 && !lands.isEmpty()) {
+            Region region = lands.get(random.nextInt(lands.size())).getRegions().iterator().next();
+            position[0] = region.getCorner1().getX();
+            position[2] = region.getCorner1().getZ();
+        } else {
+            position[0] += random.nextInt(11) - 5;
+            position[2] += random.nextInt(11) - 5;
+        }
+        Land land = landManager.getLandAt(new Vector3i(position[0], position[1], position[2]));
+        sink += land != null ? 1 : 0;
+        return true;
+    }
+
+    private boolean edit(int player) {
+        int[] position = positions[player];
+        Vector3i block = new Vector3i(position[0] + random.nextInt(9) - 4, position[1] + random.nextInt(5) - 2,
+                                      position[2] + random.nextInt(9) - 4);
+        LandPermission permission = random.nextBoolean() ? LandPermission.BUILD : LandPermission.BREAK;
+        return landManager.checkPermissionAt(players[player], block, permission);
+    }
+
+    /** Checks the explosion flag of every block in a sphere, the way a blast resolves which blocks it may break */
+    private boolean explode(int player) {
+        int[] position = positions[player];
+        int radius = intOption("blast-radius", 4);
+        int protectedBlocks = 0;
+        for (int dx = -radius; dx <= radius; dx++) {
+            for (int dy = -radius; dy <= radius; dy++) {
+                for (int dz = -radius; dz <= radius; dz++) {
+                    if (dx * dx + dy * dy + dz * dz > radius * radius) {
+                        continue;
+                    }
+                    Vector3i block = new Vector3i(position[0] + dx, position[1] + dy, position[2] + dz);
+                    if (!landManager.isFlagSetAt(block, LandFlag.EXPLOSIONS)) {
+                        protectedBlocks++;
+                    }
+                }
+            }
+        }
+        sink += protectedBlocks;
+        return protectedBlocks == 0;
+    }
+
+    /** The owner of a random land selects a strip along one side of one of its regions and claims it */
+    private boolean claim() {
+        if (lands.isEmpty()) {
+            return false;
+        }
+        Land land = lands.get(random.nextInt(lands.size()));
+        if (landManager.getLandById(land.getId()) == null) {
+            return false;
+        }
+        List<Region> regions = new ArrayList<>(land.getRegions());
+        Region region = regions.get(random.nextInt(regions.size()));
+        Vector3i min = region.getCorner1();
+        Vector3i max = region.getCorner2();
+        int length = 4 + random.nextInt(13);
+        Vector3i corner1;
+        Vector3i corner2;
+        switch (random.nextInt(4)) {
+            case 0:
+                corner1 = new Vector3i(max.getX() + 1, min.getY(), min.getZ());
+                corner2 = new Vector3i(max.getX() + length, max.getY(), max.getZ());
+                break;
+            case 1:
+                corner1 = new Vector3i(min.getX() - length, min.getY(), min.getZ());
+                corner2 = new Vector3i(min.getX() - 1, max.getY(), max.getZ());
+                break;
+            case 2:
+                corner1 = new Vector3i(min.getX(), min.getY(), max.getZ() + 1);
+                corner2 = new Vector3i(max.getX(), max.getY(), max.getZ() + length);
+                break;
+            default:
+                corner1 = new Vector3i(min.getX(), min.getY(), min.getZ() - length);
+                corner2 = new Vector3i(max.getX(), max.getY(), min.getZ() - 1);
+                break;
+        }
+        UUID owner = land.getOwner();
+        long now = System.currentTimeMillis();
+        selectionManager.setCorner1(owner, corner1, now);
+        selectionManager.setCorner2(owner, corner2, now);
+        selectionManager.completeSelection(owner, now);
+        Region selection = selectionManager.getSelection(owner);
+        selectionManager.clearSelection(owner);
+        try {
+            landManager.selectLandForPlayer(owner, land.getName());
+            landManager.claimRegion(owner, selection);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** The owner of a random land trusts a random player, or untrusts one trusted before */
+    private boolean changeTrust() {
+        if (lands.isEmpty()) {
+            return false;
+        }
+        Land land = lands.get(random.nextInt(lands.size()));
+        List<UUID> members = trusted.get(land.getId());
+        if (members != null && !members.isEmpty() && random.nextBoolean()) {
+            UUID member = members.remove(members.size() - 1);
+            try {
+                landManager.selectLandForPlayer(land.getOwner(), land.getName());
+                landManager.untrustPlayer(land.getOwner(), member);
+                return true;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        return trust(land, players[random.nextInt(players.length)]);
+    }
+
+    private boolean trust(Land land, UUID player) {
+        try {
+            landManager.selectLandForPlayer(land.getOwner(), land.getName());
+            landManager.trustPlayer(land.getOwner(), player, "member");
+        } catch (IllegalArgumentException e) {
+            return false; // Already a member or the owner
+        }
+        trusted.computeIfAbsent(land.getId(), id -> new ArrayList<>()).add(player);
+        return true;
+    }
+
+    /** Report */
+
+    private void report(int landCount, int playerCount, int eventCount, long populateNanos, long runNanos,
+                        long heapBefore, long heapAfter, long heapEnd) {
+        int regions = 0;
+        for (Land land : landManager.getAllLands()) {
+            regions += land.getRegions().size();
+        }
+        System.out.printf(Locale.ROOT, "Population: %d of %d lands, %d regions, %d players, built in %.1f ms%n",
+                          lands.size(), landCount, regions, playerCount, populateNanos / 1e6);
+        System.out.printf(Locale.ROOT, "Heap: %.1f MB for the population (%.0f bytes per land), %.1f MB after the run%n",
+                          (heapAfter - heapBefore) / 1048576.0, (heapAfter - heapBefore) / (double) Math.max(1, lands.size()),
+                          heapEnd / 1048576.0);
+        System.out.printf(Locale.ROOT, "Run: %d events in %.1f ms, %.0f events/s%n",
+                          eventCount, runNanos / 1e6, eventCount / (runNanos / 1e9));
+        System.out.printf(Locale.ROOT, "%-8s %10s %9s %10s %10s %10s %10s %10s%n",
+                          "event", "count", "rejected", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        for (int type = 0; type < EVENT_TYPES.length; type++) {
+            if (counts[type] == 0) {
+                continue;
+            }
+            long[] sorted = Arrays.copyOf(latencies[type], counts[type]);
+            Arrays.sort(sorted);
+            System.out.printf(Locale.ROOT, "%-8s %10d %9d %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                              EVENT_TYPES[type], counts[type], rejected[type], percentile(sorted, 0.50),
+                              percentile(sorted, 0.90), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                              sorted[sorted.length - 1] / 1e3);
+        }
+        if (sink == Long.MIN_VALUE) {
+            System.out.println();
+        }
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e3;
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /** Options */
+
+    private void parseMix(String mix) {
+        for (String part : mix.split(",")) {
+            String[] pair = part.split(":");
+            int type = Arrays.asList(EVENT_TYPES).indexOf(pair[0].trim());
+            if (type < 0 || pair.length != 2) {
+                throw new IllegalArgumentException("Unknown event mix entry " + part + ", expected one of "
+                                                   + String.join(", ", EVENT_TYPES) + " with a weight.");
+            }
+            weights[type] = Integer.parseInt(pair[1].trim());
+        }
+        if (totalWeight() <= 0) {
+            throw new IllegalArgumentException("The event mix needs at least one positive weight.");
+        }
+    }
+
+    private int intOption(String name, int defaultValue) {
+        String value = options.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private long longOption(String name, long defaultValue) {
+        String value = options.get(name);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+}
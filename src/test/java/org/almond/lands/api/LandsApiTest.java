@@ -0,0 +1,49 @@
+package org.almond.lands.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.UUID;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.Region;
+import org.junit.jupiter.api.Test;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+class LandsApiTest {
+
+    private static Region box(int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new Region(new Vector3i(x1, y1, z1), new Vector3i(x2, y2, z2));
+    }
+
+    @Test
+    void forEachLandStopsWhenTheVisitorReturnsFalse() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        for (int i = 0; i < 5; i++) {
+            landManager.createLand("land" + i, owner, box(i * 20, 0, 0, i * 20 + 9, 9, 9));
+        }
+        LandsApi api = new LandsApi(landManager);
+
+        int[] visited = new int[1];
+        api.forEachLand(land -> ++visited[0] < 2);
+        assertEquals(2, visited[0]);
+
+        visited[0] = 0;
+        api.forEachLand(land -> ++visited[0] > 0);
+        assertEquals(5, visited[0]);
+    }
+
+    @Test
+    void memberCountFollowsTrusts() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("town", owner, box(0, 0, 0, 9, 9, 9));
+        landManager.selectLandForPlayer(owner, "town");
+        LandsApi api = new LandsApi(landManager);
+        UUID town = landManager.getLandByName("town").getId();
+
+        assertEquals(1, api.getMemberCount(town));
+        landManager.trustPlayer(owner, UUID.randomUUID(), "member");
+        assertEquals(2, api.getMemberCount(town));
+        assertEquals(0, api.getMemberCount(UUID.randomUUID()));
+    }
+}
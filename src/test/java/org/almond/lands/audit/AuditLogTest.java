@@ -0,0 +1,83 @@
+package org.almond.lands.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AuditLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void positionsSurvivePacking() {
+        int[][] positions = { { 0, 0, 0 }, { 1_000_000, 319, -1_000_000 }, { -33_554_432, -2048, 33_554_431 }, { -1, -1, -1 } };
+        for (int[] position : positions) {
+            long packed = AuditLog.packPosition(position[0], position[1], position[2]);
+            assertEquals(position[0], AuditLog.unpackX(packed));
+            assertEquals(position[1], AuditLog.unpackY(packed));
+            assertEquals(position[2], AuditLog.unpackZ(packed));
+        }
+    }
+
+    @Test
+    void queriesReturnMatchingEventsNewestFirst() throws IOException {
+        UUID land = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        UUID player = UUID.randomUUID();
+        UUID member = UUID.randomUUID();
+        AuditLog log = new AuditLog(directory);
+        log.start();
+        log.record(AuditType.LAND_CREATED, land, player, null, 1, 2, 3, 0L);
+        log.record(AuditType.CLAIM, other, player, null, 10, 64, -10, 1000L);
+        log.record(AuditType.TRUST, land, player, member, 0, 0, 0, 0L);
+        log.record(AuditType.PERMISSION_DENIED, land, member, null, -5, 70, 5, 4L);
+        // Close writes everything still in the ring
+        log.close();
+
+        assertEquals(4, log.getWrittenCount());
+        assertEquals(0, log.getPendingCount());
+
+        List<AuditRecord> forLand = log.query(land, null, 0, Long.MAX_VALUE, 10);
+        assertEquals(3, forLand.size());
+        assertEquals(AuditType.PERMISSION_DENIED, forLand.get(0).getType());
+        assertEquals(AuditType.TRUST, forLand.get(1).getType());
+        assertEquals(AuditType.LAND_CREATED, forLand.get(2).getType());
+        assertEquals(-5, forLand.get(0).getX());
+        assertNull(forLand.get(0).getSubjectId());
+
+        // A player matches as actor or as subject
+        List<AuditRecord> forMember = log.query(null, member, 0, Long.MAX_VALUE, 10);
+        assertEquals(2, forMember.size());
+        assertTrue(forMember.get(1).involves(member));
+
+        List<AuditRecord> latest = log.query(null, player, 0, Long.MAX_VALUE, 2);
+        assertEquals(2, latest.size());
+        assertEquals(AuditType.TRUST, latest.get(0).getType());
+        assertEquals(AuditType.CLAIM, latest.get(1).getType());
+        assertEquals(1000L, latest.get(1).getValue());
+
+        assertTrue(log.query(null, null, 0, 0, 10).isEmpty());
+    }
+
+    @Test
+    void eventsBeyondTheCapacityAreDroppedAndCounted() {
+        // Not started, nothing drains the ring
+        AuditLog log = new AuditLog(directory, 2, AuditLog.DEFAULT_SEGMENT_BYTES, 1);
+
+        assertTrue(log.record(AuditType.UNTRUST, null, null, null, 0, 0, 0, 0L));
+        assertTrue(log.record(AuditType.UNTRUST, null, null, null, 0, 0, 0, 0L));
+        assertFalse(log.record(AuditType.UNTRUST, null, null, null, 0, 0, 0, 0L));
+
+        assertEquals(1, log.getDroppedCount());
+        assertEquals(2, log.getPendingCount());
+    }
+}
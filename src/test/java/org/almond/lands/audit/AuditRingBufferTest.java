@@ -0,0 +1,120 @@
+package org.almond.lands.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class AuditRingBufferTest {
+
+    private static boolean publish(AuditRingBuffer ring, long value) {
+        return ring.publish(value, 0, 0L, 0L, 0L, 0L, 0L, 0L, 0L, value);
+    }
+
+    /** Drains everything published so far, returning the value of each event */
+    private static List<Long> drain(AuditRingBuffer ring) {
+        List<Long> values = new ArrayList<>();
+        ByteBuffer out = ByteBuffer.allocate(16 * AuditRingBuffer.EVENT_BYTES);
+        for (int count; (count = ring.drain(out, 16)) > 0; out.clear()) {
+            out.flip();
+            for (int i = 0; i < count; i++) {
+                values.add(out.getLong(i * AuditRingBuffer.EVENT_BYTES + (AuditRingBuffer.SLOT_LONGS - 1) * 8));
+            }
+        }
+        return values;
+    }
+
+    @Test
+    void capacityMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new AuditRingBuffer(12));
+        assertThrows(IllegalArgumentException.class, () -> new AuditRingBuffer(1));
+    }
+
+    @Test
+    void eventsDrainInPublishOrder() {
+        AuditRingBuffer ring = new AuditRingBuffer(8);
+        for (long value = 0; value < 5; value++) {
+            assertTrue(publish(ring, value));
+        }
+        assertEquals(5, ring.size());
+
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L), drain(ring));
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void fullRingDropsUntilDrained() {
+        AuditRingBuffer ring = new AuditRingBuffer(4);
+        for (long value = 0; value < 4; value++) {
+            assertTrue(publish(ring, value));
+        }
+        assertFalse(publish(ring, 4));
+        assertFalse(publish(ring, 5));
+        assertEquals(2, ring.getDropped());
+
+        assertEquals(List.of(0L, 1L, 2L, 3L), drain(ring));
+        // Drained slots are reused, the sequence wraps around the ring
+        assertTrue(publish(ring, 6));
+        assertTrue(publish(ring, 7));
+        assertEquals(List.of(6L, 7L), drain(ring));
+    }
+
+    @Test
+    void concurrentProducersLoseNothingTheyPublished() throws InterruptedException {
+        AuditRingBuffer ring = new AuditRingBuffer(64);
+        int producers = 4;
+        int perProducer = 20_000;
+        long[] accepted = new long[producers];
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    if (publish(ring, (long) producer * perProducer + i)) {
+                        accepted[producer]++;
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        boolean[] seen = new boolean[producers * perProducer];
+        long[] lastOf = new long[producers];
+        Arrays.fill(lastOf, -1L);
+        int received = 0;
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+            for (long value : drain(ring)) {
+                int producer = (int) (value / perProducer);
+                assertFalse(seen[(int) value]);
+                // One producer's events come out in the order it published them
+                assertTrue(value > lastOf[producer]);
+                seen[(int) value] = true;
+                lastOf[producer] = value;
+                received++;
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        received += drain(ring).size();
+
+        long total = 0;
+        for (long count : accepted) {
+            total += count;
+        }
+        assertEquals(total, received);
+        assertEquals(producers * perProducer - total, ring.getDropped());
+    }
+}
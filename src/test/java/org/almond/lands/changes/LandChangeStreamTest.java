@@ -0,0 +1,157 @@
+package org.almond.lands.changes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.almond.lands.api.RegionView;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandFlag;
+import org.almond.lands.model.Region;
+import org.junit.jupiter.api.Test;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+class LandChangeStreamTest {
+
+    private final UUID owner = UUID.randomUUID();
+    private final UUID member = UUID.randomUUID();
+    private final LandManager landManager = new LandManager();
+    private final LandChangeStream stream = new LandChangeStream(landManager);
+    private final List<List<LandChange>> coalesced = Collections.synchronizedList(new ArrayList<>());
+    private final List<List<LandChange>> everything = Collections.synchronizedList(new ArrayList<>());
+
+    private static Region box(int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new Region(new Vector3i(x1, y1, z1), new Vector3i(x2, y2, z2));
+    }
+
+    private static Set<RegionView> views(Set<Region> regions) {
+        Set<RegionView> views = new HashSet<>();
+        for (Region region : regions) {
+            views.add(new RegionView(region));
+        }
+        return views;
+    }
+
+    private void subscribeBoth() {
+        stream.subscribeAsync(coalesced::add, true);
+        stream.subscribeAsync(everything::add, false);
+    }
+
+    /** Creates a land with the owner selecting it */
+    private Land town() {
+        landManager.createLand("town", owner, box(0, 0, 0, 9, 9, 9));
+        landManager.selectLandForPlayer(owner, "town");
+        return landManager.getLandByName("town");
+    }
+
+    @Test
+    void synchronousSubscribersSeeEveryChangeNumberedPerLand() {
+        List<LandChange> seen = new ArrayList<>();
+        stream.subscribe(seen::add);
+        town();
+        landManager.createLand("farm", owner, box(50, 0, 0, 59, 9, 9));
+        landManager.trustPlayer(owner, member, "member");
+
+        assertEquals(3, seen.size());
+        assertEquals(List.of(1L, 1L, 2L), List.of(seen.get(0).getSequence(), seen.get(1).getSequence(), seen.get(2).getSequence()));
+        assertEquals(3, seen.get(2).getStreamSequence());
+        assertEquals(3, stream.getStreamSequence());
+        stream.close();
+    }
+
+    @Test
+    void coalescingKeepsTheLatestChangePerKey() {
+        subscribeBoth();
+        Land town = town();
+        landManager.trustPlayer(owner, member, "member");
+        landManager.untrustPlayer(owner, member);
+        landManager.trustPlayer(owner, member, "admin");
+        landManager.setLandFlag(owner, LandFlag.PVP, true);
+        landManager.setLandFlag(owner, LandFlag.EXPLOSIONS, true);
+        stream.flush();
+        stream.close();
+
+        assertEquals(6, everything.get(0).size());
+        List<LandChange> batch = coalesced.get(0);
+        assertEquals(3, batch.size());
+        assertEquals(LandChange.Type.LAND_CREATED, batch.get(0).getType());
+        LandChange.MemberChanged trust = (LandChange.MemberChanged) batch.get(1);
+        assertEquals("admin", trust.getRoleName());
+        assertEquals(town.getFlags(), ((LandChange.FlagsChanged) batch.get(2)).getFlags());
+    }
+
+    @Test
+    void aLandCreatedAndDeletedWithinABatchIsNotSeen() {
+        subscribeBoth();
+        town();
+        landManager.trustPlayer(owner, member, "member");
+        landManager.deleteLand(owner, "town");
+        stream.flush();
+        stream.close();
+
+        assertEquals(3, everything.get(0).size());
+        assertTrue(coalesced.isEmpty());
+    }
+
+    @Test
+    void aDeletionDropsThePendingChangesOfAnOlderLand() {
+        Land town = town();
+        subscribeBoth();
+        landManager.trustPlayer(owner, member, "member");
+        landManager.setLandFlag(owner, LandFlag.PVP, true);
+        landManager.deleteLand(owner, "town");
+        stream.flush();
+        stream.close();
+
+        List<LandChange> batch = coalesced.get(0);
+        assertEquals(1, batch.size());
+        assertEquals(LandChange.Type.LAND_DELETED, batch.get(0).getType());
+        assertEquals(town.getId(), batch.get(0).getLandId());
+    }
+
+    @Test
+    void regionChangesFoldIntoTheirNetDifference() {
+        Land town = town();
+        Set<RegionView> before = views(town.getRegions());
+        subscribeBoth();
+        landManager.claimRegion(owner, box(10, 0, 0, 19, 9, 9));
+        landManager.claimRegion(owner, box(20, 0, 0, 29, 9, 9));
+        landManager.unclaimRegion(owner, box(20, 0, 0, 29, 9, 9));
+        stream.flush();
+        stream.close();
+
+        Set<RegionView> after = views(town.getRegions());
+        Set<RegionView> added = new HashSet<>(after);
+        added.removeAll(before);
+        Set<RegionView> removed = new HashSet<>(before);
+        removed.removeAll(after);
+
+        assertEquals(3, everything.get(0).size());
+        List<LandChange> batch = coalesced.get(0);
+        assertEquals(1, batch.size());
+        LandChange.RegionsChanged change = (LandChange.RegionsChanged) batch.get(0);
+        assertEquals(added, new HashSet<>(change.getAdded()));
+        assertEquals(removed, new HashSet<>(change.getRemoved()));
+    }
+
+    @Test
+    void changesWhileABatchIsHandledWaitForTheNextOne() {
+        town();
+        subscribeBoth();
+        landManager.trustPlayer(owner, member, "member");
+        stream.flush();
+        landManager.setLandFlag(owner, LandFlag.PVP, true);
+        stream.close();
+
+        assertEquals(2, everything.size());
+        assertEquals(LandChange.Type.MEMBER_CHANGED, everything.get(0).get(0).getType());
+        assertEquals(LandChange.Type.FLAGS_CHANGED, everything.get(1).get(0).getType());
+        assertEquals(0, stream.getPendingCount());
+    }
+}
@@ -0,0 +1,104 @@
+package org.almond.lands.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class RankedListTest {
+
+    private static List<UUID> ids(List<RankedList.Entry> entries) {
+        List<UUID> ids = new ArrayList<>();
+        for (RankedList.Entry entry : entries) {
+            ids.add(entry.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void highestScoresRankFirstAndTiesGoById() {
+        UUID low = new UUID(0, 1);
+        UUID tiedFirst = new UUID(0, 2);
+        UUID tiedSecond = new UUID(0, 3);
+        RankedList list = new RankedList();
+        list.update(tiedSecond, 50);
+        list.update(low, 10);
+        list.update(tiedFirst, 50);
+
+        assertEquals(0, list.rank(tiedFirst));
+        assertEquals(1, list.rank(tiedSecond));
+        assertEquals(2, list.rank(low));
+        assertEquals(List.of(tiedFirst, tiedSecond, low), ids(list.range(0, 10)));
+        assertEquals(List.of(tiedSecond), ids(list.range(1, 1)));
+        assertTrue(list.range(3, 1).isEmpty());
+    }
+
+    @Test
+    void updatesMoveAnEntryAndRemovalsDropIt() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        RankedList list = new RankedList();
+        list.update(first, 100);
+        list.update(second, 50);
+
+        list.update(second, 200);
+        assertEquals(0, list.rank(second));
+        assertEquals(200, list.getScore(second));
+
+        assertTrue(list.remove(second));
+        assertFalse(list.remove(second));
+        assertEquals(-1, list.rank(second));
+        assertEquals(0, list.rank(first));
+        assertEquals(1, list.size());
+
+        list.clear();
+        assertEquals(0, list.size());
+        assertFalse(list.contains(first));
+        assertTrue(list.range(0, 1).isEmpty());
+    }
+
+    @Test
+    void randomUpdatesMatchASortedList() {
+        Random random = new Random(7);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            ids.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        RankedList list = new RankedList();
+        Map<UUID, Long> scores = new HashMap<>();
+        Comparator<UUID> order = Comparator.<UUID>comparingLong(scores::get).reversed().thenComparing(Comparator.naturalOrder());
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 20; i++) {
+                UUID id = ids.get(random.nextInt(ids.size()));
+                if (random.nextInt(5) == 0) {
+                    assertEquals(scores.remove(id) != null, list.remove(id));
+                } else {
+                    // Few distinct scores, so ties are common
+                    long score = random.nextInt(30);
+                    list.update(id, score);
+                    scores.put(id, score);
+                }
+            }
+            List<UUID> expected = new ArrayList<>(scores.keySet());
+            expected.sort(order);
+
+            assertEquals(expected.size(), list.size());
+            assertEquals(expected, ids(list.range(0, expected.size())));
+            for (int rank = 0; rank < expected.size(); rank++) {
+                assertEquals(rank, list.rank(expected.get(rank)));
+            }
+            if (!expected.isEmpty()) {
+                int from = random.nextInt(expected.size());
+                assertEquals(expected.subList(from, Math.min(from + 10, expected.size())), ids(list.range(from, 10)));
+            }
+        }
+    }
+}
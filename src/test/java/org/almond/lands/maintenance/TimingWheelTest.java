@@ -0,0 +1,128 @@
+package org.almond.lands.maintenance;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+    private static <K> List<K> pollAll(TimingWheel<K> wheel) {
+        List<K> keys = new ArrayList<>();
+        for (K key; (key = wheel.poll()) != null; ) {
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    @Test
+    void keysComeDueInOrderOfTheirDueTime() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 3, 0);
+        wheel.schedule("late", 5_000);
+        wheel.schedule("early", 50);
+        wheel.schedule("middle", 700);
+
+        wheel.advance(40);
+        assertNull(wheel.poll());
+        wheel.advance(10_000);
+
+        assertEquals(List.of("early", "middle", "late"), pollAll(wheel));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void keysAreNeverHandedOutBeforeTheirDueTime() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 2, 0);
+        wheel.schedule("key", 1_001);
+        assertEquals(1_100, wheel.getDueMillis("key"));
+
+        wheel.advance(1_099);
+        assertEquals(0, wheel.getReadyCount());
+        wheel.advance(1_100);
+        assertEquals(1, wheel.getReadyCount());
+        assertEquals("key", wheel.poll());
+    }
+
+    @Test
+    void reschedulingReplacesTheDueTimeAndCancellingRemovesTheKey() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 2, 0);
+        wheel.schedule("moved", 10);
+        wheel.schedule("cancelled", 10);
+        wheel.schedule("moved", 50_000);
+        assertTrue(wheel.cancel("cancelled"));
+        assertFalse(wheel.cancel("cancelled"));
+
+        wheel.advance(10);
+        assertNull(wheel.poll());
+        assertTrue(wheel.isScheduled("moved"));
+        assertEquals(1, wheel.size());
+
+        // Beyond the two levels it waits in the overflow list
+        wheel.advance(49_999);
+        assertNull(wheel.poll());
+        wheel.advance(50_000);
+        assertEquals("moved", wheel.poll());
+        assertFalse(wheel.isScheduled("moved"));
+    }
+
+    @Test
+    void cancellingAReadyKeyTakesItOffTheReadyList() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 1, 0);
+        wheel.schedule("first", 5);
+        wheel.schedule("second", 5);
+        wheel.advance(5);
+        assertEquals(2, wheel.getReadyCount());
+
+        assertTrue(wheel.cancel("first"));
+
+        assertEquals(1, wheel.getReadyCount());
+        assertEquals(List.of("second"), pollAll(wheel));
+    }
+
+    @Test
+    void randomSchedulesMatchAPlainMap() {
+        Random random = new Random(42);
+        TimingWheel<Integer> wheel = new TimingWheel<>(1, 2, 0);
+        Map<Integer, Long> due = new HashMap<>();
+        long now = 0;
+        for (int round = 0; round < 2_000; round++) {
+            for (int i = 0; i < 5; i++) {
+                int key = random.nextInt(500);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(due.remove(key) != null, wheel.cancel(key));
+                } else {
+                    // Up to several top level revolutions ahead, so the overflow list is used
+                    long time = now + 1 + random.nextInt(random.nextBoolean() ? 100 : 20_000);
+                    wheel.schedule(key, time);
+                    due.put(key, time);
+                }
+            }
+            now += random.nextInt(random.nextInt(10) == 0 ? 5_000 : 50);
+            wheel.advance(now);
+
+            Set<Integer> expected = new HashSet<>();
+            for (Map.Entry<Integer, Long> entry : due.entrySet()) {
+                if (entry.getValue() <= now) {
+                    expected.add(entry.getKey());
+                }
+            }
+            List<Integer> polled = pollAll(wheel);
+            assertEquals(expected, new HashSet<>(polled));
+            assertEquals(expected.size(), polled.size());
+            for (int k = 1; k < polled.size(); k++) {
+                assertTrue(due.get(polled.get(k - 1)) <= due.get(polled.get(k)));
+            }
+            due.keySet().removeAll(expected);
+            assertEquals(due.size(), wheel.size());
+        }
+    }
+}
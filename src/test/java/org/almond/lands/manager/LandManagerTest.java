@@ -0,0 +1,361 @@
+package org.almond.lands.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.almond.lands.model.ClaimMode;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.Region;
+import org.junit.jupiter.api.Test;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+class LandManagerTest {
+
+    private static Region box(int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new Region(new Vector3i(x1, y1, z1), new Vector3i(x2, y2, z2));
+    }
+
+    private static long overlappingVolume(Land land) {
+        long overlap = 0;
+        for (Region a : land.getRegions()) {
+            for (Region b : land.getRegions()) {
+                if (a != b && a.overlaps(b)) {
+                    overlap += a.intersection(b).getVolume();
+                }
+            }
+        }
+        return overlap;
+    }
+
+    @Test
+    void unclaimingTheMiddleKeepsOnlyTheLargerSide() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("split", owner, box(0, 0, 0, 29, 9, 9));
+        landManager.selectLandForPlayer(owner, "split");
+        Land land = landManager.getLandByName("split");
+
+        landManager.claimRegion(owner, box(30, 0, 0, 39, 9, 9));
+        landManager.unclaimRegion(owner, box(10, 0, 0, 19, 9, 9));
+
+        assertEquals(1, land.getRegions().size());
+        assertEquals(box(20, 0, 0, 39, 9, 9), land.getRegions().iterator().next());
+        assertEquals(2000, land.getVolume());
+    }
+
+    @Test
+    void unclaimingAHoleLeavesDisjointPieces() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("hole", owner, box(0, 0, 0, 29, 9, 9));
+        landManager.selectLandForPlayer(owner, "hole");
+        Land land = landManager.getLandByName("hole");
+
+        landManager.unclaimRegion(owner, box(10, 3, 3, 19, 6, 6));
+
+        assertEquals(3000 - 160, land.getVolume());
+        assertEquals(0, overlappingVolume(land));
+        assertFalse(land.getRegions().contains(box(0, 0, 0, 29, 9, 9)));
+        for (Region region : land.getRegions()) {
+            assertFalse(region.overlaps(box(10, 3, 3, 19, 6, 6)));
+        }
+    }
+
+    @Test
+    void repeatedUnclaimsKeepRegionsDisjoint() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("notched", owner, box(0, 0, 0, 29, 9, 9));
+        landManager.selectLandForPlayer(owner, "notched");
+        Land land = landManager.getLandByName("notched");
+
+        landManager.unclaimRegion(owner, box(2, 9, 2, 18, 13, 4));
+        landManager.unclaimRegion(owner, box(28, 2, 9, 34, 9, 9));
+
+        assertEquals(3000 - 17 * 3 - 2 * 8, land.getVolume());
+        assertEquals(0, overlappingVolume(land));
+    }
+
+    @Test
+    void unclaimingAfterSeveralClaimsNeverGrowsTheLand() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("grown", owner, box(0, 0, 0, 9, 9, 9));
+        landManager.selectLandForPlayer(owner, "grown");
+        Land land = landManager.getLandByName("grown");
+
+        landManager.claimRegion(owner, box(10, 0, 0, 29, 9, 9));
+        landManager.claimRegion(owner, box(0, 10, 0, 29, 14, 9));
+        long before = land.getVolume();
+        landManager.unclaimRegion(owner, box(12, 0, 2, 17, 14, 7));
+
+        assertEquals(before - 6 * 15 * 6, land.getVolume());
+        assertEquals(0, overlappingVolume(land));
+    }
+
+    @Test
+    void columnLandsSpanTheFullWorldHeight() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("column", owner, box(0, 40, 0, 15, 50, 15), ClaimMode.COLUMN);
+        Land land = landManager.getLandByName("column");
+
+        assertEquals(1, land.getRegions().size());
+        Region region = land.getRegions().iterator().next();
+        assertTrue(region.isColumn());
+        assertEquals(Region.column(0, 0, 15, 15), region);
+        assertEquals(Region.COLUMN_MIN_Y, region.getCorner1().getY());
+        assertEquals(Region.COLUMN_MAX_Y, region.getCorner2().getY());
+        assertEquals(16L * 16 * (Region.COLUMN_MAX_Y - Region.COLUMN_MIN_Y + 1), land.getVolume());
+    }
+
+    @Test
+    void columnLookupMatchesAnyHeight() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("column", owner, box(0, 40, 0, 15, 50, 15), ClaimMode.COLUMN);
+        landManager.createLand("cuboid", owner, box(100, 40, 0, 115, 50, 15));
+        Land column = landManager.getLandByName("column");
+
+        for (int y : new int[] { -64, Region.COLUMN_MIN_Y, 45, Region.COLUMN_MAX_Y, 1000 }) {
+            assertSame(column, landManager.getLandAt(new Vector3i(8, y, 8)));
+        }
+        assertNull(landManager.getLandAt(new Vector3i(16, 45, 8)));
+        assertNull(landManager.getLandAt(new Vector3i(108, 60, 8)));
+    }
+
+    @Test
+    void unclaimingFromAColumnLandCutsTheFullHeight() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("column", owner, box(0, 64, 0, 29, 64, 9), ClaimMode.COLUMN);
+        landManager.selectLandForPlayer(owner, "column");
+        Land land = landManager.getLandByName("column");
+
+        // A thin cuboid selection still removes the whole column under and above it
+        landManager.unclaimRegion(owner, box(10, 70, 0, 14, 71, 9));
+
+        assertEquals(1, land.getRegions().size());
+        assertEquals(Region.column(15, 0, 29, 9), land.getRegions().iterator().next());
+        assertNull(landManager.getLandAt(new Vector3i(12, 5, 5)));
+        assertNull(landManager.getLandAt(new Vector3i(12, 300, 5)));
+        assertSame(land, landManager.getLandAt(new Vector3i(20, 5, 5)));
+    }
+
+    @Test
+    void unclaimingAHoleFromAColumnLandKeepsTheRingConnected() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("ring", owner, box(0, 0, 0, 29, 0, 9), ClaimMode.COLUMN);
+        landManager.selectLandForPlayer(owner, "ring");
+        Land land = landManager.getLandByName("ring");
+        long height = Region.COLUMN_MAX_Y - Region.COLUMN_MIN_Y + 1;
+
+        landManager.unclaimRegion(owner, box(10, 100, 3, 19, 100, 6));
+
+        // The four pieces around the hole touch in 2D, so none of them is dropped as a split off group
+        assertEquals(4, land.getRegions().size());
+        assertEquals((300 - 40) * height, land.getVolume());
+        assertEquals(0, overlappingVolume(land));
+        for (Region region : land.getRegions()) {
+            assertTrue(region.isColumn());
+        }
+    }
+
+    @Test
+    void columnClaimsJoinBy2DAdjacency() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("grown", owner, box(0, 0, 0, 9, 0, 9), ClaimMode.COLUMN);
+        landManager.selectLandForPlayer(owner, "grown");
+        Land land = landManager.getLandByName("grown");
+
+        // Far above the first claim, but its footprint touches in X so it is adjacent as a column
+        landManager.claimRegion(owner, box(10, 200, 0, 19, 201, 9));
+
+        long height = Region.COLUMN_MAX_Y - Region.COLUMN_MIN_Y + 1;
+        assertEquals(200 * height, land.getVolume());
+        assertSame(land, landManager.getLandAt(new Vector3i(15, 0, 5)));
+    }
+
+    @Test
+    void claimingOverAnExistingRegionAddsOnlyTheUnclaimedPart() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("overlap", owner, box(0, 0, 0, 9, 9, 9));
+        landManager.selectLandForPlayer(owner, "overlap");
+        Land land = landManager.getLandByName("overlap");
+
+        landManager.claimRegion(owner, box(5, 0, 0, 19, 9, 9));
+
+        assertEquals(2000, land.getVolume());
+        assertEquals(0, overlappingVolume(land));
+        assertSame(land, landManager.getLandAt(new Vector3i(19, 9, 9)));
+    }
+
+    @Test
+    void claimingAcrossSeveralRegionsCutsEachOfThemOut() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("bridge", owner, box(0, 0, 0, 9, 9, 9));
+        landManager.selectLandForPlayer(owner, "bridge");
+        Land land = landManager.getLandByName("bridge");
+        landManager.claimRegion(owner, box(0, 0, 10, 9, 9, 29));
+        landManager.claimRegion(owner, box(10, 0, 20, 19, 9, 29));
+
+        // Overlaps all three regions and fills the corner between them
+        landManager.claimRegion(owner, box(5, 0, 5, 14, 9, 24));
+
+        assertEquals(4000 + 2000 - 250 - 750 - 250, land.getVolume());
+        assertEquals(0, overlappingVolume(land));
+        assertSame(land, landManager.getLandAt(new Vector3i(14, 0, 5)));
+        assertSame(land, landManager.getLandAt(new Vector3i(14, 9, 24)));
+    }
+
+    @Test
+    void claimsPastTheVolumeLimitAreRejectedWithoutTouchingTheLand() {
+        LandManager landManager = new LandManager();
+        landManager.setMaxLandVolume(2500);
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("capped", owner, box(0, 0, 0, 9, 9, 9));
+        landManager.selectLandForPlayer(owner, "capped");
+        Land land = landManager.getLandByName("capped");
+
+        // Only the 1000 unclaimed blocks count, the overlap is already held
+        landManager.claimRegion(owner, box(5, 0, 0, 19, 9, 9));
+        assertEquals(2000, land.getVolume());
+
+        Region rejected = box(20, 0, 0, 29, 9, 9);
+        assertThrows(IllegalArgumentException.class, () -> landManager.claimRegion(owner, rejected));
+        assertEquals(2000, land.getVolume());
+        assertNull(landManager.getLandAt(new Vector3i(25, 5, 5)));
+        for (Region region : land.getRegions()) {
+            assertFalse(region.bfsRegionGraph().contains(rejected));
+        }
+    }
+
+    @Test
+    void volumeLimitAppliesToNewLandsButNotToSubclaims() {
+        LandManager landManager = new LandManager();
+        landManager.setMaxLandVolume(1000);
+        UUID owner = UUID.randomUUID();
+
+        assertThrows(IllegalArgumentException.class, () -> landManager.createLand("big", owner, box(0, 0, 0, 10, 9, 9)));
+        assertNull(landManager.getLandByName("big"));
+
+        landManager.createLand("full", owner, box(0, 0, 0, 9, 9, 9));
+        landManager.selectLandForPlayer(owner, "full");
+        landManager.createSubclaim(owner, "inner", owner, box(0, 0, 0, 4, 9, 9));
+        landManager.selectLandForPlayer(owner, "inner");
+        landManager.claimRegion(owner, box(5, 0, 0, 9, 9, 9));
+        assertEquals(1000, landManager.getLandByName("inner").getVolume());
+
+        assertThrows(IllegalArgumentException.class, () -> landManager.setMaxLandVolume(-1));
+    }
+
+    @Test
+    void unclaimingClipsSubclaimsToTheRemainingLand() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("outer", owner, box(0, 0, 0, 29, 9, 9));
+        landManager.selectLandForPlayer(owner, "outer");
+        landManager.createSubclaim(owner, "shop", owner, box(15, 0, 0, 24, 9, 9));
+        Land shop = landManager.getLandByName("shop");
+
+        landManager.unclaimRegion(owner, box(20, 0, 0, 29, 9, 9));
+
+        assertEquals(500, shop.getVolume());
+        assertTrue(landManager.getLandByName("outer").covers(box(15, 0, 0, 19, 9, 9)));
+        for (Region region : shop.getRegions()) {
+            assertTrue(landManager.getLandByName("outer").covers(region));
+        }
+        assertSame(shop, landManager.getLandAt(new Vector3i(17, 5, 5)));
+        assertNull(landManager.getLandAt(new Vector3i(22, 5, 5)));
+    }
+
+    @Test
+    void unclaimingDeletesSubclaimsLeftWithoutVolume() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        List<Land> deleted = new ArrayList<>();
+        landManager.addChangeListener(new LandChangeListener() {
+            @Override
+            public void onLandDeleted(Land land) {
+                deleted.add(land);
+            }
+        });
+        landManager.createLand("outer", owner, box(0, 0, 0, 29, 9, 9));
+        landManager.selectLandForPlayer(owner, "outer");
+        landManager.createSubclaim(owner, "shop", owner, box(20, 0, 0, 29, 9, 9));
+        landManager.selectLandForPlayer(owner, "shop");
+        landManager.createSubclaim(owner, "counter", owner, box(25, 0, 0, 29, 9, 9));
+        Land shop = landManager.getLandByName("shop");
+        Land counter = landManager.getLandByName("counter");
+        landManager.selectLandForPlayer(owner, "outer");
+
+        landManager.unclaimRegion(owner, box(20, 0, 0, 29, 9, 9));
+
+        assertNull(landManager.getLandByName("shop"));
+        assertNull(landManager.getLandByName("counter"));
+        assertTrue(landManager.getLandByName("outer").getSubclaims().isEmpty());
+        assertEquals(List.of(counter, shop), deleted);
+        assertNull(landManager.getLandAt(new Vector3i(27, 5, 5)));
+    }
+
+    @Test
+    void mutationsAreRejectedWhileAListenerCannotTakeThem() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("guarded", owner, box(0, 0, 0, 9, 9, 9));
+        landManager.selectLandForPlayer(owner, "guarded");
+        landManager.addChangeListener(new LandChangeListener() {
+            @Override
+            public void checkAccepting() {
+                throw new IllegalStateException("Land journal is unavailable.");
+            }
+        });
+
+        assertThrows(IllegalStateException.class, () -> landManager.claimRegion(owner, box(10, 0, 0, 19, 9, 9)));
+        assertThrows(IllegalStateException.class, () -> landManager.createLand("other", owner, box(50, 0, 0, 59, 9, 9)));
+
+        assertEquals(1000, landManager.getLandByName("guarded").getVolume());
+        assertNull(landManager.getLandByName("other"));
+    }
+
+    @Test
+    void aFailingListenerDoesNotKeepTheOthersFromTheChange() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        List<Land> changed = new ArrayList<>();
+        landManager.addChangeListener(new LandChangeListener() {
+            @Override
+            public void onRegionsChanged(Land land, Set<Region> added, Set<Region> removed) {
+                throw new IllegalStateException("Land journal is unavailable.");
+            }
+        });
+        landManager.addChangeListener(new LandChangeListener() {
+            @Override
+            public void onRegionsChanged(Land land, Set<Region> added, Set<Region> removed) {
+                changed.add(land);
+            }
+        });
+        landManager.createLand("logged", owner, box(0, 0, 0, 9, 9, 9));
+        landManager.selectLandForPlayer(owner, "logged");
+        Land land = landManager.getLandByName("logged");
+        land.markSaved(land.getVersion());
+
+        landManager.claimRegion(owner, box(10, 0, 0, 19, 9, 9));
+
+        assertEquals(List.of(land), changed);
+        assertEquals(2000, land.getVolume());
+        assertTrue(land.isDirty());
+    }
+}
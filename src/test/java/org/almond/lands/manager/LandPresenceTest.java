@@ -0,0 +1,94 @@
+package org.almond.lands.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.almond.lands.model.Region;
+import org.junit.jupiter.api.Test;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+class LandPresenceTest {
+
+    private final UUID owner = UUID.randomUUID();
+    private final UUID member = UUID.randomUUID();
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+
+    private static Region box(int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new Region(new Vector3i(x1, y1, z1), new Vector3i(x2, y2, z2));
+    }
+
+    private LandPresence presence(LandManager landManager) {
+        return new LandPresence(landManager, (playerId, message) -> messages.add(playerId + " " + message));
+    }
+
+    @Test
+    void landsLoadedBeforeTheTrackerAreFoundOnJoin() {
+        LandManager landManager = new LandManager();
+        landManager.createLand("town", owner, box(0, 0, 0, 9, 9, 9));
+        landManager.createLand("farm", owner, box(50, 0, 0, 59, 9, 9));
+        landManager.createLand("other", UUID.randomUUID(), box(100, 0, 0, 109, 9, 9));
+        landManager.selectLandForPlayer(owner, "town");
+        landManager.trustPlayer(owner, member, "member");
+        LandPresence presence = presence(landManager);
+
+        presence.playerJoined(owner);
+        presence.playerJoined(member);
+
+        UUID town = landManager.getLandByName("town").getId();
+        assertEquals(Set.of(town, landManager.getLandByName("farm").getId()), presence.getLandsOf(owner));
+        assertEquals(Set.of(town), presence.getLandsOf(member));
+        assertEquals(Set.of(owner, member), presence.getOnlineMembers(town));
+        presence.close();
+    }
+
+    @Test
+    void changesWhileOfflineAreSeenOnJoin() {
+        LandManager landManager = new LandManager();
+        LandPresence presence = presence(landManager);
+        landManager.createLand("town", owner, box(0, 0, 0, 9, 9, 9));
+        landManager.createLand("farm", owner, box(50, 0, 0, 59, 9, 9));
+        landManager.selectLandForPlayer(owner, "town");
+        landManager.trustPlayer(owner, member, "member");
+        landManager.selectLandForPlayer(owner, "farm");
+        landManager.trustPlayer(owner, member, "member");
+        landManager.untrustPlayer(owner, member);
+        landManager.deleteLand(owner, "town");
+
+        presence.playerJoined(member);
+
+        assertTrue(presence.isOnline(member));
+        assertTrue(presence.getLandsOf(member).isEmpty());
+        presence.close();
+    }
+
+    @Test
+    void onlineMembersFollowTrustsAndDeletions() {
+        LandManager landManager = new LandManager();
+        LandPresence presence = presence(landManager);
+        presence.playerJoined(owner);
+        presence.playerJoined(member);
+        landManager.createLand("town", owner, box(0, 0, 0, 9, 9, 9));
+        UUID town = landManager.getLandByName("town").getId();
+        landManager.selectLandForPlayer(owner, "town");
+
+        landManager.trustPlayer(owner, member, "member");
+        assertEquals(Set.of(owner, member), presence.getOnlineMembers(town));
+        landManager.untrustPlayer(owner, member);
+        assertEquals(Set.of(owner), presence.getOnlineMembers(town));
+        landManager.trustPlayer(owner, member, "member");
+        presence.playerQuit(member);
+        assertEquals(Set.of(owner), presence.getOnlineMembers(town));
+
+        landManager.deleteLand(owner, "town");
+        presence.close();
+
+        assertTrue(presence.getOnlineMembers(town).isEmpty());
+        assertTrue(presence.getLandsOf(owner).isEmpty());
+        assertEquals(List.of(owner + " Land town was deleted."), messages);
+    }
+}
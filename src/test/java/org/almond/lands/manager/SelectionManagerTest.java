@@ -0,0 +1,140 @@
+package org.almond.lands.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.Region;
+import org.junit.jupiter.api.Test;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+class SelectionManagerTest {
+
+    private static Region box(int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new Region(new Vector3i(x1, y1, z1), new Vector3i(x2, y2, z2));
+    }
+
+    private static void select(SelectionManager selections, UUID playerId, Region region, long now) {
+        selections.setCorner1(playerId, region.getCorner1(), now);
+        selections.setCorner2(playerId, region.getCorner2(), now);
+    }
+
+    @Test
+    void previewWaitsUntilTheCornersSettle() {
+        LandManager landManager = new LandManager();
+        SelectionManager selections = new SelectionManager(landManager, 10_000, 150, null);
+        UUID player = UUID.randomUUID();
+
+        select(selections, player, box(0, 0, 0, 9, 9, 9), 0);
+        selections.tick(100);
+        assertNull(selections.getPreview(player));
+
+        selections.tick(150);
+        SelectionPreview preview = selections.getPreview(player);
+        assertNotNull(preview);
+        assertNull(preview.getLandId());
+        assertEquals(1000, preview.getVolume());
+        assertEquals(0, preview.getForeignOverlap());
+        assertFalse(preview.isAdjacent());
+    }
+
+    @Test
+    void previewCountsOverlapWithOtherLandsAndAdjacencyToTheSelectedOne() {
+        LandManager landManager = new LandManager();
+        UUID owner = UUID.randomUUID();
+        UUID neighbour = UUID.randomUUID();
+        landManager.createLand("home", owner, box(0, 0, 0, 9, 9, 9));
+        landManager.createLand("next", neighbour, box(20, 0, 0, 29, 9, 9));
+        landManager.selectLandForPlayer(owner, "home");
+        Land home = landManager.getLandByName("home");
+        Land next = landManager.getLandByName("next");
+        SelectionManager selections = new SelectionManager(landManager, 10_000, 0, null);
+
+        select(selections, owner, box(10, 0, 0, 24, 9, 9), 0);
+        selections.tick(0);
+
+        SelectionPreview preview = selections.getPreview(owner);
+        assertEquals(home.getId(), preview.getLandId());
+        assertEquals(1500, preview.getVolume());
+        assertEquals(500, preview.getForeignOverlap());
+        assertEquals(1, preview.getForeignLands().size());
+        assertTrue(preview.getForeignLands().contains(next.getId()));
+        assertTrue(preview.isAdjacent());
+    }
+
+    @Test
+    void previewReportsTheVolumeLeftUnderTheLimit() {
+        LandManager landManager = new LandManager();
+        landManager.setMaxLandVolume(2500);
+        UUID owner = UUID.randomUUID();
+        landManager.createLand("capped", owner, box(0, 0, 0, 9, 9, 9));
+        landManager.selectLandForPlayer(owner, "capped");
+        SelectionManager selections = new SelectionManager(landManager, 10_000, 0, null);
+
+        // Half of the selection is already held by the land, so only 1000 new blocks count
+        select(selections, owner, box(5, 0, 0, 19, 9, 9), 0);
+        selections.tick(0);
+        assertEquals(500, selections.getPreview(owner).getHeadroom());
+        assertTrue(selections.getPreview(owner).isWithinLimit());
+
+        selections.setCorner2(owner, new Vector3i(29, 9, 9), 10);
+        selections.tick(10);
+        assertEquals(-500, selections.getPreview(owner).getHeadroom());
+        assertFalse(selections.getPreview(owner).isWithinLimit());
+    }
+
+    @Test
+    void previewIsUnlimitedWithoutAVolumeLimit() {
+        SelectionManager selections = new SelectionManager(new LandManager(), 10_000, 0, null);
+        UUID player = UUID.randomUUID();
+
+        select(selections, player, box(0, 0, 0, 99, 99, 99), 0);
+        selections.tick(0);
+
+        assertEquals(SelectionPreview.UNLIMITED, selections.getPreview(player).getHeadroom());
+    }
+
+    @Test
+    void unchangedSelectionIsNotPreviewedAgain() {
+        LandManager landManager = new LandManager();
+        List<SelectionPreview> previews = new ArrayList<>();
+        SelectionManager selections = new SelectionManager(landManager, 10_000, 0,
+                                                           (playerId, preview) -> previews.add(preview));
+        UUID player = UUID.randomUUID();
+
+        select(selections, player, box(0, 0, 0, 9, 9, 9), 0);
+        selections.tick(0);
+        select(selections, player, box(0, 0, 0, 9, 9, 9), 10);
+        selections.tick(10);
+        assertEquals(1, previews.size());
+
+        selections.setCorner2(player, new Vector3i(19, 9, 9), 20);
+        selections.tick(20);
+        assertEquals(2, previews.size());
+        assertEquals(2000, previews.get(1).getVolume());
+    }
+
+    @Test
+    void idleSessionsAreDroppedAfterTheTtl() {
+        SelectionManager selections = new SelectionManager(new LandManager(), 1000, 0, null);
+        UUID idle = UUID.randomUUID();
+        UUID active = UUID.randomUUID();
+
+        select(selections, idle, box(0, 0, 0, 9, 9, 9), 0);
+        select(selections, active, box(0, 0, 0, 9, 9, 9), 500);
+        selections.tick(1000);
+
+        assertEquals(1, selections.getSessionCount());
+        assertNull(selections.getPreview(idle));
+        assertNotNull(selections.getPreview(active));
+
+        selections.playerQuit(active);
+        assertEquals(0, selections.getSessionCount());
+    }
+}
@@ -0,0 +1,78 @@
+package org.almond.lands.map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.almond.lands.model.Region;
+import org.junit.jupiter.api.Test;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+class LandOutlineTest {
+
+    private static Region box(int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new Region(new Vector3i(x1, y1, z1), new Vector3i(x2, y2, z2));
+    }
+
+    /** A square frame from min to max edge, width blocks wide */
+    private static List<Region> frame(int min, int max, int width) {
+        List<Region> regions = new ArrayList<>();
+        regions.add(box(min, 0, min, max - 1, 0, min + width - 1));
+        regions.add(box(min, 0, max - width, max - 1, 0, max - 1));
+        regions.add(box(min, 0, min + width, min + width - 1, 0, max - width - 1));
+        regions.add(box(max - width, 0, min + width, max - 1, 0, max - width - 1));
+        return regions;
+    }
+
+    /** Twice the absolute area of a ring */
+    private static long area(int[] ring) {
+        int count = ring.length / 2;
+        long area = 0;
+        for (int k = 0; k < count; k++) {
+            int next = (k + 1) % count;
+            area += (long) ring[k * 2] * ring[next * 2 + 1] - (long) ring[next * 2] * ring[k * 2 + 1];
+        }
+        return Math.abs(area);
+    }
+
+    @Test
+    void touchingRegionsMergeIntoOneRectangle() {
+        List<List<int[]>> polygons = LandOutline.compute(List.of(box(0, 0, 0, 9, 5, 9), box(10, 0, 0, 19, 5, 9)), 0);
+
+        assertEquals(1, polygons.size());
+        assertEquals(1, polygons.get(0).size());
+        assertEquals(8, polygons.get(0).get(0).length);
+        assertEquals(2 * 20 * 10, area(polygons.get(0).get(0)));
+    }
+
+    @Test
+    void aFrameHasOneHole() {
+        List<List<int[]>> polygons = LandOutline.compute(frame(0, 30, 5), 0);
+
+        assertEquals(1, polygons.size());
+        assertEquals(2, polygons.get(0).size());
+        assertEquals(2 * 20 * 20, area(polygons.get(0).get(1)));
+    }
+
+    @Test
+    void holesGoToTheInnermostRingAroundThem() {
+        // A frame around an island that is itself a frame, the inner hole lies inside both outer rings
+        List<Region> regions = new ArrayList<>(frame(0, 100, 10));
+        regions.addAll(frame(30, 70, 10));
+
+        List<List<int[]>> polygons = LandOutline.compute(regions, 0);
+
+        assertEquals(2, polygons.size());
+        for (List<int[]> polygon : polygons) {
+            assertEquals(2, polygon.size());
+            long outer = area(polygon.get(0));
+            long hole = area(polygon.get(1));
+            if (outer == 2 * 100 * 100) {
+                assertEquals(2 * 80 * 80, hole);
+            } else {
+                assertEquals(2 * 40 * 40, outer);
+                assertEquals(2 * 20 * 20, hole);
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.almond.lands.replication;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandFlag;
+import org.almond.lands.model.Region;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+class LandReplicatorTest {
+
+    @TempDir
+    Path directory;
+
+    private final UUID owner = UUID.randomUUID();
+
+    /** Delivers every published event straight into the inbox of every other started node */
+    private static class Hub {
+        private final Map<Integer, Consumer<byte[]>> receivers = new HashMap<>();
+
+        ReplicationTransport transport() {
+            return new ReplicationTransport() {
+                private int nodeId;
+
+                @Override
+                public void start(int nodeId, Consumer<byte[]> receiver) {
+                    this.nodeId = nodeId;
+                    receivers.put(nodeId, receiver);
+                }
+
+                @Override
+                public void publish(byte[] event) {
+                    deliver(nodeId, event);
+                }
+
+                @Override
+                public void close() {
+                    receivers.remove(nodeId);
+                }
+            };
+        }
+
+        void deliver(int from, byte[] event) {
+            for (Map.Entry<Integer, Consumer<byte[]>> receiver : receivers.entrySet()) {
+                if (receiver.getKey() != from) {
+                    receiver.getValue().accept(event);
+                }
+            }
+        }
+    }
+
+    private static Region box(int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new Region(new Vector3i(x1, y1, z1), new Vector3i(x2, y2, z2));
+    }
+
+    private static LandReplicator node(int nodeId, LandManager landManager, Hub hub) throws IOException {
+        LandReplicator replicator = new LandReplicator(nodeId, landManager, hub.transport());
+        replicator.start();
+        return replicator;
+    }
+
+    @Test
+    void localChangesReachTheOtherNode() throws IOException {
+        Hub hub = new Hub();
+        LandManager first = new LandManager();
+        LandManager second = new LandManager();
+        node(1, first, hub);
+        LandReplicator secondNode = node(2, second, hub);
+
+        first.createLand("plaza", owner, box(0, 0, 0, 9, 9, 9));
+        first.selectLandForPlayer(owner, "plaza");
+        first.claimRegion(owner, box(10, 0, 0, 19, 9, 9));
+        first.setLandFlag(owner, LandFlag.PVP, true);
+
+        assertEquals(3, secondNode.pump());
+        Land land = second.getLandByName("plaza");
+        assertEquals(first.getLandByName("plaza").getId(), land.getId());
+        assertEquals(2000, land.getVolume());
+        assertEquals(first.getLandByName("plaza").getFlags(), land.getFlags());
+        assertEquals(land, second.getLandAt(new Vector3i(15, 5, 5)));
+    }
+
+    @Test
+    void concurrentCreatesOfOneNameSettleOnTheLowerStamp() throws IOException {
+        Hub hub = new Hub();
+        LandManager first = new LandManager();
+        LandManager second = new LandManager();
+        LandReplicator firstNode = node(1, first, hub);
+        LandReplicator secondNode = node(2, second, hub);
+
+        // Both at clock 1, node 1 wins the tie on the low stamp bits
+        first.createLand("plaza", owner, box(0, 0, 0, 9, 9, 9));
+        second.createLand("plaza", UUID.randomUUID(), box(100, 0, 0, 109, 9, 9));
+        firstNode.pump();
+        secondNode.pump();
+
+        Land winner = first.getLandByName("plaza");
+        assertEquals(winner.getId(), second.getLandByName("plaza").getId());
+        assertEquals(1, first.getLandCount());
+        assertEquals(1, second.getLandCount());
+        assertNull(second.getLandAt(new Vector3i(105, 5, 5)));
+        assertEquals(1, firstNode.getNameConflictCount());
+        assertEquals(1, secondNode.getNameConflictCount());
+    }
+
+    @Test
+    void concurrentFlagWritesConvergeOnTheHigherStamp() throws IOException {
+        Hub hub = new Hub();
+        LandManager first = new LandManager();
+        LandManager second = new LandManager();
+        LandReplicator firstNode = node(1, first, hub);
+        LandReplicator secondNode = node(2, second, hub);
+        first.createLand("plaza", owner, box(0, 0, 0, 9, 9, 9));
+        secondNode.pump();
+        first.selectLandForPlayer(owner, "plaza");
+        second.selectLandForPlayer(owner, "plaza");
+
+        first.setLandFlag(owner, LandFlag.PVP, true);
+        second.setLandFlag(owner, LandFlag.FIRE_SPREAD, true);
+        firstNode.pump();
+        secondNode.pump();
+
+        assertEquals(first.getLandByName("plaza").getFlags(), second.getLandByName("plaza").getFlags());
+        assertEquals(1, firstNode.getRejectedCount() + secondNode.getRejectedCount());
+    }
+
+    @Test
+    void savedStampsStillRejectOlderWritesAfterARestart() throws IOException {
+        Hub hub = new Hub();
+        LandManager first = new LandManager();
+        LandManager second = new LandManager();
+        LandManager third = new LandManager();
+        node(1, first, hub);
+        LandReplicator secondNode = node(2, second, hub);
+        LandReplicator thirdNode = node(3, third, hub);
+        first.createLand("plaza", owner, box(0, 0, 0, 9, 9, 9));
+        secondNode.pump();
+        thirdNode.pump();
+
+        // Node 1 writes with a clock ahead of node 3, which has not seen those writes yet
+        first.selectLandForPlayer(owner, "plaza");
+        first.setLandFlag(owner, LandFlag.PVP, true);
+        first.setLandFlag(owner, LandFlag.EXPLOSIONS, true);
+        first.setLandFlag(owner, LandFlag.PUBLIC, true);
+        secondNode.pump();
+        long flags = second.getLandByName("plaza").getFlags();
+
+        Path state = directory.resolve("replication.state");
+        secondNode.saveState(state);
+        secondNode.close();
+        LandReplicator restarted = new LandReplicator(2, second, hub.transport());
+        restarted.loadState(state);
+        restarted.start();
+
+        third.selectLandForPlayer(owner, "plaza");
+        third.setLandFlag(owner, LandFlag.FIRE_SPREAD, true);
+        assertEquals(0, restarted.pump());
+
+        assertEquals(1, restarted.getRejectedCount());
+        assertEquals(flags, second.getLandByName("plaza").getFlags());
+    }
+
+    @Test
+    void aBadEventIsDroppedWithoutStallingTheRest() throws IOException {
+        Hub hub = new Hub();
+        LandManager first = new LandManager();
+        LandManager second = new LandManager();
+        node(1, first, hub);
+        LandReplicator secondNode = node(2, second, hub);
+
+        // A create with a claim mode no node knows
+        ByteBuffer event = ByteBuffer.allocate(256);
+        event.putInt(3).putLong(1L).putLong(1L).putLong((1L << 16) | 3).put(LandReplicator.LAND_CREATED);
+        event.putLong(1L).putLong(2L);                  // Land id
+        event.putLong(3L).putLong(4L);                  // Owner
+        event.putLong(0L).putLong(0L);                  // No parent
+        event.putShort((short) 3).put(new byte[] { 'b', 'a', 'd' });
+        event.put((byte) 99);
+        event.putLong(0L).putLong(0L).putInt(0);
+        byte[] bytes = new byte[event.position()];
+        event.flip();
+        event.get(bytes);
+        hub.deliver(3, bytes);
+        first.createLand("plaza", owner, box(0, 0, 0, 9, 9, 9));
+
+        assertEquals(1, secondNode.pump());
+        assertEquals(1, secondNode.getRejectedCount());
+        assertNull(second.getLandByName("bad"));
+        assertNotNull(second.getLandByName("plaza"));
+    }
+}
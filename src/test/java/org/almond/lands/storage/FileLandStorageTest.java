@@ -0,0 +1,100 @@
+package org.almond.lands.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.UUID;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.Region;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+class FileLandStorageTest {
+
+    @TempDir
+    Path directory;
+
+    private static Region box(int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new Region(new Vector3i(x1, y1, z1), new Vector3i(x2, y2, z2));
+    }
+
+    /** Creates two lands and a subclaim through a fresh storage and saves them, returns the id of the first */
+    private UUID savedLands(UUID owner) throws IOException {
+        LandManager landManager = new LandManager();
+        FileLandStorage storage = new FileLandStorage(directory);
+        storage.load(landManager);
+        landManager.createLand("first", owner, box(0, 0, 0, 9, 9, 9));
+        landManager.createLand("second", owner, box(50, 0, 0, 59, 9, 9));
+        landManager.selectLandForPlayer(owner, "first");
+        landManager.createSubclaim(owner, "inner", owner, box(0, 0, 0, 4, 9, 9));
+        storage.save();
+        storage.close();
+        return landManager.getLandByName("first").getId();
+    }
+
+    @Test
+    void savedShardsLoadBack() throws IOException {
+        UUID owner = UUID.randomUUID();
+        UUID firstId = savedLands(owner);
+
+        LandManager landManager = new LandManager();
+        FileLandStorage storage = new FileLandStorage(directory);
+        storage.load(landManager);
+        storage.close();
+
+        assertEquals(3, landManager.getLandCount());
+        Land first = landManager.getLandById(firstId);
+        assertEquals("first", first.getName());
+        assertEquals(owner, first.getOwner());
+        assertEquals(1000, first.getVolume());
+        assertEquals(first, landManager.getLandAt(new Vector3i(5, 5, 5)));
+        assertEquals(first, landManager.getLandByName("inner").getParent());
+        assertEquals("inner", landManager.getLandAt(new Vector3i(2, 5, 5)).getName());
+    }
+
+    @Test
+    void corruptShardFailsTheLoadAndStaysInPlace() throws IOException {
+        UUID firstId = savedLands(UUID.randomUUID());
+        FileLandStorage storage = new FileLandStorage(directory);
+        Path shard = storage.getShardFile(firstId);
+        byte[] bytes = Files.readAllBytes(shard);
+        bytes[bytes.length / 2] ^= 0x55;
+        Files.write(shard, bytes);
+
+        LandManager landManager = new LandManager();
+        IOException failure = assertThrows(IOException.class, () -> storage.load(landManager));
+
+        assertTrue(failure.getMessage().contains(shard.toString()));
+        assertTrue(Files.exists(shard));
+        assertEquals(0, landManager.getLandCount());
+    }
+
+    @Test
+    void invalidStoredLandsFailTheLoadBeforeAnythingIsRegistered() throws IOException {
+        // The manager does not stop lands from overlapping without a claim gap, stored shards can still hold them
+        LandManager source = new LandManager();
+        UUID owner = UUID.randomUUID();
+        source.createLand("first", owner, box(0, 0, 0, 9, 9, 9));
+        source.createLand("second", owner, box(5, 0, 0, 14, 9, 9));
+        FileLandStorage storage = new FileLandStorage(directory);
+        Files.createDirectories(directory.resolve(FileLandStorage.SHARD_DIRECTORY));
+        for (LandRecord record : LandSnapshot.capture(source.getAllLands())) {
+            LandSnapshot.write(storage.getShardFile(record.getId()), Collections.singletonList(record), 0);
+        }
+
+        LandManager landManager = new LandManager();
+        IOException failure = assertThrows(IOException.class, () -> storage.load(landManager));
+
+        assertTrue(failure.getMessage().contains("overlap"));
+        assertEquals(0, landManager.getLandCount());
+        assertNull(landManager.getLandAt(new Vector3i(7, 5, 5)));
+    }
+}
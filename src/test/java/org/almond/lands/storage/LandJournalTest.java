@@ -0,0 +1,143 @@
+package org.almond.lands.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandFlag;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.Region;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+class LandJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private long journaled;     // Last sequence written by journaledChanges
+
+    private static Region box(int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new Region(new Vector3i(x1, y1, z1), new Vector3i(x2, y2, z2));
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.wal")) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    /** Journals a few mutations of every kind, returns the manager they were made on */
+    private LandManager journaledChanges(UUID owner, UUID member) throws IOException {
+        LandManager landManager = new LandManager();
+        LandJournal journal = new LandJournal(directory);
+        journal.open(0);
+        landManager.addChangeListener(journal);
+
+        landManager.createLand("town", owner, box(0, 0, 0, 29, 9, 9));
+        landManager.createLand("gone", owner, box(100, 0, 0, 109, 9, 9));
+        landManager.selectLandForPlayer(owner, "town");
+        landManager.claimRegion(owner, box(30, 0, 0, 39, 9, 9));
+        landManager.unclaimRegion(owner, box(0, 0, 0, 4, 9, 9));
+        landManager.createRole(owner, "guard", EnumSet.of(LandPermission.BUILD));
+        landManager.trustPlayer(owner, member, "guard");
+        landManager.setLandFlag(owner, LandFlag.PVP, true);
+        landManager.setRegionFlag(owner, new Vector3i(20, 5, 5), LandFlag.EXPLOSIONS, true);
+        landManager.createSubclaim(owner, "market", member, box(10, 0, 0, 19, 9, 9));
+        landManager.deleteLand(owner, "gone");
+
+        journaled = journal.getLastSequence();
+        journal.awaitDurable(journaled);
+        journal.close();
+        return landManager;
+    }
+
+    @Test
+    void replayRebuildsTheJournaledState() throws IOException {
+        UUID owner = UUID.randomUUID();
+        UUID member = UUID.randomUUID();
+        LandManager source = journaledChanges(owner, member);
+
+        LandManager replayed = new LandManager();
+        long lastSequence = new LandJournal(directory).replay(replayed, 0);
+
+        assertEquals(10, journaled);
+        assertEquals(journaled, lastSequence);
+        assertEquals(source.getLandCount(), replayed.getLandCount());
+        assertNull(replayed.getLandByName("gone"));
+        for (Land expected : source.getAllLands()) {
+            Land actual = replayed.getLandById(expected.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getRegions(), actual.getRegions());
+            assertEquals(expected.getFlags(), actual.getFlags());
+            assertEquals(expected.getMembers(), actual.getMembers());
+            assertEquals(expected.getRoles().keySet(), actual.getRoles().keySet());
+        }
+        assertEquals("market", replayed.getLandAt(new Vector3i(12, 3, 3)).getName());
+        assertEquals("town", replayed.getLandAt(new Vector3i(35, 3, 3)).getName());
+        assertNull(replayed.getLandAt(new Vector3i(2, 3, 3)));
+    }
+
+    @Test
+    void replaySkipsEntriesCoveredBySavedLands() throws IOException {
+        UUID owner = UUID.randomUUID();
+        journaledChanges(owner, UUID.randomUUID());
+
+        LandManager replayed = new LandManager();
+        long lastSequence = new LandJournal(directory).replay(replayed, journaled);
+
+        assertEquals(journaled, lastSequence);
+        assertEquals(0, replayed.getLandCount());
+    }
+
+    @Test
+    void tornTailIsTruncatedAndReplayStopsBeforeIt() throws IOException {
+        journaledChanges(UUID.randomUUID(), UUID.randomUUID());
+        Path segment = segments().get(segments().size() - 1);
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        LandManager replayed = new LandManager();
+        long lastSequence = new LandJournal(directory).replay(replayed, 0);
+
+        // The deletion was the last entry, so the land it removed is still there
+        assertEquals(journaled - 1, lastSequence);
+        assertNotNull(replayed.getLandByName("gone"));
+        assertTrue(Files.size(segment) < size - 3);
+    }
+
+    @Test
+    void corruptEntryBeforeLaterSegmentsFailsReplay() throws IOException {
+        journaledChanges(UUID.randomUUID(), UUID.randomUUID());
+        Path first = segments().get(0);
+        byte[] bytes = Files.readAllBytes(first);
+        bytes[12] ^= 0x55;
+        Files.write(first, bytes);
+        // A later segment with entries, as after a rotation
+        Files.copy(first, directory.resolve(String.format("%016d", 99) + ".wal"));
+
+        assertThrows(IOException.class, () -> new LandJournal(directory).replay(new LandManager(), 0));
+    }
+}
@@ -0,0 +1,124 @@
+package org.almond.lands.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.ClaimMode;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandFlag;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.Region;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+class LandSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private static Region box(int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new Region(new Vector3i(x1, y1, z1), new Vector3i(x2, y2, z2));
+    }
+
+    private static LandManager sampleLands(UUID owner, UUID member) {
+        LandManager landManager = new LandManager();
+        landManager.createLand("town", owner, box(0, 0, 0, 29, 9, 9));
+        landManager.selectLandForPlayer(owner, "town");
+        landManager.createRole(owner, "guard", EnumSet.of(LandPermission.BUILD, LandPermission.MANAGE_MEMBERS));
+        landManager.trustPlayer(owner, member, "guard");
+        landManager.setLandFlag(owner, LandFlag.PVP, true);
+        landManager.setRegionFlag(owner, new Vector3i(5, 5, 5), LandFlag.EXPLOSIONS, true);
+        landManager.createSubclaim(owner, "market", member, box(10, 0, 0, 19, 9, 9));
+        landManager.createLand("fields", owner, box(100, 0, 100, 131, 0, 131), ClaimMode.COLUMN);
+        return landManager;
+    }
+
+    @Test
+    void snapshotRoundTripKeepsEveryLandField() throws IOException {
+        UUID owner = UUID.randomUUID();
+        UUID member = UUID.randomUUID();
+        LandManager source = sampleLands(owner, member);
+        Path file = directory.resolve("lands.snap");
+
+        LandSnapshot.write(file, LandSnapshot.capture(source.getAllLands()), 42);
+
+        Map<UUID, UUID> parents = new HashMap<>();
+        Map<UUID, Land> loaded = new HashMap<>();
+        long sequence = LandSnapshot.read(file, (land, parentId) -> {
+            // Parents always come before their subclaims
+            assertTrue(parentId == null || loaded.containsKey(parentId));
+            loaded.put(land.getId(), land);
+            parents.put(land.getId(), parentId);
+        });
+
+        assertEquals(42, sequence);
+        assertEquals(source.getLandCount(), loaded.size());
+        for (Land expected : source.getAllLands()) {
+            Land actual = loaded.get(expected.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getOwner(), actual.getOwner());
+            assertEquals(expected.getClaimMode(), actual.getClaimMode());
+            assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+            assertEquals(expected.getFlags(), actual.getFlags());
+            assertEquals(expected.getRegions(), actual.getRegions());
+            assertEquals(expected.getMembers(), actual.getMembers());
+            assertEquals(expected.getRoles().keySet(), actual.getRoles().keySet());
+            assertEquals(expected.getVolume(), actual.getVolume());
+            assertEquals(expected.getParent() != null ? expected.getParent().getId() : null, parents.get(expected.getId()));
+        }
+
+        Land town = loaded.get(source.getLandByName("town").getId());
+        assertEquals(EnumSet.of(LandPermission.BUILD, LandPermission.MANAGE_MEMBERS),
+                     town.getRoles().get("guard").getPermissions());
+        Region overridden = null;
+        for (Region region : town.getRegions()) {
+            if (region.contains(new Vector3i(5, 5, 5))) {
+                overridden = region;
+            }
+        }
+        assertTrue(LandFlag.EXPLOSIONS.isSet(overridden.resolveFlags(town.getFlags())));
+        for (Region region : loaded.get(source.getLandByName("fields").getId()).getRegions()) {
+            assertTrue(region.isColumn());
+        }
+    }
+
+    @Test
+    void registeredSnapshotAnswersLookupsLikeTheSource() throws IOException {
+        UUID owner = UUID.randomUUID();
+        LandManager source = sampleLands(owner, UUID.randomUUID());
+        Path file = directory.resolve("lands.snap");
+        LandSnapshot.write(file, LandSnapshot.capture(source.getAllLands()), 0);
+
+        LandManager restored = new LandManager();
+        LandSnapshot.read(file, restored::registerLand);
+
+        assertEquals("market", restored.getLandAt(new Vector3i(12, 3, 3)).getName());
+        assertEquals("town", restored.getLandAt(new Vector3i(25, 3, 3)).getName());
+        assertEquals("fields", restored.getLandAt(new Vector3i(120, 250, 120)).getName());
+        assertNull(restored.getLandAt(new Vector3i(50, 3, 3)));
+    }
+
+    @Test
+    void corruptSnapshotIsRejected() throws IOException {
+        LandManager source = sampleLands(UUID.randomUUID(), UUID.randomUUID());
+        Path file = directory.resolve("lands.snap");
+        LandSnapshot.write(file, LandSnapshot.capture(source.getAllLands()), 7);
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x55;
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> LandSnapshot.read(file, (land, parentId) -> { }));
+    }
+}
@@ -0,0 +1,131 @@
+package org.almond.lands.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.ClaimMode;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandFlag;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.Region;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+class LandTransferTest {
+
+    @TempDir
+    Path directory;
+
+    private static Region box(int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new Region(new Vector3i(x1, y1, z1), new Vector3i(x2, y2, z2));
+    }
+
+    /** Two top level lands, the first with a role, a member, flags, a region override and a subclaim */
+    private static LandManager sourceLands() {
+        UUID owner = UUID.randomUUID();
+        UUID member = UUID.randomUUID();
+        LandManager landManager = new LandManager();
+        // Separators and quotes in names must survive both formats
+        landManager.createLand("town, \"old\"", owner, box(0, 0, 0, 29, 9, 9));
+        landManager.selectLandForPlayer(owner, "town, \"old\"");
+        landManager.createRole(owner, "guard", EnumSet.of(LandPermission.BUILD, LandPermission.CONTAINER));
+        landManager.trustPlayer(owner, member, "guard");
+        landManager.setLandFlag(owner, LandFlag.PVP, true);
+        landManager.setRegionFlag(owner, new Vector3i(5, 5, 5), LandFlag.FIRE_SPREAD, true);
+        landManager.createSubclaim(owner, "market", member, box(10, 0, 0, 19, 9, 9));
+        landManager.createLand("fields", owner, box(100, 0, 100, 131, 0, 131), ClaimMode.COLUMN);
+        return landManager;
+    }
+
+    private static void assertSameLands(LandManager expected, LandManager actual) {
+        assertEquals(expected.getLandCount(), actual.getLandCount());
+        for (Land land : expected.getAllLands()) {
+            Land copy = actual.getLandById(land.getId());
+            assertEquals(land.getName(), copy.getName());
+            assertEquals(land.getOwner(), copy.getOwner());
+            assertEquals(land.getClaimMode(), copy.getClaimMode());
+            assertEquals(land.getCreatedAt(), copy.getCreatedAt());
+            assertEquals(land.getFlags(), copy.getFlags());
+            assertEquals(land.getRegions(), copy.getRegions());
+            assertEquals(land.getMembers(), copy.getMembers());
+            assertEquals(land.getRoles().keySet(), copy.getRoles().keySet());
+            assertEquals(land.getParent() != null ? land.getParent().getId() : null,
+                         copy.getParent() != null ? copy.getParent().getId() : null);
+        }
+    }
+
+    private void roundTrip(String fileName) throws IOException {
+        LandManager source = sourceLands();
+        Path file = directory.resolve(fileName);
+        LandTransfer.Format format = LandTransfer.Format.of(file);
+        assertEquals(3, new LandTransfer(source).export(file, format, null));
+
+        LandManager imported = new LandManager();
+        // A batch size of one registers parents before their subclaims are checked against them
+        LandTransfer.ImportResult result = new LandTransfer(imported).importFile(file, format, 1, null);
+
+        assertEquals(3, result.getRecords());
+        assertEquals(3, result.getImported());
+        assertEquals(0, result.getRejected());
+        assertSameLands(source, imported);
+        assertEquals("market", imported.getLandAt(new Vector3i(12, 3, 3)).getName());
+        assertEquals("fields", imported.getLandAt(new Vector3i(120, 250, 120)).getName());
+    }
+
+    @Test
+    void jsonLinesRoundTrip() throws IOException {
+        roundTrip("lands.jsonl");
+    }
+
+    @Test
+    void jsonLinesHoldOneObjectPerLine() throws IOException {
+        Path file = directory.resolve("lands.jsonl");
+        new LandTransfer(sourceLands()).export(file, LandTransfer.Format.JSON_LINES, null);
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        for (String line : lines) {
+            assertTrue(line.startsWith("{") && line.endsWith("}"));
+        }
+    }
+
+    @Test
+    void csvRoundTrip() throws IOException {
+        roundTrip("lands.csv");
+    }
+
+    @Test
+    void invalidRecordsAreRejectedWhileTheRestImport() throws IOException {
+        UUID owner = UUID.randomUUID();
+        Path file = directory.resolve("lands.jsonl");
+        Files.write(file, List.of(
+            "{\"name\":\"first\",\"owner\":\"" + owner + "\",\"regions\":[[0,0,0,9,9,9]]}",
+            "{\"name\":\"overlapping\",\"owner\":\"" + owner + "\",\"regions\":[[5,0,0,14,9,9]]}",
+            "{\"name\":\"orphan\",\"owner\":\"" + owner + "\",\"parent\":\"" + UUID.randomUUID() + "\",\"regions\":[[50,0,0,59,9,9]]}",
+            "{\"name\":\"broken\",\"owner\":\"" + owner + "\",\"claimMode\":\"SPHERE\",\"regions\":[[70,0,0,79,9,9]]}",
+            "not json",
+            "{\"name\":\"second\",\"owner\":\"" + owner + "\",\"regions\":[[200,0,0,209,9,9]]}"), StandardCharsets.UTF_8);
+
+        LandManager landManager = new LandManager();
+        LandTransfer.ImportResult result = new LandTransfer(landManager).importFile(file, LandTransfer.Format.JSON_LINES, 2, null);
+
+        assertEquals(6, result.getRecords());
+        assertEquals(2, result.getImported());
+        assertEquals(4, result.getRejected());
+        assertEquals(4, result.getProblems().size());
+        assertTrue(result.getProblems().get(0).startsWith("Line 2: "));
+        assertEquals("first", landManager.getLandAt(new Vector3i(7, 5, 5)).getName());
+        assertNull(landManager.getLandByName("overlapping"));
+        assertEquals(owner, landManager.getLandByName("second").getOwner());
+    }
+}
@@ -0,0 +1,79 @@
+package org.almond.lands.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.UUID;
+import org.almond.lands.manager.LandManager;
+import org.almond.lands.model.ClaimMode;
+import org.almond.lands.model.Land;
+import org.almond.lands.model.LandFlag;
+import org.almond.lands.model.LandPermission;
+import org.almond.lands.model.Region;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.hypixel.hytale.math.vector.Vector3i;
+
+class SqlLandStorageTest {
+
+    @TempDir
+    Path directory;
+
+    private static Region box(int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new Region(new Vector3i(x1, y1, z1), new Vector3i(x2, y2, z2));
+    }
+
+    @Test
+    void savedLandsLoadBackFromTheDatabase() throws IOException {
+        UUID owner = UUID.randomUUID();
+        UUID member = UUID.randomUUID();
+        // Longer than any fixed name column, it must not fail the autosave transaction
+        String longName = "a".repeat(300);
+        String longRole = "r".repeat(200);
+
+        LandManager source = new LandManager();
+        SqlLandStorage storage = new SqlLandStorage(directory);
+        storage.load(source);
+        source.createLand(longName, owner, box(0, 0, 0, 29, 9, 9));
+        source.selectLandForPlayer(owner, longName);
+        source.createRole(owner, longRole, EnumSet.of(LandPermission.BUILD, LandPermission.CONTAINER));
+        source.trustPlayer(owner, member, longRole);
+        source.setLandFlag(owner, LandFlag.PVP, true);
+        source.setRegionFlag(owner, new Vector3i(5, 5, 5), LandFlag.FIRE_SPREAD, true);
+        source.createSubclaim(owner, "market", member, box(10, 0, 0, 19, 9, 9));
+        source.createLand("fields", owner, box(100, 0, 100, 131, 0, 131), ClaimMode.COLUMN);
+        storage.save();
+        storage.close();
+
+        LandManager loaded = new LandManager();
+        SqlLandStorage reopened = new SqlLandStorage(directory);
+        reopened.load(loaded);
+        try {
+            assertEquals(source.getLandCount(), loaded.getLandCount());
+            for (Land expected : source.getAllLands()) {
+                Land actual = loaded.getLandById(expected.getId());
+                assertEquals(expected.getName(), actual.getName());
+                assertEquals(expected.getOwner(), actual.getOwner());
+                assertEquals(expected.getClaimMode(), actual.getClaimMode());
+                assertEquals(expected.getFlags(), actual.getFlags());
+                assertEquals(expected.getRegions(), actual.getRegions());
+                assertEquals(expected.getMemberCount(), actual.getMemberCount());
+                // Details load on first access
+                assertEquals(expected.getMembers(), actual.getMembers());
+                assertEquals(expected.getRoles().keySet(), actual.getRoles().keySet());
+            }
+            Land land = loaded.getLandByName(longName);
+            assertEquals(EnumSet.of(LandPermission.BUILD, LandPermission.CONTAINER),
+                         land.getRoles().get(longRole).getPermissions());
+            assertEquals(land, loaded.getLandByName("market").getParent());
+            assertEquals("market", loaded.getLandAt(new Vector3i(12, 3, 3)).getName());
+            assertEquals("fields", loaded.getLandAt(new Vector3i(120, 250, 120)).getName());
+            assertTrue(reopened.findLandsByMember(member).contains(land.getId()));
+        } finally {
+            reopened.close();
+        }
+    }
+}